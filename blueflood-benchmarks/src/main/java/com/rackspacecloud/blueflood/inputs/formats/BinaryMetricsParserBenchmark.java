@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.inputs.formats;
+
+import com.rackspacecloud.blueflood.io.Constants;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link BinaryMetricsParser} against the {@link JSONMetricsParser} on the same metrics, and the cost of
+ * encoding them in each format.
+ *
+ * Run with {@code -prof gc} to see the allocation rate per request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BinaryMetricsParserBenchmark {
+
+    private static final String TENANT_ID = "836986";
+
+    @Param({"100", "1000"})
+    public int metricsPerRequest;
+
+    private String[] names;
+    private Number[] values;
+    private long[] times;
+    private String[] units;
+
+    private ByteBuf json;
+    private ByteBuf binary;
+
+    private final JSONMetricsParser jsonParser = new JSONMetricsParser(false);
+    private final BinaryMetricsParser binaryParser = new BinaryMetricsParser();
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+
+        // the same shape as JSONMetricsParserBenchmark: a typical monitoring agent post
+        names = new String[metricsPerRequest];
+        values = new Number[metricsPerRequest];
+        times = new long[metricsPerRequest];
+        units = new String[metricsPerRequest];
+        for (int i = 0; i < metricsPerRequest; i++) {
+            names[i] = "rackspace.monitoring.entities.en" + random.nextInt(10000) + ".checks.agent.filesystem.ch"
+                    + random.nextInt(100) + "." + (i % 2 == 0 ? "used" : "free_percent");
+            values[i] = i % 2 == 0 ? (Number) random.nextInt(1 << 30) : (Number) (random.nextDouble() * 100);
+            times[i] = now - random.nextInt(30000);
+            units[i] = i % 2 == 0 ? "bytes" : "percent";
+        }
+
+        json = Unpooled.copiedBuffer(encodeJSON(), Constants.DEFAULT_CHARSET);
+        binary = encodeBinary();
+    }
+
+    @TearDown
+    public void tearDown() {
+        json.release();
+        binary.release();
+    }
+
+    @Benchmark
+    public JSONMetricsContainer parseJSON() throws IOException {
+        return jsonParser.parse(json, TENANT_ID);
+    }
+
+    @Benchmark
+    public JSONMetricsContainer parseBinary() throws IOException {
+        return binaryParser.parse(binary, TENANT_ID);
+    }
+
+    @Benchmark
+    public void encodeJSON(Blackhole blackhole) {
+        blackhole.consume(encodeJSON());
+    }
+
+    @Benchmark
+    public void encodeBinary(Blackhole blackhole) {
+        ByteBuf frame = encodeBinary();
+        blackhole.consume(frame);
+        frame.release();
+    }
+
+    private StringBuilder encodeJSON() {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < metricsPerRequest; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("{\"metricName\":\"").append(names[i]).append("\",")
+                    .append("\"metricValue\":").append(values[i]).append(',')
+                    .append("\"collectionTime\":").append(times[i]).append(',')
+                    .append("\"ttlInSeconds\":172800,")
+                    .append("\"unit\":\"").append(units[i]).append("\"}");
+        }
+        return body.append(']');
+    }
+
+    private ByteBuf encodeBinary() {
+        BinaryMetricsEncoder encoder = new BinaryMetricsEncoder();
+        for (int i = 0; i < metricsPerRequest; i++) {
+            encoder.add(names[i], values[i], times[i], 172800, units[i]);
+        }
+        return encoder.encode();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.inputs.formats;
+
+import com.rackspacecloud.blueflood.io.Constants;
+import com.rackspacecloud.blueflood.outputs.formats.ErrorResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.type.TypeFactory;
+import org.openjdk.jmh.annotations.*;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming {@link JSONMetricsParser} against binding the request body to {@link JSONMetric} beans
+ * with Jackson and checking them with Bean Validation, which is how the ingestion handlers used to do it.
+ *
+ * Run with {@code -prof gc} to see the allocation rate per request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JSONMetricsParserBenchmark {
+
+    private static final String TENANT_ID = "836986";
+
+    @Param({"100", "1000"})
+    public int metricsPerRequest;
+
+    private ByteBuf content;
+
+    private final JSONMetricsParser parser = new JSONMetricsParser(false);
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final TypeFactory typeFactory = TypeFactory.defaultInstance();
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < metricsPerRequest; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            // the shape of a typical monitoring agent post: long dotted names, mixed int and float values
+            body.append("{\"metricName\":\"rackspace.monitoring.entities.en").append(random.nextInt(10000))
+                    .append(".checks.agent.filesystem.ch").append(random.nextInt(100))
+                    .append(".").append(i % 2 == 0 ? "used" : "free_percent").append("\",")
+                    .append("\"metricValue\":").append(i % 2 == 0 ? String.valueOf(random.nextInt(1 << 30))
+                                                                   : String.valueOf(random.nextDouble() * 100)).append(',')
+                    .append("\"collectionTime\":").append(now - random.nextInt(30000)).append(',')
+                    .append("\"ttlInSeconds\":172800,")
+                    .append("\"unit\":\"").append(i % 2 == 0 ? "bytes" : "percent").append("\"}");
+        }
+        body.append(']');
+
+        content = Unpooled.copiedBuffer(body, Constants.DEFAULT_CHARSET);
+    }
+
+    @TearDown
+    public void tearDown() {
+        content.release();
+    }
+
+    @Benchmark
+    public JSONMetricsContainer streamingParser() throws IOException {
+        return parser.parse(content, TENANT_ID);
+    }
+
+    @Benchmark
+    public JSONMetricsContainer beanBindingAndValidation() throws IOException {
+        String body = content.toString(Constants.DEFAULT_CHARSET);
+        List<JSONMetric> jsonMetrics = mapper.readValue(body,
+                typeFactory.constructCollectionType(List.class, JSONMetric.class));
+
+        List<ErrorResponse.ErrorData> validationErrors = new ArrayList<ErrorResponse.ErrorData>();
+        List<JSONMetric> validJsonMetrics = new ArrayList<JSONMetric>();
+        for (JSONMetric metric : jsonMetrics) {
+            Set<ConstraintViolation<JSONMetric>> constraintViolations = validator.validate(metric);
+            if (constraintViolations.isEmpty()) {
+                validJsonMetrics.add(metric);
+            } else {
+                for (ConstraintViolation<JSONMetric> constraintViolation : constraintViolations) {
+                    validationErrors.add(new ErrorResponse.ErrorData(TENANT_ID, metric.getMetricName(),
+                            constraintViolation.getPropertyPath().toString(), constraintViolation.getMessage(),
+                            metric.getCollectionTime()));
+                }
+            }
+        }
+        return new JSONMetricsContainer(TENANT_ID, validJsonMetrics, validationErrors);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.inputs.handlers;
+
+import com.rackspacecloud.blueflood.inputs.formats.AggregatedPayload;
+import com.rackspacecloud.blueflood.types.IMetric;
+import com.rackspacecloud.blueflood.types.PreaggregatedMetric;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures converting a statsd flush, already parsed into an {@link AggregatedPayload}, into the metrics written by
+ * the aggregated ingestion handlers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PreaggregateConversionsBenchmark {
+
+    // the number of metrics of each type in the flush
+    @Param({"10", "100"})
+    public int metricsPerType;
+
+    private AggregatedPayload payload;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder()
+                .append("{\"tenantId\":\"836986\",")
+                .append("\"timestamp\":").append(System.currentTimeMillis()).append(',')
+                .append("\"flushInterval\":15000,");
+
+        json.append("\"gauges\":[");
+        for (int i = 0; i < metricsPerType; i++) {
+            json.append(i > 0 ? "," : "")
+                    .append("{\"name\":\"app.web").append(i).append(".queue_depth\",")
+                    .append("\"value\":").append(random.nextInt(1000)).append('}');
+        }
+        json.append("],\"counters\":[");
+        for (int i = 0; i < metricsPerType; i++) {
+            int count = random.nextInt(10000);
+            json.append(i > 0 ? "," : "")
+                    .append("{\"name\":\"app.web").append(i).append(".requests\",")
+                    .append("\"value\":").append(count).append(',')
+                    .append("\"rate\":").append(count / 15d).append('}');
+        }
+        json.append("],\"timers\":[");
+        for (int i = 0; i < metricsPerType; i++) {
+            json.append(i > 0 ? "," : "").append(timer("app.web" + i + ".latency", random));
+        }
+        json.append("],\"sets\":[");
+        for (int i = 0; i < metricsPerType; i++) {
+            json.append(i > 0 ? "," : "")
+                    .append("{\"name\":\"app.web").append(i).append(".users\",\"values\":[");
+            for (int j = 0; j < 20; j++) {
+                json.append(j > 0 ? "," : "").append("\"user").append(random.nextInt(100000)).append('"');
+            }
+            json.append("]}");
+        }
+        json.append("]}");
+
+        payload = AggregatedPayload.create(json.toString());
+    }
+
+    // a timer of log normally distributed latencies, as statsd flushes it
+    private static String timer(String name, Random random) {
+        int count = 50 + random.nextInt(1000);
+        double[] values = new double[count];
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            values[i] = Math.exp(4 + random.nextGaussian());
+            sum += values[i];
+        }
+        Arrays.sort(values);
+
+        StringBuilder json = new StringBuilder()
+                .append("{\"name\":\"").append(name).append("\",")
+                .append("\"count\":").append(count).append(',')
+                .append("\"rate\":").append(count / 15d).append(',')
+                .append("\"min\":").append(values[0]).append(',')
+                .append("\"max\":").append(values[count - 1]).append(',')
+                .append("\"sum\":").append(sum).append(',')
+                .append("\"avg\":").append(sum / count).append(',')
+                .append("\"median\":").append(values[count / 2]).append(',')
+                .append("\"std\":").append(sum / count / 2).append(',')
+                .append("\"percentiles\":{");
+        String[] labels = {"50", "75", "98", "99", "999"};
+        double[] quantiles = {0.5, 0.75, 0.98, 0.99, 0.999};
+        for (int p = 0; p < labels.length; p++) {
+            int upper = (int) (quantiles[p] * (count - 1));
+            double below = 0;
+            for (int i = 0; i <= upper; i++) {
+                below += values[i];
+            }
+            json.append(p > 0 ? "," : "")
+                    .append('"').append(labels[p]).append("\":{")
+                    .append("\"avg\":").append(below / (upper + 1)).append(',')
+                    .append("\"max\":").append(values[upper]).append(',')
+                    .append("\"sum\":").append(below).append('}');
+        }
+        return json.append("}}").toString();
+    }
+
+    @Benchmark
+    public Collection<IMetric> buildMetricsCollection() {
+        return PreaggregateConversions.buildMetricsCollection(payload);
+    }
+
+    @Benchmark
+    public Collection<PreaggregatedMetric> convertTimersWithSketch() {
+        return PreaggregateConversions.convertTimers(payload.getTenantId(), payload.getTimestamp(), payload.getTimers(), true);
+    }
+}
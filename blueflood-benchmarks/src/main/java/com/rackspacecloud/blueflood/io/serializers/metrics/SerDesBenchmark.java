@@ -0,0 +1,261 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.io.serializers.metrics;
+
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.rollup.SlotKey;
+import com.rackspacecloud.blueflood.service.SlotState;
+import com.rackspacecloud.blueflood.service.UpdateStamp;
+import com.rackspacecloud.blueflood.types.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each of the serializers of the values written to and read from Cassandra, a serialize and a deserialize
+ * benchmark for each, with values shaped like the ones written in production.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerDesBenchmark {
+
+    private final RawSerDes rawSerDes = new RawSerDes();
+    private final BasicRollupSerDes basicRollupSerDes = new BasicRollupSerDes();
+    private final CounterSerDes counterSerDes = new CounterSerDes();
+    private final GaugeSerDes gaugeSerDes = new GaugeSerDes();
+    private final SetSerDes setSerDes = new SetSerDes();
+    private final TimerRollupSerDes timerRollupSerDes = new TimerRollupSerDes();
+    private final StringMetadataSerDes stringMetadataSerDes = new StringMetadataSerDes();
+    private final SlotStateSerDes slotStateSerDes = new SlotStateSerDes();
+    private final SlotKeySerDes slotKeySerDes = new SlotKeySerDes();
+
+    private double rawValue;
+    private BasicRollup basicRollup;
+    private BluefloodCounterRollup counterRollup;
+    private BluefloodGaugeRollup gaugeRollup;
+    private BluefloodSetRollup setRollup;
+    private BluefloodSetRollup estimatedSetRollup;
+    private BluefloodTimerRollup timerRollup;
+    private BluefloodTimerRollup sketchedTimerRollup;
+    private String unit;
+    private SlotState slotState;
+    private SlotKey slotKey;
+
+    private ByteBuffer rawBytes;
+    private ByteBuffer basicRollupBytes;
+    private ByteBuffer counterRollupBytes;
+    private ByteBuffer gaugeRollupBytes;
+    private ByteBuffer setRollupBytes;
+    private ByteBuffer estimatedSetRollupBytes;
+    private ByteBuffer timerRollupBytes;
+    private ByteBuffer sketchedTimerRollupBytes;
+    private ByteBuffer unitBytes;
+    private String slotStateString;
+    private String slotKeyString;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+
+        // a 5m rollup of 30s samples
+        Points<SimpleNumber> samples = new Points<SimpleNumber>();
+        for (int i = 0; i < 10; i++) {
+            samples.add(new Points.Point<SimpleNumber>(now + i * 30000L, new SimpleNumber(random.nextDouble() * 100)));
+        }
+        rawValue = random.nextDouble() * 100;
+        basicRollup = BasicRollup.buildRollupFromRawSamples(samples);
+        gaugeRollup = BluefloodGaugeRollup.buildFromRawSamples(samples);
+        counterRollup = new BluefloodCounterRollup()
+                .withCount(random.nextInt(100000))
+                .withRate(random.nextDouble() * 1000)
+                .withSampleCount(10);
+
+        setRollup = new BluefloodSetRollup();
+        for (int i = 0; i < 100; i++) {
+            setRollup.withObject("user" + random.nextInt(1000000));
+        }
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < 100000; i++) {
+            hll.addHash(random.nextInt());
+        }
+        estimatedSetRollup = new BluefloodSetRollup(hll);
+
+        QuantileSketch sketch = new QuantileSketch();
+        timerRollup = new BluefloodTimerRollup()
+                .withCount(1000)
+                .withCountPS(1000 / 30d)
+                .withSum(random.nextDouble() * 100000)
+                .withSampleCount(1)
+                .withMinValue(1)
+                .withMaxValue(2000)
+                .withAverage(random.nextDouble() * 200)
+                .withVariance(random.nextDouble() * 10000);
+        for (String label : new String[]{"50", "75", "98", "99", "999"}) {
+            timerRollup.setPercentile(label, random.nextDouble() * 2000);
+        }
+        for (int i = 0; i < 1000; i++) {
+            sketch.add(Math.exp(4 + random.nextGaussian()));
+        }
+        sketchedTimerRollup = new BluefloodTimerRollup()
+                .withCount(1000)
+                .withCountPS(1000 / 30d)
+                .withSum(timerRollup.getSum())
+                .withSampleCount(1)
+                .withMinValue(1)
+                .withMaxValue(2000)
+                .withAverage(timerRollup.getAverage())
+                .withVariance(timerRollup.getVariance())
+                .withSketch(sketch);
+        for (String label : timerRollup.getPercentiles().keySet()) {
+            sketchedTimerRollup.setPercentile(label, timerRollup.getPercentiles().get(label).getMean());
+        }
+
+        unit = "milliseconds";
+        slotState = new SlotState(Granularity.MIN_5, 1234, UpdateStamp.State.Active);
+        slotKey = SlotKey.of(Granularity.MIN_60, 123, 42);
+
+        rawBytes = rawSerDes.serialize(rawValue);
+        basicRollupBytes = basicRollupSerDes.serialize(basicRollup);
+        counterRollupBytes = counterSerDes.serialize(counterRollup);
+        gaugeRollupBytes = gaugeSerDes.serialize(gaugeRollup);
+        setRollupBytes = setSerDes.serialize(setRollup);
+        estimatedSetRollupBytes = setSerDes.serialize(estimatedSetRollup);
+        timerRollupBytes = timerRollupSerDes.serialize(timerRollup);
+        sketchedTimerRollupBytes = timerRollupSerDes.serialize(sketchedTimerRollup);
+        unitBytes = stringMetadataSerDes.serialize(unit);
+        slotStateString = slotStateSerDes.serialize(slotState);
+        slotKeyString = slotKeySerDes.serialize(slotKey);
+    }
+
+    @Benchmark
+    public ByteBuffer serializeRaw() {
+        return rawSerDes.serialize(rawValue);
+    }
+
+    @Benchmark
+    public Object deserializeRaw() {
+        return rawSerDes.deserialize(rawBytes);
+    }
+
+    @Benchmark
+    public ByteBuffer serializeBasicRollup() {
+        return basicRollupSerDes.serialize(basicRollup);
+    }
+
+    @Benchmark
+    public BasicRollup deserializeBasicRollup() {
+        return basicRollupSerDes.deserialize(basicRollupBytes);
+    }
+
+    @Benchmark
+    public ByteBuffer serializeCounterRollup() {
+        return counterSerDes.serialize(counterRollup);
+    }
+
+    @Benchmark
+    public BluefloodCounterRollup deserializeCounterRollup() {
+        return counterSerDes.deserialize(counterRollupBytes);
+    }
+
+    @Benchmark
+    public ByteBuffer serializeGaugeRollup() {
+        return gaugeSerDes.serialize(gaugeRollup);
+    }
+
+    @Benchmark
+    public BluefloodGaugeRollup deserializeGaugeRollup() {
+        return gaugeSerDes.deserialize(gaugeRollupBytes);
+    }
+
+    @Benchmark
+    public ByteBuffer serializeSetRollup() {
+        return setSerDes.serialize(setRollup);
+    }
+
+    @Benchmark
+    public BluefloodSetRollup deserializeSetRollup() {
+        return setSerDes.deserialize(setRollupBytes);
+    }
+
+    @Benchmark
+    public ByteBuffer serializeEstimatedSetRollup() {
+        return setSerDes.serialize(estimatedSetRollup);
+    }
+
+    @Benchmark
+    public BluefloodSetRollup deserializeEstimatedSetRollup() {
+        return setSerDes.deserialize(estimatedSetRollupBytes);
+    }
+
+    @Benchmark
+    public ByteBuffer serializeTimerRollup() {
+        return timerRollupSerDes.serialize(timerRollup);
+    }
+
+    @Benchmark
+    public BluefloodTimerRollup deserializeTimerRollup() {
+        return timerRollupSerDes.deserialize(timerRollupBytes);
+    }
+
+    @Benchmark
+    public ByteBuffer serializeSketchedTimerRollup() {
+        return timerRollupSerDes.serialize(sketchedTimerRollup);
+    }
+
+    @Benchmark
+    public BluefloodTimerRollup deserializeSketchedTimerRollup() {
+        return timerRollupSerDes.deserialize(sketchedTimerRollupBytes);
+    }
+
+    @Benchmark
+    public ByteBuffer serializeStringMetadata() {
+        return stringMetadataSerDes.serialize(unit);
+    }
+
+    @Benchmark
+    public String deserializeStringMetadata() {
+        return stringMetadataSerDes.deserialize(unitBytes);
+    }
+
+    @Benchmark
+    public String serializeSlotState() {
+        return slotStateSerDes.serialize(slotState);
+    }
+
+    @Benchmark
+    public SlotState deserializeSlotState() {
+        return SlotStateSerDes.deserialize(slotStateString);
+    }
+
+    @Benchmark
+    public String serializeSlotKey() {
+        return slotKeySerDes.serialize(slotKey);
+    }
+
+    @Benchmark
+    public SlotKey deserializeSlotKey() {
+        return SlotKeySerDes.deserialize(slotKeyString);
+    }
+}
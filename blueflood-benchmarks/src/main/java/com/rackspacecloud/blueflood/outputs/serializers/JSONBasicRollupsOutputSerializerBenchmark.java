@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.outputs.serializers;
+
+import com.rackspacecloud.blueflood.exceptions.SerializationException;
+import com.rackspacecloud.blueflood.outputs.formats.MetricData;
+import com.rackspacecloud.blueflood.outputs.utils.PlotRequestParser;
+import com.rackspacecloud.blueflood.types.BasicRollup;
+import com.rackspacecloud.blueflood.types.Points;
+import com.rackspacecloud.blueflood.types.SimpleNumber;
+import com.rackspacecloud.blueflood.types.SimpleNumberPoints;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning the points of a rollups query into the JSON response body, for full resolution points, kept
+ * either as {@link Points} or as the {@link SimpleNumberPoints} read from Cassandra, and for basic rollups, with the
+ * default stats.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JSONBasicRollupsOutputSerializerBenchmark {
+
+    @Param({"100", "1000"})
+    public int numPoints;
+
+    private final JSONBasicRollupsOutputSerializer serializer = new JSONBasicRollupsOutputSerializer();
+
+    private MetricData fullResData;
+    private MetricData fullResColumnsData;
+    private MetricData basicRollupData;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(42);
+        long start = System.currentTimeMillis() - numPoints * 300000L;
+
+        Points<SimpleNumber> fullRes = new Points<SimpleNumber>();
+        SimpleNumberPoints fullResColumns = new SimpleNumberPoints(numPoints);
+        Points<BasicRollup> rollups = new Points<BasicRollup>();
+        for (int i = 0; i < numPoints; i++) {
+            long timestamp = start + i * 300000L;
+            double value = random.nextDouble() * 100;
+            fullRes.add(new Points.Point<SimpleNumber>(timestamp, new SimpleNumber(value)));
+            fullResColumns.add(timestamp, value);
+
+            // a 5m rollup of 30s samples
+            Points<SimpleNumber> samples = new Points<SimpleNumber>();
+            for (int j = 0; j < 10; j++) {
+                samples.add(new Points.Point<SimpleNumber>(timestamp + j * 30000L, new SimpleNumber(random.nextDouble() * 100)));
+            }
+            rollups.add(new Points.Point<BasicRollup>(timestamp, BasicRollup.buildRollupFromRawSamples(samples)));
+        }
+        fullResData = new MetricData(fullRes, "percent");
+        fullResColumnsData = new MetricData(fullResColumns, "percent");
+        basicRollupData = new MetricData(rollups, "percent");
+    }
+
+    @Benchmark
+    public String fullResPoints() throws SerializationException {
+        return serializer.transformRollupData(fullResData, PlotRequestParser.DEFAULT_STATS).toJSONString();
+    }
+
+    @Benchmark
+    public String fullResColumns() throws SerializationException {
+        return serializer.transformRollupData(fullResColumnsData, PlotRequestParser.DEFAULT_STATS).toJSONString();
+    }
+
+    @Benchmark
+    public String basicRollupPoints() throws SerializationException {
+        return serializer.transformRollupData(basicRollupData, PlotRequestParser.DEFAULT_STATS).toJSONString();
+    }
+}
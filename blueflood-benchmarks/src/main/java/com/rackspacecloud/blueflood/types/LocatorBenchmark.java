@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.types;
+
+import com.rackspacecloud.blueflood.utils.Util;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what each ingested metric goes through before it is written: creating its {@link Locator} from the
+ * tenant and name, or from the key read back from Cassandra, and finding its shard.
+ *
+ * {@link Util#getShard(String)} answers from a cache; {@link Util#computeShard(String)} is what a cache miss costs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LocatorBenchmark {
+
+    private static final int NUM_NAMES = 10000;
+
+    private final String[] tenants = new String[NUM_NAMES];
+    private final String[] names = new String[NUM_NAMES];
+    private final String[] dbKeys = new String[NUM_NAMES];
+
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < NUM_NAMES; i++) {
+            tenants[i] = String.valueOf(800000 + random.nextInt(100000));
+            // the shape of a typical monitoring agent metric name
+            names[i] = "rackspace.monitoring.entities.en" + random.nextInt(10000)
+                    + ".checks.agent.filesystem.ch" + random.nextInt(100)
+                    + (i % 2 == 0 ? ".used" : ".free_percent");
+            dbKeys[i] = tenants[i] + "." + names[i];
+        }
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = (next + 1) % NUM_NAMES;
+        return i;
+    }
+
+    @Benchmark
+    public Locator createLocatorFromPathComponents() {
+        int i = nextIndex();
+        return Locator.createLocatorFromPathComponents(tenants[i], names[i]);
+    }
+
+    @Benchmark
+    public Locator createLocatorFromDbKey() {
+        return Locator.createLocatorFromDbKey(dbKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    public Integer getShard() {
+        return Util.getShard(dbKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    public int computeShard() {
+        return Util.computeShard(dbKeys[nextIndex()]);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.types;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the rollup math run for every locator of every slot: basic rollups from raw samples and from finer
+ * rollups, and timer rollups merged with and without their quantile sketches.
+ *
+ * {@link #pointsPerRollup} is the number of points rolled up at once: 10 is a 5m rollup of 30s samples, 288 a
+ * 1440m rollup of 5m rollups.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RollupBenchmark {
+
+    private static final String[] PERCENTILES = {"50", "75", "98", "99", "999"};
+
+    @Param({"10", "288"})
+    public int pointsPerRollup;
+
+    private Points<SimpleNumber> rawSamples;
+    private Points<BasicRollup> basicRollups;
+    private Points<BluefloodTimerRollup> timerRollups;
+    private Points<BluefloodTimerRollup> sketchedTimerRollups;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+
+        rawSamples = new Points<SimpleNumber>();
+        basicRollups = new Points<BasicRollup>();
+        timerRollups = new Points<BluefloodTimerRollup>();
+        sketchedTimerRollups = new Points<BluefloodTimerRollup>();
+
+        for (int i = 0; i < pointsPerRollup; i++) {
+            long timestamp = now + i * 30000L;
+            // alternate between integer and floating point samples, as agents send both
+            Number value = i % 2 == 0 ? random.nextInt(1 << 20) : random.nextDouble() * 100;
+            rawSamples.add(new Points.Point<SimpleNumber>(timestamp, new SimpleNumber(value)));
+
+            Points<SimpleNumber> slot = new Points<SimpleNumber>();
+            for (int j = 0; j < 10; j++) {
+                slot.add(new Points.Point<SimpleNumber>(timestamp + j, new SimpleNumber(random.nextDouble() * 100)));
+            }
+            basicRollups.add(new Points.Point<BasicRollup>(timestamp, BasicRollup.buildRollupFromRawSamples(slot)));
+
+            timerRollups.add(new Points.Point<BluefloodTimerRollup>(timestamp, timerRollup(random, false)));
+            sketchedTimerRollups.add(new Points.Point<BluefloodTimerRollup>(timestamp, timerRollup(random, true)));
+        }
+    }
+
+    // a timer of log normally distributed latencies, as statsd would flush it
+    private static BluefloodTimerRollup timerRollup(Random random, boolean withSketch) {
+        int count = 50 + random.nextInt(1000);
+        double[] values = new double[count];
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            values[i] = Math.exp(4 + random.nextGaussian());
+            sum += values[i];
+        }
+        Arrays.sort(values);
+        double mean = sum / count;
+        double variance = 0;
+        for (double value : values) {
+            variance += (value - mean) * (value - mean);
+        }
+
+        BluefloodTimerRollup rollup = new BluefloodTimerRollup()
+                .withCount(count)
+                .withCountPS(count / 30d)
+                .withSum(sum)
+                .withSampleCount(1)
+                .withMinValue(values[0])
+                .withMaxValue(values[count - 1])
+                .withAverage(mean)
+                .withVariance(variance / count);
+        for (String label : PERCENTILES) {
+            double quantile = BluefloodTimerRollup.quantileOf(label);
+            rollup.setPercentile(label, values[(int) (quantile * (count - 1))]);
+        }
+        if (withSketch) {
+            QuantileSketch sketch = new QuantileSketch();
+            for (double value : values) {
+                sketch.add(value);
+            }
+            rollup.withSketch(sketch);
+        }
+        return rollup;
+    }
+
+    @Benchmark
+    public BasicRollup basicRollupFromRawSamples() throws IOException {
+        return BasicRollup.buildRollupFromRawSamples(rawSamples);
+    }
+
+    @Benchmark
+    public BasicRollup basicRollupFromRollups() throws IOException {
+        return BasicRollup.buildRollupFromRollups(basicRollups);
+    }
+
+    @Benchmark
+    public BluefloodTimerRollup timerRollupFromRollups() throws IOException {
+        return BluefloodTimerRollup.buildRollupFromTimerRollups(timerRollups);
+    }
+
+    @Benchmark
+    public BluefloodTimerRollup timerRollupFromSketchedRollups() throws IOException {
+        return BluefloodTimerRollup.buildRollupFromTimerRollups(sketchedTimerRollups);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.rackspacecloud.blueflood.service.Configuration;
+import com.rackspacecloud.blueflood.service.CoreConfig;
+import com.rackspacecloud.blueflood.types.Locator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link LocatorCache} that keeps a few bits per locator in {@link RotatingBloomFilter}s instead of the locators
+ * themselves, for nodes that see too many locators to keep in memory. Checking and marking locators does not
+ * allocate.
+ *
+ * It differs from the default {@link GuavaLocatorCache} in three ways:
+ *  - entries expire between (generations - 1) / generations of the TTL and the TTL after they were set, not after they
+ *    were last checked, so a locator that keeps being ingested is written again once per TTL
+ *  - a locator that was never set may be reported current at the configured false positive rate, and is then written
+ *    up to one TTL late
+ *  - the locators cannot be listed, and so are not saved across restarts
+ *
+ * See the LOCATOR_CACHE_BLOOM_* settings in {@link CoreConfig}.
+ */
+public class BloomLocatorCache extends LocatorCache {
+
+    private final RotatingBloomFilter insertedLocators;
+    private final RotatingBloomFilter insertedDelayedLocators;
+
+    BloomLocatorCache(long entryTtl, TimeUnit entryTtlTimeUnit, long delayedEntryTtl, TimeUnit delayedEntryTtlTimeUnit) {
+        this(entryTtl, entryTtlTimeUnit, delayedEntryTtl, delayedEntryTtlTimeUnit,
+                Configuration.getInstance().getLongProperty(CoreConfig.LOCATOR_CACHE_BLOOM_EXPECTED_ENTRIES),
+                Configuration.getInstance().getLongProperty(CoreConfig.LOCATOR_CACHE_BLOOM_EXPECTED_DELAYED_ENTRIES),
+                Configuration.getInstance().getFloatProperty(CoreConfig.LOCATOR_CACHE_BLOOM_FALSE_POSITIVE_RATE),
+                Configuration.getInstance().getIntegerProperty(CoreConfig.LOCATOR_CACHE_BLOOM_GENERATIONS));
+    }
+
+    @VisibleForTesting
+    BloomLocatorCache(long entryTtl, TimeUnit entryTtlTimeUnit, long delayedEntryTtl, TimeUnit delayedEntryTtlTimeUnit,
+                      long expectedEntries, long expectedDelayedEntries, double falsePositiveRate, int generations) {
+        long now = System.currentTimeMillis();
+        insertedLocators = new RotatingBloomFilter(expectedEntries, falsePositiveRate, generations,
+                entryTtlTimeUnit.toMillis(entryTtl), now);
+        insertedDelayedLocators = new RotatingBloomFilter(expectedDelayedEntries, falsePositiveRate, generations,
+                delayedEntryTtlTimeUnit.toMillis(delayedEntryTtl), now);
+    }
+
+    @Override
+    public long getCurrentLocatorCount() {
+        return insertedLocators.estimatedSize();
+    }
+
+    @Override
+    public long getCurrentDelayedLocatorCount() {
+        return insertedDelayedLocators.estimatedSize();
+    }
+
+    /**
+     * @return the memory used by the filters, in bytes
+     */
+    public long getBytes() {
+        return insertedLocators.getBytes() + insertedDelayedLocators.getBytes();
+    }
+
+    @Override
+    public boolean isLocatorCurrentInLayer(Locator locator, Layer layer) {
+        return insertedLocators.mightContain(hash(locator, layer.ordinal()));
+    }
+
+    @Override
+    public void setLocatorCurrentInLayer(Locator locator, Layer layer) {
+        insertedLocators.put(hash(locator, layer.ordinal()));
+    }
+
+    @Override
+    public boolean isDelayedLocatorForASlotCurrent(int slot, Locator locator) {
+        return insertedDelayedLocators.mightContain(hash(locator, slot));
+    }
+
+    @Override
+    public void setDelayedLocatorForASlotCurrent(int slot, Locator locator) {
+        insertedDelayedLocators.put(hash(locator, slot));
+    }
+
+    @Override
+    public void resetCache() {
+        insertedLocators.clear();
+        insertedDelayedLocators.clear();
+    }
+
+    @Override
+    public void resetInsertedLocatorsCache() {
+        insertedLocators.clear();
+    }
+
+    /**
+     * 64-bit FNV-1a of the locator and a number telling apart the layers or slots, mixed so that every bit of the
+     * hash depends on all of them.
+     */
+    static long hash(Locator locator, int salt) {
+        String key = locator.toString();
+        long h = 0xcbf29ce484222325L ^ salt;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return RotatingBloomFilter.mix(h + salt);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.cache;
+
+import com.google.common.base.Charsets;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Reads and writes the keys of the write guarding caches ({@link GuavaLocatorCache}, {@link TokenCache}) with the time
+ * each key expires, so that a restarted node does not write everything it ingests again.
+ *
+ * A snapshot is the time it was taken, the number of keys, then the keys in order. Keys share long prefixes (tenant,
+ * metric name), so each key is written as the number of leading bytes it shares with the one before and the bytes
+ * after those, followed by the seconds it had left when the snapshot was taken. Keys that expired while the node was
+ * down are dropped when reading.
+ */
+class CacheSnapshot {
+
+    private static final byte VERSION = 1;
+
+    private CacheSnapshot() {}
+
+    /**
+     * @param expiries the time each key expires, in milliseconds
+     * @param now the time the snapshot is taken
+     */
+    static void write(DataOutputStream out, Map<String, Long> expiries, long now) throws IOException {
+        SortedMap<String, Long> sorted = new TreeMap<String, Long>();
+        for (Map.Entry<String, Long> entry : expiries.entrySet()) {
+            if (entry.getValue() > now) {
+                sorted.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        out.writeByte(VERSION);
+        out.writeLong(now);
+        out.writeInt(sorted.size());
+        byte[] previous = new byte[0];
+        for (Map.Entry<String, Long> entry : sorted.entrySet()) {
+            byte[] key = entry.getKey().getBytes(Charsets.UTF_8);
+            int shared = 0;
+            while (shared < previous.length && shared < key.length && previous[shared] == key[shared]) {
+                shared++;
+            }
+            writeVarInt(out, shared);
+            writeVarInt(out, key.length - shared);
+            out.write(key, shared, key.length - shared);
+            writeVarInt(out, (int) Math.min(Integer.MAX_VALUE, (entry.getValue() - now + 999) / 1000));
+            previous = key;
+        }
+    }
+
+    /**
+     * @param now the time the snapshot is read
+     * @return the time each key that has not expired yet expires, in milliseconds
+     */
+    static Map<String, Long> read(DataInputStream in, long now) throws IOException {
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unknown cache snapshot version " + version);
+        }
+        long taken = in.readLong();
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Corrupt cache snapshot: negative key count");
+        }
+
+        Map<String, Long> expiries = new HashMap<String, Long>();
+        byte[] previous = new byte[0];
+        for (int i = 0; i < size; i++) {
+            int shared = readVarInt(in);
+            int suffix = readVarInt(in);
+            if (shared < 0 || suffix < 0 || suffix > Integer.MAX_VALUE - shared) {
+                throw new IOException("Corrupt cache snapshot: malformed key length");
+            }
+            if (shared > previous.length) {
+                throw new IOException("Corrupt cache snapshot: key shares more bytes than the previous key has");
+            }
+            byte[] key = new byte[shared + suffix];
+            System.arraycopy(previous, 0, key, 0, shared);
+            in.readFully(key, shared, suffix);
+            long expiry = taken + readVarInt(in) * 1000L;
+            if (expiry > now) {
+                expiries.put(new String(key, Charsets.UTF_8), expiry);
+            }
+            previous = key;
+        }
+        return expiries;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt cache snapshot: malformed length");
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.rackspacecloud.blueflood.service.Configuration;
+import com.rackspacecloud.blueflood.service.CoreConfig;
+import com.rackspacecloud.blueflood.types.Locator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The default {@link LocatorCache}, which keeps the locators themselves in Guava caches that expire entries a TTL
+ * after they were last checked.
+ *
+ * The cache can be saved and loaded again after a restart (see {@link #save} and {@link #load}). Loaded entries stay
+ * current only until the time they would have expired before the restart.
+ */
+public class GuavaLocatorCache extends LocatorCache {
+
+    // this collection is used to reduce the number of locators that get written.
+    // Simply, if a locator has been seen within the last 10 minutes, don't bother.
+    private final Cache<String, Long> insertedLocators;
+
+    // this collection is used to reduce the number of delayed locators that get
+    // written per slot. Simply, if a locator has been seen for a slot, don't bother.
+    private final Cache<String, Long> insertedDelayedLocators;
+
+    // the values of the caches are the times loaded entries expire; entries set since startup have no expiry of their
+    // own, and are expired by the caches
+    static final long NO_EXPIRY = Long.MAX_VALUE;
+
+    private final long entryTtlMillis;
+    private final long delayedEntryTtlMillis;
+
+    GuavaLocatorCache(long entryTtl, TimeUnit entryTtlTimeUnit,
+                      long delayedEntryTtl, TimeUnit delayedEntryTtlTimeUnit) {
+        int concurrency = Configuration.getInstance().getIntegerProperty(CoreConfig.LOCATOR_CACHE_CONCURRENCY);
+        entryTtlMillis = entryTtlTimeUnit.toMillis(entryTtl);
+        delayedEntryTtlMillis = delayedEntryTtlTimeUnit.toMillis(delayedEntryTtl);
+        // Note: DO NOT use expireAfterWrite at the same time as expireAfterAccess. The latter expires entries that are
+        // written and never touched again on its own. If you combine them, the entries WILL expire after the
+        // expireAfterWrite duration, even if they're constantly being accessed.
+        insertedLocators =
+                CacheBuilder.newBuilder()
+                        .expireAfterAccess(entryTtl, entryTtlTimeUnit)
+                        .concurrencyLevel(concurrency)
+                        .build();
+
+        // The settings for the delayed locator cache used to be shared with the normal locator cache, but I suspect
+        // that can cause problems when you set longer durations for the other cache. If the delayed locator cache
+        // holds entries for too long, it would prevent us from updating cassandra with legitimate delayed locators,
+        // and therefore the data won't get rolled up when it should. Under normal circumstances, delayed locators
+        // should be a fairly rare occurrence. They'll mostly happen during some kind of outage, when a backlog of
+        // data builds up in upstream systems. Then they'll be tightly clustered as the backlog is processed, so a
+        // relatively short TTL should work fine here.
+        //
+        // Instead of worrying about this, shouldn't delayed locators be handled the same way as normal ones, via
+        // the ShardStateManager? I'm not clear enough on delayed rollups to give a definitive answer there.
+        insertedDelayedLocators =
+                CacheBuilder.newBuilder()
+                        .expireAfterAccess(delayedEntryTtl, delayedEntryTtlTimeUnit)
+                        .concurrencyLevel(concurrency)
+                        .build();
+    }
+
+    @Override
+    public long getCurrentLocatorCount() {
+        return insertedLocators.size();
+    }
+
+    @Override
+    public long getCurrentDelayedLocatorCount() {
+        return insertedDelayedLocators.size();
+    }
+
+    @Override
+    public boolean isDelayedLocatorForASlotCurrent(int slot, Locator locator) {
+        return isCurrent(insertedDelayedLocators, getLocatorSlotKey(slot, locator));
+    }
+
+    private String getLocatorSlotKey(int slot, Locator locator) {
+        return slot + "," + locator.toString();
+    }
+
+    @Override
+    public void setDelayedLocatorForASlotCurrent(int slot, Locator locator) {
+        insertedDelayedLocators.put(getLocatorSlotKey(slot, locator), NO_EXPIRY);
+    }
+
+    @Override
+    public void resetCache() {
+        insertedLocators.invalidateAll();
+        insertedDelayedLocators.invalidateAll();
+    }
+
+    @Override
+    public void resetInsertedLocatorsCache() {
+        insertedLocators.invalidateAll();
+    }
+
+    @Override
+    public boolean isLocatorCurrentInLayer(Locator locator, Layer layer) {
+        return isCurrent(insertedLocators, toCacheKey(locator, layer));
+    }
+
+    @Override
+    public void setLocatorCurrentInLayer(Locator locator, Layer layer) {
+        insertedLocators.put(toCacheKey(locator, layer), NO_EXPIRY);
+    }
+
+    private String toCacheKey(Locator locator, Layer layer) {
+        return layer.name() + "." + locator.toString();
+    }
+
+    /**
+     * Gets all locators that are current in the given layer. Use with caution, as this could be a huge list.
+     * Recommended only for use in testing.
+     */
+    public List<Locator> getAllCurrentInLayer(Layer layer) {
+        String prefix = layer.name() + ".";
+        return insertedLocators.asMap().keySet().stream()
+                .filter(key -> key.startsWith(prefix))
+                .map(key -> key.replaceFirst(prefix, ""))
+                .map(Locator::createLocatorFromDbKey)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Writes the locators of all layers and the delayed locators, with the time each one expires. Entries set since
+     * startup are written as if they were last accessed now, so they may be kept up to one TTL longer than they would
+     * have been without the restart.
+     */
+    public void save(DataOutputStream out) throws IOException {
+        save(out, System.currentTimeMillis());
+    }
+
+    @VisibleForTesting
+    void save(DataOutputStream out, long now) throws IOException {
+        CacheSnapshot.write(out, expiries(insertedLocators, entryTtlMillis, now), now);
+        CacheSnapshot.write(out, expiries(insertedDelayedLocators, delayedEntryTtlMillis, now), now);
+    }
+
+    /**
+     * Reads entries written by {@link #save}. Entries that have expired since are skipped, and the others are current
+     * until they expire.
+     */
+    public void load(DataInputStream in) throws IOException {
+        load(in, System.currentTimeMillis());
+    }
+
+    @VisibleForTesting
+    void load(DataInputStream in, long now) throws IOException {
+        Map<String, Long> locators = CacheSnapshot.read(in, now);
+        Map<String, Long> delayedLocators = CacheSnapshot.read(in, now);
+        for (Map.Entry<String, Long> entry : locators.entrySet()) {
+            insertedLocators.asMap().putIfAbsent(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Long> entry : delayedLocators.entrySet()) {
+            insertedDelayedLocators.asMap().putIfAbsent(entry.getKey(), entry.getValue());
+        }
+    }
+
+    static boolean isCurrent(Cache<String, Long> cache, String key) {
+        Long expiry = cache.getIfPresent(key);
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry <= System.currentTimeMillis()) {
+            cache.asMap().remove(key, expiry);
+            return false;
+        }
+        return true;
+    }
+
+    static Map<String, Long> expiries(Cache<String, Long> cache, long ttlMillis, long now) {
+        Map<String, Long> expiries = new HashMap<String, Long>();
+        for (Map.Entry<String, Long> entry : cache.asMap().entrySet()) {
+            expiries.put(entry.getKey(), entry.getValue() == NO_EXPIRY ? now + ttlMillis : entry.getValue());
+        }
+        return expiries;
+    }
+}
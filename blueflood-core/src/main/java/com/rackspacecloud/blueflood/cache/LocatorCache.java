@@ -3,16 +3,12 @@ package com.rackspacecloud.blueflood.cache;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.rackspacecloud.blueflood.service.Configuration;
 import com.rackspacecloud.blueflood.service.CoreConfig;
 import com.rackspacecloud.blueflood.types.Locator;
 import com.rackspacecloud.blueflood.utils.Metrics;
 
-import java.util.List;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 /**
  * This class is used to cache locator's that were written recently to our persistence layers by the available writers.
@@ -26,18 +22,13 @@ import java.util.stream.Collectors;
  * Each writer maintains its own marker in the cache to indicate whether a locator is current. This
  * is useful in cases, where persisting a locator with one writer is successful but not with other writers.
  *
+ * The cache is kept by one of two engines, chosen with {@link CoreConfig#LOCATOR_CACHE_ENGINE}: a
+ * {@link GuavaLocatorCache}, the default, or a {@link BloomLocatorCache}.
  */
-public class LocatorCache {
+public abstract class LocatorCache {
 
-    // this collection is used to reduce the number of locators that get written.
-    // Simply, if a locator has been seen within the last 10 minutes, don't bother.
-    private final Cache<String, Boolean> insertedLocators;
-
-    // this collection is used to reduce the number of delayed locators that get
-    // written per slot. Simply, if a locator has been seen for a slot, don't bother.
-    private final Cache<String, Boolean> insertedDelayedLocators;
-
-    private final static LocatorCache instance = new LocatorCache(
+    private final static LocatorCache instance = create(
+            Configuration.getInstance().getStringProperty(CoreConfig.LOCATOR_CACHE_ENGINE),
             Configuration.getInstance().getIntegerProperty(CoreConfig.LOCATOR_CACHE_TTL_MINUTES),
             TimeUnit.MINUTES,
             Configuration.getInstance().getIntegerProperty(CoreConfig.LOCATOR_CACHE_DELAYED_TTL_SECONDS),
@@ -57,48 +48,25 @@ public class LocatorCache {
         return instance;
     }
 
-    protected LocatorCache(long entryTtl, TimeUnit entryTtlTimeUnit,
-                           long delayedEntryTtl, TimeUnit delayedEntryTtlTimeUnit) {
-        int concurrency = Configuration.getInstance().getIntegerProperty(CoreConfig.LOCATOR_CACHE_CONCURRENCY);
-        // Note: DO NOT use expireAfterWrite at the same time as expireAfterAccess. The latter expires entries that are
-        // written and never touched again on its own. If you combine them, the entries WILL expire after the
-        // expireAfterWrite duration, even if they're constantly being accessed.
-        insertedLocators =
-                CacheBuilder.newBuilder()
-                        .expireAfterAccess(entryTtl, entryTtlTimeUnit)
-                        .concurrencyLevel(concurrency)
-                        .build();
-
-        // The settings for the delayed locator cache used to be shared with the normal locator cache, but I suspect
-        // that can cause problems when you set longer durations for the other cache. If the delayed locator cache
-        // holds entries for too long, it would prevent us from updating cassandra with legitimate delayed locators,
-        // and therefore the data won't get rolled up when it should. Under normal circumstances, delayed locators
-        // should be a fairly rare occurrence. They'll mostly happen during some kind of outage, when a backlog of
-        // data builds up in upstream systems. Then they'll be tightly clustered as the backlog is processed, so a
-        // relatively short TTL should work fine here.
-        //
-        // Instead of worrying about this, shouldn't delayed locators be handled the same way as normal ones, via
-        // the ShardStateManager? I'm not clear enough on delayed rollups to give a definitive answer there.
-        insertedDelayedLocators =
-                CacheBuilder.newBuilder()
-                        .expireAfterAccess(delayedEntryTtl, delayedEntryTtlTimeUnit)
-                        .concurrencyLevel(concurrency)
-                        .build();
+    private static LocatorCache create(String engine, long entryTtl, TimeUnit entryTtlTimeUnit,
+                                       long delayedEntryTtl, TimeUnit delayedEntryTtlTimeUnit) {
+        if ("BLOOM".equalsIgnoreCase(engine)) {
+            return new BloomLocatorCache(entryTtl, entryTtlTimeUnit, delayedEntryTtl, delayedEntryTtlTimeUnit);
+        } else if ("GUAVA".equalsIgnoreCase(engine)) {
+            return new GuavaLocatorCache(entryTtl, entryTtlTimeUnit, delayedEntryTtl, delayedEntryTtlTimeUnit);
+        }
+        throw new IllegalArgumentException("Unknown locator cache engine: " + engine);
     }
 
     @VisibleForTesting
-    public static LocatorCache getInstance(long entryTtl, TimeUnit entryTtlTimeUnit,
-                                           long delayedEntryTtl, TimeUnit delayedEntryTtlTimeUnit) {
-        return new LocatorCache(entryTtl, entryTtlTimeUnit, delayedEntryTtl, delayedEntryTtlTimeUnit);
+    public static GuavaLocatorCache getInstance(long entryTtl, TimeUnit entryTtlTimeUnit,
+                                                long delayedEntryTtl, TimeUnit delayedEntryTtlTimeUnit) {
+        return new GuavaLocatorCache(entryTtl, entryTtlTimeUnit, delayedEntryTtl, delayedEntryTtlTimeUnit);
     }
 
-    public long getCurrentLocatorCount() {
-        return insertedLocators.size();
-    }
+    public abstract long getCurrentLocatorCount();
 
-    public long getCurrentDelayedLocatorCount() {
-        return insertedDelayedLocators.size();
-    }
+    public abstract long getCurrentDelayedLocatorCount();
 
     /**
      * Checks if Locator is recently inserted in the batch layer
@@ -126,13 +94,7 @@ public class LocatorCache {
     /**
      * Check if the delayed locator is recently inserted for a given slot
      */
-    public boolean isDelayedLocatorForASlotCurrent(int slot, Locator locator) {
-        return insertedDelayedLocators.getIfPresent(getLocatorSlotKey(slot, locator)) != null;
-    }
-
-    private String getLocatorSlotKey(int slot, Locator locator) {
-        return slot + "," + locator.toString();
-    }
+    public abstract boolean isDelayedLocatorForASlotCurrent(int slot, Locator locator);
 
     /**
      * Marks the Locator as recently inserted in the batch layer
@@ -160,20 +122,13 @@ public class LocatorCache {
     /**
      * Marks the delayed locator as recently inserted for a given slot
      */
-    public void setDelayedLocatorForASlotCurrent(int slot, Locator locator) {
-        insertedDelayedLocators.put(getLocatorSlotKey(slot, locator), Boolean.TRUE);
-    }
+    public abstract void setDelayedLocatorForASlotCurrent(int slot, Locator locator);
 
     @VisibleForTesting
-    public void resetCache() {
-        insertedLocators.invalidateAll();
-        insertedDelayedLocators.invalidateAll();
-    }
+    public abstract void resetCache();
 
     @VisibleForTesting
-    public void resetInsertedLocatorsCache() {
-        insertedLocators.invalidateAll();
-    }
+    public abstract void resetInsertedLocatorsCache();
 
     /**
      * Checks if a locator is cached in the given layer. It works like other isLocatorCurrentIn* methods but accepts
@@ -182,9 +137,7 @@ public class LocatorCache {
      * @param layer the layer that the locator value must be in
      * @return true if the locator is set in the layer, else false
      */
-    public boolean isLocatorCurrentInLayer(Locator locator, Layer layer) {
-        return insertedLocators.getIfPresent(toCacheKey(locator, layer)) != null;
-    }
+    public abstract boolean isLocatorCurrentInLayer(Locator locator, Layer layer);
 
     /**
      * Sets a locator as current in a given layer. It works like other setLocatorCurrentIn* methods but accepts the
@@ -192,24 +145,5 @@ public class LocatorCache {
      * @param locator value to set as current in the cache
      * @param layer the layer in which to set it current
      */
-    public void setLocatorCurrentInLayer(Locator locator, Layer layer) {
-        insertedLocators.put(toCacheKey(locator, layer), true);
-    }
-
-    private String toCacheKey(Locator locator, Layer layer) {
-        return layer.name() + "." + locator.toString();
-    }
-
-    /**
-     * Gets all locators that are current in the given layer. Use with caution, as this could be a huge list.
-     * Recommended only for use in testing.
-     */
-    public List<Locator> getAllCurrentInLayer(Layer layer) {
-        String prefix = layer.name() + ".";
-        return insertedLocators.asMap().keySet().stream()
-                .filter(key -> key.startsWith(prefix))
-                .map(key -> key.replaceFirst(prefix, ""))
-                .map(Locator::createLocatorFromDbKey)
-                .collect(Collectors.toList());
-    }
+    public abstract void setLocatorCurrentInLayer(Locator locator, Layer layer);
 }
@@ -0,0 +1,426 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.cache;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.rackspacecloud.blueflood.io.MetricsRWDelegator;
+import com.rackspacecloud.blueflood.outputs.formats.MetricData;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.rollup.SlotKey;
+import com.rackspacecloud.blueflood.service.Configuration;
+import com.rackspacecloud.blueflood.service.CoreConfig;
+import com.rackspacecloud.blueflood.types.Locator;
+import com.rackspacecloud.blueflood.types.Points;
+import com.rackspacecloud.blueflood.types.Range;
+import com.rackspacecloud.blueflood.utils.Clock;
+import com.rackspacecloud.blueflood.utils.DefaultClockImpl;
+import com.rackspacecloud.blueflood.utils.Metrics;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Caches the rolled up points read by queries, one block of a locator's points per day and granularity, so that
+ * queries read from Cassandra only the runs of days not in the cache.
+ *
+ * Only days that are closed, i.e. whose rollups should all have been written, are cached; the points of a closed day
+ * only change when it is rerolled. Rollups on this node drop the days of their slot and shard from the cache through
+ * {@link #invalidate(SlotKey)}, and every block expires after a TTL, which bounds how long a reroll on another node
+ * can go unnoticed. Full resolution points are never cached.
+ *
+ * The size of the cache is bounded by an estimate of the bytes its points take.
+ */
+public class RollupReadCache {
+
+    static final long BLOCK_MILLIS = TimeUnit.DAYS.toMillis(1);
+    // the slots of every granularity cover the same 14 days, which is a whole number of blocks
+    private static final long RING_MILLIS = (long) Granularity.MIN_5.numSlots() * Granularity.MIN_5.milliseconds();
+    private static final int BLOCKS_PER_RING = (int) (RING_MILLIS / BLOCK_MILLIS);
+    private static final int SHARDS = 128;
+
+    // rough heap taken by a cached point and by a block, for weighing
+    static final int BYTES_PER_POINT = 120;
+    static final int BYTES_PER_BLOCK = 200;
+
+    private static final Meter blockHits = Metrics.meter(RollupReadCache.class, "Block Hits");
+    private static final Meter blockMisses = Metrics.meter(RollupReadCache.class, "Block Misses");
+    private static final Meter evictions = Metrics.meter(RollupReadCache.class, "Evictions");
+    private static final Meter invalidations = Metrics.meter(RollupReadCache.class, "Invalidations");
+
+    private static final RollupReadCache instance = new RollupReadCache(
+            Configuration.getInstance().getBooleanProperty(CoreConfig.ROLLUP_READ_CACHE_ENABLED),
+            Configuration.getInstance().getLongProperty(CoreConfig.ROLLUP_READ_CACHE_MAX_BYTES),
+            TimeUnit.SECONDS.toMillis(Configuration.getInstance().getLongProperty(CoreConfig.ROLLUP_READ_CACHE_TTL_SECONDS)),
+            Configuration.getInstance().getLongProperty(CoreConfig.ROLLUP_DELAY_MILLIS),
+            new DefaultClockImpl());
+
+    static {
+        Metrics.getRegistry().register(MetricRegistry.name(RollupReadCache.class, "Hit Ratio"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(blockHits.getFifteenMinuteRate(),
+                        blockHits.getFifteenMinuteRate() + blockMisses.getFifteenMinuteRate());
+            }
+        });
+        Metrics.getRegistry().register(MetricRegistry.name(RollupReadCache.class, "Bytes"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return instance.getBytes();
+            }
+        });
+        Metrics.getRegistry().register(MetricRegistry.name(RollupReadCache.class, "Blocks"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return instance.getBlockCount();
+            }
+        });
+    }
+
+    public static RollupReadCache getInstance() {
+        return instance;
+    }
+
+    private final boolean enabled;
+    private final long closedDelayMillis;
+    private final Clock clock;
+    private final Cache<BlockKey, Block> blocks;
+    private final AtomicLong bytes = new AtomicLong();
+    // the last time each (shard, granularity, block of the slot ring) was invalidated
+    private final AtomicLongArray invalidatedAt;
+
+    @VisibleForTesting
+    RollupReadCache(boolean enabled, long maxBytes, long ttlMillis, long closedDelayMillis, Clock clock) {
+        this.enabled = enabled;
+        this.closedDelayMillis = closedDelayMillis;
+        this.clock = clock;
+        this.invalidatedAt = new AtomicLongArray(SHARDS * Granularity.granularities().length * BLOCKS_PER_RING);
+        this.blocks = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(new Weigher<BlockKey, Block>() {
+                    @Override
+                    public int weigh(BlockKey key, Block block) {
+                        return block.weight();
+                    }
+                })
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .removalListener(new RemovalListener<BlockKey, Block>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<BlockKey, Block> notification) {
+                        bytes.addAndGet(-notification.getValue().weight());
+                        if (notification.wasEvicted()) {
+                            evictions.mark();
+                        }
+                    }
+                })
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Reads the points of the locators in the range like {@link MetricsRWDelegator#getDatapointsForRange}, with
+     * the cached days of the points taken from the cache.
+     */
+    public Map<Locator, MetricData> getDatapointsForRange(MetricsRWDelegator delegator, List<Locator> locators,
+                                                          Range range, Granularity g) {
+        return Futures.getUnchecked(getDatapointsForRangeAsync(delegator, locators, range, g));
+    }
+
+    /**
+     * Reads like {@link #getDatapointsForRange}, without waiting for the reads of the days not cached.
+     */
+    public ListenableFuture<Map<Locator, MetricData>> getDatapointsForRangeAsync(MetricsRWDelegator delegator,
+                                                                                final List<Locator> locators,
+                                                                                final Range range,
+                                                                                final Granularity g) {
+        if (!enabled || g == Granularity.FULL) {
+            return delegator.getDatapointsForRangeAsync(locators, range, g);
+        }
+
+        final long now = clock.now().getMillis();
+        long firstBlock = blockStart(range.getStart());
+        long lastBlock = blockStart(range.getStop());
+
+        // the blocks found in the cache, and the ranges of runs of other blocks to read, for each locator
+        final Map<Locator, List<Block>> cached = new HashMap<Locator, List<Block>>();
+        Map<Range, List<Locator>> locatorsToRead = new LinkedHashMap<Range, List<Locator>>();
+        for (Locator locator : locators) {
+            List<Block> found = new ArrayList<Block>();
+            long runStart = -1;
+            for (long block = firstBlock; block <= lastBlock; block += BLOCK_MILLIS) {
+                Block hit = isClosed(block, now) ? getBlock(new BlockKey(locator, g, block)) : null;
+                if (hit != null) {
+                    found.add(hit);
+                    if (runStart >= 0) {
+                        addRead(locatorsToRead, readRange(runStart, block - BLOCK_MILLIS, range, now), locator);
+                        runStart = -1;
+                    }
+                } else if (runStart < 0) {
+                    runStart = block;
+                }
+            }
+            if (runStart >= 0) {
+                addRead(locatorsToRead, readRange(runStart, lastBlock, range, now), locator);
+            }
+            cached.put(locator, found);
+        }
+
+        // each run is read for all locators missing it at once
+        List<ListenableFuture<Map<Locator, MetricData>>> reads = new ArrayList<ListenableFuture<Map<Locator, MetricData>>>();
+        for (Map.Entry<Range, List<Locator>> toRead : locatorsToRead.entrySet()) {
+            final Range readRange = toRead.getKey();
+            final long readTime = clock.now().getMillis();
+            reads.add(Futures.transform(delegator.getDatapointsForRangeAsync(toRead.getValue(), readRange, g),
+                    new Function<Map<Locator, MetricData>, Map<Locator, MetricData>>() {
+                        @Override
+                        public Map<Locator, MetricData> apply(Map<Locator, MetricData> data) {
+                            for (Map.Entry<Locator, MetricData> entry : data.entrySet()) {
+                                putBlocks(entry.getKey(), g, readRange, entry.getValue(), readTime, now);
+                            }
+                            return data;
+                        }
+                    }, MoreExecutors.directExecutor()));
+        }
+
+        return Futures.transform(Futures.allAsList(reads),
+                new Function<List<Map<Locator, MetricData>>, Map<Locator, MetricData>>() {
+                    @Override
+                    public Map<Locator, MetricData> apply(List<Map<Locator, MetricData>> runs) {
+                        Map<Locator, List<MetricData>> read = new HashMap<Locator, List<MetricData>>();
+                        for (Map<Locator, MetricData> run : runs) {
+                            for (Map.Entry<Locator, MetricData> entry : run.entrySet()) {
+                                List<MetricData> readForLocator = read.get(entry.getKey());
+                                if (readForLocator == null) {
+                                    readForLocator = new ArrayList<MetricData>();
+                                    read.put(entry.getKey(), readForLocator);
+                                }
+                                readForLocator.add(entry.getValue());
+                            }
+                        }
+
+                        Map<Locator, MetricData> result = new HashMap<Locator, MetricData>();
+                        for (Locator locator : locators) {
+                            List<Block> found = cached.get(locator);
+                            List<MetricData> readForLocator = read.get(locator);
+                            if (found.isEmpty() && readForLocator == null) {
+                                // nothing cached, and not found by the delegator either
+                                continue;
+                            }
+                            result.put(locator, merge(found, readForLocator, range));
+                        }
+                        return result;
+                    }
+                }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Drops the days rolled up by the slot from the cache, for all locators of its shard.
+     */
+    public void invalidate(SlotKey slotKey) {
+        if (!enabled || slotKey.getGranularity() == Granularity.FULL) {
+            return;
+        }
+        long slotStart = (long) slotKey.getSlot() * slotKey.getGranularity().milliseconds();
+        invalidatedAt.set(invalidationIndex(slotKey.getShard(), slotKey.getGranularity(), slotStart),
+                clock.now().getMillis());
+        invalidations.mark();
+    }
+
+    public void invalidateAll() {
+        blocks.invalidateAll();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getBlockCount() {
+        return blocks.size();
+    }
+
+    private Block getBlock(BlockKey key) {
+        Block block = blocks.getIfPresent(key);
+        if (block != null && block.readTime <= invalidatedAt.get(
+                invalidationIndex(key.locator.getShard(), key.granularity, key.blockStart))) {
+            // read before the day was last rolled up here
+            blocks.invalidate(key);
+            block = null;
+        }
+        if (block == null) {
+            blockMisses.mark();
+        } else {
+            blockHits.mark();
+        }
+        return block;
+    }
+
+    private void putBlocks(Locator locator, Granularity g, Range readRange, MetricData data, long readTime, long now) {
+        for (long block = blockStart(readRange.getStart()); block < readRange.getStop(); block += BLOCK_MILLIS) {
+            if (block < readRange.getStart() || block + BLOCK_MILLIS > readRange.getStop() || !isClosed(block, now)) {
+                continue;
+            }
+            List<Points.Point> points = new ArrayList<Points.Point>();
+            for (Object point : data.getData().getPoints().values()) {
+                long timestamp = ((Points.Point) point).getTimestamp();
+                if (timestamp >= block && timestamp < block + BLOCK_MILLIS) {
+                    points.add((Points.Point) point);
+                }
+            }
+            Block cachedBlock = new Block(points, data.getUnit(), readTime);
+            bytes.addAndGet(cachedBlock.weight());
+            blocks.put(new BlockKey(locator, g, block), cachedBlock);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MetricData merge(List<Block> found, List<MetricData> read, Range range) {
+        Points points = new Points();
+        String unit = null;
+        for (Block block : found) {
+            for (Points.Point point : block.points) {
+                if (point.getTimestamp() >= range.getStart() && point.getTimestamp() <= range.getStop()) {
+                    points.add(point);
+                }
+            }
+            if (block.unit != null) {
+                unit = block.unit;
+            }
+        }
+        if (read != null) {
+            for (MetricData data : read) {
+                for (Object point : data.getData().getPoints().values()) {
+                    long timestamp = ((Points.Point) point).getTimestamp();
+                    if (timestamp >= range.getStart() && timestamp <= range.getStop()) {
+                        points.add((Points.Point) point);
+                    }
+                }
+                if (data.getUnit() != null) {
+                    unit = data.getUnit();
+                }
+            }
+        }
+        return new MetricData(points, unit);
+    }
+
+    /**
+     * The range to read a run of blocks missing from the cache. Closed blocks are read whole so they can be cached,
+     * open ones only as far as the query range goes.
+     */
+    private Range readRange(long runStart, long runLastBlock, Range range, long now) {
+        long start = isClosed(runStart, now) ? runStart : Math.max(runStart, range.getStart());
+        long stop = isClosed(runLastBlock, now)
+                ? runLastBlock + BLOCK_MILLIS
+                : Math.min(runLastBlock + BLOCK_MILLIS, range.getStop());
+        if (start >= stop) {
+            // the query ends on the first millisecond of the block
+            start = stop - 1;
+        }
+        return new Range(start, stop);
+    }
+
+    private static void addRead(Map<Range, List<Locator>> locatorsToRead, Range range, Locator locator) {
+        List<Locator> locators = locatorsToRead.get(range);
+        if (locators == null) {
+            locators = new ArrayList<Locator>();
+            locatorsToRead.put(range, locators);
+        }
+        locators.add(locator);
+    }
+
+    private boolean isClosed(long blockStart, long now) {
+        return blockStart + BLOCK_MILLIS + closedDelayMillis <= now;
+    }
+
+    private static long blockStart(long millis) {
+        return (millis / BLOCK_MILLIS) * BLOCK_MILLIS;
+    }
+
+    private static int invalidationIndex(int shard, Granularity g, long millis) {
+        int ringBlock = (int) ((millis % RING_MILLIS) / BLOCK_MILLIS);
+        return (shard * Granularity.granularities().length + indexOf(g)) * BLOCKS_PER_RING + ringBlock;
+    }
+
+    private static int indexOf(Granularity g) {
+        Granularity[] granularities = Granularity.granularities();
+        for (int i = 0; i < granularities.length; i++) {
+            if (granularities[i] == g) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown granularity " + g);
+    }
+
+    private static class BlockKey {
+        private final Locator locator;
+        private final Granularity granularity;
+        private final long blockStart;
+
+        private BlockKey(Locator locator, Granularity granularity, long blockStart) {
+            this.locator = locator;
+            this.granularity = granularity;
+            this.blockStart = blockStart;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof BlockKey)) {
+                return false;
+            }
+            BlockKey other = (BlockKey) o;
+            return blockStart == other.blockStart && granularity == other.granularity && locator.equals(other.locator);
+        }
+
+        @Override
+        public int hashCode() {
+            return (locator.hashCode() * 31 + granularity.hashCode()) * 31 + (int) (blockStart ^ (blockStart >>> 32));
+        }
+    }
+
+    private static class Block {
+        private final List<Points.Point> points;
+        private final String unit;
+        // when the points were read from Cassandra
+        private final long readTime;
+
+        private Block(List<Points.Point> points, String unit, long readTime) {
+            this.points = points;
+            this.unit = unit;
+            this.readTime = readTime;
+        }
+
+        private int weight() {
+            return BYTES_PER_BLOCK + points.size() * BYTES_PER_POINT;
+        }
+    }
+}
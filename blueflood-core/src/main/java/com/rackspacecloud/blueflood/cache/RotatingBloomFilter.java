@@ -0,0 +1,230 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A set of 64-bit hashes that forgets them after a time, in a fixed amount of memory. It may report hashes that were
+ * never added (false positives), but never misses one added within the last {@code (generations - 1) / generations}
+ * of the time to live.
+ *
+ * Hashes are added to the newest of several blocked Bloom filters (generations). Every {@code ttl / generations} a new
+ * generation replaces the oldest. A hash is present while any generation has it, so it is forgotten between
+ * {@code (generations - 1) / generations} of the TTL and the TTL after it was added. Each generation mixes the hashes
+ * with its own seed, so a hash that is a false positive in one generation is very unlikely to be one in the next.
+ *
+ * Lookups and additions do not allocate; only rotation allocates the new generation.
+ */
+class RotatingBloomFilter {
+
+    // the bits of a hash are all set in one block of 512 bits, a cache line
+    private static final int BLOCK_LONGS = 8;
+    private static final int BLOCK_BITS = BLOCK_LONGS * 64;
+    private static final int MAX_HASHES = 16;
+    // the bit positions in a block take 9 bits each, so one 64-bit mix gives 7 of them
+    private static final int POSITIONS_PER_MIX = 7;
+
+    private final int blocks;
+    private final int hashes;
+    private final long rotationMillis;
+    private final Random seeds = new Random();
+
+    // newest first
+    private volatile Generation[] generations;
+    private volatile long nextRotation;
+
+    /**
+     * @param expectedEntries the number of hashes added in a TTL that the false positive rate is sized for
+     * @param falsePositiveRate the rate at which hashes that were not added are reported present, with that many hashes
+     * @param generations the number of filters the TTL is spread over
+     */
+    RotatingBloomFilter(long expectedEntries, double falsePositiveRate, int generations, long ttlMillis, long now) {
+        if (expectedEntries < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1 || generations < 2 || ttlMillis < generations) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid bloom filter settings: %d entries, %f false positives, %d generations, %d ms",
+                    expectedEntries, falsePositiveRate, generations, ttlMillis));
+        }
+        // a hash is looked up in every generation, so each one gets a share of the false positive rate. blocking
+        // costs about a tenth more bits for the same rate.
+        double bitsPerEntry = -Math.log(falsePositiveRate / generations) / (Math.log(2) * Math.log(2)) * 1.1;
+        long bits = (long) Math.ceil(expectedEntries * bitsPerEntry);
+        long blocks = (bits + BLOCK_BITS - 1) / BLOCK_BITS;
+        if (blocks * BLOCK_LONGS > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bloom filter for " + expectedEntries + " entries is too large");
+        }
+        this.blocks = (int) blocks;
+        this.hashes = (int) Math.max(1, Math.min(MAX_HASHES, Math.round(Math.log(2) * bitsPerEntry / 1.1)));
+        this.rotationMillis = ttlMillis / generations;
+
+        Generation[] initial = new Generation[generations];
+        for (int i = 0; i < generations; i++) {
+            initial[i] = newGeneration();
+        }
+        this.generations = initial;
+        this.nextRotation = now + rotationMillis;
+    }
+
+    boolean mightContain(long hash) {
+        return mightContain(hash, System.currentTimeMillis());
+    }
+
+    @VisibleForTesting
+    boolean mightContain(long hash, long now) {
+        rotateIfDue(now);
+        for (Generation generation : generations) {
+            if (generation.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void put(long hash) {
+        put(hash, System.currentTimeMillis());
+    }
+
+    @VisibleForTesting
+    void put(long hash, long now) {
+        rotateIfDue(now);
+        generations[0].put(hash);
+    }
+
+    /**
+     * @return an estimate of the hashes present, the most added to one generation
+     */
+    long estimatedSize() {
+        long size = 0;
+        for (Generation generation : generations) {
+            size = Math.max(size, generation.added.get());
+        }
+        return size;
+    }
+
+    /**
+     * @return the memory used by the filters, in bytes
+     */
+    long getBytes() {
+        return (long) generations.length * blocks * BLOCK_LONGS * 8;
+    }
+
+    @VisibleForTesting
+    int getHashes() {
+        return hashes;
+    }
+
+    synchronized void clear() {
+        Generation[] cleared = new Generation[generations.length];
+        for (int i = 0; i < cleared.length; i++) {
+            cleared[i] = newGeneration();
+        }
+        generations = cleared;
+    }
+
+    private void rotateIfDue(long now) {
+        if (now < nextRotation) {
+            return;
+        }
+        synchronized (this) {
+            if (now < nextRotation) {
+                return;
+            }
+            // after a quiet period, every generation may have expired
+            long due = (now - nextRotation) / rotationMillis + 1;
+            Generation[] rotated = new Generation[generations.length];
+            for (int i = 0; i < rotated.length; i++) {
+                rotated[i] = i < due ? newGeneration() : generations[(int) (i - due)];
+            }
+            generations = rotated;
+            nextRotation += due * rotationMillis;
+        }
+    }
+
+    private Generation newGeneration() {
+        return new Generation(new AtomicLongArray(blocks * BLOCK_LONGS), seeds.nextLong());
+    }
+
+    /**
+     * Finalization mix of MurmurHash3, spreads every bit of the input over the output.
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private class Generation {
+        private final AtomicLongArray bits;
+        private final long seed;
+        private final AtomicLong added = new AtomicLong();
+
+        Generation(AtomicLongArray bits, long seed) {
+            this.bits = bits;
+            this.seed = seed;
+        }
+
+        boolean mightContain(long hash) {
+            long h = mix(hash ^ seed);
+            int base = block(h) * BLOCK_LONGS;
+            long positions = mix(h);
+            for (int i = 0; i < hashes; i++) {
+                if (i % POSITIONS_PER_MIX == 0 && i > 0) {
+                    positions = mix(positions);
+                }
+                int bit = (int) (positions >>> (i % POSITIONS_PER_MIX * 9)) & (BLOCK_BITS - 1);
+                if ((bits.get(base + (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void put(long hash) {
+            long h = mix(hash ^ seed);
+            int base = block(h) * BLOCK_LONGS;
+            long positions = mix(h);
+            boolean changed = false;
+            for (int i = 0; i < hashes; i++) {
+                if (i % POSITIONS_PER_MIX == 0 && i > 0) {
+                    positions = mix(positions);
+                }
+                int bit = (int) (positions >>> (i % POSITIONS_PER_MIX * 9)) & (BLOCK_BITS - 1);
+                int word = base + (bit >>> 6);
+                long mask = 1L << bit;
+                long old;
+                do {
+                    old = bits.get(word);
+                } while ((old & mask) == 0 && !bits.compareAndSet(word, old, old | mask));
+                changed |= (old & mask) == 0;
+            }
+            if (changed) {
+                added.incrementAndGet();
+            }
+        }
+
+        private int block(long h) {
+            return (int) ((h >>> 32) % blocks);
+        }
+    }
+}
@@ -10,6 +10,10 @@ import com.rackspacecloud.blueflood.service.CoreConfig;
 import com.rackspacecloud.blueflood.types.Token;
 import com.rackspacecloud.blueflood.utils.Metrics;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -40,13 +44,19 @@ import java.util.concurrent.TimeUnit;
  *       that the caches used for throttling in DiscoveryWriter have a similar problem and could benefit from periodic
  *       cleanups instead of the inline cleanups of the current implementation
  *
+ * Like the locator cache, the token cache can be saved and loaded again after a restart, so that the initial burst of
+ * activity mostly finds tokens in the cache.
+ *
  * See the LOCATOR_CACHE_* and TOKEN_CACHE_* setting in {@link CoreConfig} to tune the caches.
  */
 public class TokenCache {
 
     // this collection is used to reduce the number of tokens that get written.
     // Simply, if a token has been seen within the last 10 minutes, don't bother.
-    private final Cache<String, Boolean> insertedTokens;
+    // the values are the times loaded tokens expire, as in the GuavaLocatorCache
+    private final Cache<String, Long> insertedTokens;
+
+    private final long entryTtlMillis;
 
     private static TokenCache instance = new TokenCache(
             Configuration.getInstance().getIntegerProperty(CoreConfig.TOKEN_CACHE_TTL_MINUTES),
@@ -63,6 +73,7 @@ public class TokenCache {
     }
 
     protected TokenCache(long entryTtl, TimeUnit entryTtlTimeUnit) {
+        entryTtlMillis = entryTtlTimeUnit.toMillis(entryTtl);
         insertedTokens =
                 CacheBuilder.newBuilder()
                         .expireAfterAccess(entryTtl, entryTtlTimeUnit)
@@ -84,14 +95,14 @@ public class TokenCache {
      *
      */
     public boolean isTokenCurrent(Token token) {
-        return insertedTokens.getIfPresent(token.getId()) != null;
+        return GuavaLocatorCache.isCurrent(insertedTokens, token.getId());
     }
 
     /**
      * Marks the token as recently inserted
      */
     public void setTokenCurrent(Token token) {
-        insertedTokens.put(token.getId(), Boolean.TRUE);
+        insertedTokens.put(token.getId(), GuavaLocatorCache.NO_EXPIRY);
     }
 
     @VisibleForTesting
@@ -99,4 +110,30 @@ public class TokenCache {
         insertedTokens.invalidateAll();
     }
 
+    /**
+     * Writes the tokens with the time each one expires, see {@link GuavaLocatorCache#save}.
+     */
+    public void save(DataOutputStream out) throws IOException {
+        save(out, System.currentTimeMillis());
+    }
+
+    @VisibleForTesting
+    void save(DataOutputStream out, long now) throws IOException {
+        CacheSnapshot.write(out, GuavaLocatorCache.expiries(insertedTokens, entryTtlMillis, now), now);
+    }
+
+    /**
+     * Reads tokens written by {@link #save}, see {@link GuavaLocatorCache#load}.
+     */
+    public void load(DataInputStream in) throws IOException {
+        load(in, System.currentTimeMillis());
+    }
+
+    @VisibleForTesting
+    void load(DataInputStream in, long now) throws IOException {
+        for (Map.Entry<String, Long> entry : CacheSnapshot.read(in, now).entrySet()) {
+            insertedTokens.asMap().putIfAbsent(entry.getKey(), entry.getValue());
+        }
+    }
+
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.concurrent;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.google.common.annotations.VisibleForTesting;
+import com.rackspacecloud.blueflood.utils.Metrics;
+
+/**
+ * Limits how much work may be in flight at once, with a limit that adapts to how fast the work completes (AIMD).
+ *
+ * Work is measured in permits, e.g. metrics being written. While work completes successfully within
+ * {@code latencyThresholdMillis} and at least half the limit is in use, each completion raises the limit by
+ * {@code increment}. Work that fails or is slower than the threshold cuts the limit by {@link #BACKOFF_RATIO}, at most
+ * once per threshold period so that one slow period of many completions does not collapse it. The limit stays
+ * between {@code minLimit} and {@code maxLimit}.
+ *
+ * Callers also use {@link #shouldShed()} to drop optional work, before the limit starts turning away required work.
+ */
+public class AdmissionController {
+
+    static final double BACKOFF_RATIO = 0.9;
+    static final double SHED_RATIO = 0.8;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int increment;
+    private final long latencyThresholdMillis;
+
+    private final Meter rejected;
+    private final Histogram limitHistogram;
+
+    private int limit;
+    private int inFlight = 0;
+    private long lastDecrease = 0;
+
+    public AdmissionController(String name, int initialLimit, int minLimit, int maxLimit, int increment,
+                               long latencyThresholdMillis) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException(String.format(
+                    "Limits must satisfy 1 <= min (%d) <= initial (%d) <= max (%d)", minLimit, initialLimit, maxLimit));
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.increment = increment;
+        this.latencyThresholdMillis = latencyThresholdMillis;
+        this.rejected = Metrics.meter(AdmissionController.class, name, "Rejected");
+        this.limitHistogram = Metrics.histogram(AdmissionController.class, name, "Limit");
+    }
+
+    /**
+     * Takes the permits if they fit under the limit. Work is always admitted when nothing is in flight, so that work
+     * bigger than the limit is not turned away forever.
+     *
+     * @return whether the work may go ahead; if so, {@link #release} must be called when it is done
+     */
+    public synchronized boolean tryAcquire(int permits) {
+        if (inFlight > 0 && inFlight + permits > limit) {
+            rejected.mark();
+            return false;
+        }
+        inFlight += permits;
+        return true;
+    }
+
+    /**
+     * Returns the permits of finished work and adjusts the limit by how it went.
+     */
+    public void release(int permits, long latencyMillis, boolean success) {
+        release(permits, latencyMillis, success, System.currentTimeMillis());
+    }
+
+    @VisibleForTesting
+    synchronized void release(int permits, long latencyMillis, boolean success, long now) {
+        int inFlightBefore = inFlight;
+        inFlight -= permits;
+
+        if (!success || latencyMillis > latencyThresholdMillis) {
+            if (now - lastDecrease >= latencyThresholdMillis) {
+                limit = Math.max(minLimit, (int) (limit * BACKOFF_RATIO));
+                lastDecrease = now;
+            }
+        } else if (inFlightBefore * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + increment);
+        }
+        limitHistogram.update(limit);
+    }
+
+    /**
+     * @return whether so much of the limit is in use that optional work should be dropped
+     */
+    public synchronized boolean shouldShed() {
+        return inFlight >= limit * SHED_RATIO;
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
@@ -42,6 +42,10 @@ public abstract class FunctionWithThreadPool<I, O> {
     public int remainingCapacityOfTheQueue(){
         return this.executor.getQueue().remainingCapacity();
     }
+
+    public int getQueueSize() {
+        return this.executor.getQueue().size();
+    }
     
     public FunctionWithThreadPool<I, O> withLogger(Logger log) {
         this.log = log;
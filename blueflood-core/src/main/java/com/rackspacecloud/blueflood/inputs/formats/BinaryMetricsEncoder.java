@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.inputs.formats;
+
+import com.rackspacecloud.blueflood.io.Constants;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes a frame of the binary metrics ingestion format described in {@link BinaryMetricsParser}. The part of each
+ * metric name up to its last '.' goes in the string table, so metrics under the same prefix share it.
+ *
+ * Not thread safe.
+ */
+public class BinaryMetricsEncoder {
+
+    // table index of each string, in the order they were added
+    private final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+    private final ByteBuf metrics = Unpooled.buffer();
+    private int metricCount = 0;
+    private long previousCollectionTime = 0;
+
+    /**
+     * @param value an Integer, Long or other integral Number is sent as is, anything else as a double
+     * @param unit may be null
+     */
+    public BinaryMetricsEncoder add(String metricName, Number value, long collectionTime, int ttlInSeconds, String unit) {
+        int split = metricName.lastIndexOf('.') + 1;
+        writeVarint(metrics, split == 0 ? 0 : indexOf(metricName.substring(0, split)) + 1);
+        writeString(metrics, metricName.substring(split));
+        writeZigZag(metrics, collectionTime - previousCollectionTime);
+        writeVarint(metrics, ttlInSeconds);
+        writeVarint(metrics, unit == null ? 0 : indexOf(unit) + 1);
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            metrics.writeByte(BinaryMetricsParser.LONG_VALUE);
+            writeZigZag(metrics, value.longValue());
+        } else {
+            metrics.writeByte(BinaryMetricsParser.DOUBLE_VALUE);
+            metrics.writeDouble(value.doubleValue());
+        }
+
+        previousCollectionTime = collectionTime;
+        metricCount++;
+        return this;
+    }
+
+    /**
+     * @return a new buffer with the frame of all metrics added so far
+     */
+    public ByteBuf encode() {
+        ByteBuf frame = Unpooled.buffer(metrics.readableBytes() + 16 * strings.size() + 16);
+        frame.writeByte(BinaryMetricsParser.VERSION_1);
+        writeVarint(frame, strings.size());
+        for (String s : strings.keySet()) {
+            writeString(frame, s);
+        }
+        writeVarint(frame, metricCount);
+        frame.writeBytes(metrics, metrics.readerIndex(), metrics.readableBytes());
+        return frame;
+    }
+
+    private int indexOf(String s) {
+        Integer index = strings.get(s);
+        if (index == null) {
+            index = strings.size();
+            strings.put(s, index);
+        }
+        return index;
+    }
+
+    private static void writeString(ByteBuf out, String s) {
+        byte[] bytes = s.getBytes(Constants.DEFAULT_CHARSET);
+        writeVarint(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    static void writeVarint(ByteBuf out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static void writeZigZag(ByteBuf out, long value) {
+        writeVarint(out, (value << 1) ^ (value >> 63));
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.inputs.formats;
+
+import com.rackspacecloud.blueflood.inputs.constraints.EpochRangeLimits;
+import com.rackspacecloud.blueflood.io.Constants;
+import com.rackspacecloud.blueflood.outputs.formats.ErrorResponse;
+import com.rackspacecloud.blueflood.types.Locator;
+import com.rackspacecloud.blueflood.types.Metric;
+import com.rackspacecloud.blueflood.utils.TimeValue;
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parser for the binary metrics ingestion format, a compact alternative to the JSON format for clients that send a
+ * lot of metrics. Metrics are read straight off the request body into {@link Metric}s, and are validated the same
+ * way, with the same error messages, as by {@link JSONMetricsParser}.
+ *
+ * A request body is one frame:
+ * <pre>
+ * frame  := version:byte(1) stringCount:varint string* metricCount:varint metric*
+ * string := length:varint UTF-8 bytes
+ * metric := prefix:varint name:string time:zigzag ttlInSeconds:varint unit:varint value
+ * value  := 'L' zigzag | 'D' 8 byte big endian IEEE 754 double
+ * </pre>
+ * where the strings are a table of the metric name prefixes and units of the frame. A metric's name is the string at
+ * {@code prefix - 1} followed by {@code name}, or just {@code name} if {@code prefix} is 0. Its unit is the string at
+ * {@code unit - 1}, or none if {@code unit} is 0. Its collection time is {@code time} plus the collection time of the
+ * metric before it, or plus 0 for the first metric.
+ *
+ * Varints are unsigned, 7 bits a byte, least significant group first, as in protocol buffers; zigzag is a signed
+ * varint, mapping 0, -1, 1, -2... to 0, 1, 2, 3... See {@link BinaryMetricsEncoder} to write frames.
+ *
+ * Frames that do not follow the format fail with an {@link IOException}.
+ */
+public class BinaryMetricsParser {
+
+    public static final byte VERSION_1 = 1;
+
+    static final byte LONG_VALUE = (byte)'L';
+    static final byte DOUBLE_VALUE = (byte)'D';
+
+    private static final long MAX_PAST = EpochRangeLimits.BEFORE_CURRENT_TIME_MS.getValue();
+    private static final long MAX_FUTURE = EpochRangeLimits.AFTER_CURRENT_TIME_MS.getValue();
+
+    /**
+     * Parses the readable bytes of {@code content} without changing its reader index.
+     */
+    public JSONMetricsContainer parse(ByteBuf content, String tenantId) throws IOException {
+        ByteBuf in = content.duplicate();
+        try {
+            return parseFrame(in, tenantId);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Unexpected end of frame");
+        }
+    }
+
+    private JSONMetricsContainer parseFrame(ByteBuf in, String tenantId) throws IOException {
+        if (!in.isReadable()) {
+            throw new IOException("Empty frame");
+        }
+        byte version = in.readByte();
+        if (version != VERSION_1) {
+            throw new IOException(String.format("Unsupported frame version: %d", (int) version));
+        }
+
+        String[] strings = new String[readCount(in)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(in);
+        }
+
+        List<ErrorResponse.ErrorData> validationErrors = new ArrayList<ErrorResponse.ErrorData>();
+        JSONMetricsContainer container = new JSONMetricsContainer(tenantId, validationErrors);
+
+        long now = System.currentTimeMillis();
+        long collectionTime = 0;
+        int metricCount = readCount(in);
+        for (int i = 0; i < metricCount; i++) {
+            String prefix = readTableString(in, strings);
+            String name = readString(in);
+            String metricName = prefix == null ? name : prefix + name;
+            collectionTime += readZigZag(in);
+            long ttlInSeconds = readVarint(in);
+            String unit = readTableString(in, strings);
+            Number value = readValue(in);
+
+            if (isValid(tenantId, metricName, collectionTime, ttlInSeconds, now, validationErrors)) {
+                Locator locator = Locator.createLocatorFromPathComponents(tenantId, metricName);
+                container.addValidMetric(new Metric(locator, value, collectionTime,
+                        new TimeValue(ttlInSeconds, TimeUnit.SECONDS), unit), now);
+            }
+        }
+
+        if (in.isReadable()) {
+            throw new IOException("Unexpected content after the metrics");
+        }
+        return container;
+    }
+
+    private boolean isValid(String tenantId, String metricName, long collectionTime, long ttlInSeconds, long now,
+                            List<ErrorResponse.ErrorData> validationErrors) {
+        int errorCount = validationErrors.size();
+
+        if (metricName.isEmpty()) {
+            validationErrors.add(new ErrorResponse.ErrorData(tenantId, metricName, "metricName",
+                    JSONMetricsParser.NOT_EMPTY_MESSAGE, collectionTime));
+        }
+        if (collectionTime < now - MAX_PAST || collectionTime > now + MAX_FUTURE) {
+            validationErrors.add(new ErrorResponse.ErrorData(tenantId, metricName, "collectionTime",
+                    JSONMetricsParser.COLLECTION_TIME_RANGE_MESSAGE, collectionTime));
+        }
+        if (ttlInSeconds < 1 || ttlInSeconds > Integer.MAX_VALUE) {
+            validationErrors.add(new ErrorResponse.ErrorData(tenantId, metricName, "ttlInSeconds",
+                    JSONMetricsParser.TTL_RANGE_MESSAGE, collectionTime));
+        }
+
+        return validationErrors.size() == errorCount;
+    }
+
+    private static Number readValue(ByteBuf in) throws IOException {
+        byte type = in.readByte();
+        if (type == LONG_VALUE) {
+            long value = readZigZag(in);
+            // the JSON parser reads values that fit in an int as Integers, and so does this
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                return (int) value;
+            }
+            return value;
+        } else if (type == DOUBLE_VALUE) {
+            return in.readDouble();
+        } else {
+            throw new IOException(String.format("Unexpected value type: %d", (int) type));
+        }
+    }
+
+    private static String readTableString(ByteBuf in, String[] strings) throws IOException {
+        long index = readVarint(in);
+        if (index == 0) {
+            return null;
+        }
+        if (index < 0 || index > strings.length) {
+            throw new IOException(String.format("String %d is not in a table of %d", index - 1, strings.length));
+        }
+        return strings[(int) index - 1];
+    }
+
+    private static String readString(ByteBuf in) throws IOException {
+        int length = readCount(in);
+        if (length > in.readableBytes()) {
+            throw new IOException("Unexpected end of frame");
+        }
+        String s = in.toString(in.readerIndex(), length, Constants.DEFAULT_CHARSET);
+        in.skipBytes(length);
+        return s;
+    }
+
+    // a count or length, which cannot be more than the bytes left, as everything counted takes at least one byte
+    private static int readCount(ByteBuf in) throws IOException {
+        long count = readVarint(in);
+        if (count < 0) {
+            throw new IOException(String.format("Negative count of %d", count));
+        }
+        if (count > in.readableBytes()) {
+            throw new IOException(String.format("Count of %d is more than the %d bytes left", count, in.readableBytes()));
+        }
+        return (int) count;
+    }
+
+    static long readVarint(ByteBuf in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static long readZigZag(ByteBuf in) throws IOException {
+        long value = readVarint(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -48,6 +48,15 @@ public class JSONMetricsContainer {
 
     }
 
+    /**
+     * Creates an empty container which is filled in by {@link JSONMetricsParser} as the request body is streamed.
+     */
+    JSONMetricsContainer(String tenantId, List<ErrorResponse.ErrorData> validationErrors) {
+        this.tenantId = tenantId;
+        this.validationErrors = validationErrors;
+        this.validMetrics = new ArrayList<Metric>();
+    }
+
     public List<Metric> getValidMetrics() {
         return validMetrics;
     }
@@ -88,19 +97,7 @@ public class JSONMetricsContainer {
             final Metric metric = new Metric(locator, jsonMetric.getMetricValue(), jsonMetric.getCollectionTime(),
                     new TimeValue(jsonMetric.getTtlInSeconds(), TimeUnit.SECONDS), jsonMetric.getUnit());
 
-            long delay = new DateTime().getMillis() - metric.getCollectionTime();
-
-            if (delay > TRACKER_DELAYED_METRICS_MILLIS) {
-                delayedMetrics.add(metric);
-            }
-
-            if (delay > MAX_AGE_ALLOWED) {
-                if (delay <= SHORT_DELAY) {
-                    Instrumentation.markMetricsWithShortDelayReceived();
-                } else {
-                    Instrumentation.markMetricsWithLongDelayReceived();
-                }
-            }
+            trackDelay(metric, new DateTime().getMillis());
 
             metrics.add(metric);
         }
@@ -108,6 +105,27 @@ public class JSONMetricsContainer {
         return metrics;
     }
 
+    void addValidMetric(Metric metric, long now) {
+        trackDelay(metric, now);
+        validMetrics.add(metric);
+    }
+
+    private void trackDelay(Metric metric, long now) {
+        long delay = now - metric.getCollectionTime();
+
+        if (delay > TRACKER_DELAYED_METRICS_MILLIS) {
+            delayedMetrics.add(metric);
+        }
+
+        if (delay > MAX_AGE_ALLOWED) {
+            if (delay <= SHORT_DELAY) {
+                Instrumentation.markMetricsWithShortDelayReceived();
+            } else {
+                Instrumentation.markMetricsWithLongDelayReceived();
+            }
+        }
+    }
+
     public boolean areDelayedMetricsPresent() {
         return delayedMetrics.size() > 0;
     }
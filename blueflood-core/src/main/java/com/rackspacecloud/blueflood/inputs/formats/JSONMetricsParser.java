@@ -0,0 +1,286 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.inputs.formats;
+
+import com.rackspacecloud.blueflood.inputs.constraints.EpochRangeLimits;
+import com.rackspacecloud.blueflood.outputs.formats.ErrorResponse;
+import com.rackspacecloud.blueflood.types.Locator;
+import com.rackspacecloud.blueflood.types.Metric;
+import com.rackspacecloud.blueflood.utils.TimeValue;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.JsonMappingException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming parser for the JSON metrics ingestion format. Reads tokens straight off the request body and
+ * builds {@link Metric} objects as it goes, without binding to intermediate {@link JSONMetric} beans and without
+ * running Bean Validation on them.
+ *
+ * The constraints declared on {@link JSONMetric} and {@link JSONMetricScoped} are checked inline here and are
+ * reported with the same sources and messages, so the two ingestion paths are interchangeable for clients.
+ * Syntax errors surface as {@link JsonParseException}, structural errors (body is not an array of objects,
+ * unknown fields, values of the wrong shape) as {@link JsonMappingException}.
+ */
+public class JSONMetricsParser {
+
+    static final String NOT_EMPTY_MESSAGE = "may not be empty";
+    static final String TTL_RANGE_MESSAGE = "must be between 1 and " + Integer.MAX_VALUE;
+    static final String NOT_NUMERIC_MESSAGE = "metric value must be numeric";
+
+    private static final long MAX_PAST = EpochRangeLimits.BEFORE_CURRENT_TIME_MS.getValue();
+    private static final long MAX_FUTURE = EpochRangeLimits.AFTER_CURRENT_TIME_MS.getValue();
+    static final String COLLECTION_TIME_RANGE_MESSAGE = "Out of bounds. Cannot be more than " + MAX_PAST +
+            " milliseconds into the past. Cannot be more than " + MAX_FUTURE + " milliseconds into the future";
+
+    private static final JsonFactory factory = new JsonFactory();
+
+    private final boolean multitenant;
+
+    /**
+     * @param multitenant true if each metric carries its own {@code tenantId} (the {@code /ingest/multi} format)
+     */
+    public JSONMetricsParser(boolean multitenant) {
+        this.multitenant = multitenant;
+    }
+
+    /**
+     * Parses the readable bytes of {@code content} without changing its reader index.
+     */
+    public JSONMetricsContainer parse(ByteBuf content, String tenantId) throws IOException {
+        JsonParser parser = factory.createJsonParser(new ByteBufInputStream(content.duplicate()));
+        try {
+            return parse(parser, tenantId);
+        } finally {
+            parser.close();
+        }
+    }
+
+    public JSONMetricsContainer parse(String body, String tenantId) throws IOException {
+        JsonParser parser = factory.createJsonParser(body);
+        try {
+            return parse(parser, tenantId);
+        } finally {
+            parser.close();
+        }
+    }
+
+    private JSONMetricsContainer parse(JsonParser parser, String tenantId) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+            throw new JsonMappingException("No content to map due to end-of-input", parser.getCurrentLocation());
+        }
+        if (token != JsonToken.START_ARRAY) {
+            throw new JsonMappingException("Expected an array of metrics, found " + token, parser.getCurrentLocation());
+        }
+
+        List<ErrorResponse.ErrorData> validationErrors = new ArrayList<ErrorResponse.ErrorData>();
+        // value errors are only reported after all constraint violations, same as for bound JSONMetric beans
+        List<ErrorResponse.ErrorData> valueErrors = null;
+        JSONMetricsContainer container = new JSONMetricsContainer(tenantId, validationErrors);
+
+        long now = System.currentTimeMillis();
+        MetricFields fields = new MetricFields();
+
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                throw new JsonMappingException("Expected a metric object, found " + token, parser.getCurrentLocation());
+            }
+            fields.reset();
+            readMetric(parser, fields);
+
+            String errorTenantId = multitenant ? fields.tenantId : tenantId;
+            if (!isValid(fields, errorTenantId, now, validationErrors)) {
+                continue;
+            }
+            if (fields.metricValue == null) {
+                // skip null value
+                continue;
+            }
+            if (!(fields.metricValue instanceof Number)) {
+                if (valueErrors == null) {
+                    valueErrors = new ArrayList<ErrorResponse.ErrorData>();
+                }
+                valueErrors.add(new ErrorResponse.ErrorData(errorTenantId, fields.metricName, "metricValue",
+                        NOT_NUMERIC_MESSAGE, fields.collectionTime));
+                continue;
+            }
+
+            Locator locator = Locator.createLocatorFromPathComponents(multitenant ? fields.tenantId : tenantId,
+                    fields.metricName);
+            container.addValidMetric(new Metric(locator, fields.metricValue, fields.collectionTime,
+                    new TimeValue(fields.ttlInSeconds, TimeUnit.SECONDS), fields.unit), now);
+        }
+
+        if (parser.nextToken() != null) {
+            throw new JsonParseException("Unexpected content after the metrics array", parser.getCurrentLocation());
+        }
+        if (valueErrors != null) {
+            validationErrors.addAll(valueErrors);
+        }
+        return container;
+    }
+
+    private void readMetric(JsonParser parser, MetricFields fields) throws IOException {
+        while (parser.nextToken() != JsonToken.END_OBJECT) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("metricName".equals(name)) {
+                fields.metricName = readString(parser, token);
+            } else if ("metricValue".equals(name)) {
+                fields.metricValue = readValue(parser, token);
+            } else if ("collectionTime".equals(name)) {
+                fields.collectionTime = readLong(parser, token);
+            } else if ("ttlInSeconds".equals(name)) {
+                fields.ttlInSeconds = readInt(parser, token);
+            } else if ("unit".equals(name)) {
+                fields.unit = readString(parser, token);
+            } else if (multitenant && "tenantId".equals(name)) {
+                fields.tenantId = readString(parser, token);
+            } else {
+                throw new JsonMappingException("Unrecognized field \"" + name + "\"", parser.getCurrentLocation());
+            }
+        }
+    }
+
+    /**
+     * Checks the constraints declared on {@link JSONMetric}/{@link JSONMetricScoped}, recording every violation.
+     */
+    private boolean isValid(MetricFields fields, String errorTenantId, long now,
+                            List<ErrorResponse.ErrorData> validationErrors) {
+        int errorCount = validationErrors.size();
+
+        if (fields.metricName == null || fields.metricName.isEmpty()) {
+            validationErrors.add(new ErrorResponse.ErrorData(errorTenantId, fields.metricName, "metricName",
+                    NOT_EMPTY_MESSAGE, fields.collectionTime));
+        }
+        if (fields.collectionTime < now - MAX_PAST || fields.collectionTime > now + MAX_FUTURE) {
+            validationErrors.add(new ErrorResponse.ErrorData(errorTenantId, fields.metricName, "collectionTime",
+                    COLLECTION_TIME_RANGE_MESSAGE, fields.collectionTime));
+        }
+        if (fields.ttlInSeconds < 1) {
+            validationErrors.add(new ErrorResponse.ErrorData(errorTenantId, fields.metricName, "ttlInSeconds",
+                    TTL_RANGE_MESSAGE, fields.collectionTime));
+        }
+        if (multitenant && (fields.tenantId == null || fields.tenantId.isEmpty())) {
+            validationErrors.add(new ErrorResponse.ErrorData(errorTenantId, fields.metricName, "tenantId",
+                    NOT_EMPTY_MESSAGE, fields.collectionTime));
+        }
+
+        return validationErrors.size() == errorCount;
+    }
+
+    private static Object readValue(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_NULL:
+                return null;
+            case START_OBJECT:
+            case START_ARRAY:
+                // not a number; consume it so that it is rejected as a non-numeric value
+                parser.skipChildren();
+                return token;
+            default:
+                return parser.getText();
+        }
+    }
+
+    private static String readString(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!token.isScalarValue()) {
+            throw new JsonMappingException("Expected a string value, found " + token, parser.getCurrentLocation());
+        }
+        return parser.getText();
+    }
+
+    private static long readLong(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getLongValue();
+            case VALUE_NULL:
+                return 0L;
+            case VALUE_STRING:
+                String text = parser.getText().trim();
+                if (text.isEmpty()) {
+                    return 0L;
+                }
+                try {
+                    return Long.parseLong(text);
+                } catch (NumberFormatException e) {
+                    throw new JsonMappingException("Not a valid long value: " + text, parser.getCurrentLocation());
+                }
+            default:
+                throw new JsonMappingException("Expected a long value, found " + token, parser.getCurrentLocation());
+        }
+    }
+
+    private static int readInt(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getIntValue();
+            case VALUE_NULL:
+                return 0;
+            case VALUE_STRING:
+                String text = parser.getText().trim();
+                if (text.isEmpty()) {
+                    return 0;
+                }
+                try {
+                    return Integer.parseInt(text);
+                } catch (NumberFormatException e) {
+                    throw new JsonMappingException("Not a valid int value: " + text, parser.getCurrentLocation());
+                }
+            default:
+                throw new JsonMappingException("Expected an int value, found " + token, parser.getCurrentLocation());
+        }
+    }
+
+    /**
+     * Scratch holder for the fields of the metric currently being read; reused for every element of the array.
+     */
+    private static class MetricFields {
+        String tenantId;
+        String metricName;
+        Object metricValue;
+        long collectionTime;
+        int ttlInSeconds;
+        String unit;
+
+        void reset() {
+            tenantId = null;
+            metricName = null;
+            metricValue = null;
+            collectionTime = 0L;
+            ttlInSeconds = 0;
+            unit = null;
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package com.rackspacecloud.blueflood.inputs.processors;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
@@ -26,12 +27,12 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.rackspacecloud.blueflood.concurrent.FunctionWithThreadPool;
 import com.rackspacecloud.blueflood.io.IOContainer;
 import com.rackspacecloud.blueflood.io.MetricsRWDelegator;
+import com.rackspacecloud.blueflood.service.DirtySlots;
 import com.rackspacecloud.blueflood.service.IngestionContext;
 import com.rackspacecloud.blueflood.types.IMetric;
 import com.rackspacecloud.blueflood.types.Locator;
 import com.rackspacecloud.blueflood.utils.Metrics;
 import com.rackspacecloud.blueflood.utils.TimeValue;
-import com.rackspacecloud.blueflood.utils.Util;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -46,6 +47,9 @@ public class BatchWriter extends FunctionWithThreadPool<List<List<IMetric>>, Lis
     private final Timer writeDurationTimer = Metrics.timer(BatchWriter.class, "Write Duration");
     private final Timer batchWriteDurationTimer = Metrics.timer(BatchWriter.class, "Single Batch Write Duration");
     private final Timer slotUpdateTimer = Metrics.timer(BatchWriter.class, "Slot Update Duration");
+    // slot updates asked for by a batch over the distinct slots actually updated, times 100 to keep two decimals
+    private final Histogram slotUpdateReductionPercent =
+            Metrics.histogram(BatchWriter.class, "Slot Update Reduction Percent");
     private final Meter exceededScribeProcessingTime = Metrics.meter(BatchWriter.class, "Write Duration Exceeded Timeout");
     private final TimeValue timeout;
     private final Counter bufferedMetrics;
@@ -98,8 +102,14 @@ public class BatchWriter extends FunctionWithThreadPool<List<List<IMetric>>, Lis
                         final Timer.Context dirtyTimerCtx = slotUpdateTimer.time();
                         try {
                             // marks this shard dirty, so rollup nodes know to pick up the work.
+                            // most metrics of a batch fall in the same few slots, so each slot is only updated once.
+                            DirtySlots dirtySlots = new DirtySlots();
                             for (IMetric metric : batch) {
-                                context.update(metric.getCollectionTime(), Util.getShard(metric.getLocator().toString()));
+                                dirtySlots.add(metric.getCollectionTime(), metric.getLocator().getShard());
+                            }
+                            context.update(dirtySlots);
+                            if (!dirtySlots.isEmpty()) {
+                                slotUpdateReductionPercent.update(dirtySlots.getUpdateCount() * 100L / dirtySlots.size());
                             }
                         } finally {
                             dirtyTimerCtx.stop();
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.inputs.processors;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rackspacecloud.blueflood.exceptions.SerializationException;
+import com.rackspacecloud.blueflood.io.IngestCommitLog;
+import com.rackspacecloud.blueflood.io.serializers.metrics.MetricBatchSerDes;
+import com.rackspacecloud.blueflood.types.IMetric;
+import com.rackspacecloud.blueflood.utils.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes metrics to an {@link IngestCommitLog} rather than to Cassandra, so that they can be acknowledged as soon as
+ * they are on local disk. A background thread reads the log and writes its metrics to Cassandra with a
+ * {@link BatchWriter}, retrying until it succeeds, so metrics ingested while Cassandra is slow or down are written
+ * once it is back. Whatever was left in the log when the process stopped is written after it starts again.
+ *
+ * A metric can be written more than once, when the process stops or a write fails after part of a read was written,
+ * which is harmless as writing a metric again overwrites it with the same value.
+ */
+public class CommitLogWriter {
+    private static final Logger log = LoggerFactory.getLogger(CommitLogWriter.class);
+
+    // how long the flusher waits for more to be appended when it has read everything
+    private static final long IDLE_WAIT_MILLIS = 10;
+
+    private final Meter batchesAppended = Metrics.meter(CommitLogWriter.class, "Batches Appended");
+    private final Meter batchesFlushed = Metrics.meter(CommitLogWriter.class, "Batches Flushed");
+    private final Meter flushFailures = Metrics.meter(CommitLogWriter.class, "Flush Failures");
+    private final Meter corruptBatches = Metrics.meter(CommitLogWriter.class, "Corrupt Batches Skipped");
+
+    private final IngestCommitLog commitLog;
+    private final BatchWriter batchWriter;
+    private final Counter bufferedMetrics;
+    private final MetricBatchSerDes serDes = new MetricBatchSerDes();
+    private final int batchesPerFlush;
+    private final long retryMillis;
+    private final long syncPeriodMillis;
+
+    private Thread flusher;
+    private ScheduledExecutorService syncer;
+    private volatile boolean running = false;
+
+    /**
+     * @param bufferedMetrics the counter the {@link BatchWriter} counts down once a batch is written; the flusher
+     * counts it up for the batches it hands to the batch writer on each try
+     * @param batchesPerFlush how many batches the flusher writes at a time
+     * @param retryMillis how long the flusher waits before trying a failed write again
+     * @param syncPeriodMillis how often the log is synced to disk, if it does not sync every append itself
+     */
+    public CommitLogWriter(IngestCommitLog commitLog, BatchWriter batchWriter, Counter bufferedMetrics,
+                           int batchesPerFlush, long retryMillis, long syncPeriodMillis) {
+        this.commitLog = commitLog;
+        this.batchWriter = batchWriter;
+        this.bufferedMetrics = bufferedMetrics;
+        this.batchesPerFlush = batchesPerFlush;
+        this.retryMillis = retryMillis;
+        this.syncPeriodMillis = syncPeriodMillis;
+    }
+
+    /**
+     * Starts writing the log to Cassandra, beginning with what a previous run left in it.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+
+        flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, "Commit log flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+
+        if (syncPeriodMillis > 0) {
+            syncer = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("Commit log sync").setDaemon(true).build());
+            syncer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    commitLog.sync();
+                }
+            }, syncPeriodMillis, syncPeriodMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the flusher and closes the log. What has not been written to Cassandra yet stays in the log.
+     */
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+            flusher.join();
+        }
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        commitLog.close();
+    }
+
+    /**
+     * Appends batches of metrics to the log.
+     *
+     * @return a future that is already done, and true for each batch, once all of them are appended
+     * @throws IOException if not all batches could be appended, in which case the metrics should be written some
+     * other way
+     */
+    public ListenableFuture<List<Boolean>> apply(List<List<IMetric>> batches) throws IOException {
+        for (List<IMetric> batch : batches) {
+            commitLog.append(serDes.serialize(batch));
+            batchesAppended.mark();
+        }
+        return Futures.immediateFuture(Collections.nCopies(batches.size(), true));
+    }
+
+    private void flush() {
+        while (running) {
+            try {
+                if (!flushOnce()) {
+                    Thread.sleep(IDLE_WAIT_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                log.error("Error flushing commit log", e);
+                try {
+                    Thread.sleep(retryMillis);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the next batches of the log to Cassandra.
+     *
+     * @return whether there was anything to write
+     */
+    boolean flushOnce() throws IOException, InterruptedException {
+        IngestCommitLog.Segment segment = commitLog.getOldestSegment();
+        if (segment == null) {
+            return false;
+        }
+
+        int start = segment.getReadPosition();
+        List<List<IMetric>> batches = new ArrayList<List<IMetric>>();
+        byte[] record;
+        while (batches.size() < batchesPerFlush && (record = segment.next()) != null) {
+            try {
+                batches.add(serDes.deserialize(record));
+            } catch (SerializationException e) {
+                // the record passed its checksum, so it was written this way and reading it again will not help
+                corruptBatches.mark();
+                log.error("Skipping batch that could not be read from commit log segment " + segment.getId(), e);
+            }
+        }
+
+        if (batches.isEmpty()) {
+            if (segment.isFullyRead()) {
+                commitLog.remove(segment);
+                return true;
+            }
+            return false;
+        }
+
+        if (write(batches)) {
+            batchesFlushed.mark(batches.size());
+        } else {
+            flushFailures.mark();
+            segment.rewind(start);
+            Thread.sleep(retryMillis);
+        }
+        return true;
+    }
+
+    private boolean write(List<List<IMetric>> batches) throws InterruptedException {
+        int count = 0;
+        for (List<IMetric> batch : batches) {
+            count += batch.size();
+        }
+        bufferedMetrics.inc(count);
+        try {
+            return !batchWriter.apply(batches).get().contains(false);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("Could not write commit log batches to Cassandra", e);
+            return false;
+        }
+    }
+}
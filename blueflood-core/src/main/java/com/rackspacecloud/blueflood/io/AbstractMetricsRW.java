@@ -19,8 +19,11 @@ package com.rackspacecloud.blueflood.io;
 import com.codahale.metrics.Meter;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.rackspacecloud.blueflood.cache.CombinedTtlProvider;
 import com.rackspacecloud.blueflood.cache.TenantTtlProvider;
+import com.rackspacecloud.blueflood.outputs.formats.MetricData;
 import com.rackspacecloud.blueflood.rollup.Granularity;
 import com.rackspacecloud.blueflood.types.*;
 import com.rackspacecloud.blueflood.utils.Clock;
@@ -28,7 +31,10 @@ import com.rackspacecloud.blueflood.utils.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -46,6 +52,49 @@ public abstract class AbstractMetricsRW implements MetricsRW {
     protected boolean isRecordingDelayedMetrics;
     protected Clock clock;
 
+    /**
+     * Fetches the points of each locator one at a time. Subclasses that can
+     * read several locators at once should override this.
+     *
+     * @param locators
+     * @param rollupType
+     * @param range
+     * @param columnFamilyName
+     * @return
+     */
+    @Override
+    public <T extends Rollup> Map<Locator, Points<T>> getDataToRollup(List<Locator> locators,
+                                                                      RollupType rollupType,
+                                                                      Range range,
+                                                                      String columnFamilyName) throws IOException {
+        Map<Locator, Points<T>> locatorPoints = new HashMap<Locator, Points<T>>();
+        for (Locator locator : locators) {
+            Points<T> points = getDataToRollup(locator, rollupType, range, columnFamilyName);
+            locatorPoints.put(locator, points);
+        }
+        return locatorPoints;
+    }
+
+    /**
+     * Fetches {@link com.rackspacecloud.blueflood.outputs.formats.MetricData} objects like
+     * {@link #getDatapointsForRange(List, Range, Granularity)}, as a future. This reads on
+     * the calling thread; subclasses that can read without blocking should override this.
+     *
+     * @param locators
+     * @param range
+     * @param gran
+     * @return
+     */
+    public ListenableFuture<Map<Locator, MetricData>> getDatapointsForRangeAsync(List<Locator> locators,
+                                                                                Range range,
+                                                                                Granularity gran) {
+        try {
+            return Futures.immediateFuture(getDatapointsForRange(locators, range, gran));
+        } catch (RuntimeException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
     /**
      * Convert a collection of {@link com.rackspacecloud.blueflood.types.IMetric}
      * to a {@link com.google.common.collect.Multimap}
@@ -82,6 +131,14 @@ public abstract class AbstractMetricsRW implements MetricsRW {
      * @return
      */
     protected <T extends Object> Points<T> convertToPoints(final Map<Long, T> timestampToRollupMap) {
+        if ( isFullResolution( timestampToRollupMap ) ) {
+            SimpleNumberPoints points = new SimpleNumberPoints( timestampToRollupMap.size() );
+            for (Map.Entry<Long, T> value : timestampToRollupMap.entrySet() ) {
+                points.add( value.getKey(), value.getValue() );
+            }
+            return (Points<T>) points;
+        }
+
         Points points =  new Points();
         for (Map.Entry<Long, T> value : timestampToRollupMap.entrySet() ) {
 
@@ -90,6 +147,17 @@ public abstract class AbstractMetricsRW implements MetricsRW {
         return points;
     }
 
+    /**
+     * @return true if the values are raw numbers, or {@link SimpleNumber}s, which are kept in
+     * {@link SimpleNumberPoints}
+     */
+    private static boolean isFullResolution( Map<Long, ?> timestampToRollupMap ) {
+        if ( timestampToRollupMap.isEmpty() )
+            return false;
+        Object value = timestampToRollupMap.values().iterator().next();
+        return value instanceof SimpleNumber || !( value instanceof Rollup );
+    }
+
     protected Points.Point createPoint( Long timestamp, Object value ) {
         if( value instanceof Rollup )
             return new Points.Point( timestamp, value);
@@ -32,9 +32,11 @@ public class Constants {
     public static final byte VERSION_2_ROLLUP = 1;
     public static final byte VERSION_1_TIMER = 0;
     public static final byte VERSION_2_TIMER = 1;
+    public static final byte VERSION_3_TIMER = 2;
 
     public static final byte VERSION_1_COUNTER_ROLLUP = 0;
     public static final byte VERSION_1_SET_ROLLUP = VERSION_1_ROLLUP; // don't change this.
+    public static final byte VERSION_2_SET_ROLLUP = VERSION_2_ROLLUP;
 
     public static final int DOUBLE = (int) MetricHelper.Type.DOUBLE;
     public static final int I32 = (int) MetricHelper.Type.INT32;
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A local, append only log of records, kept in fixed size, memory-mapped segment files in one directory.
+ *
+ * Records are appended to the newest segment until it is full, when a new one is started. A reader takes records from
+ * the oldest segment, see {@link #getOldestSegment()}, and removes the segment once it has read and handled all of it.
+ * Segments left in the directory by a previous run are read again on startup, so records are handled at least once.
+ *
+ * Each record is written as its length, a CRC32 of its bytes, and the bytes. A record that was only partly written
+ * when the process or host died fails its check, and it and whatever follows it in that segment are ignored.
+ *
+ * Appends are thread safe. Reading a segment is meant for a single thread.
+ */
+public class IngestCommitLog implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(IngestCommitLog.class);
+
+    static final String SEGMENT_PREFIX = "ingest-";
+    static final String SEGMENT_SUFFIX = ".log";
+
+    // length and checksum
+    static final int RECORD_HEADER_SIZE = 8;
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final boolean syncEveryAppend;
+
+    // oldest first; the last one is appended to, unless it was recovered
+    private final Deque<Segment> segments = new ArrayDeque<Segment>();
+    private long nextSegmentId = 0;
+    private boolean closed = false;
+
+    /**
+     * @param segmentSize the size of each segment file, in bytes, which also limits the size of a record
+     * @param maxSegments appends fail once this many segments are waiting to be read
+     * @param syncEveryAppend whether each append is forced to disk before it returns; otherwise {@link #sync()}
+     *                        should be called periodically
+     */
+    public IngestCommitLog(File directory, int segmentSize, int maxSegments, boolean syncEveryAppend) throws IOException {
+        if (segmentSize <= RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create commit log directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.syncEveryAppend = syncEveryAppend;
+
+        recover();
+    }
+
+    private void recover() throws IOException {
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return segmentId(file) >= 0;
+            }
+        });
+        List<File> existing = new ArrayList<File>(Arrays.asList(files == null ? new File[0] : files));
+        Collections.sort(existing, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(segmentId(a), segmentId(b));
+            }
+        });
+
+        for (File file : existing) {
+            long id = segmentId(file);
+            Segment segment = Segment.recover(id, file);
+            segments.addLast(segment);
+            nextSegmentId = id + 1;
+            log.info(String.format("Recovered %d records from commit log segment %s", segment.records, file));
+        }
+    }
+
+    /**
+     * Appends a record, starting a new segment if it does not fit in the current one.
+     *
+     * @throws IOException if the record could not be written, if it is larger than a segment, or if the log is full
+     */
+    public synchronized void append(byte[] record) throws IOException {
+        if (closed) {
+            throw new IOException("Commit log is closed");
+        }
+        if (RECORD_HEADER_SIZE + record.length > segmentSize) {
+            throw new IOException(String.format("Record of %d bytes does not fit in a segment of %d bytes",
+                    record.length, segmentSize));
+        }
+
+        Segment active = segments.peekLast();
+        if (active == null || active.isClosed() || !active.hasRoomFor(record.length)) {
+            if (segments.size() >= maxSegments) {
+                throw new IOException(String.format("Commit log is full, %d segments waiting to be read", segments.size()));
+            }
+            if (active != null && !active.isClosed()) {
+                active.close();
+            }
+            active = Segment.create(nextSegmentId, new File(directory, SEGMENT_PREFIX + nextSegmentId + SEGMENT_SUFFIX), segmentSize);
+            nextSegmentId++;
+            segments.addLast(active);
+        }
+
+        active.write(record);
+        if (syncEveryAppend) {
+            active.sync();
+        }
+    }
+
+    /**
+     * Forces what has been appended to disk.
+     */
+    public void sync() {
+        Segment active;
+        synchronized (this) {
+            active = segments.peekLast();
+        }
+        if (active != null) {
+            active.sync();
+        }
+    }
+
+    /**
+     * @return the segment to read from, or null if there are none
+     */
+    public synchronized Segment getOldestSegment() {
+        return segments.peekFirst();
+    }
+
+    /**
+     * Deletes a segment that has been read and handled completely.
+     */
+    public synchronized void remove(Segment segment) throws IOException {
+        if (!segment.isClosed()) {
+            // more could still be appended to it
+            segment.close();
+        }
+        segments.remove(segment);
+        // the mapping itself goes when the buffer is collected
+        if (!segment.file.delete()) {
+            throw new IOException("Could not delete commit log segment " + segment.file);
+        }
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Segment segment : segments) {
+            if (!segment.isClosed()) {
+                segment.close();
+            }
+        }
+    }
+
+    private static long segmentId(File file) {
+        String name = file.getName();
+        if (!file.isFile() || !name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * One segment file. Records are published to the reader by {@link #writePosition}, which is only advanced once
+     * a record is completely written.
+     */
+    public static class Segment {
+        private final long id;
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private volatile int writePosition;
+        private volatile boolean closed = false;
+        private int readPosition = 0;
+        private int records = 0;
+
+        private Segment(long id, File file, MappedByteBuffer buffer, int writePosition) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+            this.writePosition = writePosition;
+        }
+
+        static Segment create(long id, File file, int size) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                // a new file reads as zeros, which is where a reader stops
+                raf.setLength(size);
+                return new Segment(id, file, raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size), 0);
+            } finally {
+                raf.close();
+            }
+        }
+
+        static Segment recover(long id, File file) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            MappedByteBuffer buffer;
+            try {
+                buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+            } finally {
+                raf.close();
+            }
+
+            // find the end of the last intact record
+            int position = 0;
+            int records = 0;
+            while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+                int length = buffer.getInt(position);
+                if (length <= 0 || length > buffer.capacity() - position - RECORD_HEADER_SIZE) {
+                    break;
+                }
+                if (buffer.getInt(position + 4) != checksum(buffer, position + RECORD_HEADER_SIZE, length)) {
+                    log.warn(String.format("Ignoring corrupt record at %d of commit log segment %s", position, file));
+                    break;
+                }
+                position += RECORD_HEADER_SIZE + length;
+                records++;
+            }
+
+            Segment segment = new Segment(id, file, buffer, position);
+            segment.records = records;
+            segment.closed = true;
+            return segment;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        boolean hasRoomFor(int length) {
+            return writePosition + RECORD_HEADER_SIZE + length <= buffer.capacity();
+        }
+
+        // called by the log, holding its lock
+        void write(byte[] record) {
+            int position = writePosition;
+            ByteBuffer out = buffer.duplicate();
+            out.position(position + RECORD_HEADER_SIZE);
+            out.put(record);
+            out.putInt(position + 4, checksum(out, position + RECORD_HEADER_SIZE, record.length));
+            out.putInt(position, record.length);
+            records++;
+            writePosition = position + RECORD_HEADER_SIZE + record.length;
+        }
+
+        void sync() {
+            buffer.force();
+        }
+
+        void close() {
+            sync();
+            closed = true;
+        }
+
+        /**
+         * @return whether nothing more will be appended to this segment
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * @return the next record, or null if all records appended so far have been read
+         */
+        public byte[] next() {
+            if (readPosition >= writePosition) {
+                return null;
+            }
+            int length = buffer.getInt(readPosition);
+            byte[] record = new byte[length];
+            ByteBuffer in = buffer.duplicate();
+            in.position(readPosition + RECORD_HEADER_SIZE);
+            in.get(record);
+            readPosition += RECORD_HEADER_SIZE + length;
+            return record;
+        }
+
+        /**
+         * @return the position to pass to {@link #rewind(int)} to read the following records again
+         */
+        public int getReadPosition() {
+            return readPosition;
+        }
+
+        public void rewind(int position) {
+            readPosition = position;
+        }
+
+        /**
+         * @return whether the segment is closed and all of it has been read
+         */
+        public boolean isFullyRead() {
+            // closed is checked first: once it is set, writePosition no longer moves
+            return closed && readPosition >= writePosition;
+        }
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer bytes = buffer.duplicate();
+        bytes.position(offset);
+        bytes.limit(offset + length);
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+}
@@ -46,6 +46,9 @@ public class Instrumentation implements InstrumentationMBean {
     private static final Meter metricsWithShortDelayReceived;
     private static final Meter metricsWithLongDelayReceived;
     private static final Histogram rawPointsIn5Min;
+    private static final Histogram partitionsPerIngestBatch;
+    private static final Histogram statementsPerPartitionBatch;
+    private static final Timer partitionBatchWriteTimer;
 
     static {
         Class kls = Instrumentation.class;
@@ -58,6 +61,9 @@ public class Instrumentation implements InstrumentationMBean {
         metricsWithShortDelayReceived = Metrics.meter(kls, "Metrics with short delay received");
         metricsWithLongDelayReceived = Metrics.meter(kls, "Metrics with long delay received");
         rawPointsIn5Min = Metrics.histogram(kls, "Raw points in 5 min");
+        partitionsPerIngestBatch = Metrics.histogram(kls, "writes", "Partitions per Ingest Batch");
+        statementsPerPartitionBatch = Metrics.histogram(kls, "writes", "Statements per Partition Batch");
+        partitionBatchWriteTimer = Metrics.timer(kls, "writes", "Partition Batch Write");
 
         try {
             final MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
@@ -192,4 +198,16 @@ public class Instrumentation implements InstrumentationMBean {
     public static Histogram getRawPointsIn5MinHistogram() {
         return rawPointsIn5Min;
     }
+
+    public static Histogram getPartitionsPerIngestBatchHistogram() {
+        return partitionsPerIngestBatch;
+    }
+
+    public static Histogram getStatementsPerPartitionBatchHistogram() {
+        return statementsPerPartitionBatch;
+    }
+
+    public static Timer.Context getPartitionBatchWriteTimerContext() {
+        return partitionBatchWriteTimer.time();
+    }
 }
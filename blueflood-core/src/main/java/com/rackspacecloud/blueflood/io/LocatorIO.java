@@ -36,4 +36,16 @@ public interface LocatorIO {
      */
     public Collection<Locator> getLocators(long shard) throws IOException;
 
+    /**
+     * Reads the locators of the given shard a page at a time, as they are iterated, instead of all at once. The
+     * returned iterable can be iterated only once; failures to read a later page surface as runtime exceptions
+     * from the iterator.
+     *
+     * @param shard
+     * @param fetchSize the number of locators to read per page
+     * @return the locators corresponding to the given shard
+     * @throws IOException if the first page cannot be read
+     */
+    public Iterable<Locator> scanLocators(long shard, int fetchSize) throws IOException;
+
 }
@@ -94,4 +94,19 @@ public interface MetricsRW {
      * @return
      */
     public <T extends Rollup> Points<T> getDataToRollup(final Locator locator, RollupType rollupType, Range range, String columnFamilyName) throws IOException;
+
+    /**
+     * Fetches {@link com.rackspacecloud.blueflood.types.Points} objects for a
+     * list of locators of the same rollupType from the specified column family
+     * and range. Every locator is in the returned map; locators without data
+     * map to empty {@link com.rackspacecloud.blueflood.types.Points}.
+     *
+     * @param locators
+     * @param rollupType
+     * @param range
+     * @param columnFamilyName
+     * @param <T> the type of Rollup object
+     * @return
+     */
+    public <T extends Rollup> Map<Locator, Points<T>> getDataToRollup(List<Locator> locators, RollupType rollupType, Range range, String columnFamilyName) throws IOException;
 }
@@ -17,10 +17,15 @@
 package com.rackspacecloud.blueflood.io;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.rackspacecloud.blueflood.cache.MetadataCache;
 import com.rackspacecloud.blueflood.exceptions.CacheException;
 import com.rackspacecloud.blueflood.outputs.formats.MetricData;
 import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.service.SingleRollupWriteContext;
 import com.rackspacecloud.blueflood.types.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -78,10 +83,67 @@ public class MetricsRWDelegator {
      */
     public Map<Locator, MetricData> getDatapointsForRange(List<Locator> locators, Range range, Granularity gran) {
 
-        MetadataCache metadataCache = MetadataCache.getInstance();
+        List<Locator> basicLocators = new ArrayList<Locator>();
+        List<Locator> preAggrLocators = new ArrayList<Locator>();
+        splitByRollupType(locators, range, gran, basicLocators, preAggrLocators);
+
+        // combine all the result
+        Map<Locator, MetricData> result = new HashMap<Locator, MetricData>();
+        if ( ! basicLocators.isEmpty() ) {
+            result.putAll(basicMetricsRW.getDatapointsForRange(basicLocators, range, gran));
+        }
+
+        if ( ! preAggrLocators.isEmpty() ) {
+            result.putAll(preAggrMetricsRW.getDatapointsForRange(preAggrLocators, range, gran));
+        }
+        return result;
+    }
+
+    /**
+     * Reads like {@link #getDatapointsForRange(List, Range, Granularity)}, without waiting
+     * for the reads. Cancelling the future cancels the reads still outstanding.
+     *
+     * @param locators
+     * @param range
+     * @param gran
+     * @return
+     */
+    public ListenableFuture<Map<Locator, MetricData>> getDatapointsForRangeAsync(List<Locator> locators,
+                                                                                Range range,
+                                                                                Granularity gran) {
 
         List<Locator> basicLocators = new ArrayList<Locator>();
         List<Locator> preAggrLocators = new ArrayList<Locator>();
+        splitByRollupType(locators, range, gran, basicLocators, preAggrLocators);
+
+        List<ListenableFuture<Map<Locator, MetricData>>> futures = new ArrayList<ListenableFuture<Map<Locator, MetricData>>>();
+        if ( ! basicLocators.isEmpty() ) {
+            futures.add(basicMetricsRW.getDatapointsForRangeAsync(basicLocators, range, gran));
+        }
+
+        if ( ! preAggrLocators.isEmpty() ) {
+            futures.add(preAggrMetricsRW.getDatapointsForRangeAsync(preAggrLocators, range, gran));
+        }
+
+        // combine all the result
+        return Futures.transform(Futures.allAsList(futures),
+                new Function<List<Map<Locator, MetricData>>, Map<Locator, MetricData>>() {
+                    @Override
+                    public Map<Locator, MetricData> apply(List<Map<Locator, MetricData>> results) {
+                        Map<Locator, MetricData> result = new HashMap<Locator, MetricData>();
+                        for (Map<Locator, MetricData> partial : results) {
+                            result.putAll(partial);
+                        }
+                        return result;
+                    }
+                }, MoreExecutors.directExecutor());
+    }
+
+    private void splitByRollupType(List<Locator> locators, Range range, Granularity gran,
+                                   List<Locator> basicLocators, List<Locator> preAggrLocators) {
+
+        MetadataCache metadataCache = MetadataCache.getInstance();
+
         for ( Locator locator : locators ) {
             try {
                 RollupType rollupType = RollupType.fromString(
@@ -102,17 +164,6 @@ public class MetricsRWDelegator {
                         locator, range.toString(), gran.toString()), ex);
             }
         }
-
-        // combine all the result
-        Map<Locator, MetricData> result = new HashMap<Locator, MetricData>();
-        if ( ! basicLocators.isEmpty() ) {
-            result.putAll(basicMetricsRW.getDatapointsForRange(basicLocators, range, gran));
-        }
-
-        if ( ! preAggrLocators.isEmpty() ) {
-            result.putAll(preAggrMetricsRW.getDatapointsForRange(preAggrLocators, range, gran));
-        }
-        return result;
     }
 
     /**
@@ -141,4 +192,27 @@ public class MetricsRWDelegator {
             preAggrMetricsRW.insertMetrics(preagMetrics);
 
     }
+
+    /**
+     * Writes rollups to the column families of their rollup type and granularity.
+     *
+     * @param writeContexts
+     */
+    public void insertRollups(List<SingleRollupWriteContext> writeContexts) throws IOException {
+
+        List<SingleRollupWriteContext> basicContexts = new ArrayList<SingleRollupWriteContext>();
+        List<SingleRollupWriteContext> preAggrContexts = new ArrayList<SingleRollupWriteContext>();
+        for (SingleRollupWriteContext context : writeContexts) {
+            if (context.getRollup().getRollupType() == RollupType.BF_BASIC)
+                basicContexts.add(context);
+            else
+                preAggrContexts.add(context);
+        }
+
+        if (basicContexts.size() > 0)
+            basicMetricsRW.insertRollups(basicContexts);
+
+        if (preAggrContexts.size() > 0)
+            preAggrMetricsRW.insertRollups(preAggrContexts);
+    }
 }
@@ -35,6 +35,13 @@ public interface ShardStateIO {
      */
     public Collection<SlotState> getShardState(int shard) throws IOException;
 
+    /**
+     * @param shards
+     * @return the SlotState objects of each of the given shards, by shard
+     * @throws IOException
+     */
+    public Map<Integer, Collection<SlotState>> getShardStates(Collection<Integer> shards) throws IOException;
+
     /**
      * Writes slot state for a given granularity and shard
      *
@@ -43,4 +50,12 @@ public interface ShardStateIO {
      * @throws IOException
      */
     public void putShardState(int shard, Map<Granularity, Map<Integer, UpdateStamp>> slotTimes) throws IOException;
+
+    /**
+     * Writes slot state for several shards at once
+     *
+     * @param shardSlotTimes a map of key=shard -> value=(slotTimes as for {@link #putShardState(int, Map)})
+     * @throws IOException
+     */
+    public void putShardStates(Map<Integer, Map<Granularity, Map<Integer, UpdateStamp>>> shardSlotTimes) throws IOException;
 }
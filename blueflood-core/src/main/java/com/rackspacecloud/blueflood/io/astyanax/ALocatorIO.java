@@ -16,10 +16,12 @@
 package com.rackspacecloud.blueflood.io.astyanax;
 
 import com.codahale.metrics.Timer;
+import com.google.common.collect.AbstractIterator;
 import com.netflix.astyanax.MutationBatch;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 import com.netflix.astyanax.connectionpool.exceptions.NotFoundException;
 import com.netflix.astyanax.query.RowQuery;
+import com.netflix.astyanax.util.RangeBuilder;
 import com.rackspacecloud.blueflood.io.CassandraModel;
 import com.rackspacecloud.blueflood.io.Instrumentation;
 import com.rackspacecloud.blueflood.io.LocatorIO;
@@ -30,6 +32,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 
 /**
  * This class uses the Astyanax driver to read/write locators from
@@ -40,7 +43,7 @@ public class ALocatorIO implements LocatorIO {
     private static final Logger LOG = LoggerFactory.getLogger(ALocatorIO.class);
 
     /**
-     * Insert a locator with key = shard long value calculated using Util.getShard()
+     * Insert a locator with key = shard long value calculated using Locator.getShard()
      * @param locator
      * @throws IOException
      */
@@ -90,4 +93,70 @@ public class ALocatorIO implements LocatorIO {
         }
     }
 
+    /**
+     * Returns the locators for a shard, reading them a page of {@code fetchSize} columns at a time as they are
+     * iterated.
+     *
+     * @param shard Number of the shard you want the locators for. 0-127 inclusive.
+     * @param fetchSize the number of locators to read per page
+     * @return Iterable of locators, which can be iterated once
+     * @throws IOException
+     */
+    @Override
+    public Iterable<Locator> scanLocators(final long shard, final int fetchSize) throws IOException {
+        // an auto paginating query reads the next page each time it is executed
+        final RowQuery<Long, Locator> query = AstyanaxIO.getKeyspace()
+                .prepareQuery(CassandraModel.CF_METRICS_LOCATOR)
+                .getKey(shard)
+                .withColumnRange(new RangeBuilder().setLimit(fetchSize).build())
+                .autoPaginate(true);
+
+        final Collection<Locator> firstPage = readPage(query, shard);
+        if (firstPage.isEmpty()) {
+            Instrumentation.markNotFound(CassandraModel.CF_METRICS_LOCATOR_NAME);
+        }
+
+        return new Iterable<Locator>() {
+            @Override
+            public Iterator<Locator> iterator() {
+                return new AbstractIterator<Locator>() {
+                    private Iterator<Locator> page = firstPage.iterator();
+                    private boolean lastPage = firstPage.size() < fetchSize;
+
+                    @Override
+                    protected Locator computeNext() {
+                        while (!page.hasNext()) {
+                            if (lastPage) {
+                                return endOfData();
+                            }
+                            Collection<Locator> next;
+                            try {
+                                next = readPage(query, shard);
+                            } catch (IOException e) {
+                                throw new RuntimeException(e);
+                            }
+                            page = next.iterator();
+                            lastPage = next.size() < fetchSize;
+                        }
+                        return page.next();
+                    }
+                };
+            }
+        };
+    }
+
+    private Collection<Locator> readPage(RowQuery<Long, Locator> query, long shard) throws IOException {
+        Timer.Context ctx = Instrumentation.getReadTimerContext(CassandraModel.CF_METRICS_LOCATOR_NAME);
+        try {
+            return query.execute().getResult().getColumnNames();
+        } catch (NotFoundException e) {
+            return Collections.emptySet();
+        } catch (ConnectionException ex) {
+            Instrumentation.markReadError(ex);
+            LOG.error("Connection exception during scanLocators(" + Long.toString(shard) + ")", ex);
+            throw new IOException("Error reading locators", ex);
+        } finally {
+            ctx.stop();
+        }
+    }
 }
@@ -21,6 +21,8 @@ import com.netflix.astyanax.MutationBatch;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 import com.netflix.astyanax.model.Column;
 import com.netflix.astyanax.model.ColumnList;
+import com.netflix.astyanax.model.Row;
+import com.netflix.astyanax.model.Rows;
 import com.rackspacecloud.blueflood.io.*;
 import com.rackspacecloud.blueflood.rollup.Granularity;
 import com.rackspacecloud.blueflood.service.SlotState;
@@ -29,9 +31,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Collection;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.*;
 
 /**
  * This class uses the Astyanax driver to read/write ShardState from
@@ -45,18 +45,13 @@ public class AShardStateIO implements ShardStateIO {
     public Collection<SlotState> getShardState(int shard) throws IOException {
         AstyanaxIO astyanaxIO = AstyanaxIO.singleton();
         Timer.Context ctx = Instrumentation.getReadTimerContext(CassandraModel.CF_METRICS_STATE_NAME);
-        final Collection<SlotState> slotStates = new LinkedList<SlotState>();
         try {
             ColumnList<SlotState> columns = astyanaxIO.getKeyspace().prepareQuery(CassandraModel.CF_METRICS_STATE)
                     .getKey((long)shard)
                     .execute()
                     .getResult();
 
-            for (Column<SlotState> column : columns) {
-                slotStates.add(column.getName()
-                                 .withTimestamp(column.getLongValue())
-                                 .withLastUpdatedTimestamp(column.getTimestamp() / 1000)); //write time is in micro seconds
-            }
+            return toSlotStates(columns);
         } catch (ConnectionException e) {
             Instrumentation.markReadError(e);
             LOG.error("Error getting shard state for shard " + shard, e);
@@ -64,30 +59,60 @@ public class AShardStateIO implements ShardStateIO {
         } finally {
             ctx.stop();
         }
+    }
+
+    @Override
+    public Map<Integer, Collection<SlotState>> getShardStates(Collection<Integer> shards) throws IOException {
+        AstyanaxIO astyanaxIO = AstyanaxIO.singleton();
+        Timer.Context ctx = Instrumentation.getReadTimerContext(CassandraModel.CF_METRICS_STATE_NAME);
+        List<Long> keys = new ArrayList<Long>(shards.size());
+        for (int shard : shards) {
+            keys.add((long) shard);
+        }
+        try {
+            Rows<Long, SlotState> rows = astyanaxIO.getKeyspace().prepareQuery(CassandraModel.CF_METRICS_STATE)
+                    .getKeySlice(keys)
+                    .execute()
+                    .getResult();
+
+            Map<Integer, Collection<SlotState>> shardStates = new HashMap<Integer, Collection<SlotState>>();
+            for (Row<Long, SlotState> row : rows) {
+                shardStates.put(row.getKey().intValue(), toSlotStates(row.getColumns()));
+            }
+            return shardStates;
+        } catch (ConnectionException e) {
+            Instrumentation.markReadError(e);
+            LOG.error("Error getting shard state for shards " + shards, e);
+            throw new IOException(e);
+        } finally {
+            ctx.stop();
+        }
+    }
+
+    private Collection<SlotState> toSlotStates(ColumnList<SlotState> columns) {
+        final Collection<SlotState> slotStates = new LinkedList<SlotState>();
+        for (Column<SlotState> column : columns) {
+            slotStates.add(column.getName()
+                             .withTimestamp(column.getLongValue())
+                             .withLastUpdatedTimestamp(column.getTimestamp() / 1000)); //write time is in micro seconds
+        }
         return slotStates;
     }
 
     @Override
     public void putShardState(int shard, Map<Granularity, Map<Integer, UpdateStamp>> slotTimes) throws IOException {
+        putShardStates(Collections.singletonMap(shard, slotTimes));
+    }
+
+    @Override
+    public void putShardStates(Map<Integer, Map<Granularity, Map<Integer, UpdateStamp>>> shardSlotTimes) throws IOException {
         AstyanaxIO astyanaxIO = AstyanaxIO.singleton();
         Timer.Context ctx = Instrumentation.getWriteTimerContext(CassandraModel.CF_METRICS_STATE_NAME);
         try {
             MutationBatch mutationBatch = astyanaxIO.getKeyspace().prepareMutationBatch();
-            ColumnListMutation<SlotState> mutation = mutationBatch.withRow(CassandraModel.CF_METRICS_STATE, (long)shard);
-            for (Map.Entry<Granularity, Map<Integer, UpdateStamp>> granEntry : slotTimes.entrySet()) {
-                Granularity g = granEntry.getKey();
-                for (Map.Entry<Integer, UpdateStamp> entry : granEntry.getValue().entrySet()) {
-                    // granularity,slot,state
-                    SlotState slotState = new SlotState(g, entry.getKey(), entry.getValue().getState());
-                    mutation.putColumn(slotState, entry.getValue().getTimestamp());
-                    /*
-                      Note: this method used to set the timestamp of the Cassandra column to entry.getValue().getTimestamp() * 1000, i.e. the collection time.
-                      That implementation was changed because it could cause delayed metrics not to rollup.
-                      Consider you are getting out of order metrics M1 and M2, with collection times T1 and T2 with T2>T1, belonging to same slot
-                      Assume M2 arrives first. The slot gets marked active and rolled up and the state is set as Rolled. Now, assume M1 arrives. We update the slot state to active,
-                      set the slot timestamp to T1, and while persisting we set it, we set the column timestamp to be T1*1000, but because the T1 < T2, Cassandra wasn't updating it.
-                     */
-                }
+            for (Map.Entry<Integer, Map<Granularity, Map<Integer, UpdateStamp>>> shardEntry : shardSlotTimes.entrySet()) {
+                ColumnListMutation<SlotState> mutation = mutationBatch.withRow(CassandraModel.CF_METRICS_STATE, (long) shardEntry.getKey().intValue());
+                addSlotStates(mutation, shardEntry.getValue());
             }
             if (!mutationBatch.isEmpty())
                 try {
@@ -101,4 +126,22 @@ public class AShardStateIO implements ShardStateIO {
             ctx.stop();
         }
     }
+
+    private void addSlotStates(ColumnListMutation<SlotState> mutation, Map<Granularity, Map<Integer, UpdateStamp>> slotTimes) {
+        for (Map.Entry<Granularity, Map<Integer, UpdateStamp>> granEntry : slotTimes.entrySet()) {
+            Granularity g = granEntry.getKey();
+            for (Map.Entry<Integer, UpdateStamp> entry : granEntry.getValue().entrySet()) {
+                // granularity,slot,state
+                SlotState slotState = new SlotState(g, entry.getKey(), entry.getValue().getState());
+                mutation.putColumn(slotState, entry.getValue().getTimestamp());
+                /*
+                  Note: this method used to set the timestamp of the Cassandra column to entry.getValue().getTimestamp() * 1000, i.e. the collection time.
+                  That implementation was changed because it could cause delayed metrics not to rollup.
+                  Consider you are getting out of order metrics M1 and M2, with collection times T1 and T2 with T2>T1, belonging to same slot
+                  Assume M2 arrives first. The slot gets marked active and rolled up and the state is set as Rolled. Now, assume M1 arrives. We update the slot state to active,
+                  set the slot timestamp to T1, and while persisting we set it, we set the column timestamp to be T1*1000, but because the T1 < T2, Cassandra wasn't updating it.
+                 */
+            }
+        }
+    }
 }
@@ -192,7 +192,9 @@ public class AstyanaxReader extends AstyanaxIO {
         }
 
         ColumnList<Long> cols = getColumnsFromDB(locator, cf, range);
-        Points<T> points = new Points<T>();
+        Points<T> points = serializer == Serializers.simpleNumberSerializer
+                ? (Points<T>) new SimpleNumberPoints(cols.size())
+                : new Points<T>();
         try {
             for (Column<Long> col : cols) {
                 points.add(new Points.Point<T>(col.getName(), (T)col.getValue(serializer)));
@@ -286,12 +288,12 @@ public class AstyanaxReader extends AstyanaxIO {
 
     private MetricData getNumericMetricDataForRange(Locator locator, Range range, Granularity gran, RollupType rollupType) {
         ColumnFamily<Locator, Long> CF = CassandraModel.getColumnFamily(rollupType, gran);
-        Points points = new Points();
         ColumnList<Long> results = getColumnsFromDB(locator, CF, range);
 
         // todo: this will not work when we cannot derive data type from granularity. we will need to know what kind of
         // data we are asking for and use a specific reader method.
         AbstractSerializer serializer = Serializers.serializerFor(RollupType.classOf(rollupType, gran));
+        Points points = newPoints(serializer, results.size());
 
         for (Column<Long> column : results) {
             try {
@@ -319,9 +321,8 @@ public class AstyanaxReader extends AstyanaxIO {
 
     private Points getPointsFromColumns(ColumnList<Long> columnList, RollupType rollupType,
                                         Granularity gran) {
-        Points points = new Points();
-
         AbstractSerializer serializer = serializerFor(rollupType, gran);
+        Points points = newPoints(serializer, columnList.size());
         for (Column<Long> column : columnList) {
             points.add(pointFromColumn(column, serializer));
         }
@@ -329,6 +330,11 @@ public class AstyanaxReader extends AstyanaxIO {
         return points;
     }
 
+    // raw numbers are kept in columns
+    private static Points newPoints(AbstractSerializer serializer, int size) {
+        return serializer instanceof Serializers.RawSerializer ? new SimpleNumberPoints(size) : new Points();
+    }
+
     private Points.Point pointFromColumn(Column<Long> column, AbstractSerializer serializer) {
         if (serializer instanceof Serializers.RawSerializer) {
             return new Points.Point(column.getName(), new SimpleNumber(column.getValue(serializer)));
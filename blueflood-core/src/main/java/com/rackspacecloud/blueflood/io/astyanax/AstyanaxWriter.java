@@ -40,7 +40,6 @@ import com.rackspacecloud.blueflood.service.CoreConfig;
 import com.rackspacecloud.blueflood.service.SingleRollupWriteContext;
 import com.rackspacecloud.blueflood.types.*;
 import com.rackspacecloud.blueflood.utils.Clock;
-import com.rackspacecloud.blueflood.utils.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -130,13 +129,13 @@ public class AstyanaxWriter extends AstyanaxIO {
 
     // numeric only!
     public final void insertLocator(Locator locator, MutationBatch mutationBatch) {
-        mutationBatch.withRow(CassandraModel.CF_METRICS_LOCATOR, (long) Util.getShard(locator.toString()))
+        mutationBatch.withRow(CassandraModel.CF_METRICS_LOCATOR, (long) locator.getShard())
                 .putEmptyColumn(locator, TenantTtlProvider.LOCATOR_TTL);
     }
 
     // numeric only!
     public final void insertDelayedLocator(Granularity g, int slot, Locator locator, MutationBatch mutationBatch) {
-        int shard = Util.getShard(locator.toString());
+        int shard = locator.getShard();
         mutationBatch.withRow(CassandraModel.CF_METRICS_DELAYED_LOCATOR, SlotKey.of(g, slot, shard))
                 .putEmptyColumn(locator, TenantTtlProvider.DELAYED_LOCATOR_TTL);
     }
@@ -4,11 +4,16 @@ import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.Statement;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
 import com.google.common.collect.Table;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.rackspacecloud.blueflood.cache.LocatorCache;
 import com.rackspacecloud.blueflood.cache.MetadataCache;
 import com.rackspacecloud.blueflood.exceptions.CacheException;
@@ -42,6 +47,8 @@ public abstract class DAbstractMetricsRW extends AbstractMetricsRW {
     protected final DLocatorIO locatorIO;
     protected final DDelayedLocatorIO delayedLocatorIO;
     protected final boolean isBatchIngestEnabled;
+    // null unless batches are split by partition
+    protected final DPartitionedBatchWriter partitionedBatchWriter;
 
     /**
      * Constructor
@@ -53,6 +60,7 @@ public abstract class DAbstractMetricsRW extends AbstractMetricsRW {
                                  Clock clock) {
         this.isRecordingDelayedMetrics = isRecordingDelayedMetrics;
         this.isBatchIngestEnabled = false;
+        this.partitionedBatchWriter = null;
         this.locatorIO = locatorIO;
         this.delayedLocatorIO = delayedLocatorIO;
         this.clock = clock;
@@ -69,11 +77,45 @@ public abstract class DAbstractMetricsRW extends AbstractMetricsRW {
                                  boolean isBatchIngestEnabled, Clock clock) {
         this.isRecordingDelayedMetrics = isRecordingDelayedMetrics;
         this.isBatchIngestEnabled = isBatchIngestEnabled;
+        this.partitionedBatchWriter = isBatchIngestEnabled ? createPartitionedBatchWriter() : null;
         this.locatorIO = locatorIO;
         this.delayedLocatorIO = delayedLocatorIO;
         this.clock = clock;
     }
 
+    private static DPartitionedBatchWriter createPartitionedBatchWriter() {
+        Configuration config = Configuration.getInstance();
+        if ( !config.getBooleanProperty(CoreConfig.ENABLE_DTX_INGEST_BATCH_BY_PARTITION) ) {
+            return null;
+        }
+        return new DPartitionedBatchWriter(config.getIntegerProperty(CoreConfig.DTX_INGEST_BATCH_MAX_IN_FLIGHT));
+    }
+
+    /**
+     * Executes the statements of an ingest batch, either as a single UNLOGGED batch or, if enabled, as one batch
+     * per partition. Errors are counted and logged, not thrown.
+     *
+     * @param statements
+     * @param description what the statements write, for the log
+     */
+    protected void executeIngestBatch(List<Statement> statements, String description) {
+        LOG.trace(String.format("insert %s batch statement size=%d", description, statements.size()));
+
+        if ( partitionedBatchWriter != null ) {
+            partitionedBatchWriter.execute(DatastaxIO.getSession(), statements);
+            return;
+        }
+
+        BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+        batch.addAll(statements);
+        try {
+            DatastaxIO.getSession().execute(batch);
+        } catch ( Exception ex ) {
+            Instrumentation.markWriteError();
+            LOG.error(String.format("error writing batch of %d %s", batch.size(), description), ex );
+        }
+    }
+
     /**
      * Return the appropriate IO object which interacts with the Cassandra database.
      *
@@ -172,52 +214,81 @@ public abstract class DAbstractMetricsRW extends AbstractMetricsRW {
                                                               Range range,
                                                               String columnFamily,
                                                               Granularity granularity ) {
+        return Futures.getUnchecked(getDatapointsForRangeAsync(locators, range, columnFamily, granularity));
+    }
 
-        Timer.Context ctx = Instrumentation.getReadTimerContext(columnFamily);
-
-        try {
+    /**
+     * Fetches {@link com.rackspacecloud.blueflood.outputs.formats.MetricData} objects like
+     * {@link #getDatapointsForRange(List, Range, String, Granularity)}, without waiting for
+     * the reads. The future completes on a driver thread once all the reads are done, and
+     * cancelling it cancels the reads still outstanding.
+     *
+     * @param locators
+     * @param range
+     * @param columnFamily
+     * @param granularity
+     * @return
+     */
+    public ListenableFuture<Map<Locator, MetricData>> getDatapointsForRangeAsync( List<Locator> locators,
+                                                                                  final Range range,
+                                                                                  final String columnFamily,
+                                                                                  Granularity granularity ) {
 
-            MetadataCache metadataCache = MetadataCache.getInstance();
+        final Timer.Context ctx = Instrumentation.getReadTimerContext(columnFamily);
 
-            // in this loop, we will fire all the executeAsync() of
-            // various select statements, the collect all of the
-            // ResultSetFutures
-            Map<Locator, List<ResultSetFuture>> locatorToFuturesMap = new HashMap<Locator, List<ResultSetFuture>>();
-            Map<Locator, DAbstractMetricIO> locatorIOMap = new HashMap<Locator, DAbstractMetricIO>();
+        MetadataCache metadataCache = MetadataCache.getInstance();
 
-            for (Locator locator : locators) {
-                try {
+        // in this loop, we will fire all the executeAsync() of
+        // various select statements, the collect all of the
+        // ResultSetFutures
+        final Map<Locator, List<ResultSetFuture>> locatorToFuturesMap = new HashMap<Locator, List<ResultSetFuture>>();
+        final Map<Locator, DAbstractMetricIO> locatorIOMap = new HashMap<Locator, DAbstractMetricIO>();
+        List<ResultSetFuture> allFutures = new ArrayList<ResultSetFuture>();
 
-                    String rType = metadataCache.get(locator, MetricMetadata.ROLLUP_TYPE.name().toLowerCase());
+        for (Locator locator : locators) {
+            try {
 
-                    DAbstractMetricIO io = getIO( rType, granularity );
+                String rType = metadataCache.get(locator, MetricMetadata.ROLLUP_TYPE.name().toLowerCase());
 
-                    // put everything in a map of locator -> io so
-                    // we can use em up later
-                    locatorIOMap.put( locator, io );
+                DAbstractMetricIO io = getIO( rType, granularity );
 
-                    // do the query
-                    List<ResultSetFuture> selectFutures = io.selectForLocatorAndRange( columnFamily, locator, range );
+                // put everything in a map of locator -> io so
+                // we can use em up later
+                locatorIOMap.put( locator, io );
 
-                    // add all ResultSetFutures for a particular locator together
-                    List<ResultSetFuture> existing = locatorToFuturesMap.get(locator);
-                    if (existing == null) {
-                        existing = new ArrayList<ResultSetFuture>();
-                        locatorToFuturesMap.put(locator, existing);
-                    }
-                    existing.addAll(selectFutures);
+                // do the query
+                List<ResultSetFuture> selectFutures = io.selectForLocatorAndRange( columnFamily, locator, range );
 
-                } catch (CacheException ex) {
-                    Instrumentation.markReadError();
-                    LOG.error(String.format("Error looking up locator %s in cache", locator), ex);
+                // add all ResultSetFutures for a particular locator together
+                List<ResultSetFuture> existing = locatorToFuturesMap.get(locator);
+                if (existing == null) {
+                    existing = new ArrayList<ResultSetFuture>();
+                    locatorToFuturesMap.put(locator, existing);
                 }
+                existing.addAll(selectFutures);
+                allFutures.addAll(selectFutures);
+
+            } catch (CacheException ex) {
+                Instrumentation.markReadError();
+                LOG.error(String.format("Error looking up locator %s in cache", locator), ex);
             }
-            return resultSetsToMetricData(locatorToFuturesMap, locatorIOMap, columnFamily, range);
         }
-        finally {
 
-            ctx.stop();
-        }
+        // failed reads are logged and left out when converting, like they are when reading synchronously
+        ListenableFuture<Map<Locator, MetricData>> result = Futures.transform(Futures.successfulAsList(allFutures),
+                new Function<List<ResultSet>, Map<Locator, MetricData>>() {
+                    @Override
+                    public Map<Locator, MetricData> apply(List<ResultSet> resultSets) {
+                        return resultSetsToMetricData(locatorToFuturesMap, locatorIOMap, columnFamily, range);
+                    }
+                }, MoreExecutors.directExecutor());
+        result.addListener(new Runnable() {
+            @Override
+            public void run() {
+                ctx.stop();
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
     }
 
     /**
@@ -243,11 +314,7 @@ public abstract class DAbstractMetricsRW extends AbstractMetricsRW {
 
             Table<Locator, Long, Object> locatorTimestampRollup = io.getRollupsForLocator( locator, columnFamilyName, range );
 
-            Points points = new Points();
-            for (Table.Cell<Locator, Long, Object> cell : locatorTimestampRollup.cellSet()) {
-                points.add( createPoint( cell.getColumnKey(), cell.getValue()));
-            }
-            return points;
+            return convertToPoints( locatorTimestampRollup.row( locator ) );
         } catch( Exception e ) {
 
             Instrumentation.markReadError();
@@ -261,6 +328,49 @@ public abstract class DAbstractMetricsRW extends AbstractMetricsRW {
         }
     }
 
+    /**
+     * Fetches {@link com.rackspacecloud.blueflood.types.Points} objects for a
+     * list of locators of the same rollupType from the specified column family
+     * and range. The reads for all the locators are issued at once and
+     * collected afterwards.
+     *
+     * @param locators
+     * @param rollupType
+     * @param range
+     * @param columnFamilyName
+     * @return
+     */
+    @Override
+    public <T extends Rollup> Map<Locator, Points<T>> getDataToRollup(List<Locator> locators,
+                                                                      RollupType rollupType,
+                                                                      Range range,
+                                                                      String columnFamilyName) throws IOException {
+        Timer.Context ctx = Instrumentation.getReadTimerContext(columnFamilyName);
+        try {
+            // read the rollup objects from the proper IO class
+            DAbstractMetricIO io = getIO( rollupType.name().toLowerCase(), CassandraModel.getGranularity( columnFamilyName ) );
+
+            Table<Locator, Long, Object> locatorTimestampRollup = io.getValuesForLocators( locators, columnFamilyName, range );
+
+            Map<Locator, Points<T>> locatorPoints = new HashMap<Locator, Points<T>>();
+            for (Locator locator : locators) {
+                Points points = convertToPoints( locatorTimestampRollup.row( locator ) );
+                locatorPoints.put( locator, points );
+            }
+            return locatorPoints;
+        } catch( Exception e ) {
+
+            Instrumentation.markReadError();
+            LOG.error( String.format( "Unable to read %d locators rolluptype=%s columnFamilyName=%s for rollup",
+                    locators.size(), rollupType.name(), columnFamilyName ), e );
+
+            throw new IOException( e );
+        }
+        finally {
+            ctx.stop();
+        }
+    }
+
     /**
      * Converts a list of {@link com.datastax.driver.core.ResultSetFuture} for each
      * {@link com.rackspacecloud.blueflood.types.Locator} to
@@ -1,11 +1,12 @@
 package com.rackspacecloud.blueflood.io.datastax;
 
 import com.codahale.metrics.Timer;
-import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Statement;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.rackspacecloud.blueflood.cache.LocatorCache;
 import com.rackspacecloud.blueflood.io.*;
 import com.rackspacecloud.blueflood.outputs.formats.MetricData;
@@ -100,6 +101,13 @@ public class DBasicMetricsRW extends DAbstractMetricsRW {
         return metrics;
     }
 
+    @Override
+    public ListenableFuture<Map<Locator, MetricData>> getDatapointsForRangeAsync( List<Locator> locators,
+                                                                                  Range range,
+                                                                                  Granularity gran ) {
+        return getDatapointsForRangeAsync( locators, range, CassandraModel.getBasicColumnFamilyName( gran ), gran );
+    }
+
     /**
      * Return the appropriate IO object which interacts with the Cassandra database.
      *
@@ -159,14 +167,15 @@ public class DBasicMetricsRW extends DAbstractMetricsRW {
 
     /**
      * Inserts a collection of metrics in a batch using an unlogged
-     * {@link BatchStatement}
+     * {@link com.datastax.driver.core.BatchStatement}, or one per partition
+     * if ENABLE_DTX_INGEST_BATCH_BY_PARTITION is set
      *
      * @param metrics
      * @return
      */
     private void insertMetricsInBatch(Collection<IMetric> metrics) throws IOException {
 
-        BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+        List<Statement> batch = new ArrayList<Statement>();
 
         for (IMetric metric : metrics) {
             BoundStatement bound = simpleNumberIO.getBoundStatementForMetric(metric);
@@ -188,13 +197,6 @@ public class DBasicMetricsRW extends DAbstractMetricsRW {
                 }
             }
         }
-        LOG.trace(String.format("insert batch statement size=%d", batch.size()));
-
-        try {
-            DatastaxIO.getSession().execute(batch);
-        } catch ( Exception ex ) {
-            Instrumentation.markWriteError();
-            LOG.error(String.format("error writing batch of %d metrics", batch.size()), ex );
-        }
+        executeIngestBatch(batch, "metrics");
     }
 }
@@ -12,7 +12,6 @@ import com.rackspacecloud.blueflood.io.Instrumentation;
 import com.rackspacecloud.blueflood.rollup.Granularity;
 import com.rackspacecloud.blueflood.rollup.SlotKey;
 import com.rackspacecloud.blueflood.types.Locator;
-import com.rackspacecloud.blueflood.utils.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -78,7 +77,7 @@ public class DDelayedLocatorIO implements DelayedLocatorIO {
 
     // package protect so other classes in this package can call it
     BoundStatement getBoundStatementForLocator(Granularity granularity, int slot, Locator locator) {
-        int shard = Util.getShard(locator.toString());
+        int shard = locator.getShard();
         return putValue.bind(SlotKey.of(granularity, slot, shard).toString(), locator.toString(), "");
     }
 
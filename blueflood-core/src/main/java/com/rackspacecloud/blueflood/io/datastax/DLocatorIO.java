@@ -16,6 +16,8 @@
 package com.rackspacecloud.blueflood.io.datastax;
 
 import com.codahale.metrics.Timer;
+import com.google.common.base.Function;
+import com.google.common.collect.Iterables;
 import com.datastax.driver.core.*;
 import com.datastax.driver.core.querybuilder.Insert;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
@@ -90,7 +92,7 @@ public class DLocatorIO implements LocatorIO {
     }
 
     /**
-     * Insert a locator with key = shard long value calculated using Util.getShard()
+     * Insert a locator with key = shard long value calculated using Locator.getShard()
      * @param locator
      * @throws IOException
      */
@@ -111,7 +113,7 @@ public class DLocatorIO implements LocatorIO {
     // package protect so other classes in this package can call it
     BoundStatement getBoundStatementForLocator(Locator locator) {
         // get shard this locator would belong to
-        long shard = (long) Util.getShard(locator.toString());
+        long shard = (long) locator.getShard();
         return putValue.bind(shard, locator.toString(), "");
     }
 
@@ -159,4 +161,48 @@ public class DLocatorIO implements LocatorIO {
         }
     }
 
+    /**
+     * Returns the locators for a shard, reading them a page of {@code fetchSize} rows at a time as they are
+     * iterated. The next page is requested in the background once half of the current one has been consumed.
+     *
+     * @param shard Number of the shard you want the locators for. 0-127 inclusive.
+     * @param fetchSize the number of locators to read per page
+     * @return Iterable of locators, which can be iterated once
+     * @throws IOException
+     */
+    @Override
+    public Iterable<Locator> scanLocators(final long shard, final int fetchSize) throws IOException {
+
+        Timer.Context ctx = Instrumentation.getReadTimerContext(CassandraModel.CF_METRICS_LOCATOR_NAME);
+        Session session = DatastaxIO.getSession();
+
+        final ResultSet results;
+        try {
+            // bind value, only the first page is read here
+            BoundStatement bs = getValue.bind(shard);
+            bs.setFetchSize(fetchSize);
+            results = session.execute(bs);
+        } finally {
+            ctx.stop();
+        }
+
+        if (results.isExhausted()) {
+            Instrumentation.markNotFound(CassandraModel.CF_METRICS_LOCATOR_NAME);
+        }
+
+        return Iterables.transform(results, new Function<Row, Locator>() {
+            @Override
+            public Locator apply(Row row) {
+                if ( results.getAvailableWithoutFetching() == fetchSize / 2 && !results.isFullyFetched() ) {
+                    results.fetchMoreResults();
+                }
+                if ( LOG.isTraceEnabled() ) {
+                    LOG.trace( "Read metrics_locators with shard " + shard + ": " +
+                            row.getString( KEY ) +
+                            row.getString( COLUMN1 ));
+                }
+                return Locator.createLocatorFromDbKey(row.getString(COLUMN1));
+            }
+        });
+    }
 }
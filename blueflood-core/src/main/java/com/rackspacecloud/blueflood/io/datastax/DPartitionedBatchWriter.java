@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.io.datastax;
+
+import com.codahale.metrics.Timer;
+import com.datastax.driver.core.*;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.rackspacecloud.blueflood.io.Instrumentation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Writes the statements of an ingest batch as one UNLOGGED batch per partition instead of a single batch spanning
+ * all of them. A multi-partition batch makes its coordinator fan the writes out to every replica involved and hold
+ * the whole batch until the slowest of them answers; single-partition batches can be routed straight to a replica
+ * by the token aware policy and are sent in parallel.
+ *
+ * Statements are grouped by routing key, that is by token, so the metric, locator and delayed locator statements
+ * that land on the same partition key share a batch. At most {@code maxInFlight} batches are outstanding at any
+ * time, across all callers of this writer.
+ */
+public class DPartitionedBatchWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DPartitionedBatchWriter.class);
+
+    private final Semaphore inFlight;
+
+    /**
+     * @param maxInFlight the maximum number of batches sent and not yet answered
+     */
+    public DPartitionedBatchWriter(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Executes the statements grouped by partition and waits for all of them to finish. A failed batch is counted as
+     * a write error and does not affect the others.
+     *
+     * @return the number of batches that failed
+     */
+    public int execute(Session session, List<? extends Statement> statements) {
+        Configuration configuration = session.getCluster().getConfiguration();
+        Collection<List<Statement>> partitions = groupByPartition(statements,
+                configuration.getProtocolOptions().getProtocolVersion(), configuration.getCodecRegistry());
+
+        Instrumentation.getPartitionsPerIngestBatchHistogram().update(partitions.size());
+
+        List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>(partitions.size());
+        List<Integer> sizes = new ArrayList<Integer>(partitions.size());
+        int errors = 0;
+        for (List<Statement> partition : partitions) {
+            Instrumentation.getStatementsPerPartitionBatchHistogram().update(partition.size());
+
+            inFlight.acquireUninterruptibly();
+            final Timer.Context ctx = Instrumentation.getPartitionBatchWriteTimerContext();
+            try {
+                ResultSetFuture future = session.executeAsync(toStatement(partition));
+                future.addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        ctx.stop();
+                        inFlight.release();
+                    }
+                }, MoreExecutors.sameThreadExecutor());
+                futures.add(future);
+                sizes.add(partition.size());
+            } catch (Exception ex) {
+                ctx.stop();
+                inFlight.release();
+                errors++;
+                Instrumentation.markWriteError();
+                LOG.error(String.format("error writing batch of %d statements", partition.size()), ex);
+            }
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).getUninterruptibly();
+            } catch (Exception ex) {
+                errors++;
+                Instrumentation.markWriteError();
+                LOG.error(String.format("error writing batch of %d statements", sizes.get(i)), ex);
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Groups the statements by routing key, keeping the order in which partitions and statements were first seen.
+     * Statements without a routing key each get a group of their own.
+     */
+    static Collection<List<Statement>> groupByPartition(List<? extends Statement> statements,
+                                                        ProtocolVersion protocolVersion,
+                                                        CodecRegistry codecRegistry) {
+        Map<ByteBuffer, List<Statement>> byKey = new LinkedHashMap<ByteBuffer, List<Statement>>();
+        List<List<Statement>> partitions = new ArrayList<List<Statement>>();
+        for (Statement statement : statements) {
+            ByteBuffer routingKey = statement.getRoutingKey(protocolVersion, codecRegistry);
+            if (routingKey == null) {
+                partitions.add(Collections.singletonList(statement));
+                continue;
+            }
+
+            List<Statement> partition = byKey.get(routingKey);
+            if (partition == null) {
+                partition = new ArrayList<Statement>();
+                byKey.put(routingKey, partition);
+                partitions.add(partition);
+            }
+            partition.add(statement);
+        }
+        return partitions;
+    }
+
+    private static Statement toStatement(List<Statement> partition) {
+        if (partition.size() == 1) {
+            return partition.get(0);
+        }
+        BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+        batch.addAll(partition);
+        return batch;
+    }
+}
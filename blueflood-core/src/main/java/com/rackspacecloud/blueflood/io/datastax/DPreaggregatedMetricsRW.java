@@ -19,6 +19,7 @@ package com.rackspacecloud.blueflood.io.datastax;
 import com.codahale.metrics.Timer;
 import com.datastax.driver.core.*;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.collect.Multimap;
 import com.rackspacecloud.blueflood.cache.LocatorCache;
 import com.rackspacecloud.blueflood.exceptions.InvalidDataException;
@@ -143,6 +144,13 @@ public class DPreaggregatedMetricsRW extends DAbstractMetricsRW implements Preag
         return getDatapointsForRange( locators, range, columnFamily, granularity );
     }
 
+    @Override
+    public ListenableFuture<Map<Locator, MetricData>> getDatapointsForRangeAsync( List<Locator> locators,
+                                                                                  Range range,
+                                                                                  Granularity gran ) {
+        return getDatapointsForRangeAsync( locators, range, CassandraModel.getPreaggregatedColumnFamilyName(gran), gran );
+    }
+
     /**
      * Return the appropriate IO object which interacts with the Cassandra database.
      *
@@ -228,7 +236,7 @@ public class DPreaggregatedMetricsRW extends DAbstractMetricsRW implements Preag
     }
 
     private void insertMetricsInBatch(Multimap<Locator, IMetric> map, Granularity granularity) {
-        BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+        List<Statement> batch = new ArrayList<Statement>();
 
         for (Locator locator : map.keySet()) {
             for (IMetric metric : map.get(locator)) {
@@ -257,14 +265,7 @@ public class DPreaggregatedMetricsRW extends DAbstractMetricsRW implements Preag
                 }
             }
         }
-        LOG.trace(String.format("insert preaggregated batch statement size=%d", batch.size()));
-
-        try {
-            DatastaxIO.getSession().execute(batch);
-        } catch ( Exception ex ) {
-            Instrumentation.markWriteError();
-            LOG.error(String.format("error writing batch of %d preaggregated metrics", batch.size()), ex );
-        }
+        executeIngestBatch(batch, "preaggregated metrics");
     }
 }
 
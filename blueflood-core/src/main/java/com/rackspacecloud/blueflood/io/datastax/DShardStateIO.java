@@ -44,6 +44,9 @@ public class DShardStateIO implements ShardStateIO {
     public static final String VALUE = "value";
     public static final String WRITE_TIME = "writetime(value)";
 
+    // keeps batches well under Cassandra's batch size warning threshold
+    static final int MAX_SLOTS_PER_BATCH = 100;
+
     private static final Logger LOG = LoggerFactory.getLogger(DShardStateIO.class);
 
     private final SlotStateSerDes serDes = new SlotStateSerDes();
@@ -82,36 +85,79 @@ public class DShardStateIO implements ShardStateIO {
     public Collection<SlotState> getShardState(int shard) throws IOException {
 
         Timer.Context ctx = Instrumentation.getReadTimerContext(CassandraModel.CF_METRICS_STATE_NAME);
-        final Collection<SlotState> slotStates = new LinkedList<SlotState>();
         Session session = DatastaxIO.getSession();
 
         try {
 
             BoundStatement bound = getShardState.bind((long) shard);
 
-            List<Row> results = session.execute(bound).all();
+            return toSlotStates(session.execute(bound).all());
+        } finally {
+            ctx.stop();
+        }
+    }
+
+    /**
+     * Reads the shards asynchronously, all at once. A shard that could not be read is left out of the result.
+     */
+    @Override
+    public Map<Integer, Collection<SlotState>> getShardStates(Collection<Integer> shards) throws IOException {
+
+        Timer.Context ctx = Instrumentation.getReadTimerContext(CassandraModel.CF_METRICS_STATE_NAME);
+        Session session = DatastaxIO.getSession();
+
+        Map<Integer, ResultSetFuture> futures = new LinkedHashMap<Integer, ResultSetFuture>();
+        Map<Integer, Collection<SlotState>> shardStates = new HashMap<Integer, Collection<SlotState>>();
+
+        try {
+            for (int shard : shards) {
+                futures.put(shard, session.executeAsync(getShardState.bind((long) shard)));
+            }
 
-            for (Row row : results) {
-                if (LOG.isTraceEnabled()) {
-                    LOG.trace(String.format("Read shard: %d: - %s %s\n",
-                            row.getLong( KEY ),
-                            row.getString( COLUMN1 ),
-                            row.getLong( VALUE ),
-                            row.getLong( WRITE_TIME )));
+            for (Map.Entry<Integer, ResultSetFuture> future : futures.entrySet()) {
+                try {
+                    shardStates.put(future.getKey(), toSlotStates(future.getValue().getUninterruptibly().all()));
+                } catch (Exception e) {
+                    Instrumentation.markReadError();
+                    LOG.error(String.format("error reading metrics_state of shard %d", future.getKey()), e);
                 }
-                SlotState state = serDes.deserialize(row.getString( COLUMN1 ));
-                state.withTimestamp(row.getLong( VALUE ))
-                     .withLastUpdatedTimestamp(row.getLong( WRITE_TIME ) / 1000); //write time is in micro seconds
-                slotStates.add(state);
             }
-            return slotStates;
+            return shardStates;
         } finally {
             ctx.stop();
         }
     }
 
+    private Collection<SlotState> toSlotStates(List<Row> results) {
+        final Collection<SlotState> slotStates = new LinkedList<SlotState>();
+        for (Row row : results) {
+            if (LOG.isTraceEnabled()) {
+                LOG.trace(String.format("Read shard: %d: - %s %s\n",
+                        row.getLong( KEY ),
+                        row.getString( COLUMN1 ),
+                        row.getLong( VALUE ),
+                        row.getLong( WRITE_TIME )));
+            }
+            SlotState state = serDes.deserialize(row.getString( COLUMN1 ));
+            state.withTimestamp(row.getLong( VALUE ))
+                 .withLastUpdatedTimestamp(row.getLong( WRITE_TIME ) / 1000); //write time is in micro seconds
+            slotStates.add(state);
+        }
+        return slotStates;
+    }
+
     @Override
     public void putShardState(int shard, Map<Granularity, Map<Integer, UpdateStamp>> slotTimes) throws IOException {
+        putShardStates(Collections.singletonMap(shard, slotTimes));
+    }
+
+    /**
+     * Writes the slot states of each shard as UNLOGGED batches of at most {@link #MAX_SLOTS_PER_BATCH} statements.
+     * A shard is a single partition of metrics_state, so each batch is routed straight to one of its replicas by the
+     * token aware policy. All batches are sent asynchronously, then waited for.
+     */
+    @Override
+    public void putShardStates(Map<Integer, Map<Granularity, Map<Integer, UpdateStamp>>> shardSlotTimes) throws IOException {
 
         Timer.Context ctx = Instrumentation.getWriteTimerContext(CassandraModel.CF_METRICS_STATE_NAME);
         Session session = DatastaxIO.getSession();
@@ -119,30 +165,35 @@ public class DShardStateIO implements ShardStateIO {
         Map<String, ResultSetFuture> futures = new HashMap<String, ResultSetFuture>();
 
         try {
-            Set<Granularity> granularities = slotTimes.keySet();
-            for (Granularity gran : granularities) {
+            for (Map.Entry<Integer, Map<Granularity, Map<Integer, UpdateStamp>>> shardEntry : shardSlotTimes.entrySet()) {
+                int shard = shardEntry.getKey();
+                List<Statement> statements = new ArrayList<Statement>();
 
-                Set<Map.Entry<Integer, UpdateStamp>> entries = slotTimes.get(gran).entrySet();
-                for (Map.Entry<Integer, UpdateStamp> entry : entries) {
+                for (Map.Entry<Granularity, Map<Integer, UpdateStamp>> granEntry : shardEntry.getValue().entrySet()) {
+                    for (Map.Entry<Integer, UpdateStamp> entry : granEntry.getValue().entrySet()) {
 
-                    String value = serDes.serialize(gran, entry.getKey(), entry.getValue().getState());
+                        String value = serDes.serialize(granEntry.getKey(), entry.getKey(), entry.getValue().getState());
 
-                    BoundStatement bound = putShardState.bind( (long) shard,
-                            value,
-                            entry.getValue().getTimestamp());
+                        statements.add(putShardState.bind( (long) shard,
+                                value,
+                                entry.getValue().getTimestamp()));
+                    }
+                }
 
-                    futures.put( "shard: " + shard +", " + value, session.executeAsync( bound ) );
+                for (int from = 0; from < statements.size(); from += MAX_SLOTS_PER_BATCH) {
+                    List<Statement> slice = statements.subList(from, Math.min(from + MAX_SLOTS_PER_BATCH, statements.size()));
+                    futures.put(String.format("shard: %d, %d slots from %d", shard, slice.size(), from),
+                            session.executeAsync(toStatement(slice)));
                 }
             }
 
             for( Map.Entry<String, ResultSetFuture> future : futures.entrySet() ) {
 
                 try {
-                    ResultSet result = future.getValue().getUninterruptibly();
-                    LOG.trace( "results.size=" + result.all().size() );
+                    future.getValue().getUninterruptibly();
                 }
                 catch ( Exception e ) {
-
+                    Instrumentation.markWriteError();
                     LOG.error( String.format( "error writing to metrics_state: %s", future.getKey() ), e );
                 }
             }
@@ -152,4 +203,14 @@ public class DShardStateIO implements ShardStateIO {
         }
     }
 
+    private static Statement toStatement(List<Statement> statements) {
+        if (statements.size() == 1) {
+            return statements.get(0);
+        }
+        BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+        batch.addAll(statements);
+        batch.setConsistencyLevel(putShardState.getConsistencyLevel());
+        return batch;
+    }
+
 }
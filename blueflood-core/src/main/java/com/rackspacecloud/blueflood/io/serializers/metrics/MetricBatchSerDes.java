@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.io.serializers.metrics;
+
+import com.netflix.astyanax.serializers.AbstractSerializer;
+import com.rackspacecloud.blueflood.exceptions.SerializationException;
+import com.rackspacecloud.blueflood.io.serializers.Serializers;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.types.*;
+import com.rackspacecloud.blueflood.utils.TimeValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes a batch of ingested {@link Metric}s and {@link PreaggregatedMetric}s, with their locators, times and
+ * TTLs, so that they can be kept outside of Cassandra and written to it later. Values are serialized as they are in
+ * Cassandra.
+ */
+public class MetricBatchSerDes {
+
+    private static final byte VERSION_1 = 1;
+    private static final byte B_METRIC = (byte)'M';
+    private static final byte B_PREAGGREGATED = (byte)'P';
+
+    public byte[] serialize(List<IMetric> batch) throws SerializationException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(VERSION_1);
+            out.writeInt(batch.size());
+            for (IMetric metric : batch) {
+                out.writeUTF(metric.getLocator().toString());
+                out.writeLong(metric.getCollectionTime());
+                out.writeInt(metric.getTtlInSeconds());
+                if (metric instanceof PreaggregatedMetric) {
+                    Rollup rollup = ((PreaggregatedMetric) metric).getMetricValue();
+                    RollupType type = metric.getRollupType();
+                    out.writeByte(B_PREAGGREGATED);
+                    out.writeUTF(type.name());
+                    writeBytes(rollupSerializerFor(type).toByteBuffer(rollup), out);
+                } else if (metric instanceof Metric) {
+                    String unit = ((Metric) metric).getUnit();
+                    out.writeByte(B_METRIC);
+                    out.writeBoolean(unit != null);
+                    if (unit != null) {
+                        out.writeUTF(unit);
+                    }
+                    writeBytes(Serializers.serializerFor(Object.class).toByteBuffer(metric.getMetricValue()), out);
+                } else {
+                    throw new SerializationException("Unexpected metric type: " + metric.getClass().getName());
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new SerializationException(e.getMessage());
+        } catch (RuntimeException e) {
+            // the value serializers report unexpected values this way
+            throw new SerializationException("Could not serialize batch: " + e.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    public List<IMetric> deserialize(byte[] serialized) throws SerializationException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(serialized));
+        try {
+            byte version = in.readByte();
+            if (version != VERSION_1) {
+                throw new SerializationException(String.format("Unexpected serialization version: %d", (int)version));
+            }
+            int size = in.readInt();
+            List<IMetric> batch = new ArrayList<IMetric>(size);
+            for (int i = 0; i < size; i++) {
+                Locator locator = Locator.createLocatorFromDbKey(in.readUTF());
+                long collectionTime = in.readLong();
+                TimeValue ttl = new TimeValue(in.readInt(), TimeUnit.SECONDS);
+                byte kind = in.readByte();
+                if (kind == B_PREAGGREGATED) {
+                    RollupType type = RollupType.valueOf(in.readUTF());
+                    Rollup rollup = (Rollup) rollupSerializerFor(type).fromByteBuffer(readBytes(in));
+                    batch.add(new PreaggregatedMetric(collectionTime, locator, ttl, rollup));
+                } else if (kind == B_METRIC) {
+                    String unit = in.readBoolean() ? in.readUTF() : null;
+                    Object value = Serializers.serializerFor(Object.class).fromByteBuffer(readBytes(in));
+                    batch.add(new Metric(locator, value, collectionTime, ttl, unit));
+                } else {
+                    throw new SerializationException(String.format("Unexpected metric type: %d", (int)kind));
+                }
+            }
+            return batch;
+        } catch (IOException e) {
+            throw new SerializationException(e.getMessage());
+        } catch (RuntimeException e) {
+            throw new SerializationException("Could not deserialize batch: " + e.getMessage());
+        }
+    }
+
+    private static AbstractSerializer rollupSerializerFor(RollupType type) {
+        return Serializers.serializerFor((Class) RollupType.classOf(type, Granularity.FULL));
+    }
+
+    private static void writeBytes(ByteBuffer buffer, DataOutputStream out) throws IOException {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static ByteBuffer readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        // the value serializers read the whole backing array
+        return ByteBuffer.wrap(bytes);
+    }
+}
@@ -21,15 +21,20 @@ import com.google.protobuf.CodedOutputStream;
 import com.rackspacecloud.blueflood.exceptions.SerializationException;
 import com.rackspacecloud.blueflood.io.Constants;
 import com.rackspacecloud.blueflood.types.BluefloodSetRollup;
+import com.rackspacecloud.blueflood.types.HyperLogLog;
 import com.rackspacecloud.blueflood.utils.Metrics;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
 import static com.rackspacecloud.blueflood.io.Constants.VERSION_1_SET_ROLLUP;
+import static com.rackspacecloud.blueflood.io.Constants.VERSION_2_SET_ROLLUP;
 
 /**
  * This class knows how to serialize/deserialize Set objects.
+ *
+ * Sets kept exactly are written in version 1: the number of hashes, then the hashes. Sets promoted to a
+ * {@link HyperLogLog} are written in version 2: its precision, then its registers.
  */
 public class SetSerDes extends AbstractSerDes {
 
@@ -52,9 +57,14 @@ public class SetSerDes extends AbstractSerDes {
         CodedInputStream in = CodedInputStream.newInstance(byteBuffer.array());
         try {
             byte version = in.readRawByte();
-            if (version != VERSION_1_SET_ROLLUP)
-                throw new SerializationException(String.format("Unexpected set serialization version: %d", (int)version));
-            return deserializeV1SetRollup(in);
+            switch (version) {
+                case VERSION_1_SET_ROLLUP:
+                    return deserializeV1SetRollup(in);
+                case VERSION_2_SET_ROLLUP:
+                    return deserializeV2SetRollup(in);
+                default:
+                    throw new SerializationException(String.format("Unexpected set serialization version: %d", (int)version));
+            }
         } catch (Exception ex) {
             throw new RuntimeException(ex);
         }
@@ -63,6 +73,12 @@ public class SetSerDes extends AbstractSerDes {
     private void serializeSetRollup(BluefloodSetRollup rollup, byte[] buf) throws IOException {
         CodedOutputStream out = CodedOutputStream.newInstance(buf);
         setRollupSize.update(buf.length);
+        if (rollup.isEstimated()) {
+            out.writeRawByte(Constants.VERSION_2_SET_ROLLUP);
+            out.writeRawVarint32(HyperLogLog.PRECISION);
+            out.writeRawBytes(rollup.getHyperLogLog().getRegisters());
+            return;
+        }
         out.writeRawByte(Constants.VERSION_1_SET_ROLLUP);
         out.writeRawVarint32(rollup.getCount());
         for (Integer i : rollup.getHashes()) {
@@ -79,8 +95,18 @@ public class SetSerDes extends AbstractSerDes {
         return rollup;
     }
 
+    private BluefloodSetRollup deserializeV2SetRollup(CodedInputStream in) throws IOException {
+        int precision = in.readRawVarint32();
+        if (precision != HyperLogLog.PRECISION)
+            throw new SerializationException(String.format("Unexpected set HyperLogLog precision: %d", precision));
+        return new BluefloodSetRollup(new HyperLogLog(in.readRawBytes(HyperLogLog.NUM_REGISTERS)));
+    }
+
     private int sizeOf(BluefloodSetRollup setRollup) {
         int sz = sizeOfSize();
+        if (setRollup.isEstimated()) {
+            return sz + CodedOutputStream.computeRawVarint32Size(HyperLogLog.PRECISION) + HyperLogLog.NUM_REGISTERS;
+        }
         sz += CodedOutputStream.computeRawVarint32Size(setRollup.getCount());
         for (Integer i : setRollup.getHashes()) {
             sz += CodedOutputStream.computeRawVarint32Size(i);
@@ -29,18 +29,23 @@ import java.util.Map;
 
 import static com.rackspacecloud.blueflood.io.Constants.VERSION_1_TIMER;
 import static com.rackspacecloud.blueflood.io.Constants.VERSION_2_TIMER;
+import static com.rackspacecloud.blueflood.io.Constants.VERSION_3_TIMER;
 
 /**
  * This class knows how to serialize/deserialize Timer metrics.
+ *
+ * Version 3 is version 2 followed by the rollup's {@link QuantileSketch}. It is only written for rollups that have a
+ * sketch, so that version 2 readers keep working as long as sketches are not enabled.
  */
 public class TimerRollupSerDes extends AbstractSerDes {
 
     private static Histogram timerRollupSize = Metrics.histogram(TimerRollupSerDes.class, "Timer Metric Size");
 
     public ByteBuffer serialize(BluefloodTimerRollup bluefloodTimerRollup) {
+        byte version = bluefloodTimerRollup.getSketch() == null ? VERSION_2_TIMER : VERSION_3_TIMER;
         try {
-            byte[] buf = new byte[sizeOf(bluefloodTimerRollup, VERSION_2_TIMER)];
-            serializeTimer(bluefloodTimerRollup, buf, VERSION_2_TIMER);
+            byte[] buf = new byte[sizeOf(bluefloodTimerRollup, version)];
+            serializeTimer(bluefloodTimerRollup, buf, version);
             return ByteBuffer.wrap(buf);
         } catch (IOException ex) {
             throw new RuntimeException(ex);
@@ -76,7 +81,7 @@ public class TimerRollupSerDes extends AbstractSerDes {
         // sum, count, countps, avg, max, min, var
         if (timerVersion == VERSION_1_TIMER) {
             out.writeRawVarint64((long)rollup.getSum());
-        } else if (timerVersion == VERSION_2_TIMER) {
+        } else if (timerVersion == VERSION_2_TIMER || timerVersion == VERSION_3_TIMER) {
             out.writeDoubleNoTag(rollup.getSum());
         } else {
             throw new SerializationException(String.format("Unexpected timer serialization version: %d", (int)timerVersion));
@@ -97,6 +102,16 @@ public class TimerRollupSerDes extends AbstractSerDes {
             out.writeStringNoTag(entry.getKey());
             putUnversionedDoubleOrLong(entry.getValue().getMean(), out);
         }
+
+        if (timerVersion == VERSION_3_TIMER) {
+            QuantileSketch sketch = rollup.getSketch();
+            out.writeRawVarint64(sketch.getZeroCount());
+            out.writeSInt32NoTag(sketch.getMinIndex());
+            out.writeRawVarint32(sketch.getNumBuckets());
+            for (int i = 0; i < sketch.getNumBuckets(); i++) {
+                out.writeRawVarint64(sketch.getBucketCount(i));
+            }
+        }
     }
 
     private BluefloodTimerRollup deserializeTimer(CodedInputStream in, byte timerVersion) throws IOException {
@@ -104,7 +119,7 @@ public class TimerRollupSerDes extends AbstractSerDes {
         final double sum;
         if (timerVersion == VERSION_1_TIMER) {
             sum = in.readRawVarint64();
-        } else if (timerVersion == VERSION_2_TIMER) {
+        } else if (timerVersion == VERSION_2_TIMER || timerVersion == VERSION_3_TIMER) {
             sum = in.readDouble();
         } else {
             throw new SerializationException(String.format("Unexpected timer deserialization version: %d", (int)timerVersion));
@@ -151,6 +166,20 @@ public class TimerRollupSerDes extends AbstractSerDes {
             rollup.setPercentile(name, mean);
         }
 
+        if (timerVersion == VERSION_3_TIMER) {
+            long zeroCount = in.readRawVarint64();
+            int minIndex = in.readSInt32();
+            int numBuckets = in.readRawVarint32();
+            if (numBuckets < 0 || numBuckets > QuantileSketch.MAX_BUCKETS) {
+                throw new SerializationException(String.format("Unexpected number of sketch buckets: %d", numBuckets));
+            }
+            long[] bucketCounts = new long[numBuckets];
+            for (int i = 0; i < numBuckets; i++) {
+                bucketCounts[i] = in.readRawVarint64();
+            }
+            rollup.withSketch(new QuantileSketch(zeroCount, minIndex, bucketCounts));
+        }
+
         return rollup;
     }
 
@@ -160,7 +189,7 @@ public class TimerRollupSerDes extends AbstractSerDes {
 
         if (timerVersion == VERSION_1_TIMER) {
             sz += CodedOutputStream.computeRawVarint64Size((long) bluefloodTimerRollup.getSum());
-        } else if (timerVersion == VERSION_2_TIMER) {
+        } else if (timerVersion == VERSION_2_TIMER || timerVersion == VERSION_3_TIMER) {
             sz += CodedOutputStream.computeDoubleSizeNoTag(bluefloodTimerRollup.getSum());
         } else {
             throw new SerializationException(String.format("Unexpected timer serialization version: %d", (int)timerVersion));
@@ -189,6 +218,16 @@ public class TimerRollupSerDes extends AbstractSerDes {
                 }
             }
         }
+
+        if (timerVersion == VERSION_3_TIMER) {
+            QuantileSketch sketch = bluefloodTimerRollup.getSketch();
+            sz += CodedOutputStream.computeRawVarint64Size(sketch.getZeroCount());
+            sz += CodedOutputStream.computeSInt32SizeNoTag(sketch.getMinIndex());
+            sz += CodedOutputStream.computeRawVarint32Size(sketch.getNumBuckets());
+            for (int i = 0; i < sketch.getNumBuckets(); i++) {
+                sz += CodedOutputStream.computeRawVarint64Size(sketch.getBucketCount(i));
+            }
+        }
         return sz;
     }
 
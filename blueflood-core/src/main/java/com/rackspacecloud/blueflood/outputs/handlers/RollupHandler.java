@@ -19,26 +19,32 @@ package com.rackspacecloud.blueflood.outputs.handlers;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AsyncFunction;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rackspacecloud.blueflood.cache.RollupReadCache;
 import com.rackspacecloud.blueflood.concurrent.ThreadPoolBuilder;
+import com.rackspacecloud.blueflood.exceptions.GranularityException;
 import com.rackspacecloud.blueflood.io.*;
 import com.rackspacecloud.blueflood.outputs.formats.MetricData;
 import com.rackspacecloud.blueflood.rollup.Granularity;
 import com.rackspacecloud.blueflood.service.Configuration;
 import com.rackspacecloud.blueflood.service.CoreConfig;
+import com.rackspacecloud.blueflood.service.SingleRollupWriteContext;
 import com.rackspacecloud.blueflood.types.*;
 import com.rackspacecloud.blueflood.utils.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.*;
 
 public class RollupHandler {
@@ -66,15 +72,22 @@ public class RollupHandler {
     private static final Timer timerRepairRollupsOnRead = Metrics.timer( RollupHandler.class, "repairRollupsOnRead" );
     private static final Timer timerRorCalcUnits = Metrics.timer( RollupHandler.class, "ROR Calc Units" );
 
+    private static final Meter rollupsRepairedFromFiner = Metrics.meter(RollupHandler.class, "BF-API", "Rollups repaired - finer granularity");
+    private static final Meter rollupsWrittenBack = Metrics.meter(RollupHandler.class, "BF-API", "Rollups repaired - written back");
+
     private static final boolean ROLLUP_REPAIR = Configuration.getInstance().getBooleanProperty(CoreConfig.REPAIR_ROLLUPS_ON_READ);
+    private static final boolean ROLLUP_REPAIR_WRITE_BACK = Configuration.getInstance().getBooleanProperty(CoreConfig.ROLLUP_ON_READ_REPAIR_WRITE_BACK);
+    private static final long ROLLUP_DELAY_MILLIS = Configuration.getInstance().getLongProperty(CoreConfig.ROLLUP_DELAY_MILLIS);
+    // times out rollups on read and queries, which run asynchronously
+    protected static final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("Rollups on read timeouts").setDaemon(true).build());
+
     private static final int ROLLUP_ON_READ_REPAIR_SIZE_PER_THREAD = Configuration.getInstance().getIntegerProperty( CoreConfig.ROLLUP_ON_READ_REPAIR_SIZE_PER_THREAD );
-    private ExecutorService ESUnitExecutor = null;
+    private ListeningExecutorService ESUnitExecutor = null;
     private ListeningExecutorService rollupsOnReadExecutor = null;
     private ListeningExecutorService createRepairPointsExecutor = null;
-    /*
-      Timeout for rollups on read applicable only when operations are done async. for sync rollups on read
-      it will be the driver operation timeout.
-     */
+    private ExecutorService writeBackExecutor = null;
+    // Timeout for rollups on read. Reads of the query itself are bounded by the driver operation timeout.
     private TimeValue rollupOnReadTimeout = new TimeValue(
                                                 Configuration.getInstance().getIntegerProperty(CoreConfig.ROLLUP_ON_READ_TIMEOUT_IN_SECONDS),
                                                 TimeUnit.SECONDS);
@@ -84,9 +97,9 @@ public class RollupHandler {
         if (Util.shouldUseESForUnits()) {
             // The number of threads getting used for ES_UNIT_THREADS, should at least be equal netty worker threads
             int ESthreadCount = Configuration.getInstance().getIntegerProperty(CoreConfig.ES_UNIT_THREADS);
-            ESUnitExecutor = new ThreadPoolBuilder().withUnboundedQueue()
+            ESUnitExecutor = MoreExecutors.listeningDecorator(new ThreadPoolBuilder().withUnboundedQueue()
                     .withCorePoolSize(ESthreadCount)
-                    .withMaxPoolSize(ESthreadCount).withName("Rolluphandler ES executors").build();
+                    .withMaxPoolSize(ESthreadCount).withName("Rolluphandler ES executors").build());
         }
         if (!Configuration.getInstance().getBooleanProperty(CoreConfig.TURN_OFF_RR_MPLOT)) {
             ThreadPoolExecutor rollupsOnReadExecutors = new ThreadPoolBuilder().withUnboundedQueue()
@@ -101,6 +114,13 @@ public class RollupHandler {
                 .withMaxPoolSize( Configuration.getInstance().getIntegerProperty( CoreConfig.ROLLUP_ON_READ_REPAIR_THREADS ) )
                 .withName( "Create Repair Points Rollups on Read Executors" ).build();
         createRepairPointsExecutor = MoreExecutors.listeningDecorator(createRepairrollupsOnReadExecutors);
+
+        if (ROLLUP_REPAIR_WRITE_BACK) {
+            writeBackExecutor = new ThreadPoolBuilder().withUnboundedQueue()
+                    .withCorePoolSize(1)
+                    .withMaxPoolSize(1)
+                    .withName("Rollups on Read Write Back").build();
+        }
     }
 
     private enum plotTimers {
@@ -129,13 +149,25 @@ public class RollupHandler {
             final long from,
             final long to,
             final Granularity g) {
+        return Futures.getUnchecked(getRollupByGranularityAsync(tenantId, metrics, from, to, g));
+    }
+
+    /**
+     * Reads the metrics like {@link #getRollupByGranularity}, without blocking the calling thread on Cassandra,
+     * Elasticsearch or rollups on read. The future completes on the thread that finishes the last of those, and
+     * cancelling it cancels the work still outstanding.
+     */
+    public ListenableFuture<Map<Locator, MetricData>> getRollupByGranularityAsync(
+            final String tenantId,
+            final List<String> metrics,
+            final long from,
+            final long to,
+            final Granularity g) {
 
         final Timer.Context ctx = metrics.size() == 1 ? plotTimers.SPLOT_TIMER.timer.time() : plotTimers.MPLOT_TIMER.timer.time();
-        Future<List<SearchResult>> unitsFuture = null;
-        List<SearchResult> units = null;
-        List<Locator> locators = new ArrayList<Locator>();
+        final List<Locator> locators = new ArrayList<Locator>();
 
-        Timer.Context c = timerRorCalcUnits.time();
+        final Timer.Context c = timerRorCalcUnits.time();
 
         for (String metric : metrics) {
             locators.add(Locator.createLocatorFromPathComponents(tenantId, metric));
@@ -143,83 +175,137 @@ public class RollupHandler {
 
         queriesSizeHist.update(locators.size());
 
+        ListenableFuture<List<SearchResult>> unitsFuture = Futures.immediateFuture(null);
         if (Util.shouldUseESForUnits()) {
-             unitsFuture = ESUnitExecutor.submit(new Callable() {
-
-                 @Override
-                 public List<SearchResult> call() throws Exception {
-                     DiscoveryIO discoveryIO = (DiscoveryIO) ModuleLoader.getInstance(DiscoveryIO.class, CoreConfig.DISCOVERY_MODULES);
-
-                     if (discoveryIO == null) {
-                         log.warn("USE_ES_FOR_UNITS has been set to true, but no discovery module found." +
-                                 " Please check your config");
-                         return null;
-                     }
-                     return discoveryIO.search(tenantId, metrics);
-                 }
-             });
+            unitsFuture = Futures.catching(ESUnitExecutor.submit(new Callable<List<SearchResult>>() {
+
+                @Override
+                public List<SearchResult> call() throws Exception {
+                    DiscoveryIO discoveryIO = (DiscoveryIO) ModuleLoader.getInstance(DiscoveryIO.class, CoreConfig.DISCOVERY_MODULES);
+
+                    if (discoveryIO == null) {
+                        log.warn("USE_ES_FOR_UNITS has been set to true, but no discovery module found." +
+                                " Please check your config");
+                        return null;
+                    }
+                    return discoveryIO.search(tenantId, metrics);
+                }
+            }), Exception.class, new Function<Exception, List<SearchResult>>() {
+                @Override
+                public List<SearchResult> apply(Exception e) {
+                    log.warn("Exception encountered while getting units from ES, unit will be set to unknown in query results", e);
+                    return null;
+                }
+            });
         }
+        final ListenableFuture<List<SearchResult>> units = unitsFuture;
 
         MetricsRWDelegator delegator = new MetricsRWDelegator();
-        final Map<Locator,MetricData> metricDataMap = delegator.getDatapointsForRange(
+        ListenableFuture<Map<Locator, MetricData>> dataFuture = RollupReadCache.getInstance().getDatapointsForRangeAsync(
+                delegator,
                 locators,
                 new Range(g.snapMillis(from), to),
                 g);
 
-        if (unitsFuture != null) {
-            try {
-                units = unitsFuture.get();
-                for (SearchResult searchResult : units) {
-                    Locator locator = Locator.createLocatorFromPathComponents(searchResult.getTenantId(), searchResult.getMetricName());
-                    if (metricDataMap.containsKey(locator))
-                        metricDataMap.get(locator).setUnit(searchResult.getUnit());
+        ListenableFuture<Map<Locator, MetricData>> withUnitsFuture = Futures.transformAsync(dataFuture,
+                new AsyncFunction<Map<Locator, MetricData>, Map<Locator, MetricData>>() {
+                    @Override
+                    public ListenableFuture<Map<Locator, MetricData>> apply(final Map<Locator, MetricData> metricDataMap) {
+                        return Futures.transform(units, new Function<List<SearchResult>, Map<Locator, MetricData>>() {
+                            @Override
+                            public Map<Locator, MetricData> apply(List<SearchResult> searchResults) {
+                                if (searchResults != null) {
+                                    for (SearchResult searchResult : searchResults) {
+                                        Locator locator = Locator.createLocatorFromPathComponents(searchResult.getTenantId(), searchResult.getMetricName());
+                                        if (metricDataMap.containsKey(locator))
+                                            metricDataMap.get(locator).setUnit(searchResult.getUnit());
+                                    }
+                                }
+                                c.stop();
+                                return metricDataMap;
+                            }
+                        }, MoreExecutors.directExecutor());
+                    }
+                }, MoreExecutors.directExecutor());
+
+        ListenableFuture<Map<Locator, MetricData>> repairedFuture = Futures.transformAsync(withUnitsFuture,
+                new AsyncFunction<Map<Locator, MetricData>, Map<Locator, MetricData>>() {
+                    @Override
+                    public ListenableFuture<Map<Locator, MetricData>> apply(Map<Locator, MetricData> metricDataMap) {
+                        return repairMetrics(metricDataMap, locators.size(), from, to, g);
+                    }
+                }, MoreExecutors.directExecutor());
+
+        return Futures.transform(repairedFuture, new Function<Map<Locator, MetricData>, Map<Locator, MetricData>>() {
+            @Override
+            public Map<Locator, MetricData> apply(Map<Locator, MetricData> metricDataMap) {
+                for( MetricData metricData : metricDataMap.values() ){
+
+                    // we used to track enum queries here,
+                    // but since enum is removed, this currently is
+                    // a no op, doesn't track any queries
+                    markQueryByRollupType( metricData );
                 }
-            } catch (Exception e) {
-                log.warn("Exception encountered while getting units from ES, unit will be set to unknown in query results", e);
+
+                ctx.stop();
+                return metricDataMap;
             }
-        }
+        }, MoreExecutors.directExecutor());
+    }
 
-        c.stop();
-        
-        if (locators.size() == 1) {
+    /**
+     * Repairs the rollups of the metrics read by a query. The repairs of a single metric are merged in on the
+     * thread that completes them, those of several metrics on the rollups on read executor, and the repairs of
+     * several metrics that take longer than the rollups on read timeout are left incomplete.
+     */
+    private ListenableFuture<Map<Locator, MetricData>> repairMetrics(final Map<Locator, MetricData> metricDataMap,
+                                                                     int locatorCount,
+                                                                     final long from,
+                                                                     final long to,
+                                                                     final Granularity g) {
+        if (locatorCount == 1) {
+            List<ListenableFuture<Boolean>> futures = new ArrayList<ListenableFuture<Boolean>>();
             for (final Map.Entry<Locator, MetricData> metricData : metricDataMap.entrySet()) {
-                Timer.Context context = rollupsOnReadTimers.RR_SPLOT_TIMER.timer.time();
-                repairMetrics(metricData.getKey(), metricData.getValue(), from, to, g);
-                context.stop();
+                final Timer.Context context = rollupsOnReadTimers.RR_SPLOT_TIMER.timer.time();
+                ListenableFuture<Boolean> future = repairMetrics(metricData.getKey(), metricData.getValue(), from, to, g,
+                        MoreExecutors.directExecutor());
+                future.addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        context.stop();
+                    }
+                }, MoreExecutors.directExecutor());
+                futures.add(future);
             }
-        } else if (locators.size() > 1 && Configuration.getInstance().getBooleanProperty(CoreConfig.TURN_OFF_RR_MPLOT) == false) {
-            Timer.Context context = rollupsOnReadTimers.RR_MPLOT_TIMER.timer.time();
+            return Futures.transform(Futures.allAsList(futures), Functions.constant(metricDataMap),
+                    MoreExecutors.directExecutor());
+        } else if (locatorCount > 1 && Configuration.getInstance().getBooleanProperty(CoreConfig.TURN_OFF_RR_MPLOT) == false) {
+            final Timer.Context context = rollupsOnReadTimers.RR_MPLOT_TIMER.timer.time();
             ArrayList<ListenableFuture<Boolean>> futures = new ArrayList<ListenableFuture<Boolean>>();
             for (final Map.Entry<Locator, MetricData> metricData : metricDataMap.entrySet()) {
-                futures.add(
-                        rollupsOnReadExecutor.submit(new Callable<Boolean>() {
-                            @Override
-                            public Boolean call() {
-                                return repairMetrics(metricData.getKey(), metricData.getValue(), from, to, g);
-                            }
-                        }));
-            }
-            ListenableFuture<List<Boolean>> aggregateFuture = Futures.allAsList(futures);
-            try {
-                aggregateFuture.get(rollupOnReadTimeout.getValue(), rollupOnReadTimeout.getUnit());
-            } catch (Exception e) {
-                aggregateFuture.cancel(true);
-                exceededQueryTimeout.mark();
-                log.warn("Exception encountered while doing rollups on read, incomplete rollups will be returned.", e);
+                futures.add(repairMetrics(metricData.getKey(), metricData.getValue(), from, to, g, rollupsOnReadExecutor));
             }
-            context.stop();
-        }
-
-        for( MetricData metricData : metricDataMap.values() ){
-
-            // we used to track enum queries here,
-            // but since enum is removed, this currently is
-            // a no op, doesn't track any queries
-            markQueryByRollupType( metricData );
+            ListenableFuture<List<Boolean>> aggregateFuture = Futures.withTimeout(Futures.allAsList(futures),
+                    rollupOnReadTimeout.getValue(), rollupOnReadTimeout.getUnit(), timeoutScheduler);
+            ListenableFuture<Map<Locator, MetricData>> repaired = Futures.catching(
+                    Futures.transform(aggregateFuture, Functions.constant(metricDataMap), MoreExecutors.directExecutor()),
+                    Exception.class, new Function<Exception, Map<Locator, MetricData>>() {
+                        @Override
+                        public Map<Locator, MetricData> apply(Exception e) {
+                            exceededQueryTimeout.mark();
+                            log.warn("Exception encountered while doing rollups on read, incomplete rollups will be returned.", e);
+                            return metricDataMap;
+                        }
+                    });
+            repaired.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    context.stop();
+                }
+            }, MoreExecutors.directExecutor());
+            return repaired;
         }
-
-        ctx.stop();
-        return metricDataMap;
+        return Futures.immediateFuture(metricDataMap);
     }
 
     /**
@@ -238,66 +324,80 @@ public class RollupHandler {
         }
     }
 
-    private Boolean repairMetrics (Locator locator, MetricData metricData, final long from,
-                                   final long to,
-                                   final Granularity g) {
-        Boolean retValue = false;
+    /**
+     * Fills the gaps in the rollups of a metric with rollups calculated from its full resolution points.
+     *
+     * @param executor where the calculated rollups are added to the metric data
+     * @return a future of whether repair was attempted
+     */
+    private ListenableFuture<Boolean> repairMetrics (Locator locator, final MetricData metricData, final long from,
+                                                     final long to,
+                                                     final Granularity g,
+                                                     Executor executor) {
 
         // if Granularity is FULL, we are missing raw data - can't generate that
-        if (ROLLUP_REPAIR && g != Granularity.FULL && metricData != null) {
-            if (metricData.getData().isEmpty()) { // data completely missing for range. complete repair.
-                rollupsRepairEntireRange.mark();
-                List<Points.Point> repairedPoints = repairRollupsOnRead(locator, g, from, to);
-                for (Points.Point repairedPoint : repairedPoints) {
-                    metricData.getData().add(repairedPoint);
-                }
+        if (!ROLLUP_REPAIR || g == Granularity.FULL || metricData == null) {
+            updatePointsReturned(metricData, g);
+            return Futures.immediateFuture(false);
+        }
 
-                if (repairedPoints.isEmpty()) {
-                    rollupsRepairEntireRangeEmpty.mark();
-                }
-            } else {
-                long actualStart = minTime(metricData.getData());
-                long actualEnd = maxTime(metricData.getData());
-
-                // If the returned start is greater than 'from', we are missing a portion of data.
-                if (actualStart > from) {
-                    rollupsRepairedLeft.mark();
-                    List<Points.Point> repairedLeft = repairRollupsOnRead(locator, g, from, actualStart);
-                    for (Points.Point repairedPoint : repairedLeft) {
-                        metricData.getData().add(repairedPoint);
-                    }
+        List<ListenableFuture<List<Points.Point>>> repairs = new ArrayList<ListenableFuture<List<Points.Point>>>();
+        // the meter to mark for each repair that finds no data
+        final List<Meter> emptyRepairMeters = new ArrayList<Meter>();
 
-                    if (repairedLeft.isEmpty()) {
-                        rollupsRepairedLeftEmpty.mark();
-                    }
-                }
+        if (metricData.getData().isEmpty()) { // data completely missing for range. complete repair.
+            rollupsRepairEntireRange.mark();
+            repairs.add(repairRollupsOnRead(locator, g, from, to));
+            emptyRepairMeters.add(rollupsRepairEntireRangeEmpty);
+        } else {
+            long actualStart = minTime(metricData.getData());
+            long actualEnd = maxTime(metricData.getData());
+
+            // If the returned start is greater than 'from', we are missing a portion of data.
+            if (actualStart > from) {
+                rollupsRepairedLeft.mark();
+                repairs.add(repairRollupsOnRead(locator, g, from, actualStart));
+                emptyRepairMeters.add(rollupsRepairedLeftEmpty);
+            }
 
-                // If the returned end timestamp is less than 'to', we are missing a portion of data.
-                if (actualEnd + g.milliseconds() <= to) {
-                    rollupsRepairedRight.mark();
-                    List<Points.Point> repairedRight = repairRollupsOnRead(locator, g, actualEnd + g.milliseconds(), to);
-                    for (Points.Point repairedPoint : repairedRight) {
+            // If the returned end timestamp is less than 'to', we are missing a portion of data.
+            if (actualEnd + g.milliseconds() <= to) {
+                rollupsRepairedRight.mark();
+                repairs.add(repairRollupsOnRead(locator, g, actualEnd + g.milliseconds(), to));
+                emptyRepairMeters.add(rollupsRepairedRightEmpty);
+            }
+        }
+
+        // the repairs never fail, they return the points calculated in time
+        return Futures.transform(Futures.allAsList(repairs), new Function<List<List<Points.Point>>, Boolean>() {
+            @Override
+            public Boolean apply(List<List<Points.Point>> repairedPoints) {
+                for (int i = 0; i < repairedPoints.size(); i++) {
+                    for (Points.Point repairedPoint : repairedPoints.get(i)) {
                         metricData.getData().add(repairedPoint);
                     }
 
-                    if (repairedRight.isEmpty()) {
-                        rollupsRepairedRightEmpty.mark();
+                    if (repairedPoints.get(i).isEmpty()) {
+                        emptyRepairMeters.get(i).mark();
                     }
                 }
+                updatePointsReturned(metricData, g);
+                return true;
             }
-            retValue = true;
-        }
+        }, executor);
+    }
 
+    private void updatePointsReturned(MetricData metricData, Granularity g) {
         if (g == Granularity.FULL) {
             numFullPointsReturned.update(metricData.getData().getPoints().size());
         } else {
             numRollupPointsReturned.update(metricData.getData().getPoints().size());
         }
-        return retValue;
     }
 
     /**
-     * This method gets the points from the DB and then rolls them up according to the granularity.
+     * This method gets the points of the next finer granularity from the DB and then rolls them up according to the
+     * granularity, see {@link #rollupsFromFiner}.
      *
      * Breaks up the number of ranges into buckets based on ROLLUP_ON_READ_REPAIR_SIZE_PER_THREAD and executes
      * the buckets in parallel.
@@ -307,42 +407,56 @@ public class RollupHandler {
      * @param from the starting timestamp of the range (ms)
      * @param to the ending timestamp of the range (ms)
      *
-     * @return a list of rolled-up points
+     * @return a future of the rolled-up points, which are incomplete if the rollups on read timeout passes first
      */
-    private List<Points.Point> repairRollupsOnRead(final Locator locator, Granularity g, long from, long to) {
-        Timer.Context c = timerRepairRollupsOnRead.time();
+    private ListenableFuture<List<Points.Point>> repairRollupsOnRead(final Locator locator, final Granularity g, long from, long to) {
+        final Timer.Context c = timerRepairRollupsOnRead.time();
 
-        List<Points.Point> repairedPoints = new ArrayList<Points.Point>();
         List<ListenableFuture<List<Points.Point>>> futures = new ArrayList<ListenableFuture<List<Points.Point>>>();
 
         for( final Iterable<Range> ranges : divideRangesByGroup( g, from, to ) ) {
             futures.add(
 
-                    createRepairPointsExecutor.submit( new Callable() {
+                    createRepairPointsExecutor.submit( new Callable<List<Points.Point>>() {
 
                         @Override
                         public List<Points.Point> call() throws Exception {
-                            return createRepairPoints( ranges, locator );
+                            return createRepairPoints( ranges, locator, g );
                         }
                     } ) );
         }
 
-        ListenableFuture<List<List<Points.Point>>> aggregateFuture = Futures.allAsList(futures);
-
-        try {
-            for( List<Points.Point> subList : aggregateFuture.get(rollupOnReadTimeout.getValue(), rollupOnReadTimeout.getUnit()) ) {
+        ListenableFuture<List<Points.Point>> aggregateFuture = Futures.transform(Futures.allAsList(futures),
+                new Function<List<List<Points.Point>>, List<Points.Point>>() {
+                    @Override
+                    public List<Points.Point> apply(List<List<Points.Point>> subLists) {
+                        List<Points.Point> repairedPoints = new ArrayList<Points.Point>();
+                        for( List<Points.Point> subList : subLists ) {
 
-                repairedPoints.addAll( subList );
+                            repairedPoints.addAll( subList );
+                        }
+                        return repairedPoints;
+                    }
+                }, MoreExecutors.directExecutor());
+
+        ListenableFuture<List<Points.Point>> repairedFuture = Futures.catching(
+                Futures.withTimeout(aggregateFuture, rollupOnReadTimeout.getValue(), rollupOnReadTimeout.getUnit(), timeoutScheduler),
+                Exception.class, new Function<Exception, List<Points.Point>>() {
+                    @Override
+                    public List<Points.Point> apply(Exception e) {
+                        exceededQueryTimeout.mark();
+                        log.warn("Exception encountered while doing rollups on read, incomplete rollups will be returned.", e);
+                        return new ArrayList<Points.Point>();
+                    }
+                });
+        repairedFuture.addListener(new Runnable() {
+            @Override
+            public void run() {
+                c.stop();
             }
-        } catch (Exception e) {
-            aggregateFuture.cancel(true);
-            exceededQueryTimeout.mark();
-            log.warn("Exception encountered while doing rollups on read, incomplete rollups will be returned.", e);
-        }
+        }, MoreExecutors.directExecutor());
 
-        c.stop();
-
-        return repairedPoints;
+        return repairedFuture;
     }
 
     /**
@@ -375,37 +489,149 @@ public class RollupHandler {
      *
      * @param ranges list of ranges, each range is a single point
      * @param locator metric key within the DB
+     * @param g the granularity of the ranges
      *
      * @return list of points, one for each range
      */
-    private List<Points.Point> createRepairPoints( Iterable<Range> ranges, Locator locator ) {
+    private List<Points.Point> createRepairPoints( Iterable<Range> ranges, Locator locator, Granularity g ) {
 
         List<Points.Point> repairedPoints = new ArrayList<Points.Point>();
+        List<Range> rangeList = Lists.newArrayList( ranges );
+        if ( rangeList.isEmpty() ) {
+            return repairedPoints;
+        }
 
-        for ( Range r : ranges ) {
-            try {
+        try {
+            MetricsRWDelegator delegator = new MetricsRWDelegator();
+            SortedMap<Long, Rollup> rollups = rollupsFromFiner( delegator, locator, g, rangeList );
+
+            for ( Map.Entry<Long, Rollup> rollup : rollups.entrySet() ) {
+                repairedPoints.add( new Points.Point( rollup.getKey(), rollup.getValue() ) );
+            }
+
+            if ( ROLLUP_REPAIR_WRITE_BACK && !rollups.isEmpty() ) {
+                writeBack( delegator, locator, g, rollups );
+            }
+
+        } catch ( GranularityException ex ) {
+            log.error( "Exception computing rollups during read: ", ex );
+        }
+
+        return repairedPoints;
+    }
+
+    /**
+     * Rolls up the ranges of a granularity from the points of the next finer granularity, e.g. 1440m ranges from
+     * 240m points. The finer points that are missing too are rolled up the same way from the granularity finer still,
+     * so the full resolution points are only read for the 5m windows missing at every level.
+     *
+     * A run of ranges whose points cannot be read, or a range that cannot be rolled up, is logged and left out
+     * without failing the other ranges.
+     *
+     * @param delegator
+     * @param locator metric key within the DB
+     * @param g the granularity of the ranges, coarser than full resolution
+     * @param ranges the ranges to roll up, in order, each one window of the granularity
+     *
+     * @return the rollups of the ranges that have data, by the start of their range
+     */
+    @VisibleForTesting
+    static SortedMap<Long, Rollup> rollupsFromFiner( MetricsRWDelegator delegator, Locator locator, Granularity g,
+                                                     List<Range> ranges ) throws GranularityException {
+        Granularity finer = g.finer();
+
+        // read the finer points once for each run of adjacent ranges
+        TreeMap<Long, Points.Point> finerPoints = new TreeMap<Long, Points.Point>();
+        List<Range> readRanges = new ArrayList<Range>();
+        int runStart = 0;
+        for ( int i = 1; i <= ranges.size(); i++ ) {
+            if ( i == ranges.size() || ranges.get( i ).getStart() != ranges.get( i - 1 ).getStop() + 1 ) {
+                Range run = new Range( ranges.get( runStart ).getStart(), ranges.get( i - 1 ).getStop() );
                 Timer.Context cRead = timerCassandraReadRollupOnRead.time();
-                MetricsRWDelegator delegator = new MetricsRWDelegator();
-                MetricData data = delegator.getDatapointsForRange(locator, r, Granularity.FULL);
-                cRead.stop();
+                try {
+                    MetricData data = delegator.getDatapointsForRange( locator, run, finer );
+                    if ( data != null ) {
+                        finerPoints.putAll( data.getData().getPoints() );
+                    }
+                    readRanges.addAll( ranges.subList( runStart, i ) );
+                } catch ( RuntimeException ex ) {
+                    log.error( String.format( "Exception reading %s points of %s for rollups during read: ",
+                            finer, run ), ex );
+                } finally {
+                    cRead.stop();
+                }
+                runStart = i;
+            }
+        }
 
-                Points dataToRoll = data.getData();
-                if ( dataToRoll.isEmpty() ) {
-                    continue;
+        if ( finer != Granularity.FULL ) {
+            List<Range> missing = new ArrayList<Range>();
+            for ( Range r : readRanges ) {
+                for ( Range finerRange : Range.rangesForInterval( finer, r.getStart(), r.getStop() ) ) {
+                    if ( !finerPoints.containsKey( finerRange.getStart() ) ) {
+                        missing.add( finerRange );
+                    }
                 }
+            }
+
+            if ( !missing.isEmpty() ) {
+                rollupsRepairedFromFiner.mark( missing.size() );
+                for ( Map.Entry<Long, Rollup> repaired : rollupsFromFiner( delegator, locator, finer, missing ).entrySet() ) {
+                    finerPoints.put( repaired.getKey(), new Points.Point( repaired.getKey(), repaired.getValue() ) );
+                }
+            }
+        }
 
+        SortedMap<Long, Rollup> rollups = new TreeMap<Long, Rollup>();
+        for ( Range r : readRanges ) {
+            Points dataToRoll = new Points();
+            for ( Points.Point point : finerPoints.subMap( r.getStart(), true, r.getStop(), true ).values() ) {
+                dataToRoll.add( point );
+            }
+            if ( dataToRoll.isEmpty() ) {
+                continue;
+            }
+
+            try {
                 Rollup rollup = RollupHandler.rollupFromPoints( dataToRoll );
 
                 if ( rollup.hasData() ) {
-                    repairedPoints.add( new Points.Point( r.getStart(), rollup ) );
+                    rollups.put( r.getStart(), rollup );
                 }
-
             } catch ( IOException ex ) {
                 log.error( "Exception computing rollups during read: ", ex );
             }
         }
+        return rollups;
+    }
 
-        return repairedPoints;
+    /**
+     * Writes rollups calculated on read of windows that should have been rolled up by now, so later queries read
+     * them. The rollups of more recent windows may still change, and are left to the rollup service.
+     */
+    private void writeBack( final MetricsRWDelegator delegator, Locator locator, Granularity g,
+                            SortedMap<Long, Rollup> rollups ) {
+        long closedBefore = System.currentTimeMillis() - ROLLUP_DELAY_MILLIS - g.milliseconds();
+        final List<SingleRollupWriteContext> writeContexts = new ArrayList<SingleRollupWriteContext>();
+        for ( Map.Entry<Long, Rollup> rollup : rollups.headMap( closedBefore ).entrySet() ) {
+            writeContexts.add( new SingleRollupWriteContext( rollup.getValue(), locator, g,
+                    CassandraModel.getColumnFamily( rollup.getValue().getRollupType(), g ), rollup.getKey() ) );
+        }
+        if ( writeContexts.isEmpty() ) {
+            return;
+        }
+
+        writeBackExecutor.execute( new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    delegator.insertRollups( writeContexts );
+                    rollupsWrittenBack.mark( writeContexts.size() );
+                } catch ( Exception ex ) {
+                    log.warn( "Unable to write back rollups calculated on read", ex );
+                }
+            }
+        } );
     }
 
     private static long minTime(Points<?> points) {
@@ -427,6 +653,8 @@ public class RollupHandler {
         Class rollupTypeClass = points.getDataClass();
         if (rollupTypeClass.equals(SimpleNumber.class)) {
             return Rollup.BasicFromRaw.compute(points);
+        } else if (rollupTypeClass.equals(BasicRollup.class)) {
+            return Rollup.BasicFromBasic.compute(points);
         } else if (rollupTypeClass.equals(BluefloodCounterRollup.class)) {
             return Rollup.CounterFromCounter.compute(points);
         } else if (rollupTypeClass.equals(BluefloodSetRollup.class)) {
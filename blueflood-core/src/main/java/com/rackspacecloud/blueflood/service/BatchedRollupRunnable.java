@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.service;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.rackspacecloud.blueflood.eventemitter.RollupEvent;
+import com.rackspacecloud.blueflood.eventemitter.RollupEventEmitter;
+import com.rackspacecloud.blueflood.exceptions.GranularityException;
+import com.rackspacecloud.blueflood.io.CassandraModel;
+import com.rackspacecloud.blueflood.io.CassandraModel.MetricColumnFamily;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.types.*;
+import com.rackspacecloud.blueflood.utils.Metrics;
+import com.rackspacecloud.blueflood.utils.RollupUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Rolls up a batch of locators of the same slot in one task. The locators are grouped by rollup type, the points of
+ * each group are read with a single multi-locator read and all the resulting rollups are handed to the
+ * {@link RollupBatchWriter} together.
+ *
+ * Counts as one read in the {@link RollupExecutionContext}, however many locators it holds.
+ */
+public class BatchedRollupRunnable implements Runnable {
+    private static final Logger LOG = LoggerFactory.getLogger(BatchedRollupRunnable.class);
+
+    private static final Timer calcTimer = Metrics.timer(BatchedRollupRunnable.class, "Read And Calculate Rollup Batch");
+    private static final Histogram locatorsPerBatch = Metrics.histogram(BatchedRollupRunnable.class, "Locators Per Batch");
+
+    private final RollupExecutionContext executionContext;
+    private final List<SingleRollupReadContext> readContexts;
+    private final Range range;
+    private final Granularity rollupGranularity;
+    private final RollupBatchWriter rollupBatchWriter;
+    private final long startWait;
+
+    /**
+     * @param rollupGranularity the DESTINATION granularity
+     */
+    public BatchedRollupRunnable(RollupExecutionContext executionContext,
+                                 Collection<Locator> locators,
+                                 Range range,
+                                 Granularity rollupGranularity,
+                                 RollupBatchWriter rollupBatchWriter) {
+        this.executionContext = executionContext;
+        this.range = range;
+        this.rollupGranularity = rollupGranularity;
+        this.rollupBatchWriter = rollupBatchWriter;
+        this.readContexts = new ArrayList<SingleRollupReadContext>(locators.size());
+        for (Locator locator : locators) {
+            readContexts.add(new SingleRollupReadContext(locator, range, rollupGranularity));
+        }
+        startWait = System.currentTimeMillis();
+    }
+
+    public void run() {
+        if (readContexts.isEmpty()) {
+            executionContext.decrementReadCounter();
+            return;
+        }
+        // done waiting.
+        readContexts.get(0).getWaitHist().update(System.currentTimeMillis() - startWait);
+
+        Granularity srcGran;
+        try {
+            srcGran = rollupGranularity.finer();
+        } catch (GranularityException ex) {
+            executionContext.decrementReadCounter();
+            return; // no work to be done.
+        }
+
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Executing rollup from {} for {} on {} locators", new Object[]{
+                    srcGran.shortName(), range.toString(), readContexts.size()});
+        }
+
+        Timer.Context timerContext = calcTimer.time();
+        try {
+            locatorsPerBatch.update(readContexts.size());
+            RollupRunnable.granToMeters.get(rollupGranularity).mark(readContexts.size());
+
+            List<SingleRollupWriteContext> writeContexts = new ArrayList<SingleRollupWriteContext>(readContexts.size());
+            for (Map.Entry<RollupType, List<SingleRollupReadContext>> group : groupByRollupType().entrySet()) {
+                computeRollups(group.getKey(), group.getValue(), srcGran, writeContexts);
+            }
+
+            // now enqueue the new rollups for writing.
+            rollupBatchWriter.enqueueRollupsForWrite(writeContexts);
+
+            if (!writeContexts.isEmpty()) {
+                RollupService.lastRollupTime.set(System.currentTimeMillis());
+            }
+        } catch (Exception e) {
+            LOG.error(String.format("Rollup failed; %d locators, Source Granularity: %s, For period: %s",
+                    readContexts.size(), srcGran.name(), range.toString()), e);
+        } finally {
+            executionContext.decrementReadCounter();
+            timerContext.stop();
+        }
+    }
+
+    private Map<RollupType, List<SingleRollupReadContext>> groupByRollupType() {
+        Map<RollupType, List<SingleRollupReadContext>> groups =
+                new EnumMap<RollupType, List<SingleRollupReadContext>>(RollupType.class);
+        for (SingleRollupReadContext readContext : readContexts) {
+            RollupType rollupType;
+            try {
+                rollupType = RollupType.fromString((String) RollupRunnable.rollupTypeCache.get(
+                        readContext.getLocator(), MetricMetadata.ROLLUP_TYPE.name().toLowerCase()));
+            } catch (Exception e) {
+                LOG.error("Unable to look up rollup type; Locator: " + readContext.getLocator(), e);
+                continue;
+            }
+
+            List<SingleRollupReadContext> group = groups.get(rollupType);
+            if (group == null) {
+                group = new ArrayList<SingleRollupReadContext>();
+                groups.put(rollupType, group);
+            }
+            group.add(readContext);
+        }
+        return groups;
+    }
+
+    /**
+     * Reads the points of a group of locators of the same rollup type and adds the rollups computed from them to
+     * {@code writeContexts}. A failed read loses the whole group, a failed computation only its locator.
+     */
+    private void computeRollups(RollupType rollupType, List<SingleRollupReadContext> group, Granularity srcGran,
+                                List<SingleRollupWriteContext> writeContexts) {
+        // see RollupRunnable for the rollup classes and column families of each rollup type.
+        Class<? extends Rollup> rollupClass = RollupType.classOf(rollupType, rollupGranularity);
+        MetricColumnFamily srcCF = CassandraModel.getColumnFamily(rollupClass, srcGran);
+        MetricColumnFamily dstCF = CassandraModel.getColumnFamily(rollupClass, rollupGranularity);
+
+        List<Locator> locators = new ArrayList<Locator>(group.size());
+        for (SingleRollupReadContext readContext : group) {
+            locators.add(readContext.getLocator());
+        }
+
+        Map<Locator, Points<Rollup>> input;
+        try {
+            input = RollupUtils.getMetricsRWForRollupType(rollupType)
+                    .getDataToRollup(locators, rollupType, range, srcCF.getName());
+        } catch (Exception e) {
+            LOG.error(String.format("Rollup failed; %d %s locators, Source Granularity: %s, For period: %s",
+                    locators.size(), rollupType, srcGran.name(), range.toString()), e);
+            return;
+        }
+
+        Rollup.Type rollupComputer = RollupRunnable.getRollupComputer(rollupType, srcGran);
+        for (SingleRollupReadContext readContext : group) {
+            Locator locator = readContext.getLocator();
+            Points points = input.get(locator);
+            if (points == null || points.isEmpty()) {
+                LOG.debug(String.format("No points rollup for locator %s", locator));
+                RollupRunnable.noPointsToCalculateRollup.mark();
+                continue;
+            }
+
+            try {
+                Rollup rollup = rollupComputer.compute(points);
+                writeContexts.add(new SingleRollupWriteContext(rollup, readContext, dstCF));
+
+                //Emit a rollup event to event emitter
+                RollupEventEmitter.getInstance().emit(RollupEventEmitter.ROLLUP_EVENT_NAME,
+                        new RollupEvent(locator, rollup,
+                                RollupRunnable.metadataCache.getUnitString(locator),
+                                rollupGranularity.name(),
+                                range.getStart()));
+            } catch (Exception e) {
+                LOG.error("Rollup failed; Locator: {}, Source Granularity: {}, For period: {}", new Object[]{
+                        locator, srcGran.name(), range.toString(), e});
+            }
+        }
+    }
+}
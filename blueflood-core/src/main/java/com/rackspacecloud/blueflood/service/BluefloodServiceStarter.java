@@ -19,7 +19,10 @@ package com.rackspacecloud.blueflood.service;
 import com.codahale.metrics.MetricRegistry;
 import com.rackspacecloud.blueflood.io.IOContainer;
 import com.rackspacecloud.blueflood.io.ShardStateIO;
+import com.rackspacecloud.blueflood.cache.GuavaLocatorCache;
+import com.rackspacecloud.blueflood.cache.LocatorCache;
 import com.rackspacecloud.blueflood.cache.MetadataCache;
+import com.rackspacecloud.blueflood.cache.TokenCache;
 import com.rackspacecloud.blueflood.utils.Metrics;
 import com.rackspacecloud.blueflood.utils.RestartGauge;
 import com.rackspacecloud.blueflood.utils.Util;
@@ -27,12 +30,16 @@ import org.apache.log4j.PropertyConfigurator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
@@ -239,6 +246,119 @@ public class BluefloodServiceStarter {
         }
     }
 
+    private interface CacheFile {
+        void load(DataInputStream in) throws IOException;
+        void save(DataOutputStream out) throws IOException;
+    }
+
+    private static void loadCache(File file, CacheFile cache) {
+        if (!file.exists()) {
+            log.info("Wanted to load cache, but it did not exist: " + file);
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            cache.load(in);
+        } catch (IOException ex) {
+            log.error("Unable to load cache " + file, ex);
+        } catch (RuntimeException ex) {
+            // a corrupt snapshot only means starting with a cold cache, never failing to start
+            log.error("Unable to load cache " + file + ", starting without it", ex);
+        }
+    }
+
+    private static void saveCache(File file, CacheFile cache) {
+        // write next to the file and rename it, so that a node stopped while saving still has the previous snapshot
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp, false)))) {
+                cache.save(out);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            log.error("Unable to save cache " + file, ex);
+        }
+    }
+
+    private static void startLocatorCachePersistence() {
+        Configuration config = Configuration.getInstance();
+        if (!config.getBooleanProperty(CoreConfig.LOCATOR_CACHE_PERSISTENCE_ENABLED)) {
+            return;
+        }
+        final File locatorCacheFile = new File(config.getStringProperty(CoreConfig.LOCATOR_CACHE_PERSISTENCE_PATH));
+        final File tokenCacheFile = new File(config.getStringProperty(CoreConfig.TOKEN_CACHE_PERSISTENCE_PATH));
+        // only the Guava engine keeps the locators themselves; the bloom filters have nothing to save, and loading a
+        // snapshot into them would keep its locators for a whole TTL
+        final GuavaLocatorCache guavaLocatorCache;
+        if (LocatorCache.getInstance() instanceof GuavaLocatorCache) {
+            guavaLocatorCache = (GuavaLocatorCache) LocatorCache.getInstance();
+        } else {
+            guavaLocatorCache = null;
+            log.warn("The {} locator cache engine cannot be saved across restarts, only the token cache is. {} is left " +
+                    "as it is.", config.getStringProperty(CoreConfig.LOCATOR_CACHE_ENGINE), locatorCacheFile);
+        }
+        final CacheFile locatorCache = new CacheFile() {
+            @Override
+            public void load(DataInputStream in) throws IOException {
+                guavaLocatorCache.load(in);
+            }
+
+            @Override
+            public void save(DataOutputStream out) throws IOException {
+                guavaLocatorCache.save(out);
+            }
+        };
+        final CacheFile tokenCache = new CacheFile() {
+            @Override
+            public void load(DataInputStream in) throws IOException {
+                TokenCache.getInstance().load(in);
+            }
+
+            @Override
+            public void save(DataOutputStream out) throws IOException {
+                TokenCache.getInstance().save(out);
+            }
+        };
+
+        if (guavaLocatorCache != null) {
+            loadCache(locatorCacheFile, locatorCache);
+        }
+        loadCache(tokenCacheFile, tokenCache);
+        log.info("Loaded {} locators and {} tokens", LocatorCache.getInstance().getCurrentLocatorCount(),
+                TokenCache.getInstance().getCurrentLocatorCount());
+
+        // the timer and the shutdown hook write the same temporary files, so only one of them saves at a time
+        final Object saveLock = new Object();
+        final Runnable save = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (saveLock) {
+                    if (guavaLocatorCache != null) {
+                        saveCache(locatorCacheFile, locatorCache);
+                    }
+                    saveCache(tokenCacheFile, tokenCache);
+                }
+            }
+        };
+        final Timer cachePersistenceTimer = new Timer("Locator-Cache-Persistence", true);
+        long savePeriodMillis = TimeUnit.MINUTES.toMillis(
+                config.getIntegerProperty(CoreConfig.LOCATOR_CACHE_PERSISTENCE_PERIOD_MINS));
+        cachePersistenceTimer.schedule(new TimerTask() {
+                    @Override
+                    public void run() {
+                        save.run();
+                    }
+                },
+                savePeriodMillis,
+                savePeriodMillis);
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                cachePersistenceTimer.cancel();
+                save.run();
+            }
+        }, "Locator-Cache-Persistence-Shutdown"));
+    }
+
     public static void main(String args[]) {
         try {
             run();
@@ -294,6 +414,9 @@ public class BluefloodServiceStarter {
                     TimeUnit.MINUTES.toMillis(savePeriodMins));
         }
 
+        // possibly load the locator and token caches, so a restarted node does not write every locator again
+        startLocatorCachePersistence();
+
         // has the side-effect of causing static initialization of Metrics, starting instrumentation reporting.
         new RestartGauge(getRegistry(), RollupService.class);
 
@@ -135,6 +135,11 @@ public enum CoreConfig implements ConfigDefaults {
     SHARD_PUSH_PERIOD("2000"),
     SHARD_PULL_PERIOD("20000"),
 
+    // slot states read by the shard puller are only applied if they were written after the latest write time seen in
+    // their shard, less this margin, which allows for clock skew between the nodes writing them, or if they differ
+    // from the slot state in memory. Set to a negative value to apply every slot state on every pull.
+    SHARD_PULL_WRITE_TIME_MARGIN_MS("60000"),
+
     // blueflood uses zookeeper to acquire locks before working on shards
     ZOOKEEPER_CLUSTER("NONE"),
 
@@ -169,6 +174,20 @@ public enum CoreConfig implements ConfigDefaults {
 
     METRIC_BATCH_SIZE("100"),
 
+    // Acknowledge ingested metrics once they are appended to a local commit log in INGEST_COMMIT_LOG_DIR, rather than
+    // once they are written to Cassandra. A background thread writes the log to Cassandra, retrying failed writes
+    // every INGEST_COMMIT_LOG_RETRY_MS, and writes whatever is left in the log after a restart. The log is kept in
+    // segment files of INGEST_COMMIT_LOG_SEGMENT_SIZE bytes; once INGEST_COMMIT_LOG_MAX_SEGMENTS of them wait to be
+    // written, metrics are written to Cassandra directly again.
+    ENABLE_INGEST_COMMIT_LOG("false"),
+    INGEST_COMMIT_LOG_DIR("/var/lib/blueflood/commitlog"),
+    INGEST_COMMIT_LOG_SEGMENT_SIZE("33554432"),
+    INGEST_COMMIT_LOG_MAX_SEGMENTS("64"),
+    INGEST_COMMIT_LOG_RETRY_MS("1000"),
+    // How often the commit log is forced to disk. With 0 it is forced before each ingest request is acknowledged;
+    // otherwise acknowledged metrics survive the process dying, but not the host, within this period.
+    INGEST_COMMIT_LOG_SYNC_PERIOD_MS("1000"),
+
     // The locator cache is a local, in-memory cache that keeps track of locators that have been inserted into Cassandra
     // and Elasticsearch for various tracking purposes, like marking a delayed locator dirty for rollup or indexing a
     // locator and tokens for later querying. The cache is used to avoid unnecessary writes to these remote systems.
@@ -188,11 +207,41 @@ public enum CoreConfig implements ConfigDefaults {
     // here, so a single locator could account for multiple entries in this portion of the cache.
     LOCATOR_CACHE_DELAYED_TTL_SECONDS("30"),
 
+    // The locator cache keeps the locators themselves (GUAVA), or only a few bits per locator in Bloom filters (BLOOM)
+    // for nodes that see too many locators to keep in memory. With BLOOM, entries expire a TTL after they were set
+    // rather than after they were last checked, and a locator that was never written is taken as current at
+    // LOCATOR_CACHE_BLOOM_FALSE_POSITIVE_RATE, which delays writing it by up to a TTL. The filters are sized for
+    // LOCATOR_CACHE_BLOOM_EXPECTED_ENTRIES locators per TTL, counting a locator once for each layer (batch, discovery)
+    // it is written to, and use about 3 bytes per entry and generation at the default false positive rate. The TTL is
+    // spread over LOCATOR_CACHE_BLOOM_GENERATIONS filters, replaced one at a time.
+    LOCATOR_CACHE_ENGINE("GUAVA"),
+    LOCATOR_CACHE_BLOOM_EXPECTED_ENTRIES("10000000"),
+    LOCATOR_CACHE_BLOOM_EXPECTED_DELAYED_ENTRIES("1000000"),
+    LOCATOR_CACHE_BLOOM_FALSE_POSITIVE_RATE("0.0001"),
+    LOCATOR_CACHE_BLOOM_GENERATIONS("4"),
+
     // The token cache is similar in use to the locator cache, described previously. When
     // ENABLE_TOKEN_SEARCH_IMPROVEMENTS is turned on, both the locator cache and the token cache are used to avoid
     // unnecessary writes to Elasticsearch. The token cache specifically caches the non-leaf tokens of a locator.
     TOKEN_CACHE_TTL_MINUTES("60"),
 
+    // Saves the locator and token caches to local files every LOCATOR_CACHE_PERSISTENCE_PERIOD_MINS and on shutdown,
+    // and loads them at startup. Without this, a restarted ingest node writes every locator it sees to Cassandra and
+    // Elasticsearch again. Loaded entries are only current for the rest of the TTL they had when saved. With the BLOOM
+    // LOCATOR_CACHE_ENGINE only the token cache is saved.
+    LOCATOR_CACHE_PERSISTENCE_ENABLED("false"),
+    LOCATOR_CACHE_PERSISTENCE_PATH("/var/lib/blueflood/locator-cache"),
+    TOKEN_CACHE_PERSISTENCE_PATH("/var/lib/blueflood/token-cache"),
+    LOCATOR_CACHE_PERSISTENCE_PERIOD_MINS("5"),
+
+    // The rollup read cache keeps the rolled up points (5m and coarser) of closed days that were read by queries, so
+    // that dashboards re-querying the same windows only read the days not cached from Cassandra. Rollups and rerolls
+    // on this node drop the days they change from the cache; ROLLUP_READ_CACHE_TTL_SECONDS bounds how long a reroll
+    // on another node can go unnoticed. ROLLUP_READ_CACHE_MAX_BYTES is an estimate of the heap the cache may use.
+    ROLLUP_READ_CACHE_ENABLED("false"),
+    ROLLUP_READ_CACHE_MAX_BYTES("134217728"),
+    ROLLUP_READ_CACHE_TTL_SECONDS("600"),
+
     CASSANDRA_REQUEST_TIMEOUT("10000"),
     // set <= 0 to not retry
     CASSANDRA_MAX_RETRIES("5"),
@@ -204,6 +253,15 @@ public enum CoreConfig implements ConfigDefaults {
     ROLLUP_BATCH_MIN_SIZE("5"),
     ROLLUP_BATCH_MAX_SIZE("100"),
 
+    // Read and compute the rollups of a slot ROLLUP_READ_BATCH_SIZE locators at a time, with one read executor task
+    // per batch, instead of one task per locator.
+    ENABLE_BATCHED_ROLLUP_READS("false"),
+    ROLLUP_READ_BATCH_SIZE("100"),
+
+    // Number of locators read from metrics_locator per page when scanning a shard for rollups. Rollups are handed
+    // out as the pages come in, so at most about this many locators are held in memory at a time.
+    LOCATOR_SCAN_FETCH_SIZE("5000"),
+
     // Assume, for calculating granularity for GetByPoints queries, that data is sent at this interval.
     GET_BY_POINTS_ASSUME_INTERVAL("30000"),
 
@@ -239,6 +297,9 @@ public enum CoreConfig implements ConfigDefaults {
     ROLLUP_ON_READ_REPAIR_THREADS("250"),
     ROLLUP_ON_READ_REPAIR_SIZE_PER_THREAD( "5" ),
     ROLLUP_ON_READ_TIMEOUT_IN_SECONDS("10"),
+    // Whether rollups calculated on read are written to Cassandra, so that later queries read them instead of
+    // calculating them again. Only rollups of windows older than ROLLUP_DELAY_MILLIS are written.
+    ROLLUP_ON_READ_REPAIR_WRITE_BACK("false"),
 
     // 3 days - this matches the TTL for our metrics_full table, we don't accept anything older than the TTL.
     BEFORE_CURRENT_COLLECTIONTIME_MS("259200000"),
@@ -251,7 +312,21 @@ public enum CoreConfig implements ConfigDefaults {
     //Count raw metrics ingested per tenant
     ENABLE_PER_TENANT_METRICS("false"),
 
+    // Keep a mergeable quantile sketch with each timer, built from the percentiles it is ingested with, so that the
+    // percentiles of timer rollups are computed from the sketch rather than averaged. Timers with a sketch are
+    // serialized in a newer format that older versions cannot read.
+    ENABLE_TIMER_QUANTILE_SKETCH("false"),
+
+    // Promote set rollups with more than SET_ROLLUP_HLL_THRESHOLD distinct values to a fixed size HyperLogLog, which
+    // only estimates their count. Promoted sets are serialized in a newer format that older versions cannot read.
+    ENABLE_SET_ROLLUP_HLL("false"),
+    SET_ROLLUP_HLL_THRESHOLD("1000"),
+
     ENABLE_DTX_INGEST_BATCH("false"),
+    // With ENABLE_DTX_INGEST_BATCH, split each ingest batch into one batch per partition, sent in parallel
+    ENABLE_DTX_INGEST_BATCH_BY_PARTITION("false"),
+    // Maximum number of partition batches in flight at a time, per metrics writer
+    DTX_INGEST_BATCH_MAX_IN_FLIGHT("64"),
 
     // Cross-Origin Resource Sharing
     CORS_ENABLED("false"),
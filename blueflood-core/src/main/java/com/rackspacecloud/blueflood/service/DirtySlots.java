@@ -0,0 +1,166 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.service;
+
+import com.rackspacecloud.blueflood.rollup.Granularity;
+
+import java.util.Arrays;
+
+/**
+ * Collects the slots made dirty by a batch of metrics so they can be handed to
+ * {@link IngestionContext#update(DirtySlots)} in one go. Every metric dirties one slot per rollup granularity, but
+ * the metrics of a batch share only a handful of (shard, granularity, slot) tuples; each tuple is kept once, along
+ * with the latest collection time seen for it.
+ *
+ * Not thread safe; meant to be filled and applied by the thread writing the batch.
+ */
+public class DirtySlots {
+
+    private static final Granularity[] GRANULARITIES = Granularity.rollupGranularities();
+
+    // a tuple is packed into an int as | shard (7 bits) | granularity index (3 bits) | slot (12 bits) |
+    private static final int SLOT_BITS = 12;
+    private static final int GRANULARITY_BITS = 3;
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+    private static final int GRANULARITY_MASK = (1 << GRANULARITY_BITS) - 1;
+
+    // open addressed table of (entry index + 1), 0 meaning empty
+    private int[] table;
+    // the distinct tuples, in the order they were first seen
+    private int[] keys;
+    private long[] millis;
+    private int size = 0;
+    private int updates = 0;
+
+    public DirtySlots() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSlots the number of distinct slots expected, to size the internal tables
+     */
+    public DirtySlots(int expectedSlots) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSlots, 4) - 1) << 2;
+        table = new int[capacity];
+        keys = new int[capacity / 2];
+        millis = new long[capacity / 2];
+    }
+
+    /**
+     * Marks the slots of every rollup granularity that contain {@code collectionTime} dirty.
+     *
+     * @param collectionTime collection time of the metric.
+     * @param shard shard of the metric. value within [0, 128).
+     */
+    public void add(long collectionTime, int shard) {
+        for (int i = 0; i < GRANULARITIES.length; i++) {
+            int slot = GRANULARITIES[i].slot(collectionTime);
+            put((((shard << GRANULARITY_BITS) | i) << SLOT_BITS) | slot, collectionTime);
+        }
+        updates += GRANULARITIES.length;
+    }
+
+    /**
+     * @return the number of distinct (shard, granularity, slot) tuples.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of slot updates that were coalesced into {@link #size()} tuples, that is the number of
+     * metrics added times the number of rollup granularities.
+     */
+    public int getUpdateCount() {
+        return updates;
+    }
+
+    public int getShard(int index) {
+        return keys[checkIndex(index)] >>> (GRANULARITY_BITS + SLOT_BITS);
+    }
+
+    public Granularity getGranularity(int index) {
+        return GRANULARITIES[(keys[checkIndex(index)] >>> SLOT_BITS) & GRANULARITY_MASK];
+    }
+
+    public int getSlot(int index) {
+        return keys[checkIndex(index)] & SLOT_MASK;
+    }
+
+    /**
+     * @return the latest collection time that fell in the slot.
+     */
+    public long getMillis(int index) {
+        return millis[checkIndex(index)];
+    }
+
+    private void put(int key, long collectionTime) {
+        int mask = table.length - 1;
+        int pos = mix(key) & mask;
+        int entry;
+        while ((entry = table[pos]) != 0) {
+            if (keys[entry - 1] == key) {
+                if (collectionTime > millis[entry - 1]) {
+                    millis[entry - 1] = collectionTime;
+                }
+                return;
+            }
+            pos = (pos + 1) & mask;
+        }
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            millis = Arrays.copyOf(millis, size * 2);
+        }
+        keys[size] = key;
+        millis[size] = collectionTime;
+        size++;
+        table[pos] = size;
+
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < size; i++) {
+            int pos = mix(keys[i]) & mask;
+            while (table[pos] != 0) {
+                pos = (pos + 1) & mask;
+            }
+            table[pos] = i + 1;
+        }
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return index;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -25,4 +25,13 @@ public interface IngestionContext {
      * @param shard shard to be updated. value within [0, 128).
      */
     public void update(long millis, int shard);
+
+    /**
+     * Marks every slot collected for a batch of metrics dirty. Equivalent to
+     * calling {@link #update(long, int)} for each metric of the batch, but each
+     * distinct slot is only updated once.
+     *
+     * @param dirtySlots the slots to be updated.
+     */
+    public void update(DirtySlots dirtySlots);
 }
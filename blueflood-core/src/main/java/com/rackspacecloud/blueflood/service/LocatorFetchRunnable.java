@@ -19,6 +19,9 @@ package com.rackspacecloud.blueflood.service;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.rackspacecloud.blueflood.io.IOContainer;
 import com.rackspacecloud.blueflood.rollup.Granularity;
 import com.rackspacecloud.blueflood.rollup.SlotKey;
@@ -28,18 +31,21 @@ import com.rackspacecloud.blueflood.utils.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * fetches locators for a given slot and feeds a worker queue with rollup work. When those are all done notifies the
- * RollupService that slot can be removed from running.
+ * RollupService that slot can be removed from running. The notification comes from the thread that finishes the last
+ * rollup, this runnable returns as soon as the work is handed out.
   */
 public class LocatorFetchRunnable implements Runnable {
     private static final Logger log = LoggerFactory.getLogger(LocatorFetchRunnable.class);
-    private static final int LOCATOR_WAIT_FOR_ALL_SECS = 1000;
     
     private ExecutorService rollupReadExecutor;
     private ThreadPoolExecutor rollupWriteExecutor;
@@ -53,6 +59,15 @@ public class LocatorFetchRunnable implements Runnable {
     private static boolean RECORD_DELAYED_METRICS =
             Configuration.getInstance().getBooleanProperty(CoreConfig.RECORD_DELAYED_METRICS);
 
+    private static boolean ENABLE_BATCHED_ROLLUP_READS =
+            Configuration.getInstance().getBooleanProperty(CoreConfig.ENABLE_BATCHED_ROLLUP_READS);
+
+    private static int ROLLUP_READ_BATCH_SIZE =
+            Configuration.getInstance().getIntegerProperty(CoreConfig.ROLLUP_READ_BATCH_SIZE);
+
+    private static int LOCATOR_SCAN_FETCH_SIZE =
+            Configuration.getInstance().getIntegerProperty(CoreConfig.LOCATOR_SCAN_FETCH_SIZE);
+
     private static Granularity DELAYED_METRICS_STORAGE_GRANULARITY =
             Granularity.getRollupGranularity(Configuration.getInstance().getStringProperty(CoreConfig.DELAYED_METRICS_STORAGE_GRANULARITY));
 
@@ -101,7 +116,6 @@ public class LocatorFetchRunnable implements Runnable {
 
         if (log.isTraceEnabled())
             log.trace("Getting locators for {} {} @ {}", new Object[]{parentSlotKey, parentRange.toString(), scheduleCtx.getCurrentTimeMillis()});
-        // todo: I can see this set becoming a memory hog.  There might be a better way of doing this.
         long waitStart = System.currentTimeMillis();
         int rollCount = 0;
 
@@ -110,19 +124,23 @@ public class LocatorFetchRunnable implements Runnable {
 
         boolean isReroll = scheduleCtx.isReroll(parentSlotKey);
 
-        Set<Locator> locators = getLocators(executionContext, isReroll,
+        // the locators of a shard are read a page at a time; rollups are handed out as they come in.
+        Iterable<Locator> locators = getLocators(executionContext, isReroll,
                 DELAYED_METRICS_REROLL_GRANULARITY, DELAYED_METRICS_STORAGE_GRANULARITY);
 
-        log.info(String.format("Number of locators getting rolled up for slotkey: [%s] are %s; isReroll: %s", parentSlotKey, locators.size(), isReroll));
+        if (ENABLE_BATCHED_ROLLUP_READS) {
+            for (List<Locator> batch : Iterables.partition(locators, ROLLUP_READ_BATCH_SIZE)) {
+                rollCount = processLocators(rollCount, executionContext, rollupBatchWriter, batch);
+            }
+        } else {
+            for (Locator locator : locators) {
+                rollCount = processLocator(rollCount, executionContext, rollupBatchWriter, locator);
+            }
+        }
 
-        if (log.isTraceEnabled())
-            log.trace("locators retrieved: {}", locators.size());
+        log.info(String.format("Number of locators getting rolled up for slotkey: [%s] are %s; isReroll: %s", parentSlotKey, rollCount, isReroll));
 
-        for (Locator locator : locators) {
-            rollCount = processLocator(rollCount, executionContext, rollupBatchWriter, locator);
-        }
-        
-        // now wait until ctx is drained. someone needs to be notified.
+        // the slot is finished by whichever rollup completes last; nothing to wait for here.
         drainExecutionContext(waitStart, rollCount, executionContext, rollupBatchWriter);
 
         timerCtx.stop();
@@ -134,7 +152,8 @@ public class LocatorFetchRunnable implements Runnable {
      *
      * During re-rolls, If the granularity of the slot is finer(or equal) to the configured
      * DELAYED_METRICS_REROLL_GRANULARITY, we re-roll only the delayed locator's corresponding
-     * to that slot. if not, we re-roll the locators of the entire shard.
+     * to that slot. if not, we re-roll the locators of the entire shard, which are read lazily as they are
+     * iterated (see {@link #getLocators(RollupExecutionContext)}).
      *
      * @param executionContext
      * @param isReroll
@@ -142,10 +161,10 @@ public class LocatorFetchRunnable implements Runnable {
      * @param delayedMetricsStorageGranularity
      * @return
      */
-    protected Set<Locator> getLocators(RollupExecutionContext executionContext,
-                                       boolean isReroll,
-                                       Granularity delayedMetricsRerollGranularity,
-                                       Granularity delayedMetricsStorageGranularity) {
+    protected Iterable<Locator> getLocators(RollupExecutionContext executionContext,
+                                            boolean isReroll,
+                                            Granularity delayedMetricsRerollGranularity,
+                                            Granularity delayedMetricsStorageGranularity) {
         Set<Locator> locators = new HashSet<Locator>();
 
         //if delayed metric tracking is enabled, if its re-roll, if slot granularity is no coarser than
@@ -168,43 +187,45 @@ public class LocatorFetchRunnable implements Runnable {
             }
 
         } else {
-            locators = getLocators(executionContext);
+            return getLocators(executionContext);
         }
         return locators;
     }
 
     public RollupExecutionContext createRollupExecutionContext() {
-        return new RollupExecutionContext(Thread.currentThread());
+        return new RollupExecutionContext();
     }
 
     public RollupBatchWriter createRollupBatchWriter(RollupExecutionContext executionContext) {
         return new RollupBatchWriter(rollupWriteExecutor, executionContext);
     }
 
-    public void drainExecutionContext(long waitStart, int rollCount, RollupExecutionContext executionContext, RollupBatchWriter rollupBatchWriter) {
+    /**
+     * Arranges for the slot to be finished once every rollup for it has been read and written, and returns right
+     * away. The remaining work is driven by the read and write threads: whichever of them completes the
+     * execution context last finishes the slot, so no locator fetch thread is held while the rollups run.
+     */
+    public void drainExecutionContext(final long waitStart, final int rollCount,
+                                      final RollupExecutionContext executionContext,
+                                      final RollupBatchWriter rollupBatchWriter) {
         log.debug("Waiting for rollups to finish for " + parentSlotKey);
-        while (!executionContext.doneReading() || !executionContext.doneWriting()) {
-            if (executionContext.doneReading()) {
-                rollupBatchWriter.drainBatch(); // gets any remaining rollups enqueued for put. should be no-op after being called once
+        executionContext.getReadCompletion().addListener(new Runnable() {
+            @Override
+            public void run() {
+                // gets any remaining rollups enqueued for put.
+                rollupBatchWriter.drainAll();
             }
-            try {
-                waitForRollups();
-            } catch (InterruptedException ex) {
-                if (log.isTraceEnabled())
-                    log.trace("Woken wile waiting for rollups to coalesce for {} {}", parentSlotKey);
-            } finally {
-                String verb = executionContext.doneReading() ? "writing" : "reading";
-                log.debug("Still waiting for rollups to finish {} for {} {}", new Object[] {verb, parentSlotKey, System.currentTimeMillis() - waitStart });
+        }, MoreExecutors.sameThreadExecutor());
+        executionContext.getCompletion().addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (log.isDebugEnabled())
+                    log.debug("Finished {} rollups for (gran,slot,shard) {} in {}", new Object[] {rollCount, parentSlotKey, System.currentTimeMillis() - waitStart});
+
+                finishExecution(waitStart, executionContext);
             }
-        }
-        if (log.isDebugEnabled())
-            log.debug("Finished {} rollups for (gran,slot,shard) {} in {}", new Object[] {rollCount, parentSlotKey, System.currentTimeMillis() - waitStart});
-
-        finishExecution(waitStart, executionContext);
-    }
-
-    protected void waitForRollups() throws InterruptedException {
-        Thread.currentThread().sleep(LOCATOR_WAIT_FOR_ALL_SECS * 1000);
+        }, MoreExecutors.sameThreadExecutor());
+        executionContext.doneIssuingReads();
     }
 
     public void finishExecution(long waitStart, RollupExecutionContext executionContext) {
@@ -237,6 +258,30 @@ public class LocatorFetchRunnable implements Runnable {
         return rollCount;
     }
 
+    public int processLocators(int rollCount, RollupExecutionContext executionContext, RollupBatchWriter rollupBatchWriter, List<Locator> locators) {
+        if (log.isTraceEnabled())
+            log.trace("Rolling up {} locators for (gran,slot,shard) {}", locators.size(), parentSlotKey);
+        try {
+            executeRollupForLocators(executionContext, rollupBatchWriter, locators);
+            rollCount += locators.size();
+        } catch (Throwable any) {
+            // continue on, but log the problem so that we can fix things later.
+            executionContext.markUnsuccessful(any);
+            executionContext.decrementReadCounter();
+            log.error(String.format(
+                            "BasicRollup failed for %s, %d locators, at %d",
+                            parentSlotKey, locators.size(), serverTime),
+                    any);
+        }
+
+        return rollCount;
+    }
+
+    public void executeRollupForLocators(RollupExecutionContext executionContext, RollupBatchWriter rollupBatchWriter, List<Locator> locators) {
+        executionContext.incrementReadCounter();
+        rollupReadExecutor.execute(new BatchedRollupRunnable(executionContext, locators, parentRange, getGranularity(), rollupBatchWriter));
+    }
+
     public void executeRollupForLocator(RollupExecutionContext executionContext, RollupBatchWriter rollupBatchWriter, Locator locator) {
         executionContext.incrementReadCounter();
         final SingleRollupReadContext singleRollupReadContext = new SingleRollupReadContext(locator, parentRange, getGranularity());
@@ -259,22 +304,49 @@ public class LocatorFetchRunnable implements Runnable {
         return locators;
     }
 
-    public Set<Locator> getLocators(RollupExecutionContext executionContext) {
-        Set<Locator> locators = new HashSet<Locator>();
-
+    /**
+     * Scans the locators of the shard, {@code LOCATOR_SCAN_FETCH_SIZE} at a time. The returned iterable reads the
+     * next page as it is iterated, and can be iterated only once. A failed read ends the iteration early and marks
+     * the execution context unsuccessful, so the slot gets rolled up again.
+     */
+    public Iterable<Locator> getLocators(final RollupExecutionContext executionContext) {
+        final Iterable<Locator> scan;
         try {
-            // get a list of all locators to rollup for a shard
-            locators.addAll(IOContainer.fromConfig().getLocatorIO().getLocators(getShard()));
-
-            if (scheduleCtx.isReroll(parentSlotKey)) {
-                locatorsPerShardForReroll.update(locators.size());
-            } else {
-                locatorsPerShard.update(locators.size());
-            }
+            // get all locators to rollup for a shard
+            scan = IOContainer.fromConfig().getLocatorIO().scanLocators(getShard(), LOCATOR_SCAN_FETCH_SIZE);
         } catch (Throwable e) {
             log.error("Failed reading locators for slot: " + getParentSlot(), e);
             executionContext.markUnsuccessful(e);
+            return Collections.emptySet();
         }
-        return locators;
+
+        final Histogram locatorsHistogram =
+                scheduleCtx.isReroll(parentSlotKey) ? locatorsPerShardForReroll : locatorsPerShard;
+
+        return new Iterable<Locator>() {
+            @Override
+            public Iterator<Locator> iterator() {
+                final Iterator<Locator> locators = scan.iterator();
+                return new AbstractIterator<Locator>() {
+                    private int count = 0;
+
+                    @Override
+                    protected Locator computeNext() {
+                        try {
+                            if (locators.hasNext()) {
+                                count++;
+                                return locators.next();
+                            }
+                        } catch (Throwable e) {
+                            log.error(String.format("Failed reading locators for slot: %d, after %d locators",
+                                    getParentSlot(), count), e);
+                            executionContext.markUnsuccessful(e);
+                        }
+                        locatorsHistogram.update(count);
+                        return endOfData();
+                    }
+                };
+            }
+        };
     }
 }
@@ -60,6 +60,30 @@ public class RollupBatchWriter {
         }
     }
 
+    public void enqueueRollupsForWrite(List<SingleRollupWriteContext> rollupWriteContexts) {
+        if (rollupWriteContexts.isEmpty()) {
+            return;
+        }
+        context.incrementWriteCounter(rollupWriteContexts.size());
+        rollupQueue.addAll(rollupWriteContexts);
+        // same policy as for single rollups, but a group can fill several MAX_SIZE batches at once.
+        while (rollupQueue.size() >= ROLLUP_BATCH_MAX_SIZE) {
+            drainBatch();
+        }
+        if (rollupQueue.size() >= ROLLUP_BATCH_MIN_SIZE && executor.getActiveCount() < executor.getPoolSize()) {
+            drainBatch();
+        }
+    }
+
+    /**
+     * Hands every queued rollup to the write executor, however many batches that takes.
+     */
+    public void drainAll() {
+        while (!rollupQueue.isEmpty()) {
+            drainBatch();
+        }
+    }
+
     public synchronized void drainBatch() {
         List<SingleRollupWriteContext> writeBasicContexts = new ArrayList<SingleRollupWriteContext>();
         List<SingleRollupWriteContext> writePreAggrContexts = new ArrayList<SingleRollupWriteContext>();
@@ -1,29 +1,40 @@
 package com.rackspacecloud.blueflood.service;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 // Context of execution for a single shard, representing many rollups of a given granularity.
+//
+// Reads and writes are counted as they are issued and as they finish. Once the owner has issued every read (see
+// doneIssuingReads()), the context completes itself: readCompletion fires when the last read finishes, and completion
+// fires when the last write finishes after that. Nobody has to wait around for it.
 public class RollupExecutionContext {
     private final AtomicLong readCounter;
-    private final Thread owner;
     private final AtomicLong writeCounter;
     private final AtomicBoolean successful = new AtomicBoolean(true);
 
-    public RollupExecutionContext(Thread owner) {
-        this.owner = owner;
+    private volatile boolean readsIssued = false;
+    private final SettableFuture<Void> readCompletion = SettableFuture.create();
+    private final SettableFuture<Boolean> completion = SettableFuture.create();
+
+    public RollupExecutionContext() {
         this.readCounter = new AtomicLong(0L);
         this.writeCounter = new AtomicLong(0L);
     }
 
     void decrementReadCounter() {
-        readCounter.decrementAndGet();
-        owner.interrupt(); // this is what interrupts that long sleep in LocatorFetchRunnable.
+        if (readCounter.decrementAndGet() == 0) {
+            checkDoneReading();
+        }
     }
 
     void decrementWriteCounter(long count) {
-        writeCounter.addAndGet((-1) * count);
-        owner.interrupt();
+        if (writeCounter.addAndGet((-1) * count) == 0) {
+            checkDone();
+        }
     }
 
     public void incrementReadCounter() {
@@ -34,6 +45,19 @@ public class RollupExecutionContext {
         writeCounter.incrementAndGet();
     }
 
+    void incrementWriteCounter(long count) {
+        writeCounter.addAndGet(count);
+    }
+
+    /**
+     * Tells the context that no more reads will be issued, so it may complete as soon as the outstanding ones are
+     * done. Until then it never completes, even if the counters happen to drop to zero along the way.
+     */
+    void doneIssuingReads() {
+        readsIssued = true;
+        checkDoneReading();
+    }
+
     public boolean doneReading() {
         return readCounter.get() == 0;
     }
@@ -49,4 +73,33 @@ public class RollupExecutionContext {
     void markUnsuccessful(Throwable t) {
         successful.set(false);
     }
+
+    /**
+     * @return a future that is done once all reads have been issued and have finished. Any rollups still queued for
+     * write at that point have to be flushed for the context to complete.
+     */
+    ListenableFuture<Void> getReadCompletion() {
+        return readCompletion;
+    }
+
+    /**
+     * @return a future that is done once all reads and writes have finished, holding {@link #wasSuccessful()}.
+     */
+    ListenableFuture<Boolean> getCompletion() {
+        return completion;
+    }
+
+    // both checks run after the counter they follow was updated, so whichever of the last read and the last write
+    // finishes second sees both at zero; completing twice is harmless.
+    private void checkDoneReading() {
+        if (readsIssued && doneReading() && readCompletion.set(null)) {
+            checkDone();
+        }
+    }
+
+    private void checkDone() {
+        if (readCompletion.isDone() && doneWriting()) {
+            completion.set(wasSuccessful());
+        }
+    }
 }
@@ -51,8 +51,8 @@ public class RollupRunnable implements Runnable {
     protected final long startWait;
 
     private static final Timer calcTimer = Metrics.timer(RollupRunnable.class, "Read And Calculate Rollup");
-    private static final Meter noPointsToCalculateRollup = Metrics.meter(RollupRunnable.class, "No points to calculate rollup");
-    private static HashMap<Granularity, Meter> granToMeters = new HashMap<Granularity, Meter>();
+    static final Meter noPointsToCalculateRollup = Metrics.meter(RollupRunnable.class, "No points to calculate rollup");
+    static HashMap<Granularity, Meter> granToMeters = new HashMap<Granularity, Meter>();
 
     static {
         for (Granularity rollupGranularity : Granularity.rollupGranularities()) {
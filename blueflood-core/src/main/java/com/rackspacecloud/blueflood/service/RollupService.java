@@ -95,8 +95,8 @@ public class RollupService implements Runnable, RollupServiceMBean {
         this.context = context;
         this.shardStateManager = context.getShardStateManager();
 
-        // NOTE: higher locatorFetchConcurrency means that the queue used in rollupReadExecutors needs to be correspondingly
-        // higher.
+        // NOTE: locator fetch threads only find the locators of a slot and queue up its rollups; they do not wait for
+        // the rollups to finish, so locatorFetchConcurrency does not bound the number of slots being rolled up.
         Configuration config = Configuration.getInstance();
         rollupDelayMillis = config.getLongProperty(CoreConfig.ROLLUP_DELAY_MILLIS);
         rollupDelayForMetricsWithShortDelay = config.getLongProperty(CoreConfig.SHORT_DELAY_METRICS_ROLLUP_DELAY_MILLIS);
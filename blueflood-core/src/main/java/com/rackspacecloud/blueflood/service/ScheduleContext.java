@@ -22,6 +22,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Ticker;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.rackspacecloud.blueflood.cache.RollupReadCache;
 import com.rackspacecloud.blueflood.io.Constants;
 import com.rackspacecloud.blueflood.rollup.Granularity;
 import com.rackspacecloud.blueflood.rollup.SlotKey;
@@ -38,12 +39,13 @@ import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -104,7 +106,13 @@ import java.util.concurrent.TimeUnit;
  * class keeps track of the execution of those rollups and the states they are
  * in.
  *
- * When synchronizing multiple collections, do it in this order: scheduled -> running.
+ * The scheduled and running collections are concurrent and none of the
+ * operations on them take a lock, so ingestion threads calling
+ * {@link #update(long, int)} or {@link #update(DirtySlots)} never contend
+ * with the rollup service.
+ * {@link #scheduleEligibleSlots(long, long, long)} and
+ * {@link #getNextScheduled()} are meant to be called from the single rollup
+ * service polling thread.
  */
 public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
     private static final Logger log = LoggerFactory.getLogger(ScheduleContext.class);
@@ -124,21 +132,13 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
     private final Meter shardOwnershipChanged = Metrics.meter(ScheduleContext.class, "Shard Change Before Running");
 
     /**
-     * these are all the slots that are scheduled to run in no particular order.
-     * the collection is synchronized to control updates.
+     * these are all the slots that are scheduled to run, in the order they
+     * will be handed out by {@link #getNextScheduled()}.
      */
-    private final Set<SlotKey> scheduledSlots = new HashSet<SlotKey>();
-
-    /**
-     * same information as {@link #scheduledSlots}, but order is preserved. The
-     * ordered property is only needed for getting the the next scheduled slot,
-     * but most operations are concerned with if a slot is scheduled or not.
-     * When you update one, you must update the other.
-     */
-    private final List<SlotKey> orderedScheduledSlots = new ArrayList<SlotKey>();
+    private final ScheduledSlotQueue scheduledSlots = new ScheduledSlotQueue();
 
     /** slots that are running are not scheduled. */
-    private final Map<SlotKey, Long> runningSlots = new HashMap<SlotKey, Long>();
+    private final ConcurrentMap<SlotKey, Long> runningSlots = new ConcurrentHashMap<SlotKey, Long>();
 
     /** shard lock manager */
     private final ShardLockManager lockManager;
@@ -191,9 +191,10 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
      * {@inheritDoc}
      */
     public void update(long millis, int shard) {
-        // there are two update paths. for managed shards, we must guard the
-        // scheduled and running collections. but for unmanaged shards, we just
-        // let the update happen uncontested.
+        // for managed shards, a slot that is scheduled but not yet running is
+        // descheduled, so it is rolled up again once it settles. the scheduled
+        // queue is concurrent, so this takes no lock. unmanaged shards only
+        // update the slot state.
         final Timer.Context dirtyTimerCtx = markSlotDirtyTimer.time();
         try {
             if (log.isTraceEnabled()) {
@@ -205,12 +206,9 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
                 int slot = g.slot(millis);
 
                 if (isManaged) {
-                    synchronized (scheduledSlots) { //put
-                        SlotKey key = SlotKey.of(g, slot, shard);
-                        if (scheduledSlots.remove(key) && log.isDebugEnabled()) {
-                            // don't worry about orderedScheduledSlots
-                            log.debug("descheduled {}.", key);
-                        }
+                    SlotKey key = SlotKey.of(g, slot, shard);
+                    if (scheduledSlots.remove(key) && log.isDebugEnabled()) {
+                        log.debug("descheduled {}.", key);
                     }
                 }
                 slotStateManager.createOrUpdateForSlotAndMillisecond(slot, millis);
@@ -220,6 +218,31 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void update(DirtySlots dirtySlots) {
+        final Timer.Context dirtyTimerCtx = markSlotDirtyTimer.time();
+        try {
+            for (int i = 0; i < dirtySlots.size(); i++) {
+                int shard = dirtySlots.getShard(i);
+                Granularity g = dirtySlots.getGranularity(i);
+                int slot = dirtySlots.getSlot(i);
+                long millis = dirtySlots.getMillis(i);
+
+                if (shardStateManager.contains(shard)) {
+                    SlotKey key = SlotKey.of(g, slot, shard);
+                    if (scheduledSlots.remove(key) && log.isDebugEnabled()) {
+                        log.debug("descheduled {}.", key);
+                    }
+                }
+                shardStateManager.getSlotStateManager(shard, g).createOrUpdateForSlotAndMillisecond(slot, millis);
+            }
+        } finally {
+            dirtyTimerCtx.stop();
+        }
+    }
+
     /**
      * Loop through all slots that are eligible for rollup, at all
      * granularities, in all managed shards. If any are found that are not
@@ -238,31 +261,23 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
 
         for (int shard : shardKeys) {
             for (Granularity g : Granularity.rollupGranularities()) {
-                // sync on map since we do not want anything added to or taken from it while we iterate.
-                synchronized (scheduledSlots) { // read
-                    synchronized (runningSlots) { // read
-
-                        List<Integer> slotsToWorkOn = shardStateManager.getSlotStateManager(shard, g)
-                                .getSlotsEligibleForRollup(now, maxAgeMillis, rollupDelayForMetricsWithShortDelay, rollupWaitForMetricsWithLongDelay);
-
-                        if (slotsToWorkOn.size() == 0) {
-                            continue;
-                        }
-                        if (!canWorkOnShard(shard)) {
-                            continue;
-                        }
-
-                        for (Integer slot : slotsToWorkOn) {
-                            SlotKey slotKey = SlotKey.of(g, slot, shard);
-                            if (areChildKeysOrSelfKeyScheduledOrRunning(slotKey)) {
-                                continue;
-                            }
-                            SlotKey key = SlotKey.of(g, slot, shard);
-                            scheduledSlots.add(key);
-                            orderedScheduledSlots.add(key);
-                            recentlyScheduledShards.put(shard, scheduleTime);
-                        }
+                List<Integer> slotsToWorkOn = shardStateManager.getSlotStateManager(shard, g)
+                        .getSlotsEligibleForRollup(now, maxAgeMillis, rollupDelayForMetricsWithShortDelay, rollupWaitForMetricsWithLongDelay);
+
+                if (slotsToWorkOn.size() == 0) {
+                    continue;
+                }
+                if (!canWorkOnShard(shard)) {
+                    continue;
+                }
+
+                for (Integer slot : slotsToWorkOn) {
+                    SlotKey slotKey = SlotKey.of(g, slot, shard);
+                    if (areChildKeysOrSelfKeyScheduledOrRunning(slotKey)) {
+                        continue;
                     }
+                    scheduledSlots.addLast(slotKey);
+                    recentlyScheduledShards.put(shard, scheduleTime);
                 }
             }
         }
@@ -277,7 +292,7 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
         // if any ineligible (children and self) keys are running or scheduled to run, we shouldn't work on this.
         Collection<SlotKey> ineligibleKeys = slotKey.getChildrenKeys();
 
-        if (runningSlots.keySet().contains(slotKey)) {
+        if (runningSlots.containsKey(slotKey)) {
             return true;
         }
         if (scheduledSlots.contains(slotKey)) {
@@ -286,7 +301,7 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
 
         // if any ineligible keys are running or scheduled to run, do not schedule this key.
         for (SlotKey childrenKey : ineligibleKeys) {
-            if (runningSlots.keySet().contains(childrenKey)) {
+            if (runningSlots.containsKey(childrenKey)) {
                 return true;
             }
             if (scheduledSlots.contains(childrenKey)) {
@@ -315,31 +330,25 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
      */
     @VisibleForTesting
     public SlotKey getNextScheduled() {
-        synchronized (scheduledSlots) {
-            if (scheduledSlots.size() == 0)
-                return null;
-            synchronized (runningSlots) {
-                SlotKey key = orderedScheduledSlots.remove(0);
-                int slot = key.getSlot();
-                Granularity gran = key.getGranularity();
-                int shard = key.getShard();
-
-                // notice how we change the state, but the timestamp remained
-                // the same. this is important.  When the state is evaluated
-                // (i.e., in Reader.getShardState()) we need to realize that
-                // when timestamps are the same (this will happen), that a
-                // remove always wins during the coalesce.
-                scheduledSlots.remove(key);
-
-                if (canWorkOnShard(shard)) {
-                    UpdateStamp stamp = shardStateManager.getSlotStateManager(shard, gran).getAndSetState(slot, UpdateStamp.State.Running);
-                    runningSlots.put(key, stamp.getTimestamp());
-                    return key;
-                } else {
-                    shardOwnershipChanged.mark();
-                    return null;
-                }
-            }
+        SlotKey key = scheduledSlots.poll();
+        if (key == null)
+            return null;
+        int slot = key.getSlot();
+        Granularity gran = key.getGranularity();
+        int shard = key.getShard();
+
+        // notice how we change the state, but the timestamp remained
+        // the same. this is important.  When the state is evaluated
+        // (i.e., in Reader.getShardState()) we need to realize that
+        // when timestamps are the same (this will happen), that a
+        // remove always wins during the coalesce.
+        if (canWorkOnShard(shard)) {
+            UpdateStamp stamp = shardStateManager.getSlotStateManager(shard, gran).getAndSetState(slot, UpdateStamp.State.Running);
+            runningSlots.put(key, stamp.getTimestamp());
+            return key;
+        } else {
+            shardOwnershipChanged.mark();
+            return null;
         }
     }
 
@@ -355,22 +364,17 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
      * @param rescheduleImmediately
      */
     void pushBackToScheduled(SlotKey key, boolean rescheduleImmediately) {
-        synchronized (scheduledSlots) {
-            synchronized (runningSlots) {
-                int slot = key.getSlot();
-                Granularity gran = key.getGranularity();
-                int shard = key.getShard();
-                // no need to set dirty/clean here.
-                shardStateManager.getSlotStateManager(shard, gran).getAndSetState(slot, UpdateStamp.State.Active);
-                scheduledSlots.add(key);
-                log.debug("pushBackToScheduled -> added to scheduledSlots: " + key + " size:" + scheduledSlots.size());
-                if (rescheduleImmediately) {
-                    orderedScheduledSlots.add(0, key);
-                } else {
-                    orderedScheduledSlots.add(key);
-                }
-            }
+        int slot = key.getSlot();
+        Granularity gran = key.getGranularity();
+        int shard = key.getShard();
+        // no need to set dirty/clean here.
+        shardStateManager.getSlotStateManager(shard, gran).getAndSetState(slot, UpdateStamp.State.Active);
+        if (rescheduleImmediately) {
+            scheduledSlots.addFirst(key);
+        } else {
+            scheduledSlots.addLast(key);
         }
+        log.debug("pushBackToScheduled -> added to scheduledSlots: {} size: {}", key, scheduledSlots.size());
     }
 
     /**
@@ -380,27 +384,27 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
      * @param slotKey
      */
     public void clearFromRunning(SlotKey slotKey) {
-        synchronized (runningSlots) {
-            runningSlots.remove(slotKey);
-            UpdateStamp stamp = shardStateManager.getUpdateStamp(slotKey);
-            shardStateManager.setAllCoarserSlotsDirtyForSlot(slotKey);
-
-            //When state gets set to "X", before it got persisted, it might get scheduled for rollup
-            //again, if we get delayed metrics. To prevent this we temporarily set last rollup time with current
-            //time. This value wont get persisted.
-            long currentTimeInMillis = clock.now().getMillis();
-            stamp.setLastRollupTimestamp(currentTimeInMillis);
-            log.debug("SlotKey {} is marked in memory with last rollup time as {}", slotKey, currentTimeInMillis);
-
-            // Update the stamp to Rolled state if and only if the current state
-            // is running. If the current state is active, it means we received
-            // a delayed put which toggled the status to Active.
-            if (stamp.getState() == UpdateStamp.State.Running) {
-                stamp.setState(UpdateStamp.State.Rolled);
-                // Note: Rollup state will be updated to the last ACTIVE
-                // timestamp which caused rollup process to kick in.
-                stamp.setDirty(true);
-            }
+        runningSlots.remove(slotKey);
+        UpdateStamp stamp = shardStateManager.getUpdateStamp(slotKey);
+        shardStateManager.setAllCoarserSlotsDirtyForSlot(slotKey);
+        // the rollups of the slot may have changed, so queries must not be served them from the cache
+        RollupReadCache.getInstance().invalidate(slotKey);
+
+        //When state gets set to "X", before it got persisted, it might get scheduled for rollup
+        //again, if we get delayed metrics. To prevent this we temporarily set last rollup time with current
+        //time. This value wont get persisted.
+        long currentTimeInMillis = clock.now().getMillis();
+        stamp.setLastRollupTimestamp(currentTimeInMillis);
+        log.debug("SlotKey {} is marked in memory with last rollup time as {}", slotKey, currentTimeInMillis);
+
+        // Update the stamp to Rolled state if and only if the current state
+        // is running. If the current state is active, it means we received
+        // a delayed put which toggled the status to Active.
+        if (stamp.getState() == UpdateStamp.State.Running) {
+            stamp.setState(UpdateStamp.State.Rolled);
+            // Note: Rollup state will be updated to the last ACTIVE
+            // timestamp which caused rollup process to kick in.
+            shardStateManager.getSlotStateManager(slotKey.getShard(), slotKey.getGranularity()).markDirty(slotKey.getSlot());
         }
     }
 
@@ -408,16 +412,14 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
      * true if anything is scheduled.
      */
     public boolean hasScheduled() {
-        return getScheduledCount() > 0;
+        return !scheduledSlots.isEmpty();
     }
 
     /**
      * returns the number of scheduled rollups.
      */
     public int getScheduledCount() {
-        synchronized (scheduledSlots) {
-            return scheduledSlots.size();
-        }
+        return scheduledSlots.size();
     }
 
     /**
@@ -425,9 +427,7 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
      */
     @VisibleForTesting
     int getRunningCount() {
-        synchronized (runningSlots) {
-            return runningSlots.size();
-        }
+        return runningSlots.size();
     }
 
     public Map<Integer, UpdateStamp> getSlotStamps(Granularity gran, int shard) {
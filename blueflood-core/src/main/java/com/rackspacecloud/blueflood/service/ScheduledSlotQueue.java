@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.service;
+
+import com.rackspacecloud.blueflood.rollup.SlotKey;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The queue of slots scheduled for rollup, used by {@link ScheduleContext}. All operations are thread safe, lock
+ * free and O(1).
+ *
+ * Each time a slot is scheduled a new entry is put in the order queue and recorded as the slot's current entry.
+ * Descheduling only drops the slot's current entry from the map, leaving the queued entry behind; {@link #poll()}
+ * skips such dead entries. A slot is handed out by whichever caller manages to remove its current entry first, so
+ * a slot that is concurrently descheduled by ingestion and polled by the rollup service is either run or
+ * descheduled, never both.
+ */
+class ScheduledSlotQueue {
+
+    private final ConcurrentMap<SlotKey, Entry> scheduled = new ConcurrentHashMap<SlotKey, Entry>();
+    private final ConcurrentLinkedDeque<Entry> order = new ConcurrentLinkedDeque<Entry>();
+
+    /**
+     * Schedules the slot at the end of the queue. If it is already scheduled, it moves to the end.
+     */
+    void addLast(SlotKey key) {
+        Entry entry = new Entry(key);
+        scheduled.put(key, entry);
+        order.addLast(entry);
+    }
+
+    /**
+     * Schedules the slot at the head of the queue. If it is already scheduled, it moves to the head.
+     */
+    void addFirst(SlotKey key) {
+        Entry entry = new Entry(key);
+        scheduled.put(key, entry);
+        order.addFirst(entry);
+    }
+
+    /**
+     * @return true if the slot was scheduled
+     */
+    boolean remove(SlotKey key) {
+        return scheduled.remove(key) != null;
+    }
+
+    boolean contains(SlotKey key) {
+        return scheduled.containsKey(key);
+    }
+
+    /**
+     * Removes and returns the slot that has been scheduled the longest, or null if nothing is scheduled.
+     */
+    SlotKey poll() {
+        Entry entry;
+        while ((entry = order.pollFirst()) != null) {
+            if (scheduled.remove(entry.key, entry)) {
+                return entry.key;
+            }
+            // dead entry: the slot was descheduled or scheduled again since this entry was queued.
+        }
+        return null;
+    }
+
+    int size() {
+        return scheduled.size();
+    }
+
+    boolean isEmpty() {
+        return scheduled.isEmpty();
+    }
+
+    /**
+     * Entries are compared by identity, which is what tells a slot's current entry apart from older ones.
+     */
+    private static final class Entry {
+        private final SlotKey key;
+
+        private Entry(SlotKey key) {
+            this.key = key;
+        }
+    }
+}
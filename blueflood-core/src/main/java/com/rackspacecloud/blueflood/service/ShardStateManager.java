@@ -38,6 +38,8 @@ public class ShardStateManager {
     private static final Set<Integer> ALL_SHARDS = new HashSet<Integer>(Util.parseShards("ALL"));
     final Set<Integer> shards; // Managed shards
     final Map<Integer, ShardToGranularityMap> shardToGranularityStates = new HashMap<Integer, ShardToGranularityMap>();
+    // shards that may have dirty slots; see SlotStateManager.dirtySlots
+    private final Set<Integer> dirtyShards = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
     private final Ticker serverTimeMillisecondTicker;
     private static final long millisInADay = 24 * 60 * 60 * 1000;
 
@@ -111,8 +113,18 @@ public class ShardStateManager {
 
     }
 
+    /**
+     * @return the shards that may have dirty slots, a superset of the shards that do. Only these need to be looked at
+     * by {@link #getDirtySlotsToPersist(int)}.
+     */
+    protected Set<Integer> getDirtyShards() {
+        return new HashSet<Integer>(dirtyShards);
+    }
+
     // Side effect: mark dirty slots as clean
     protected Map<Granularity, Map<Integer, UpdateStamp>> getDirtySlotsToPersist(int shard) {
+        // a slot marked dirty from now on marks the shard dirty again
+        dirtyShards.remove(shard);
         Map<Granularity, Map<Integer, UpdateStamp>> slotTimes = new HashMap<Granularity, Map<Integer, UpdateStamp>>();
         int numUpdates = 0;
         for (Granularity gran : Granularity.rollupGranularities()) {
@@ -137,6 +149,18 @@ public class ShardStateManager {
         getSlotStateManager(shard, slotState.getGranularity()).updateSlotOnRead(slotState);
     }
 
+    /**
+     * @return whether the stamp in memory of a slot has the timestamp and state read, in which case applying the slot
+     * state again with {@link #updateSlotOnRead} changes nothing
+     */
+    public boolean isSlotStateInMemory(int shard, SlotState slotState) {
+        UpdateStamp stamp = getSlotStateManager(shard, slotState.getGranularity()).slotToUpdateStampMap.get(slotState.getSlot());
+        return stamp != null
+                && slotState.getTimestamp() != null
+                && stamp.getTimestamp() == slotState.getTimestamp()
+                && stamp.getState() == slotState.getState();
+    }
+
     public void setAllCoarserSlotsDirtyForSlot(SlotKey slotKey) {
         boolean done = false;
         Granularity coarserGran = slotKey.getGranularity();
@@ -155,6 +179,7 @@ public class ShardStateManager {
                             slotKey);
                     updateStampsBySlotMap.putIfAbsent(coarserSlot,
                             new UpdateStamp(serverTimeMillisecondTicker.read(), UpdateStamp.State.Active, true));
+                    getSlotStateManager(slotKey.getShard(), coarserGran).trackDirty(coarserSlot);
                     continue;
                 }
 
@@ -164,8 +189,8 @@ public class ShardStateManager {
                     log.debug("Coarser slot not in active state when finer slot {} just got rolled up. Marking coarser slot {} dirty.",
                             slotKey, SlotKey.of(coarserGran, coarserSlot, slotKey.getShard()));
                     coarseSlotStamp.setState(UpdateStamp.State.Active);
-                    coarseSlotStamp.setDirty(true);
                     coarseSlotStamp.setTimestamp(serverTimeMillisecondTicker.read());
+                    getSlotStateManager(slotKey.getShard(), coarserGran).markDirty(coarserSlot);
                 }
             } catch (GranularityException ex) {
                 done = true;
@@ -190,6 +215,9 @@ public class ShardStateManager {
         private final int shard;
         final Granularity granularity;
         final ConcurrentMap<Integer, UpdateStamp> slotToUpdateStampMap;
+        // slots that may be dirty. Slots are added after their stamp is marked dirty and removed before it is looked
+        // at, so this is a superset of the dirty slots, and only these need to be looked at to find them.
+        private final Set<Integer> dirtySlots = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
 
         protected SlotStateManager(int shard, Granularity granularity) {
             this.shard = shard;
@@ -257,7 +285,7 @@ public class ShardStateManager {
                     slotToUpdateStampMap.put(slot, new UpdateStamp(timestamp, state, false, stampInMemory.getLastRollupTimestamp(), lastUpdateTimestamp));
                 } else {
                     // keep rewriting the newer timestamp, in case it has been overwritten:
-                    stampInMemory.setDirty(true); // This is crucial for convergence, we need to superimpose a higher timestamp which can be done only if we set it to dirty
+                    markDirty(slot); // This is crucial for convergence, we need to superimpose a higher timestamp which can be done only if we set it to dirty
                 }
             } else if (stampInMemory.getTimestamp() == timestamp && state.equals(UpdateStamp.State.Rolled)) {
                 // 2) if current value is same but value being applied is a remove, remove wins.
@@ -289,18 +317,42 @@ public class ShardStateManager {
             } else {
                 slotToUpdateStampMap.put(slot, new UpdateStamp(millis, UpdateStamp.State.Active, true, 0, nowMillis));
             }
+            trackDirty(slot);
             updateStampMeter.mark();
         }
 
+        /**
+         * Marks the stamp of a slot dirty, so that it gets persisted. Stamps must be marked dirty through here (or be
+         * followed by {@link #trackDirty(int)}), not with {@link UpdateStamp#setDirty(boolean)} alone, or
+         * {@link #getDirtySlotStampsAndMarkClean()} won't find them.
+         */
+        protected void markDirty(int slot) {
+            UpdateStamp stamp = slotToUpdateStampMap.get(slot);
+            if (stamp != null) {
+                stamp.setDirty(true);
+                trackDirty(slot);
+            }
+        }
+
+        private void trackDirty(int slot) {
+            dirtySlots.add(slot);
+            dirtyShards.add(shard);
+        }
+
+        // only looks at the slots marked dirty since the last call, not at every slot
         protected Map<Integer, UpdateStamp> getDirtySlotStampsAndMarkClean() {
-            HashMap<Integer, UpdateStamp> dirtySlots = new HashMap<Integer, UpdateStamp>();
-            for (Map.Entry<Integer, UpdateStamp> entry : slotToUpdateStampMap.entrySet()) {
-                if (entry.getValue().isDirty()) {
-                    dirtySlots.put(entry.getKey(), entry.getValue());
-                    entry.getValue().setDirty(false);
+            HashMap<Integer, UpdateStamp> dirtyStamps = new HashMap<Integer, UpdateStamp>();
+            Iterator<Integer> slots = dirtySlots.iterator();
+            while (slots.hasNext()) {
+                int slot = slots.next();
+                slots.remove();
+                UpdateStamp stamp = slotToUpdateStampMap.get(slot);
+                if (stamp != null && stamp.isDirty()) {
+                    dirtyStamps.put(slot, stamp);
+                    stamp.setDirty(false);
                 }
             }
-            return dirtySlots;
+            return dirtyStamps;
         }
 
         protected UpdateStamp getAndSetState(int slot, UpdateStamp.State state) {
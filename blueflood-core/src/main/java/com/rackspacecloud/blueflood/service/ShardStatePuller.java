@@ -16,37 +16,76 @@
 
 package com.rackspacecloud.blueflood.service;
 
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 import com.rackspacecloud.blueflood.io.ShardStateIO;
+import com.rackspacecloud.blueflood.utils.Metrics;
 import com.rackspacecloud.blueflood.utils.TimeValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 public class ShardStatePuller extends ShardStateWorker {
     private static final Logger log = LoggerFactory.getLogger(ShardStatePuller.class);
-    
+
+    private final long writeTimeMarginMillis;
+    // the latest write time of the slot states seen in each shard. Slot states written before are only applied when
+    // they differ from memory, which re-dirties slots whose push failed or was overwritten (see
+    // SlotStateManager.updateSlotOnRead), so they converge like slot states written since
+    private final Map<Integer, Long> writeTimeMarks = new ConcurrentHashMap<Integer, Long>();
+    private final Meter skippedSlotStates = Metrics.meter(ShardStatePuller.class, "Unchanged slot states skipped");
 
     public ShardStatePuller(Collection<Integer> allShards, ShardStateManager stateManager, ShardStateIO io) {
         super(allShards, stateManager, new TimeValue(Configuration.getInstance().getIntegerProperty(CoreConfig.SHARD_PULL_PERIOD), TimeUnit.MILLISECONDS), io);
+        this.writeTimeMarginMillis = Configuration.getInstance().getLongProperty(CoreConfig.SHARD_PULL_WRITE_TIME_MARGIN_MS);
     }
 
+    /**
+     * Reads the state of all managed shards at once, and applies the slot states written since the last pull, or that
+     * differ from the slot states in memory.
+     */
     public void performOperation() {
         Timer.Context ctx = timer.time();
-        for (int shard : shardStateManager.getManagedShards()) {
+        try {
+            Collection<Integer> shards = new ArrayList<Integer>(shardStateManager.getManagedShards());
+            // a shard no longer managed gets all its slot states applied again if it is managed again
+            writeTimeMarks.keySet().retainAll(shards);
 
-            try {
-                Collection<SlotState> slotStates = getIO().getShardState(shard);
-                for (SlotState slotState : slotStates) {
-                    shardStateManager.updateSlotOnRead(shard, slotState);
-                }
+            Map<Integer, Collection<SlotState>> shardStates = getIO().getShardStates(shards);
+            for (Map.Entry<Integer, Collection<SlotState>> entry : shardStates.entrySet()) {
+                applySlotStates(entry.getKey(), entry.getValue());
+            }
+        } catch (Exception ex) {
+            log.error("Could not read shard state from the database. " + ex.getMessage(), ex);
+        } finally {
+            ctx.stop();
+        }
+    }
 
-            } catch (Exception ex) {
-                log.error("Could not read shard state from the database. " + ex.getMessage(), ex);
+    private void applySlotStates(int shard, Collection<SlotState> slotStates) {
+        Long mark = writeTimeMarks.get(shard);
+        long appliedAfter = mark == null || writeTimeMarginMillis < 0 ? Long.MIN_VALUE : mark - writeTimeMarginMillis;
+        long latest = mark == null ? Long.MIN_VALUE : mark;
+        int skipped = 0;
+
+        for (SlotState slotState : slotStates) {
+            if (slotState.getLastUpdatedTimestamp() > appliedAfter
+                    || !shardStateManager.isSlotStateInMemory(shard, slotState)) {
+                shardStateManager.updateSlotOnRead(shard, slotState);
+            } else {
+                skipped++;
             }
+            latest = Math.max(latest, slotState.getLastUpdatedTimestamp());
+        }
+
+        if (latest != Long.MIN_VALUE) {
+            writeTimeMarks.put(shard, latest);
         }
-        ctx.stop();
+        skippedSlotStates.mark(skipped);
     }
 }
@@ -25,6 +25,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -35,17 +36,29 @@ public class ShardStatePusher extends ShardStateWorker {
         super(allShards, stateManager, new TimeValue(Configuration.getInstance().getIntegerProperty(CoreConfig.SHARD_PUSH_PERIOD), TimeUnit.MILLISECONDS), io);
     }
 
+    /**
+     * Persists the dirty slots of the shards that have any, all in one go. Only the shards and slots marked dirty
+     * since the last time are looked at.
+     */
     public void performOperation() {
         Timer.Context ctx = timer.time();
         try {
-            for (int shard : allShards) {
+            Map<Integer, Map<Granularity, Map<Integer, UpdateStamp>>> shardSlotTimes =
+                    new HashMap<Integer, Map<Granularity, Map<Integer, UpdateStamp>>>();
+            for (int shard : shardStateManager.getDirtyShards()) {
+                if (!allShards.contains(shard)) {
+                    continue;
+                }
                 Map<Granularity, Map<Integer, UpdateStamp>> slotTimes = shardStateManager.getDirtySlotsToPersist(shard);
                 if (slotTimes != null) {
-                    try {
-                        getIO().putShardState(shard, slotTimes);
-                    } catch (IOException ex) {
-                        log.error("Could not put shard state to the database (shard " + shard + "). " + ex.getMessage(), ex);
-                    }
+                    shardSlotTimes.put(shard, slotTimes);
+                }
+            }
+            if (!shardSlotTimes.isEmpty()) {
+                try {
+                    getIO().putShardStates(shardSlotTimes);
+                } catch (IOException ex) {
+                    log.error("Could not put shard states to the database (shards " + shardSlotTimes.keySet() + "). " + ex.getMessage(), ex);
                 }
             }
         } catch (RuntimeException ex) {
@@ -137,17 +137,29 @@ public abstract class BaseRollup implements Rollup {
             return;
         }
 
+        if (input instanceof SimpleNumberPoints) {
+            // walk the columns rather than create a point for each value
+            SimpleNumberPoints columns = (SimpleNumberPoints) input;
+            for (int i = 0; i < columns.size(); i++) {
+                handleFullResMetric(columns.getValue(i));
+            }
+            return;
+        }
+
         Map<Long, Points.Point<SimpleNumber>> points = input.getPoints();
         for (Map.Entry<Long, Points.Point<SimpleNumber>> item : points.entrySet()) {
-            this.count += 1;
-            SimpleNumber numericMetric = item.getValue().getData();
-            average.handleFullResMetric(numericMetric.getValue());
-            variance.handleFullResMetric(numericMetric.getValue());
-            minValue.handleFullResMetric(numericMetric.getValue());
-            maxValue.handleFullResMetric(numericMetric.getValue());
+            handleFullResMetric(item.getValue().getData().getValue());
         }
     }
 
+    private void handleFullResMetric(Number value) {
+        this.count += 1;
+        average.handleFullResMetric(value);
+        variance.handleFullResMetric(value);
+        minValue.handleFullResMetric(value);
+        maxValue.handleFullResMetric(value);
+    }
+
     // merge rollups into this rollup.
     protected void computeFromRollupsHelper(Points<? extends IBaseRollup> input) throws IOException {
         if (input == null) {
@@ -16,48 +16,126 @@
 
 package com.rackspacecloud.blueflood.types;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.rackspacecloud.blueflood.service.Configuration;
+import com.rackspacecloud.blueflood.service.CoreConfig;
+
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 
+/**
+ * The distinct values of a set metric, kept as their hashes.
+ *
+ * If ENABLE_SET_ROLLUP_HLL is set, a set with more than SET_ROLLUP_HLL_THRESHOLD hashes is promoted to a
+ * {@link HyperLogLog}: from then on only its count is known, as an estimate, but it takes a fixed amount of memory and
+ * space on disk however many values are added or merged into it.
+ */
 public class BluefloodSetRollup implements Rollup {
-    
+
+    private static final int HLL_THRESHOLD = Configuration.getInstance().getBooleanProperty(CoreConfig.ENABLE_SET_ROLLUP_HLL)
+            ? Configuration.getInstance().getIntegerProperty(CoreConfig.SET_ROLLUP_HLL_THRESHOLD)
+            : Integer.MAX_VALUE;
+
+    private final int hllThreshold;
+
+    // exactly one of these is set
     private Set<Integer> hashes = new HashSet<Integer>();
+    private HyperLogLog hll = null;
     
-    public BluefloodSetRollup() {}
+    public BluefloodSetRollup() {
+        this(HLL_THRESHOLD);
+    }
+
+    /**
+     * @param hllThreshold the number of hashes above which the set is promoted to a {@link HyperLogLog}
+     */
+    @VisibleForTesting
+    BluefloodSetRollup(int hllThreshold) {
+        this.hllThreshold = hllThreshold;
+    }
+
+    /**
+     * A set already promoted to a {@link HyperLogLog}.
+     */
+    public BluefloodSetRollup(HyperLogLog hll) {
+        this(HLL_THRESHOLD);
+        this.hashes = null;
+        this.hll = hll;
+    }
     
     public BluefloodSetRollup withObject(Object o) {
-        hashes.add(o.hashCode());
+        addHash(o.hashCode());
         return this;
     }
     
     public static BluefloodSetRollup buildRollupFromSetRollups(Points<BluefloodSetRollup> input) throws IOException {
-        BluefloodSetRollup rollup = new BluefloodSetRollup();
+        return buildRollupFromSetRollups(input, HLL_THRESHOLD);
+    }
+
+    @VisibleForTesting
+    static BluefloodSetRollup buildRollupFromSetRollups(Points<BluefloodSetRollup> input, int hllThreshold) throws IOException {
+        BluefloodSetRollup rollup = new BluefloodSetRollup(hllThreshold);
         for (Points.Point<BluefloodSetRollup> point : input.getPoints().values()) {
-            for (Integer i : point.getData().getHashes()) {
-                rollup.hashes.add(i);
+            BluefloodSetRollup data = point.getData();
+            if (data.hll != null) {
+                rollup.promote();
+                rollup.hll.merge(data.hll);
+            } else {
+                for (Integer i : data.hashes) {
+                    rollup.addHash(i);
+                }
             }
         }
         return rollup;
     }
-    
+
+    /**
+     * @throws UnsupportedOperationException if the set was promoted to a {@link HyperLogLog}, which cannot tell
+     */
     public boolean contains(Object obj) {
+        if (hll != null) {
+            throw new UnsupportedOperationException("Set of about " + hll.estimate() + " values no longer kept exactly");
+        }
         return hashes.contains(obj.hashCode());
     }
 
+    /**
+     * @return whether the set was promoted to a {@link HyperLogLog}, and its count is an estimate
+     */
+    public boolean isEstimated() {
+        return hll != null;
+    }
+
+    /**
+     * @return the {@link HyperLogLog} the set was promoted to, or null if it is kept exactly
+     */
+    public HyperLogLog getHyperLogLog() {
+        return hll;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == null || !(obj instanceof BluefloodSetRollup)) {
             return false;
         }
         BluefloodSetRollup other = (BluefloodSetRollup)obj;
+        if (hll != null || other.hll != null) {
+            return hll != null && hll.equals(other.hll);
+        }
         return hashes.equals(other.hashes);
     }
 
+    @Override
+    public String toString() {
+        return hll != null ? "{hll:" + hll + "}" : "{count:" + hashes.size() + "}";
+    }
+
     @Override
     public Boolean hasData() {
-        return hashes.size() > 0;
+        return getCount() > 0;
     }
 
     @Override
@@ -65,11 +143,18 @@ public class BluefloodSetRollup implements Rollup {
         return RollupType.SET;
     }
 
+    /**
+     * @return the number of distinct values, estimated if {@link #isEstimated()}
+     */
     public int getCount() {
-        return hashes.size();
+        return hll != null ? (int) Math.min(hll.estimate(), Integer.MAX_VALUE) : hashes.size();
     }
-    
+
+    /**
+     * @return the hashes of the values, none if {@link #isEstimated()}
+     */
     public Iterable<Integer> getHashes() {
+        final Set<Integer> hashes = hll != null ? Collections.<Integer>emptySet() : this.hashes;
         return new Iterable<Integer>() {
             @Override
             public Iterator<Integer> iterator() {
@@ -78,6 +163,25 @@ public class BluefloodSetRollup implements Rollup {
         };
     }
     
+    private void addHash(int hash) {
+        if (hll != null) {
+            hll.addHash(hash);
+        } else if (hashes.add(hash) && hashes.size() > hllThreshold) {
+            promote();
+        }
+    }
+
+    private void promote() {
+        if (hll != null) {
+            return;
+        }
+        hll = new HyperLogLog();
+        for (Integer i : hashes) {
+            hll.addHash(i);
+        }
+        hashes = null;
+    }
+
     private class ReadOnlyIterator<K> implements Iterator<K> {
         private final Iterator<K> composed;
         public ReadOnlyIterator(Iterator<K> composed) {
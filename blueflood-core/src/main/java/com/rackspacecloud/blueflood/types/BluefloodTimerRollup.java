@@ -17,6 +17,7 @@
 package com.rackspacecloud.blueflood.types;
 
 import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
@@ -45,6 +46,9 @@ public class BluefloodTimerRollup implements Rollup, IBaseRollup {
     
     // to support percentiles, we will overload the count and treat it as sum.
     private Map<String, Percentile> percentiles = new HashMap<String, Percentile>();
+
+    // optional; when present, percentiles are rolled up from it instead of being averaged.
+    private QuantileSketch sketch = null;
     
     public BluefloodTimerRollup() {
         super();
@@ -110,10 +114,16 @@ public class BluefloodTimerRollup implements Rollup, IBaseRollup {
         return this;
     }
     
+    public BluefloodTimerRollup withSketch(QuantileSketch sketch) {
+        this.sketch = sketch;
+        return this;
+    }
+
     public Average getAverage() { return average; }
     public MaxValue getMaxValue() { return max; }
     public MinValue getMinValue() { return min; }
     public Variance getVariance() { return variance; }
+    public QuantileSketch getSketch() { return sketch; }
     
     public void setPercentile(String label, Number mean) {
         percentiles.put(label, new Percentile(mean));
@@ -174,9 +184,10 @@ public class BluefloodTimerRollup implements Rollup, IBaseRollup {
     public int getSampleCount() { return sampleCount; }
     
     public String toString() {
-        return String.format("sum:%s, rate:%s, count:%s, min:%s, max:%s, avg:%s, var:%s, sample_cnt:%s, %s",
+        return String.format("sum:%s, rate:%s, count:%s, min:%s, max:%s, avg:%s, var:%s, sample_cnt:%s, %s%s",
                 sum, rate, count, min, max, average, variance, sampleCount,
-                Joiner.on(", ").withKeyValueSeparator(": ").join(percentiles.entrySet()));
+                Joiner.on(", ").withKeyValueSeparator(": ").join(percentiles.entrySet()),
+                sketch == null ? "" : ", sketch: " + sketch);
     }
 
     @Override
@@ -196,7 +207,7 @@ public class BluefloodTimerRollup implements Rollup, IBaseRollup {
         if (!other.min.equals(this.min)) return false;
         if (!other.max.equals(this.max)) return false;
         if (other.count != this.count) return false;
-
+        if (!Objects.equal(other.sketch, this.sketch)) return false;
         
         Map<String, Percentile> otherPct = other.getPercentiles();
         Set<String> allKeys = Sets.union(otherPct.keySet(), this.getPercentiles().keySet());
@@ -219,6 +230,9 @@ public class BluefloodTimerRollup implements Rollup, IBaseRollup {
         Multimap<String, Number> pctMeans = LinkedListMultimap.create();
         Multimap<String, Number> pctUppers = LinkedListMultimap.create();
         Multimap<String, Number> pctSums = LinkedListMultimap.create();
+        // the sketches are only of use if every rollup has one
+        QuantileSketch mergedSketch = new QuantileSketch();
+        boolean allSketched = true;
 
         for (Map.Entry<Long, Points.Point<BluefloodTimerRollup>> item : points.entrySet()) {
             BluefloodTimerRollup rollup = item.getValue().getData();
@@ -238,6 +252,12 @@ public class BluefloodTimerRollup implements Rollup, IBaseRollup {
             this.min.handleRollupMetric(rollup);
             this.max.handleRollupMetric(rollup);
             
+            if (rollup.getSketch() != null) {
+                mergedSketch.merge(rollup.getSketch());
+            } else {
+                allSketched = false;
+            }
+
             // now the percentiles.
             Map<String, Percentile> percentilesToMerge = rollup.getPercentiles();
             for (String label : percentilesToMerge.keySet()) {
@@ -247,10 +267,19 @@ public class BluefloodTimerRollup implements Rollup, IBaseRollup {
             }
         }
         
+        if (allSketched) {
+            this.sketch = mergedSketch;
+        }
+
         // now go through the percentiles and calculate!
         for (String label : labels) {
-            Number mean = BluefloodTimerRollup.avg(pctMeans.get(label));
-            this.setPercentile(label, mean);
+            Double quantile = quantileOf(label);
+            if (this.sketch != null && !this.sketch.isEmpty() && quantile != null) {
+                this.setPercentile(label, this.sketch.getQuantile(quantile));
+            } else {
+                Number mean = BluefloodTimerRollup.avg(pctMeans.get(label));
+                this.setPercentile(label, mean);
+            }
         }
         // wooo!
     }
@@ -314,6 +343,32 @@ public class BluefloodTimerRollup implements Rollup, IBaseRollup {
         return totalCount / totalTime;
     }
     
+    /**
+     * Parses a percentile label, as sent by statsd, into a quantile: "50" is 0.5, "99_9" and "999" are 0.999.
+     *
+     * @return the quantile, or null if the label is not a percentile
+     */
+    public static Double quantileOf(String label) {
+        if (label == null || label.isEmpty()) {
+            return null;
+        }
+        String digits = label.replace('_', '.');
+        double percent;
+        try {
+            percent = Double.parseDouble(digits);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (percent > 100 && digits.indexOf('.') < 0) {
+            // "999" stands for 99.9
+            percent = percent / Math.pow(10, digits.length() - 2);
+        }
+        if (percent < 0 || percent > 100) {
+            return null;
+        }
+        return percent / 100;
+    }
+
     public Map<String, Percentile> getPercentiles() {
         return Collections.unmodifiableMap(percentiles);
     }
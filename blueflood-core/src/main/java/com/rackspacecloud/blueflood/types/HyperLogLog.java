@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.types;
+
+import java.util.Arrays;
+
+/**
+ * A HyperLogLog cardinality estimator over the hashes kept by {@link BluefloodSetRollup}s, for sets too large to be
+ * kept exactly.
+ *
+ * It has a fixed number of one byte registers, {@link #NUM_REGISTERS}, whatever the cardinality, and the estimate has
+ * a standard error of about 1.04 / sqrt({@link #NUM_REGISTERS}), 1.6%. Merging two of them takes the highest of each
+ * register, so a merged estimator estimates exactly as one fed all the hashes would.
+ *
+ * Not thread safe.
+ */
+public class HyperLogLog {
+
+    public static final int PRECISION = 12;
+    public static final int NUM_REGISTERS = 1 << PRECISION;
+
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / NUM_REGISTERS);
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this.registers = new byte[NUM_REGISTERS];
+    }
+
+    /**
+     * Restores an estimator from its registers, see {@link #getRegisters()}.
+     */
+    public HyperLogLog(byte[] registers) {
+        if (registers.length != NUM_REGISTERS) {
+            throw new IllegalArgumentException(String.format("Expected %d registers but got %d", NUM_REGISTERS, registers.length));
+        }
+        this.registers = Arrays.copyOf(registers, NUM_REGISTERS);
+    }
+
+    public void addHash(int hash) {
+        long x = mix(hash);
+        int register = (int) (x >>> (64 - PRECISION));
+        // leading zeros of what is left of the hash, plus one; the bit set below keeps it within 64 - PRECISION + 1
+        byte rank = (byte) (Long.numberOfLeadingZeros((x << PRECISION) | (1L << (PRECISION - 1))) + 1);
+        if (rank > registers[register]) {
+            registers[register] = rank;
+        }
+    }
+
+    /**
+     * Adds all the hashes of another estimator to this one.
+     */
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < NUM_REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * @return the estimated number of distinct hashes added
+     */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * NUM_REGISTERS * NUM_REGISTERS / sum;
+
+        // for small cardinalities, counting the empty registers is more accurate
+        if (estimate <= 2.5 * NUM_REGISTERS && zeros > 0) {
+            estimate = NUM_REGISTERS * Math.log((double) NUM_REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * @return a copy of the registers
+     */
+    public byte[] getRegisters() {
+        return Arrays.copyOf(registers, NUM_REGISTERS);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof HyperLogLog && Arrays.equals(registers, ((HyperLogLog) obj).registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(registers);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{estimate:%d}", estimate());
+    }
+
+    // the hashes are plain hashCode()s, often clustered, so they are spread over 64 bits first (murmur3's finalizer)
+    private static long mix(int hash) {
+        long x = hash;
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+}
@@ -18,6 +18,7 @@ package com.rackspacecloud.blueflood.types;
 
 import com.rackspacecloud.blueflood.service.Configuration;
 import com.rackspacecloud.blueflood.service.CoreConfig;
+import com.rackspacecloud.blueflood.utils.Util;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +30,8 @@ public class Locator implements Comparable<Locator> {
     private String stringRep = null;
     private String tenantId = null;
     private String metricName = null;
+    // computed lazily, -1 until then. Racy like String.hashCode(), which is fine as every thread computes the same value.
+    private int shard = -1;
 
     static {
         METRIC_TOKEN_SEPARATOR = (Configuration.getInstance().getBooleanProperty(CoreConfig.USE_LEGACY_METRIC_SEPARATOR) ? "," : ".");
@@ -52,6 +55,7 @@ public class Locator implements Comparable<Locator> {
         this.stringRep = rep;
         tenantId = this.stringRep.split(METRIC_TOKEN_SEPARATOR_REGEX)[0];
         metricName = this.stringRep.substring(this.stringRep.indexOf(METRIC_TOKEN_SEPARATOR)+1);
+        shard = -1;
     }
 
     protected boolean isValidDBKey(String dbKey, String delim) {
@@ -80,6 +84,18 @@ public class Locator implements Comparable<Locator> {
         return this.metricName;
     }
 
+    /**
+     * @return the shard this locator belongs to, as computed by {@link Util#computeShard(String)}
+     */
+    public int getShard() {
+        int s = shard;
+        if (s < 0) {
+            s = Util.computeShard(stringRep);
+            shard = s;
+        }
+        return s;
+    }
+
     public boolean equals(Locator other) {
         return stringRep.equals(other.toString());
     }
@@ -20,10 +20,17 @@ import java.util.Map;
 import java.util.TreeMap;
 
 public class Points<T> {
-    private Map<Long, Point<T>> points; // Map of timestamp to Point
+    private final Map<Long, Point<T>> points; // Map of timestamp to Point
 
     public Points() {
-        this.points = new TreeMap<Long, Point<T>>();
+        this(new TreeMap<Long, Point<T>>());
+    }
+
+    /**
+     * @param points the map of timestamp to Point to keep the points in, sorted by timestamp
+     */
+    protected Points(Map<Long, Point<T>> points) {
+        this.points = points;
     }
 
     public void add(Point<T> point) {
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.types;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable quantile sketch for timer values, kept with {@link BluefloodTimerRollup}s so that their percentiles
+ * can be rolled up correctly instead of by averaging.
+ *
+ * Values are counted in logarithmic buckets: bucket i holds the values in (gamma^(i-1), gamma^i], with gamma chosen so
+ * that any quantile is answered within {@link #RELATIVE_ACCURACY} of the true value. Values too small to be bucketed,
+ * zero and negative ones included, are counted together as zero. Merging two sketches adds up their buckets, so a
+ * merged sketch answers exactly as one fed all the values would.
+ *
+ * At most {@link #MAX_BUCKETS} buckets are kept. Beyond that the lowest buckets are folded together, which keeps the
+ * size of a sketch bounded at the price of accuracy on the lowest quantiles only.
+ *
+ * Not thread safe.
+ */
+public class QuantileSketch {
+
+    public static final double RELATIVE_ACCURACY = 0.01;
+    public static final int MAX_BUCKETS = 1024;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    // smaller values are counted as zero
+    private static final double MIN_VALUE = 1e-9;
+
+    private static final long[] NO_BUCKETS = new long[0];
+
+    private long zeroCount = 0;
+    private long count = 0;
+    // counts[i] is the count of bucket (offset + i)
+    private int offset = 0;
+    private long[] counts = NO_BUCKETS;
+
+    public QuantileSketch() {
+    }
+
+    /**
+     * Restores a sketch from its parts, see {@link #getZeroCount()}, {@link #getMinIndex()} and
+     * {@link #getBucketCount(int)}.
+     */
+    public QuantileSketch(long zeroCount, int minIndex, long[] bucketCounts) {
+        if (bucketCounts.length > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Too many buckets: " + bucketCounts.length);
+        }
+        this.zeroCount = zeroCount;
+        this.count = zeroCount;
+        this.offset = minIndex;
+        this.counts = Arrays.copyOf(bucketCounts, bucketCounts.length);
+        for (long n : counts) {
+            this.count += n;
+        }
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public void add(double value, long n) {
+        if (n <= 0) {
+            return;
+        }
+        if (value < MIN_VALUE) {
+            zeroCount += n;
+        } else {
+            addToBucket(indexOf(value), n);
+        }
+        count += n;
+    }
+
+    /**
+     * Adds {@code n} values spread along the distribution described by a few of its quantiles, such as the
+     * percentiles of a pre-aggregated timer. Between two given quantiles, the values are spread evenly. If the
+     * quantiles run from 0 to 1, one value is kept at each end.
+     *
+     * @param quantiles increasing quantiles within [0, 1], usually starting with 0 (the min) and ending with 1 (the max)
+     * @param values the values at those quantiles, not decreasing
+     * @param n the number of values
+     */
+    public void addDistribution(double[] quantiles, double[] values, long n) {
+        if (quantiles.length != values.length) {
+            throw new IllegalArgumentException("Got " + quantiles.length + " quantiles for " + values.length + " values");
+        }
+        if (n <= 0 || quantiles.length == 0) {
+            return;
+        }
+        if (quantiles.length == 1) {
+            add(values[0], n);
+            return;
+        }
+
+        int last = quantiles.length - 1;
+        if (quantiles[0] == 0 && quantiles[last] == 1) {
+            // the min and max are values that did occur; spreading them thin would lose them.
+            add(values[0]);
+            if (n == 1) {
+                return;
+            }
+            add(values[last]);
+            n -= 2;
+        }
+
+        // values are placed a bucket at a time; rounding the running total keeps the counts whole and adding up to n.
+        double placed = 0;
+        long assigned = 0;
+        double span = quantiles[last] - quantiles[0];
+        for (int i = 1; i < quantiles.length; i++) {
+            double mass = span > 0 ? n * (quantiles[i] - quantiles[i - 1]) / span : n;
+            double lo = values[i - 1];
+            double hi = Math.max(lo, values[i]);
+
+            if (hi == lo) {
+                placed += mass;
+                long m = Math.round(placed) - assigned;
+                assigned += m;
+                add(lo, m);
+                continue;
+            }
+
+            // walk the buckets covered by [lo, hi], giving each the share of the mass that falls in it.
+            double from = lo;
+            while (from < hi) {
+                double to;
+                if (from < MIN_VALUE) {
+                    to = Math.min(hi, MIN_VALUE);
+                } else {
+                    to = Math.min(hi, Math.pow(GAMMA, Math.floor(Math.log(from) / LOG_GAMMA) + 1));
+                    if (to <= from) {
+                        to = Math.min(hi, from * GAMMA);
+                    }
+                }
+                placed += mass * (to - from) / (hi - lo);
+                long m = Math.round(placed) - assigned;
+                assigned += m;
+                // the bucket holding the middle of [from, to]
+                add((from + to) / 2, m);
+                from = to;
+            }
+        }
+    }
+
+    /**
+     * Adds all the values of another sketch to this one.
+     */
+    public void merge(QuantileSketch other) {
+        zeroCount += other.zeroCount;
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] > 0) {
+                addToBucket(other.offset + i, other.counts[i]);
+            }
+        }
+        count += other.count;
+    }
+
+    /**
+     * @param quantile within [0, 1]
+     * @return the estimated value at the quantile, or NaN if the sketch is empty
+     */
+    public double getQuantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be within [0, 1]: " + quantile);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+
+        double rank = quantile * (count - 1);
+        long seen = zeroCount;
+        if (rank < seen) {
+            return 0;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (rank < seen) {
+                return valueOf(offset + i);
+            }
+        }
+        return valueOf(offset + counts.length - 1);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public long getZeroCount() {
+        return zeroCount;
+    }
+
+    /**
+     * @return the index of the lowest bucket kept
+     */
+    public int getMinIndex() {
+        return offset;
+    }
+
+    /**
+     * @return the number of buckets kept, from {@link #getMinIndex()} up
+     */
+    public int getNumBuckets() {
+        return counts.length;
+    }
+
+    /**
+     * @param i the bucket, from 0 to {@link #getNumBuckets()}, relative to {@link #getMinIndex()}
+     */
+    public long getBucketCount(int i) {
+        return counts[i];
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof QuantileSketch)) return false;
+        QuantileSketch other = (QuantileSketch) obj;
+        if (other.count != this.count || other.zeroCount != this.zeroCount) return false;
+
+        int lo = Math.min(this.offset, other.offset);
+        int hi = Math.max(this.offset + this.counts.length, other.offset + other.counts.length);
+        for (int index = lo; index < hi; index++) {
+            if (this.countAt(index) != other.countAt(index)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        // only the non empty buckets, like equals()
+        int hash = (int) (count ^ (count >>> 32));
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                hash = 31 * hash + (offset + i);
+                hash = 31 * hash + (int) (counts[i] ^ (counts[i] >>> 32));
+            }
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{count:%d, zero:%d, min_index:%d, buckets:%d}", count, zeroCount, offset, counts.length);
+    }
+
+    private long countAt(int index) {
+        int i = index - offset;
+        return i >= 0 && i < counts.length ? counts[i] : 0;
+    }
+
+    private void addToBucket(int index, long n) {
+        if (counts.length == 0) {
+            offset = index;
+            counts = new long[1];
+        } else if (index < offset || index >= offset + counts.length) {
+            resize(Math.min(index, offset), Math.max(index, offset + counts.length - 1));
+        }
+        // the bucket may have been folded into the lowest one
+        counts[Math.max(index, offset) - offset] += n;
+    }
+
+    // makes room for the buckets lo to hi, folding the lowest ones if that is too many
+    private void resize(int lo, int hi) {
+        if (hi - lo + 1 > MAX_BUCKETS) {
+            lo = hi - MAX_BUCKETS + 1;
+        }
+        long[] resized = new long[hi - lo + 1];
+        for (int i = 0; i < counts.length; i++) {
+            resized[Math.max(offset + i, lo) - lo] += counts[i];
+        }
+        counts = resized;
+        offset = lo;
+    }
+
+    private static int indexOf(double value) {
+        return (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+    }
+
+    // the value within the bucket with the least relative error to any other value of the bucket
+    private static double valueOf(int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+}
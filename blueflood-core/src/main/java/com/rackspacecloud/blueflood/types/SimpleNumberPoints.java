@@ -0,0 +1,247 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.types;
+
+import java.util.*;
+
+/**
+ * {@link Points} of full resolution {@link SimpleNumber}s, kept in columns: sorted timestamps, values and value types
+ * in primitive arrays, instead of a tree of boxed timestamps, {@link Points.Point}s and {@link SimpleNumber}s. That
+ * is about 17 bytes a point rather than well over a hundred.
+ *
+ * {@link #getPoints()} is a view of the columns, so these can be used wherever {@link Points} are; the points it
+ * returns are created as they are asked for. Code that walks many points should use {@link #size()},
+ * {@link #getTimestamp(int)} and {@link #getValue(int)} instead.
+ *
+ * Points are cheapest to add in timestamp order. Not thread safe.
+ */
+public class SimpleNumberPoints extends Points<SimpleNumber> {
+
+    private static final SimpleNumber.Type[] TYPES = SimpleNumber.Type.values();
+
+    private final Columns columns;
+
+    public SimpleNumberPoints() {
+        this(16);
+    }
+
+    public SimpleNumberPoints(int expectedSize) {
+        this(new Columns(Math.max(expectedSize, 1)));
+    }
+
+    private SimpleNumberPoints(Columns columns) {
+        super(new View(columns));
+        this.columns = columns;
+    }
+
+    /**
+     * Adds a point, replacing any point with the same timestamp, like {@link #add(Points.Point)}.
+     *
+     * @param value an Integer, Long, Double or {@link SimpleNumber}
+     */
+    public void add(long timestamp, Object value) {
+        if (value instanceof SimpleNumber) {
+            value = ((SimpleNumber) value).getValue();
+        }
+        if (value instanceof Integer) {
+            columns.put(timestamp, SimpleNumber.Type.INTEGER, ((Integer) value).longValue());
+        } else if (value instanceof Long) {
+            columns.put(timestamp, SimpleNumber.Type.LONG, (Long) value);
+        } else if (value instanceof Double) {
+            columns.put(timestamp, SimpleNumber.Type.DOUBLE, Double.doubleToRawLongBits((Double) value));
+        } else if (value == null) {
+            throw new NullPointerException("value cannot be null");
+        } else {
+            throw new IllegalArgumentException("Unexpected argument type " + value.getClass() + ", expected number.");
+        }
+    }
+
+    public int size() {
+        return columns.size;
+    }
+
+    /**
+     * @param i from 0 to {@link #size()}, in timestamp order
+     */
+    public long getTimestamp(int i) {
+        checkIndex(i);
+        return columns.timestamps[i];
+    }
+
+    public SimpleNumber.Type getDataType(int i) {
+        checkIndex(i);
+        return TYPES[columns.types[i]];
+    }
+
+    /**
+     * @return the value, of the same class it was added as
+     */
+    public Number getValue(int i) {
+        checkIndex(i);
+        return columns.valueAt(i);
+    }
+
+    public double getDoubleValue(int i) {
+        checkIndex(i);
+        long bits = columns.values[i];
+        return columns.types[i] == SimpleNumber.Type.DOUBLE.ordinal() ? Double.longBitsToDouble(bits) : (double) bits;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= columns.size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", size: " + columns.size);
+        }
+    }
+
+    private static final class Columns {
+        private long[] timestamps;
+        // the long value, or the bits of the double value
+        private long[] values;
+        // ordinals of SimpleNumber.Type
+        private byte[] types;
+        private int size = 0;
+
+        Columns(int capacity) {
+            timestamps = new long[capacity];
+            values = new long[capacity];
+            types = new byte[capacity];
+        }
+
+        int indexOf(long timestamp) {
+            // the common case: points come in order
+            if (size > 0 && timestamp > timestamps[size - 1]) {
+                return -(size + 1);
+            }
+            return Arrays.binarySearch(timestamps, 0, size, timestamp);
+        }
+
+        // returns the index the point was put at
+        int put(long timestamp, SimpleNumber.Type type, long value) {
+            int i = indexOf(timestamp);
+            if (i < 0) {
+                i = -(i + 1);
+                if (size == timestamps.length) {
+                    int capacity = size + (size >> 1) + 1;
+                    timestamps = Arrays.copyOf(timestamps, capacity);
+                    values = Arrays.copyOf(values, capacity);
+                    types = Arrays.copyOf(types, capacity);
+                }
+                if (i < size) {
+                    System.arraycopy(timestamps, i, timestamps, i + 1, size - i);
+                    System.arraycopy(values, i, values, i + 1, size - i);
+                    System.arraycopy(types, i, types, i + 1, size - i);
+                }
+                size++;
+            }
+            timestamps[i] = timestamp;
+            values[i] = value;
+            types[i] = (byte) type.ordinal();
+            return i;
+        }
+
+        Number valueAt(int i) {
+            long bits = values[i];
+            switch (TYPES[types[i]]) {
+                case INTEGER:
+                    return (int) bits;
+                case LONG:
+                    return bits;
+                default:
+                    return Double.longBitsToDouble(bits);
+            }
+        }
+
+        Point<SimpleNumber> pointAt(int i) {
+            return new Point<SimpleNumber>(timestamps[i], new SimpleNumber(valueAt(i)));
+        }
+    }
+
+    // the Map<Long, Point> of Points, over the columns
+    private static final class View extends AbstractMap<Long, Point<SimpleNumber>> {
+        private final Columns columns;
+
+        View(Columns columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public int size() {
+            return columns.size;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Long && columns.indexOf((Long) key) >= 0;
+        }
+
+        @Override
+        public Point<SimpleNumber> get(Object key) {
+            if (!(key instanceof Long)) {
+                return null;
+            }
+            int i = columns.indexOf((Long) key);
+            return i >= 0 ? columns.pointAt(i) : null;
+        }
+
+        @Override
+        public Point<SimpleNumber> put(Long key, Point<SimpleNumber> point) {
+            Point<SimpleNumber> previous = get(key);
+            SimpleNumber data = point.getData();
+            long value = data.getDataType() == SimpleNumber.Type.DOUBLE
+                    ? Double.doubleToRawLongBits(data.getValue().doubleValue())
+                    : data.getValue().longValue();
+            columns.put(key, data.getDataType(), value);
+            return previous;
+        }
+
+        @Override
+        public Set<Entry<Long, Point<SimpleNumber>>> entrySet() {
+            return new AbstractSet<Entry<Long, Point<SimpleNumber>>>() {
+                @Override
+                public int size() {
+                    return columns.size;
+                }
+
+                @Override
+                public Iterator<Entry<Long, Point<SimpleNumber>>> iterator() {
+                    return new Iterator<Entry<Long, Point<SimpleNumber>>>() {
+                        private int next = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < columns.size;
+                        }
+
+                        @Override
+                        public Entry<Long, Point<SimpleNumber>> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Point<SimpleNumber> point = columns.pointAt(next++);
+                            return new SimpleImmutableEntry<Long, Point<SimpleNumber>>(point.getTimestamp(), point);
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException("Not allowed");
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -21,8 +21,10 @@ import com.google.common.cache.CacheBuilder;
 import com.rackspacecloud.blueflood.io.Constants;
 import com.rackspacecloud.blueflood.service.Configuration;
 import com.rackspacecloud.blueflood.service.CoreConfig;
-import org.apache.commons.codec.digest.DigestUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DecimalFormat;
 import java.text.Format;
 import java.util.ArrayList;
@@ -34,6 +36,16 @@ public class Util {
     public static final Format DECIMAL_FORMAT = new DecimalFormat("0.00");
     private static final Cache<String, Integer> shardCache = CacheBuilder.newBuilder().expireAfterAccess(10,
             TimeUnit.MINUTES).concurrencyLevel(30).build();
+    private static final ThreadLocal<MessageDigest> md5 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
 
     public static Integer getShard(String s) {
         Integer shard = shardCache.getIfPresent(s);
@@ -44,8 +56,14 @@ public class Util {
         return shard;
     }
 
+    /**
+     * The shard is the last byte of the MD5 digest of the UTF-8 encoded string, modulo the number of shards. This
+     * is the same value as the last two characters of the hex digest parsed as a number, which is how it was
+     * originally computed, so shard assignments of existing data do not change.
+     */
     public static int computeShard(String s) {
-        return (int)Long.parseLong(DigestUtils.md5Hex(s).substring(30), 16) % Constants.NUMBER_OF_SHARDS;
+        byte[] digest = md5.get().digest(s.getBytes(StandardCharsets.UTF_8));
+        return (digest[digest.length - 1] & 0xff) % Constants.NUMBER_OF_SHARDS;
     }
     
     public static Collection<Integer> parseShards(String s) {
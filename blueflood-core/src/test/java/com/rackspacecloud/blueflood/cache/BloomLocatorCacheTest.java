@@ -0,0 +1,55 @@
+package com.rackspacecloud.blueflood.cache;
+
+import com.rackspacecloud.blueflood.types.Locator;
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class BloomLocatorCacheTest {
+
+    private final BloomLocatorCache cache = new BloomLocatorCache(60, SECONDS, 60, SECONDS, 10000, 1000, 0.0001, 4);
+    private final Locator locator = Locator.createLocatorFromPathComponents("tenant", "a", "b", "c");
+    private final Locator otherLocator = Locator.createLocatorFromPathComponents("tenant", "a", "b", "d");
+
+    @Test
+    public void layersAreIndependent() {
+        // when
+        cache.setLocatorCurrentInBatchLayer(locator);
+        cache.setLocatorCurrentInDiscoveryLayer(otherLocator);
+
+        // then
+        assertThat(cache.isLocatorCurrentInBatchLayer(locator), is(true));
+        assertThat(cache.isLocatorCurrentInDiscoveryLayer(locator), is(false));
+        assertThat(cache.isLocatorCurrentInBatchLayer(otherLocator), is(false));
+        assertThat(cache.isLocatorCurrentInDiscoveryLayer(otherLocator), is(true));
+        assertThat(cache.getCurrentLocatorCount(), equalTo(2L));
+    }
+
+    @Test
+    public void delayedLocatorsAreCurrentPerSlot() {
+        // when
+        cache.setDelayedLocatorForASlotCurrent(3, locator);
+
+        // then
+        assertThat(cache.isDelayedLocatorForASlotCurrent(3, locator), is(true));
+        assertThat(cache.isDelayedLocatorForASlotCurrent(4, locator), is(false));
+        assertThat(cache.isDelayedLocatorForASlotCurrent(3, otherLocator), is(false));
+        assertThat(cache.isLocatorCurrentInBatchLayer(locator), is(false));
+    }
+
+    @Test
+    public void resetClearsLocators() {
+        // given
+        cache.setLocatorCurrentInBatchLayer(locator);
+        cache.setDelayedLocatorForASlotCurrent(3, locator);
+
+        // when
+        cache.resetCache();
+
+        // then
+        assertThat(cache.isLocatorCurrentInBatchLayer(locator), is(false));
+        assertThat(cache.isDelayedLocatorForASlotCurrent(3, locator), is(false));
+    }
+}
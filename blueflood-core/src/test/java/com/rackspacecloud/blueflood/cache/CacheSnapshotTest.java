@@ -0,0 +1,99 @@
+package com.rackspacecloud.blueflood.cache;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CacheSnapshotTest {
+
+    private static final long NOW = 1500000000000L;
+
+    @Test
+    public void testKeysAndExpiriesAreRead() throws IOException {
+        // given
+        Map<String, Long> expiries = new HashMap<String, Long>();
+        expiries.put("BATCH.tenant.a.b.c", NOW + 60000);
+        expiries.put("BATCH.tenant.a.b", NOW + 1500);
+        expiries.put("BATCH.tenant.é.b", NOW + 30000);
+        expiries.put("DISCOVERY.other", NOW + 3600000);
+
+        // when
+        Map<String, Long> read = roundTrip(expiries, NOW, NOW);
+
+        // then: expiries are rounded up to the second
+        assertEquals(4, read.size());
+        assertEquals(NOW + 60000, (long) read.get("BATCH.tenant.a.b.c"));
+        assertEquals(NOW + 2000, (long) read.get("BATCH.tenant.a.b"));
+        assertEquals(NOW + 30000, (long) read.get("BATCH.tenant.é.b"));
+        assertEquals(NOW + 3600000, (long) read.get("DISCOVERY.other"));
+    }
+
+    @Test
+    public void testExpiredKeysAreDropped() throws IOException {
+        // given
+        Map<String, Long> expiries = new HashMap<String, Long>();
+        expiries.put("expired", NOW - 1);
+        expiries.put("soon", NOW + 10000);
+        expiries.put("later", NOW + 60000);
+
+        // when: read 20 seconds after it was written
+        Map<String, Long> read = roundTrip(expiries, NOW, NOW + 20000);
+
+        // then
+        assertEquals(1, read.size());
+        assertEquals(NOW + 60000, (long) read.get("later"));
+    }
+
+    @Test
+    public void testSharedPrefixesAreWrittenOnce() throws IOException {
+        // given
+        Map<String, Long> expiries = new HashMap<String, Long>();
+        for (int i = 0; i < 100; i++) {
+            expiries.put("BATCH.1234567.rackspace.monitoring.entities.enAAAAA.checks.agent.filesystem." + i, NOW + 60000);
+        }
+
+        // when
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CacheSnapshot.write(new DataOutputStream(out), expiries, NOW);
+
+        // then
+        assertTrue(out.size() < 100 * 10);
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownVersionIsRejected() throws IOException {
+        CacheSnapshot.read(new DataInputStream(new ByteArrayInputStream(new byte[] { 9, 0, 0 })), NOW);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNegativeKeyLengthIsRejected() throws IOException {
+        // version, time taken, one key sharing -1 bytes (a 5 byte varint) with the previous one
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(1);
+        out.writeLong(NOW);
+        out.writeInt(1);
+        out.write(new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 1, 'a', 1 });
+        CacheSnapshot.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), NOW);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNegativeKeyCountIsRejected() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(1);
+        out.writeLong(NOW);
+        out.writeInt(-1);
+        CacheSnapshot.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), NOW);
+    }
+
+    private static Map<String, Long> roundTrip(Map<String, Long> expiries, long written, long read) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CacheSnapshot.write(new DataOutputStream(out), expiries, written);
+        return CacheSnapshot.read(new DataInputStream(new ByteArrayInputStream(out.toByteArray())), read);
+    }
+}
@@ -11,6 +11,10 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -31,7 +35,7 @@ public class LocatorCacheTest {
     @Rule
     public RepeatingRule repeatedly = new RepeatingRule();
 
-    private final LocatorCache cache = LocatorCache.getInstance(
+    private final GuavaLocatorCache cache = LocatorCache.getInstance(
             60, SECONDS, 60, SECONDS);
 
     @Before
@@ -280,15 +284,15 @@ public class LocatorCacheTest {
         }
     }
 
-    private static Matcher<Locator> isCurrentIn(LocatorCache cache, LocatorCache.Layer layer) {
+    private static Matcher<Locator> isCurrentIn(GuavaLocatorCache cache, LocatorCache.Layer layer) {
         return new IsCurrentInMatcher(cache, layer);
     }
 
     private static class IsCurrentInMatcher extends BaseMatcher<Locator> {
-        private final LocatorCache cache;
+        private final GuavaLocatorCache cache;
         private final LocatorCache.Layer layer;
 
-        public IsCurrentInMatcher(LocatorCache cache, LocatorCache.Layer layer) {
+        public IsCurrentInMatcher(GuavaLocatorCache cache, LocatorCache.Layer layer) {
             this.cache = cache;
             this.layer = layer;
         }
@@ -320,14 +324,65 @@ public class LocatorCacheTest {
     // DO NOT synchronize this cache. It bottlenecks all the database writing threads and kills write performance!
     // This is difficult to show in a unit test, but it's clearly observable in production.
     public void mustNotBeSynchronized() throws IOException {
-        Path path = Paths.get("src/main/java/com/rackspacecloud/blueflood/cache/LocatorCache.java");
-        for (String line : Files.readAllLines(path)) {
-            if (line.contains("synchronized")) {
-                Assert.fail("Found 'synchronized' in line:\n" + line);
+        for (String file : Arrays.asList("LocatorCache.java", "GuavaLocatorCache.java", "BloomLocatorCache.java")) {
+            Path path = Paths.get("src/main/java/com/rackspacecloud/blueflood/cache/" + file);
+            for (String line : Files.readAllLines(path)) {
+                if (line.contains("synchronized")) {
+                    Assert.fail("Found 'synchronized' in " + file + " line:\n" + line);
+                }
             }
         }
     }
 
+    @Test
+    public void savedCacheIsLoadedUntilEntriesExpire() throws IOException {
+        // given
+        Locator locator = Locator.createLocatorFromPathComponents("tenant", "a", "b", "c");
+        Locator otherLocator = Locator.createLocatorFromPathComponents("tenant", "a", "b", "d");
+        cache.setLocatorCurrentInBatchLayer(locator);
+        cache.setLocatorCurrentInDiscoveryLayer(otherLocator);
+        cache.setDelayedLocatorForASlotCurrent(3, locator);
+        long now = System.currentTimeMillis();
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        cache.save(new DataOutputStream(saved), now);
+
+        // when
+        GuavaLocatorCache restarted = LocatorCache.getInstance(60, SECONDS, 60, SECONDS);
+        restarted.load(new DataInputStream(new ByteArrayInputStream(saved.toByteArray())), now);
+        GuavaLocatorCache restartedLater = LocatorCache.getInstance(60, SECONDS, 60, SECONDS);
+        restartedLater.load(new DataInputStream(new ByteArrayInputStream(saved.toByteArray())), now + 61000);
+
+        // then
+        assertThat(restarted.isLocatorCurrentInBatchLayer(locator), is(true));
+        assertThat(restarted.isLocatorCurrentInDiscoveryLayer(locator), is(false));
+        assertThat(restarted.isLocatorCurrentInDiscoveryLayer(otherLocator), is(true));
+        assertThat(restarted.isDelayedLocatorForASlotCurrent(3, locator), is(true));
+        assertThat(restarted.isDelayedLocatorForASlotCurrent(4, locator), is(false));
+        assertThat(restartedLater.getCurrentLocatorCount(), equalTo(0L));
+        assertThat(restartedLater.getCurrentDelayedLocatorCount(), equalTo(0L));
+    }
+
+    @Test
+    public void loadedEntriesKeepTheirExpiry() throws IOException, InterruptedException {
+        // given: a snapshot whose entries have 1 second left
+        Locator locator = Locator.createLocatorFromPathComponents("tenant", "a", "b", "c");
+        cache.setLocatorCurrentInBatchLayer(locator);
+        long now = System.currentTimeMillis();
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        cache.save(new DataOutputStream(saved), now - 59000);
+
+        // when
+        GuavaLocatorCache restarted = LocatorCache.getInstance(60, SECONDS, 60, SECONDS);
+        restarted.load(new DataInputStream(new ByteArrayInputStream(saved.toByteArray())), now);
+        assertThat(restarted.isLocatorCurrentInBatchLayer(locator), is(true));
+        Thread.sleep(1100);
+
+        // then
+        assertThat(restarted.isLocatorCurrentInBatchLayer(locator), is(false));
+        restarted.setLocatorCurrentInBatchLayer(locator);
+        assertThat(restarted.isLocatorCurrentInBatchLayer(locator), is(true));
+    }
+
     /**
      * Test helper that executes a given runnable multiple times in multiple threads. This was written, rather than
      * using tempus fugit's @Concurrent annotation, because I want to run lots of operations on the cache in parallel,
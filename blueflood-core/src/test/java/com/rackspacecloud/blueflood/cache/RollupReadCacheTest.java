@@ -0,0 +1,175 @@
+package com.rackspacecloud.blueflood.cache;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.rackspacecloud.blueflood.io.MetricsRWDelegator;
+import com.rackspacecloud.blueflood.outputs.formats.MetricData;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.rollup.SlotKey;
+import com.rackspacecloud.blueflood.types.Locator;
+import com.rackspacecloud.blueflood.types.Points;
+import com.rackspacecloud.blueflood.types.Range;
+import com.rackspacecloud.blueflood.utils.Clock;
+import org.joda.time.Instant;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class RollupReadCacheTest {
+
+    private static final long DAY = RollupReadCache.BLOCK_MILLIS;
+    private static final long HOUR = DAY / 24;
+    private static final long NOW = 1000 * DAY + 12 * HOUR;
+
+    private final Locator locator = Locator.createLocatorFromPathComponents("tenant", "a", "b");
+    private final Clock clock = mock(Clock.class);
+    private final MetricsRWDelegator delegator = mock(MetricsRWDelegator.class);
+    private RollupReadCache cache;
+
+    @Before
+    public void setup() {
+        when(clock.now()).thenReturn(new Instant(NOW));
+        // one point an hour, on the hour, for every locator
+        when(delegator.getDatapointsForRangeAsync(anyList(), any(Range.class), any(Granularity.class))).thenAnswer(
+                new Answer<ListenableFuture<Map<Locator, MetricData>>>() {
+                    @Override
+                    public ListenableFuture<Map<Locator, MetricData>> answer(InvocationOnMock invocation) {
+                        List<Locator> locators = (List<Locator>) invocation.getArguments()[0];
+                        Range range = (Range) invocation.getArguments()[1];
+                        Map<Locator, MetricData> result = new HashMap<Locator, MetricData>();
+                        for (Locator locator : locators) {
+                            Points<Long> points = new Points<Long>();
+                            long first = (range.getStart() + HOUR - 1) / HOUR * HOUR;
+                            for (long timestamp = first; timestamp <= range.getStop(); timestamp += HOUR) {
+                                points.add(new Points.Point<Long>(timestamp, timestamp));
+                            }
+                            result.put(locator, new MetricData(points, "ms"));
+                        }
+                        return Futures.immediateFuture(result);
+                    }
+                });
+        cache = new RollupReadCache(true, 1024 * 1024, 600000, 0, clock);
+    }
+
+    @Test
+    public void testClosedDaysAreReadOnce() {
+        // given
+        Range range = new Range(990 * DAY + 3 * HOUR, 992 * DAY + 5 * HOUR);
+        Map<Locator, MetricData> first = cache.getDatapointsForRange(delegator, list(locator), range, Granularity.MIN_60);
+
+        // when
+        Map<Locator, MetricData> second = cache.getDatapointsForRange(delegator, list(locator), range, Granularity.MIN_60);
+
+        // then: the whole days are read once, and the points outside the range are not returned
+        verify(delegator).getDatapointsForRangeAsync(list(locator), new Range(990 * DAY, 993 * DAY), Granularity.MIN_60);
+        verifyNoMoreInteractions(delegator);
+        assertEquals(first.get(locator).getData().getPoints(), second.get(locator).getData().getPoints());
+        assertEquals(51, second.get(locator).getData().getPoints().size());
+        assertEquals("ms", second.get(locator).getUnit());
+        assertEquals(3, cache.getBlockCount());
+    }
+
+    @Test
+    public void testOpenDayIsAlwaysRead() {
+        // given
+        Range range = new Range(999 * DAY, NOW);
+        cache.getDatapointsForRange(delegator, list(locator), range, Granularity.MIN_60);
+
+        // when
+        Map<Locator, MetricData> result = cache.getDatapointsForRange(delegator, list(locator), range, Granularity.MIN_60);
+
+        // then: only the day that is still open is read again
+        verify(delegator).getDatapointsForRangeAsync(list(locator), range, Granularity.MIN_60);
+        verify(delegator).getDatapointsForRangeAsync(list(locator), new Range(1000 * DAY, NOW), Granularity.MIN_60);
+        assertEquals(37, result.get(locator).getData().getPoints().size());
+        assertEquals(1, cache.getBlockCount());
+    }
+
+    @Test
+    public void testRollupInvalidatesDaysOfItsSlot() {
+        // given
+        Range range = new Range(990 * DAY, 991 * DAY - 1);
+        cache.getDatapointsForRange(delegator, list(locator), range, Granularity.MIN_60);
+        when(clock.now()).thenReturn(new Instant(NOW + 1));
+
+        // when
+        long rolledUp = 990 * DAY + 6 * HOUR;
+        cache.invalidate(SlotKey.of(Granularity.MIN_60, Granularity.MIN_60.slot(rolledUp), locator.getShard()));
+        cache.getDatapointsForRange(delegator, list(locator), range, Granularity.MIN_60);
+
+        // then
+        verify(delegator, times(2)).getDatapointsForRangeAsync(list(locator), new Range(990 * DAY, 991 * DAY),
+                Granularity.MIN_60);
+    }
+
+    @Test
+    public void testInvalidationOfOtherGranularityKeepsBlocks() {
+        // given
+        Range range = new Range(990 * DAY, 991 * DAY - 1);
+        cache.getDatapointsForRange(delegator, list(locator), range, Granularity.MIN_60);
+        when(clock.now()).thenReturn(new Instant(NOW + 1));
+
+        // when
+        long rolledUp = 990 * DAY + 6 * HOUR;
+        cache.invalidate(SlotKey.of(Granularity.MIN_240, Granularity.MIN_240.slot(rolledUp), locator.getShard()));
+        cache.getDatapointsForRange(delegator, list(locator), range, Granularity.MIN_60);
+
+        // then
+        verify(delegator, times(1)).getDatapointsForRangeAsync(anyList(), any(Range.class), any(Granularity.class));
+    }
+
+    @Test
+    public void testFullResolutionIsNotCached() {
+        // given
+        Range range = new Range(990 * DAY, 990 * DAY + HOUR);
+
+        // when
+        cache.getDatapointsForRange(delegator, list(locator), range, Granularity.FULL);
+        cache.getDatapointsForRange(delegator, list(locator), range, Granularity.FULL);
+
+        // then
+        verify(delegator, times(2)).getDatapointsForRangeAsync(list(locator), range, Granularity.FULL);
+        assertEquals(0, cache.getBlockCount());
+    }
+
+    @Test
+    public void testDisabledCacheReadsEverything() {
+        // given
+        cache = new RollupReadCache(false, 1024 * 1024, 600000, 0, clock);
+        Range range = new Range(990 * DAY, 990 * DAY + HOUR);
+
+        // when
+        cache.getDatapointsForRange(delegator, list(locator), range, Granularity.MIN_60);
+        cache.getDatapointsForRange(delegator, list(locator), range, Granularity.MIN_60);
+
+        // then
+        verify(delegator, times(2)).getDatapointsForRangeAsync(list(locator), range, Granularity.MIN_60);
+        assertEquals(0, cache.getBlockCount());
+    }
+
+    @Test
+    public void testCacheIsBoundedByBytes() {
+        // given: room for about two days of hourly points
+        long blockBytes = RollupReadCache.BYTES_PER_BLOCK + 24 * RollupReadCache.BYTES_PER_POINT;
+        cache = new RollupReadCache(true, 2 * blockBytes + 100, 600000, 0, clock);
+
+        // when
+        cache.getDatapointsForRange(delegator, list(locator), new Range(980 * DAY, 990 * DAY - 1), Granularity.MIN_60);
+
+        // then
+        assertTrue(cache.getBlockCount() <= 2);
+        assertTrue(cache.getBytes() <= 2 * blockBytes + 100);
+    }
+
+    private static List<Locator> list(Locator locator) {
+        return new ArrayList<Locator>(Collections.singletonList(locator));
+    }
+}
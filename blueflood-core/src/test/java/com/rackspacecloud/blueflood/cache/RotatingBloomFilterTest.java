@@ -0,0 +1,122 @@
+package com.rackspacecloud.blueflood.cache;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RotatingBloomFilterTest {
+
+    private static final long NOW = 1500000000000L;
+    private static final long TTL = 60000;
+
+    @Test
+    public void testAddedHashesArePresent() {
+        // given
+        RotatingBloomFilter filter = new RotatingBloomFilter(10000, 0.001, 4, TTL, NOW);
+
+        // when
+        for (long i = 0; i < 10000; i++) {
+            filter.put(i, NOW);
+        }
+
+        // then
+        for (long i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain(i, NOW));
+        }
+        assertTrue(filter.estimatedSize() > 9900 && filter.estimatedSize() <= 10000);
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        // given
+        RotatingBloomFilter filter = new RotatingBloomFilter(100000, 0.001, 4, TTL, NOW);
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            filter.put(random.nextLong(), NOW);
+        }
+
+        // when
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain(random.nextLong(), NOW)) {
+                falsePositives++;
+            }
+        }
+
+        // then: only one of the generations is full, so well under the configured rate
+        assertTrue("false positives: " + falsePositives, falsePositives < 100);
+    }
+
+    @Test
+    public void testHashesExpireWithinTtl() {
+        // given
+        RotatingBloomFilter filter = new RotatingBloomFilter(1000, 0.001, 4, TTL, NOW);
+        filter.put(1, NOW);
+        filter.put(2, NOW + TTL / 4 - 1);
+
+        // then: each hash is kept at least three quarters of the TTL, and at most the TTL
+        assertTrue(filter.mightContain(1, NOW + TTL - 1));
+        assertTrue(filter.mightContain(2, NOW + TTL - 1));
+        assertFalse(filter.mightContain(1, NOW + TTL));
+        assertFalse(filter.mightContain(2, NOW + TTL));
+    }
+
+    @Test
+    public void testCheckingDoesNotRefresh() {
+        // given
+        RotatingBloomFilter filter = new RotatingBloomFilter(1000, 0.001, 4, TTL, NOW);
+        filter.put(1, NOW);
+
+        // when
+        for (long time = NOW; time < NOW + TTL; time += 1000) {
+            assertTrue(filter.mightContain(1, time));
+        }
+
+        // then
+        assertFalse(filter.mightContain(1, NOW + TTL));
+    }
+
+    @Test
+    public void testAllGenerationsExpireAfterQuietPeriod() {
+        // given
+        RotatingBloomFilter filter = new RotatingBloomFilter(1000, 0.001, 4, TTL, NOW);
+        filter.put(1, NOW + TTL / 2);
+
+        // when
+        boolean present = filter.mightContain(1, NOW + 10 * TTL);
+
+        // then
+        assertFalse(present);
+        assertEquals(0, filter.estimatedSize());
+    }
+
+    @Test
+    public void testClear() {
+        // given
+        RotatingBloomFilter filter = new RotatingBloomFilter(1000, 0.001, 4, TTL, NOW);
+        filter.put(1, NOW);
+
+        // when
+        filter.clear();
+
+        // then
+        assertFalse(filter.mightContain(1, NOW));
+    }
+
+    @Test
+    public void testSizing() {
+        // when
+        RotatingBloomFilter filter = new RotatingBloomFilter(1000000, 0.0001, 4, TTL, NOW);
+
+        // then: about 3 bytes per entry in each generation
+        assertEquals(15, filter.getHashes());
+        assertTrue(filter.getBytes() > 4 * 2900000L && filter.getBytes() < 4 * 3200000L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSingleGenerationIsRejected() {
+        new RotatingBloomFilter(1000, 0.001, 1, TTL, NOW);
+    }
+}
@@ -8,6 +8,10 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -127,6 +131,29 @@ public class TokenCacheTest {
         }
     }
 
+    @Test
+    public void savedCacheIsLoaded() throws IOException {
+        // given
+        List<Token> tokens = Token.getTokens(Locator.createLocatorFromDbKey("12345.a.b.c"));
+        for (Token token : tokens) {
+            cache.setTokenCurrent(token);
+        }
+        long now = System.currentTimeMillis();
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        cache.save(new DataOutputStream(saved), now);
+
+        // when
+        TokenCache restarted = TokenCache.getInstance(60, SECONDS);
+        restarted.load(new DataInputStream(new ByteArrayInputStream(saved.toByteArray())), now);
+
+        // then
+        for (Token token : tokens) {
+            assertThat(restarted.isTokenCurrent(token), is(true));
+        }
+        assertThat(restarted.isTokenCurrent(Token.getTokens(Locator.createLocatorFromDbKey("12345.a.d")).get(1)),
+                is(false));
+    }
+
     /**
      * Test helper that executes a given runnable multiple times in multiple threads. This was written, rather than
      * using tempus fugit's @Concurrent annotation, because I want to run lots of operations on the cache in parallel,
@@ -0,0 +1,106 @@
+package com.rackspacecloud.blueflood.concurrent;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdmissionControllerTest {
+
+    private static final long THRESHOLD = 1000;
+
+    private final AdmissionController controller = new AdmissionController("Test", 100, 50, 200, 10, THRESHOLD);
+
+    @Test
+    public void testWorkOverTheLimitIsRejected() {
+        // when
+        assertTrue(controller.tryAcquire(60));
+        assertTrue(controller.tryAcquire(40));
+
+        // then
+        assertFalse(controller.tryAcquire(1));
+        assertEquals(100, controller.getInFlight());
+
+        // when
+        controller.release(40, 10, true, THRESHOLD);
+
+        // then
+        assertTrue(controller.tryAcquire(1));
+    }
+
+    @Test
+    public void testWorkBiggerThanTheLimitIsAdmittedAlone() {
+        assertTrue(controller.tryAcquire(500));
+        assertFalse(controller.tryAcquire(1));
+    }
+
+    @Test
+    public void testFastWorkRaisesTheLimitWhileInUse() {
+        // given
+        controller.tryAcquire(60);
+        controller.tryAcquire(10);
+
+        // when
+        controller.release(60, 10, true, THRESHOLD);
+        // then
+        assertEquals(110, controller.getLimit());
+
+        // when: only 10 of 110 were in use
+        controller.release(10, 10, true, THRESHOLD);
+        // then
+        assertEquals(110, controller.getLimit());
+    }
+
+    @Test
+    public void testLimitDoesNotGrowPastMax() {
+        for (int i = 0; i < 50; i++) {
+            controller.tryAcquire(controller.getLimit());
+            controller.release(controller.getInFlight(), 10, true, THRESHOLD);
+        }
+        assertEquals(200, controller.getLimit());
+    }
+
+    @Test
+    public void testSlowOrFailedWorkCutsTheLimitOncePerThreshold() {
+        // given
+        controller.tryAcquire(30);
+
+        // when
+        controller.release(10, THRESHOLD + 1, true, THRESHOLD);
+        controller.release(10, 10, false, THRESHOLD + 1);
+        // then
+        assertEquals(90, controller.getLimit());
+
+        // when
+        controller.release(10, 10, false, 2 * THRESHOLD);
+        // then
+        assertEquals(81, controller.getLimit());
+        assertEquals(0, controller.getInFlight());
+    }
+
+    @Test
+    public void testLimitDoesNotShrinkPastMin() {
+        for (int i = 1; i <= 20; i++) {
+            controller.tryAcquire(1);
+            controller.release(1, 10, false, i * THRESHOLD);
+        }
+        assertEquals(50, controller.getLimit());
+    }
+
+    @Test
+    public void testOptionalWorkIsShedNearTheLimit() {
+        // when
+        controller.tryAcquire(79);
+        // then
+        assertFalse(controller.shouldShed());
+
+        // when
+        controller.tryAcquire(1);
+        // then
+        assertTrue(controller.shouldShed());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInitialLimitMustBeWithinBounds() {
+        new AdmissionController("Invalid", 10, 50, 200, 10, THRESHOLD);
+    }
+}
@@ -22,6 +22,9 @@ import com.rackspacecloud.blueflood.concurrent.ThreadPoolBuilder;
 import com.rackspacecloud.blueflood.inputs.processors.BatchWriter;
 import com.rackspacecloud.blueflood.io.AbstractMetricsRW;
 import com.rackspacecloud.blueflood.io.MetricsRWDelegator;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.rollup.SlotKey;
+import com.rackspacecloud.blueflood.service.DirtySlots;
 import com.rackspacecloud.blueflood.service.IngestionContext;
 import com.rackspacecloud.blueflood.types.IMetric;
 import com.rackspacecloud.blueflood.types.Metric;
@@ -31,12 +34,16 @@ import com.rackspacecloud.blueflood.utils.TimeValue;
 import com.rackspacecloud.blueflood.utils.Util;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.stub;
 
@@ -106,12 +113,22 @@ public class BatchWriterTest {
             verify(preAggrRW).insertMetrics(l);
         }
 
-        //Confirm scheduleContext was updated
+        //Confirm scheduleContext was updated once per batch, with the slots of each metric
+        ArgumentCaptor<DirtySlots> dirtySlotsCaptor = ArgumentCaptor.forClass(DirtySlots.class);
+        verify(context, times(NUM_LISTS * 2)).update(dirtySlotsCaptor.capture());
+        Set<SlotKey> dirtySlotKeys = new HashSet<SlotKey>();
+        for (DirtySlots dirtySlots : dirtySlotsCaptor.getAllValues()) {
+            for (int i = 0; i < dirtySlots.size(); i++) {
+                dirtySlotKeys.add(SlotKey.of(dirtySlots.getGranularity(i), dirtySlots.getSlot(i), dirtySlots.getShard(i)));
+            }
+        }
         for (List<IMetric> l : allTestdata) {
             Assert.assertTrue(l.size() == METRICS_PER_LIST);
             for (IMetric m : l) {
-                verify(context).update(m.getCollectionTime(), 
-                    Util.getShard(m.getLocator().toString()));
+                int shard = Util.getShard(m.getLocator().toString());
+                for (Granularity g : Granularity.rollupGranularities()) {
+                    Assert.assertTrue(dirtySlotKeys.contains(SlotKey.of(g, g.slot(m.getCollectionTime()), shard)));
+                }
             }
         }
     }
@@ -0,0 +1,151 @@
+package com.rackspacecloud.blueflood.inputs.processors;
+
+import com.codahale.metrics.Counter;
+import com.google.common.util.concurrent.Futures;
+import com.rackspacecloud.blueflood.io.IngestCommitLog;
+import com.rackspacecloud.blueflood.types.IMetric;
+import com.rackspacecloud.blueflood.types.Locator;
+import com.rackspacecloud.blueflood.types.Metric;
+import com.rackspacecloud.blueflood.utils.TimeValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class CommitLogWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private IngestCommitLog commitLog;
+    private BatchWriter batchWriter;
+    private CommitLogWriter writer;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.newFolder("commitlog");
+        commitLog = new IngestCommitLog(directory, 1024 * 1024, 4, true);
+        batchWriter = mock(BatchWriter.class);
+        writer = new CommitLogWriter(commitLog, batchWriter, new Counter(), 10, 1, 0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        writer.stop();
+    }
+
+    @Test
+    public void testAppliedBatchesAreAcknowledgedAndFlushed() throws Exception {
+        // given
+        when(batchWriter.apply(anyList())).thenReturn(Futures.immediateFuture(Arrays.asList(true, true)));
+        List<List<IMetric>> batches = Arrays.asList(batch("a", "b"), batch("c"));
+
+        // when
+        List<Boolean> acks = writer.apply(batches).get();
+
+        // then: acknowledged before anything is written to Cassandra
+        assertEquals(Arrays.asList(true, true), acks);
+        verify(batchWriter, never()).apply(anyList());
+
+        // when
+        assertTrue(writer.flushOnce());
+
+        // then
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(batchWriter).apply(captor.capture());
+        List<List<IMetric>> flushed = captor.getValue();
+        assertEquals(2, flushed.size());
+        assertEquals(2, flushed.get(0).size());
+        assertEquals(Locator.createLocatorFromPathComponents("tenant", "c"), flushed.get(1).get(0).getLocator());
+        assertFalse(writer.flushOnce());
+    }
+
+    @Test
+    public void testFailedFlushIsRetried() throws Exception {
+        // given
+        when(batchWriter.apply(anyList()))
+                .thenReturn(Futures.immediateFuture(Arrays.asList(false)))
+                .thenReturn(Futures.immediateFuture(Arrays.asList(true)));
+        writer.apply(Arrays.asList(batch("a")));
+
+        // when
+        writer.flushOnce();
+        writer.flushOnce();
+
+        // then
+        verify(batchWriter, times(2)).apply(anyList());
+        assertFalse(writer.flushOnce());
+    }
+
+    @Test
+    public void testEachFlushAttemptCountsItsMetricsAsBuffered() throws Exception {
+        // given: the batch writer, which counts each batch down once it is done, fails the first try
+        Counter bufferedMetrics = new Counter();
+        writer = new CommitLogWriter(commitLog, batchWriter, bufferedMetrics, 10, 1, 0);
+        when(batchWriter.apply(anyList()))
+                .thenReturn(Futures.immediateFuture(Arrays.asList(false)))
+                .thenReturn(Futures.immediateFuture(Arrays.asList(true)));
+        writer.apply(Arrays.asList(batch("a", "b")));
+
+        // when
+        writer.flushOnce();
+        writer.flushOnce();
+
+        // then: counted up once for each of the two tries, to match the batch writer counting down
+        assertEquals(4, bufferedMetrics.getCount());
+    }
+
+    @Test
+    public void testFlushedSegmentsAreRemoved() throws Exception {
+        // given: a segment from a previous run
+        when(batchWriter.apply(anyList())).thenReturn(Futures.immediateFuture(Arrays.asList(true)));
+        writer.apply(Arrays.asList(batch("a")));
+        commitLog.close();
+        commitLog = new IngestCommitLog(directory, 1024 * 1024, 4, true);
+        writer = new CommitLogWriter(commitLog, batchWriter, new Counter(), 10, 1, 0);
+
+        // when
+        writer.flushOnce();
+        writer.flushOnce();
+
+        // then
+        verify(batchWriter, times(1)).apply(anyList());
+        assertEquals(0, commitLog.getSegmentCount());
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void testStartedWriterFlushesInBackground() throws Exception {
+        // given
+        when(batchWriter.apply(anyList())).thenReturn(Futures.immediateFuture(Arrays.asList(true)));
+
+        // when
+        writer.start();
+        writer.apply(Arrays.asList(batch("a")));
+
+        // then
+        verify(batchWriter, timeout(5000)).apply(anyList());
+    }
+
+    private static List<IMetric> batch(String... names) {
+        List<IMetric> batch = new ArrayList<IMetric>();
+        for (String name : names) {
+            batch.add(new Metric(Locator.createLocatorFromPathComponents("tenant", name), 1L, 1000L,
+                    new TimeValue(1, TimeUnit.DAYS), "unknown"));
+        }
+        return batch;
+    }
+}
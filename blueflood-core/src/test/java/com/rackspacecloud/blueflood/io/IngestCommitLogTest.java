@@ -0,0 +1,175 @@
+package com.rackspacecloud.blueflood.io;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IngestCommitLogTest {
+
+    private static final int SEGMENT_SIZE = 64;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private IngestCommitLog commitLog;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder("commitlog");
+        commitLog = new IngestCommitLog(directory, SEGMENT_SIZE, 3, false);
+    }
+
+    @After
+    public void tearDown() {
+        commitLog.close();
+    }
+
+    @Test
+    public void testAppendedRecordsAreReadInOrder() throws Exception {
+        // given
+        commitLog.append(bytes("one"));
+        commitLog.append(bytes("two"));
+
+        // when
+        IngestCommitLog.Segment segment = commitLog.getOldestSegment();
+
+        // then
+        assertEquals("one", new String(segment.next(), "UTF-8"));
+        assertEquals("two", new String(segment.next(), "UTF-8"));
+        assertNull(segment.next());
+        assertFalse(segment.isFullyRead());
+
+        // when
+        commitLog.append(bytes("three"));
+
+        // then
+        assertEquals("three", new String(segment.next(), "UTF-8"));
+    }
+
+    @Test
+    public void testSegmentIsRotatedWhenFull() throws Exception {
+        // given: two of these fit in a segment
+        byte[] record = new byte[20];
+
+        // when
+        commitLog.append(record);
+        commitLog.append(record);
+        commitLog.append(record);
+
+        // then
+        assertEquals(2, commitLog.getSegmentCount());
+        IngestCommitLog.Segment first = commitLog.getOldestSegment();
+        assertNotNull(first.next());
+        assertNotNull(first.next());
+        assertNull(first.next());
+        assertTrue(first.isFullyRead());
+
+        // when
+        commitLog.remove(first);
+
+        // then
+        assertEquals(1, commitLog.getSegmentCount());
+        assertEquals(1, directory.listFiles().length);
+        assertNotNull(commitLog.getOldestSegment().next());
+    }
+
+    @Test
+    public void testRecordsAreRecoveredAfterRestart() throws Exception {
+        // given
+        commitLog.append(bytes("one"));
+        commitLog.append(bytes("two"));
+        commitLog.getOldestSegment().next();
+        commitLog.close();
+
+        // when
+        commitLog = new IngestCommitLog(directory, SEGMENT_SIZE, 3, false);
+
+        // then: everything not removed is read again, and appends go to a new segment
+        IngestCommitLog.Segment recovered = commitLog.getOldestSegment();
+        assertEquals("one", new String(recovered.next(), "UTF-8"));
+        assertEquals("two", new String(recovered.next(), "UTF-8"));
+        assertNull(recovered.next());
+        assertTrue(recovered.isFullyRead());
+
+        commitLog.append(bytes("three"));
+        assertEquals(2, commitLog.getSegmentCount());
+    }
+
+    @Test
+    public void testRecoveryStopsAtTornRecord() throws Exception {
+        // given
+        commitLog.append(bytes("one"));
+        commitLog.append(bytes("two"));
+        commitLog.close();
+        // damage the last byte of the second record
+        File segmentFile = directory.listFiles()[0];
+        RandomAccessFile raf = new RandomAccessFile(segmentFile, "rw");
+        int lastByte = 2 * IngestCommitLog.RECORD_HEADER_SIZE + 6 - 1;
+        raf.seek(lastByte);
+        raf.write('x');
+        raf.close();
+
+        // when
+        commitLog = new IngestCommitLog(directory, SEGMENT_SIZE, 3, false);
+
+        // then
+        IngestCommitLog.Segment recovered = commitLog.getOldestSegment();
+        assertEquals("one", new String(recovered.next(), "UTF-8"));
+        assertNull(recovered.next());
+    }
+
+    @Test
+    public void testRewindReadsRecordsAgain() throws Exception {
+        // given
+        commitLog.append(bytes("one"));
+        IngestCommitLog.Segment segment = commitLog.getOldestSegment();
+        int start = segment.getReadPosition();
+        segment.next();
+
+        // when
+        segment.rewind(start);
+
+        // then
+        assertEquals("one", new String(segment.next(), "UTF-8"));
+    }
+
+    @Test
+    public void testAppendFailsWhenLogIsFull() throws Exception {
+        // given
+        byte[] record = new byte[SEGMENT_SIZE - IngestCommitLog.RECORD_HEADER_SIZE];
+        List<IOException> failures = new ArrayList<IOException>();
+
+        // when
+        for (int i = 0; i < 4; i++) {
+            try {
+                commitLog.append(record);
+            } catch (IOException e) {
+                failures.add(e);
+            }
+        }
+
+        // then
+        assertEquals(3, commitLog.getSegmentCount());
+        assertEquals(1, failures.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRecordLargerThanSegmentIsRejected() throws Exception {
+        commitLog.append(new byte[SEGMENT_SIZE]);
+    }
+
+    private static byte[] bytes(String s) throws IOException {
+        return s.getBytes("UTF-8");
+    }
+}
@@ -0,0 +1,139 @@
+package com.rackspacecloud.blueflood.io.datastax;
+
+import com.datastax.driver.core.*;
+import com.google.common.util.concurrent.AbstractFuture;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class DPartitionedBatchWriterTest {
+
+    private Session session;
+
+    @Before
+    public void setUp() {
+        session = mock(Session.class, RETURNS_DEEP_STUBS);
+    }
+
+    @Test
+    public void testGroupByPartitionGroupsStatementsByRoutingKey() {
+        // given
+        Statement a1 = statementFor("a");
+        Statement b1 = statementFor("b");
+        Statement a2 = statementFor("a");
+        Statement unrouted = statementFor(null);
+
+        // when
+        List<List<Statement>> partitions = new ArrayList<List<Statement>>(
+                DPartitionedBatchWriter.groupByPartition(Arrays.asList(a1, b1, a2, unrouted), null, null));
+
+        // then
+        assertEquals(3, partitions.size());
+        assertEquals(Arrays.asList(a1, a2), partitions.get(0));
+        assertEquals(Arrays.asList(b1), partitions.get(1));
+        assertEquals(Arrays.asList(unrouted), partitions.get(2));
+    }
+
+    @Test
+    public void testExecuteSendsOneBatchPerPartition() {
+        // given
+        Statement a1 = statementFor("a");
+        Statement a2 = statementFor("a");
+        Statement b1 = statementFor("b");
+        when(session.executeAsync(any(Statement.class))).thenReturn(TestFuture.succeeded(), TestFuture.succeeded());
+
+        // when
+        int errors = new DPartitionedBatchWriter(4).execute(session, Arrays.asList(a1, b1, a2));
+
+        // then
+        assertEquals(0, errors);
+        ArgumentCaptor<Statement> captor = ArgumentCaptor.forClass(Statement.class);
+        verify(session, times(2)).executeAsync(captor.capture());
+
+        Statement first = captor.getAllValues().get(0);
+        assertTrue(first instanceof BatchStatement);
+        assertEquals(Arrays.asList(a1, a2), new ArrayList<Statement>(((BatchStatement) first).getStatements()));
+        assertSame("a single statement partition is sent as is", b1, captor.getAllValues().get(1));
+    }
+
+    @Test
+    public void testExecuteCountsFailedBatchesWithoutFailingOthers() {
+        // given
+        Statement a = statementFor("a");
+        Statement b = statementFor("b");
+        Statement c = statementFor("c");
+        when(session.executeAsync(any(Statement.class)))
+                .thenReturn(TestFuture.succeeded())
+                .thenReturn(TestFuture.failed(new RuntimeException("write timeout")))
+                .thenThrow(new RuntimeException("no host available"));
+
+        // when
+        int errors = new DPartitionedBatchWriter(4).execute(session, Arrays.asList(a, b, c));
+
+        // then
+        assertEquals(2, errors);
+        verify(session, times(3)).executeAsync(any(Statement.class));
+    }
+
+    @Test
+    public void testPermitsAreReleasedAsBatchesComplete() {
+        // given
+        when(session.executeAsync(any(Statement.class))).thenReturn(TestFuture.succeeded());
+        DPartitionedBatchWriter writer = new DPartitionedBatchWriter(1);
+
+        // when: more partitions than permits, which would block if a permit was not given back on completion
+        int errors = writer.execute(session, Arrays.asList(statementFor("a"), statementFor("b"), statementFor("c")));
+
+        // then
+        assertEquals(0, errors);
+        verify(session, times(3)).executeAsync(any(Statement.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxInFlightMustBePositive() {
+        new DPartitionedBatchWriter(0);
+    }
+
+    private static Statement statementFor(String partitionKey) {
+        Statement statement = mock(Statement.class);
+        ByteBuffer routingKey = partitionKey == null ? null : ByteBuffer.wrap(partitionKey.getBytes());
+        when(statement.getRoutingKey(any(ProtocolVersion.class), any(CodecRegistry.class))).thenReturn(routingKey);
+        return statement;
+    }
+
+    private static class TestFuture extends AbstractFuture<ResultSet> implements ResultSetFuture {
+
+        static TestFuture succeeded() {
+            TestFuture future = new TestFuture();
+            future.set(mock(ResultSet.class));
+            return future;
+        }
+
+        static TestFuture failed(Throwable t) {
+            TestFuture future = new TestFuture();
+            future.setException(t);
+            return future;
+        }
+
+        @Override
+        public ResultSet getUninterruptibly() {
+            try {
+                return get();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public ResultSet getUninterruptibly(long timeout, TimeUnit unit) {
+            return getUninterruptibly();
+        }
+    }
+}
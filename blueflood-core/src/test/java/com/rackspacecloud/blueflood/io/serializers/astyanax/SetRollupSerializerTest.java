@@ -1,8 +1,10 @@
 package com.rackspacecloud.blueflood.io.serializers.astyanax;
 
 import com.google.common.collect.Sets;
+import com.rackspacecloud.blueflood.io.Constants;
 import com.rackspacecloud.blueflood.io.serializers.Serializers;
 import com.rackspacecloud.blueflood.types.BluefloodSetRollup;
+import com.rackspacecloud.blueflood.types.HyperLogLog;
 import com.rackspacecloud.blueflood.utils.Rollups;
 import junit.framework.Assert;
 import org.apache.commons.codec.binary.Base64;
@@ -62,4 +64,37 @@ public class SetRollupSerializerTest {
 
         Assert.assertFalse(deserializedSet1.equals(deserializedSet2));
     }
+
+    @Test
+    public void testSerializerDeserializerV2Test() throws Exception {
+        // given
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < 100000; i++) {
+            hll.addHash(i);
+        }
+        BluefloodSetRollup setRollup = new BluefloodSetRollup(hll);
+
+        // when
+        ByteBuffer bb = Serializers.setRollupInstance.toByteBuffer(setRollup);
+        BluefloodSetRollup deserialized = Serializers.serializerFor(BluefloodSetRollup.class).fromByteBuffer(bb);
+
+        // then
+        Assert.assertEquals(Constants.VERSION_2_SET_ROLLUP, bb.array()[0]);
+        Assert.assertEquals(2 + HyperLogLog.NUM_REGISTERS, bb.array().length);
+        Assert.assertTrue(deserialized.isEstimated());
+        Assert.assertEquals(setRollup, deserialized);
+        Assert.assertEquals(setRollup.getCount(), deserialized.getCount());
+    }
+
+    @Test
+    public void testExactSetIsWrittenAsV1() throws Exception {
+        // given
+        BluefloodSetRollup setRollup = new BluefloodSetRollup().withObject(set1);
+
+        // when
+        ByteBuffer bb = Serializers.setRollupInstance.toByteBuffer(setRollup);
+
+        // then
+        Assert.assertEquals(Constants.VERSION_1_SET_ROLLUP, bb.array()[0]);
+    }
 }
@@ -16,8 +16,10 @@
 
 package com.rackspacecloud.blueflood.io.serializers.astyanax;
 
+import com.rackspacecloud.blueflood.io.Constants;
 import com.rackspacecloud.blueflood.io.serializers.Serializers;
 import com.rackspacecloud.blueflood.types.BluefloodTimerRollup;
+import com.rackspacecloud.blueflood.types.QuantileSketch;
 import org.apache.commons.codec.binary.Base64;
 import org.junit.Assert;
 import org.junit.Test;
@@ -77,4 +79,42 @@ public class TimerSerializationTest {
         BluefloodTimerRollup r1 = Serializers.timerRollupInstance.fromByteBuffer(bb);
         Assert.assertEquals(r0, r1);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testV3RoundTrip() throws IOException {
+        // build up a Timer with a sketch
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(0);
+        for (int i = 2; i <= 987; i += 3) {
+            sketch.add(i);
+        }
+        BluefloodTimerRollup r0 = new BluefloodTimerRollup()
+                .withSum(Double.valueOf(42))
+                .withCountPS(23.32d)
+                .withAverage(56)
+                .withVariance(853.3245d)
+                .withMinValue(2)
+                .withMaxValue(987)
+                .withCount(345)
+                .withSketch(sketch);
+        r0.setPercentile("50", 494.2d);
+        r0.setPercentile("99", 977L);
+
+        ByteBuffer bb = Serializers.timerRollupInstance.toByteBuffer(r0);
+        Assert.assertEquals(Constants.VERSION_3_TIMER, bb.array()[0]);
+
+        BluefloodTimerRollup r1 = Serializers.timerRollupInstance.fromByteBuffer(bb);
+        Assert.assertEquals(r0, r1);
+        Assert.assertEquals(sketch, r1.getSketch());
+    }
+
+    @Test
+    public void testTimerWithoutSketchIsWrittenAsV2() {
+        BluefloodTimerRollup r0 = new BluefloodTimerRollup().withCount(1).withSum(1d);
+
+        ByteBuffer bb = Serializers.timerRollupInstance.toByteBuffer(r0);
+
+        Assert.assertEquals(Constants.VERSION_2_TIMER, bb.array()[0]);
+        Assert.assertNull(Serializers.timerRollupInstance.fromByteBuffer(bb).getSketch());
+    }
+}
@@ -0,0 +1,61 @@
+package com.rackspacecloud.blueflood.io.serializers.metrics;
+
+import com.rackspacecloud.blueflood.exceptions.SerializationException;
+import com.rackspacecloud.blueflood.types.*;
+import com.rackspacecloud.blueflood.utils.TimeValue;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MetricBatchSerDesTest {
+
+    private final MetricBatchSerDes serDes = new MetricBatchSerDes();
+
+    @Test
+    public void testBatchRoundTrip() throws Exception {
+        // given
+        List<IMetric> batch = new ArrayList<IMetric>();
+        batch.add(new Metric(Locator.createLocatorFromPathComponents("tenant", "a"), 42, 1000L, new TimeValue(2, TimeUnit.DAYS), "ms"));
+        batch.add(new Metric(Locator.createLocatorFromPathComponents("tenant", "b"), 3.5d, 2000L, new TimeValue(1, TimeUnit.DAYS), null));
+        BluefloodCounterRollup counter = new BluefloodCounterRollup().withCount(7L).withRate(0.5).withSampleCount(2);
+        batch.add(new PreaggregatedMetric(3000L, Locator.createLocatorFromPathComponents("tenant", "c"), new TimeValue(3, TimeUnit.DAYS), counter));
+
+        // when
+        List<IMetric> read = serDes.deserialize(serDes.serialize(batch));
+
+        // then
+        assertEquals(3, read.size());
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(batch.get(i).getClass(), read.get(i).getClass());
+            assertEquals(batch.get(i).getLocator(), read.get(i).getLocator());
+            assertEquals(batch.get(i).getCollectionTime(), read.get(i).getCollectionTime());
+            assertEquals(batch.get(i).getTtlInSeconds(), read.get(i).getTtlInSeconds());
+            assertEquals(batch.get(i).getMetricValue(), read.get(i).getMetricValue());
+        }
+        assertEquals("ms", ((Metric) read.get(0)).getUnit());
+        assertNull(((Metric) read.get(1)).getUnit());
+        assertEquals(RollupType.COUNTER, read.get(2).getRollupType());
+    }
+
+    @Test(expected = SerializationException.class)
+    public void testUnexpectedVersionIsRejected() throws Exception {
+        serDes.deserialize(new byte[]{(byte) 9, 0, 0, 0, 0});
+    }
+
+    @Test(expected = SerializationException.class)
+    public void testTruncatedBatchIsRejected() throws Exception {
+        // given
+        List<IMetric> batch = new ArrayList<IMetric>();
+        batch.add(new Metric(Locator.createLocatorFromPathComponents("tenant", "a"), 42L, 1000L, new TimeValue(2, TimeUnit.DAYS), "ms"));
+        byte[] serialized = serDes.serialize(batch);
+        byte[] truncated = new byte[serialized.length - 3];
+        System.arraycopy(serialized, 0, truncated, 0, truncated.length);
+
+        // when
+        serDes.deserialize(truncated);
+    }
+}
@@ -0,0 +1,101 @@
+package com.rackspacecloud.blueflood.outputs.handlers;
+
+import com.rackspacecloud.blueflood.io.MetricsRWDelegator;
+import com.rackspacecloud.blueflood.outputs.formats.MetricData;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.types.*;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.SortedMap;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class RollupHandlerRepairTest {
+
+    private static final long MINUTE = 60000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long START = 1000 * HOUR;
+
+    private final Locator locator = Locator.createLocatorFromPathComponents("tenant", "a", "b");
+    private final MetricsRWDelegator delegator = mock(MetricsRWDelegator.class);
+
+    @Test
+    public void testRepairFromFinerGranularity() throws Exception {
+        // given: two of the three 20m rollups of the hour
+        when(delegator.getDatapointsForRange(eq(locator), any(Range.class), eq(Granularity.MIN_20)))
+                .thenReturn(metricData(rollups(START, 20 * MINUTE, 2, 4)));
+        when(delegator.getDatapointsForRange(eq(locator), any(Range.class), eq(Granularity.MIN_5)))
+                .thenReturn(metricData(rollups(START + 40 * MINUTE, 5 * MINUTE, 4, 1)));
+
+        // when
+        SortedMap<Long, Rollup> repaired = RollupHandler.rollupsFromFiner(delegator, locator, Granularity.MIN_60,
+                Collections.singletonList(new Range(START, START + HOUR - 1)));
+
+        // then: the missing 20m rollup is made from the 5m rollups, and no raw data is read
+        assertEquals(1, repaired.size());
+        assertEquals(12, ((BasicRollup) repaired.get(START)).getCount());
+        verify(delegator).getDatapointsForRange(locator, new Range(START, START + HOUR - 1), Granularity.MIN_20);
+        verify(delegator).getDatapointsForRange(locator, new Range(START + 40 * MINUTE, START + HOUR - 1),
+                Granularity.MIN_5);
+        verify(delegator, never()).getDatapointsForRange(eq(locator), any(Range.class), eq(Granularity.FULL));
+    }
+
+    @Test
+    public void testAdjacentRangesAreReadTogether() throws Exception {
+        // given
+        when(delegator.getDatapointsForRange(eq(locator), any(Range.class), eq(Granularity.MIN_60)))
+                .thenReturn(metricData(rollups(START, HOUR, 8, 2)));
+
+        // when
+        SortedMap<Long, Rollup> repaired = RollupHandler.rollupsFromFiner(delegator, locator, Granularity.MIN_240,
+                Arrays.asList(new Range(START, START + 4 * HOUR - 1), new Range(START + 4 * HOUR, START + 8 * HOUR - 1)));
+
+        // then
+        verify(delegator).getDatapointsForRange(locator, new Range(START, START + 8 * HOUR - 1), Granularity.MIN_60);
+        verifyNoMoreInteractions(delegator);
+        assertEquals(2, repaired.size());
+        assertEquals(8, ((BasicRollup) repaired.get(START + 4 * HOUR)).getCount());
+    }
+
+    @Test
+    public void testFailedReadOnlyDropsItsOwnRanges() throws Exception {
+        // given: two ranges that are not adjacent, the first of which cannot be read
+        Range failing = new Range(START, START + 4 * HOUR - 1);
+        Range other = new Range(START + 8 * HOUR, START + 12 * HOUR - 1);
+        when(delegator.getDatapointsForRange(locator, failing, Granularity.MIN_60))
+                .thenThrow(new RuntimeException("read timed out"));
+        when(delegator.getDatapointsForRange(locator, other, Granularity.MIN_60))
+                .thenReturn(metricData(rollups(START + 8 * HOUR, HOUR, 4, 2)));
+
+        // when
+        SortedMap<Long, Rollup> repaired = RollupHandler.rollupsFromFiner(delegator, locator, Granularity.MIN_240,
+                Arrays.asList(failing, other));
+
+        // then: the other range is still repaired, and nothing finer is read for the failed one
+        assertEquals(1, repaired.size());
+        assertEquals(8, ((BasicRollup) repaired.get(START + 8 * HOUR)).getCount());
+        verify(delegator, never()).getDatapointsForRange(eq(locator), any(Range.class), eq(Granularity.MIN_20));
+    }
+
+    private static Points<BasicRollup> rollups(long start, long step, int number, int samplesEach) throws Exception {
+        Points<BasicRollup> points = new Points<BasicRollup>();
+        for (int i = 0; i < number; i++) {
+            long timestamp = start + i * step;
+            Points<SimpleNumber> samples = new Points<SimpleNumber>();
+            for (int j = 0; j < samplesEach; j++) {
+                samples.add(new Points.Point<SimpleNumber>(timestamp + j, new SimpleNumber(j)));
+            }
+            points.add(new Points.Point<BasicRollup>(timestamp, BasicRollup.buildRollupFromRawSamples(samples)));
+        }
+        return points;
+    }
+
+    private static MetricData metricData(Points points) {
+        return new MetricData(points, "ms");
+    }
+}
@@ -18,6 +18,7 @@ package com.rackspacecloud.blueflood.rollup;
 
 import com.rackspacecloud.blueflood.io.Constants;
 import com.rackspacecloud.blueflood.utils.Util;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -42,6 +43,19 @@ public class UtilTest {
         }
     }
     
+    @Test
+    public void testComputeShardMatchesHexDigestShard() {
+        for (int i = 0; i < 10000; i++) {
+            String s = randomString(rand.nextInt(100) + 1);
+            int legacyShard = (int)Long.parseLong(DigestUtils.md5Hex(s).substring(30), 16) % Constants.NUMBER_OF_SHARDS;
+            Assert.assertEquals(s, legacyShard, Util.computeShard(s));
+        }
+        // multi-byte characters are hashed as UTF-8
+        String s = "t\u00e9nant.m\u00e9tric.\u65e5\u672c";
+        Assert.assertEquals((int)Long.parseLong(DigestUtils.md5Hex(s).substring(30), 16) % Constants.NUMBER_OF_SHARDS,
+                Util.computeShard(s));
+    }
+
     @Test
     public void testParseShards() {
         Assert.assertEquals(128, Util.parseShards("ALL").size());
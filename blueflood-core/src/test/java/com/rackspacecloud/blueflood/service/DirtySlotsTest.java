@@ -0,0 +1,81 @@
+package com.rackspacecloud.blueflood.service;
+
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DirtySlotsTest {
+
+    private static final int GRANULARITIES = Granularity.rollupGranularities().length;
+
+    @Test
+    public void testMetricsInSameSlotsAreCoalesced() {
+        DirtySlots dirtySlots = new DirtySlots();
+        long millis = 1234000L;
+
+        dirtySlots.add(millis + 2, 3);
+        dirtySlots.add(millis + 1, 3);
+        dirtySlots.add(millis + 3, 3);
+
+        Assert.assertEquals(GRANULARITIES, dirtySlots.size());
+        Assert.assertEquals(3 * GRANULARITIES, dirtySlots.getUpdateCount());
+        for (int i = 0; i < dirtySlots.size(); i++) {
+            Granularity g = Granularity.rollupGranularities()[i];
+            Assert.assertEquals(3, dirtySlots.getShard(i));
+            Assert.assertEquals(g, dirtySlots.getGranularity(i));
+            Assert.assertEquals(g.slot(millis), dirtySlots.getSlot(i));
+            Assert.assertEquals("keeps the latest collection time", millis + 3, dirtySlots.getMillis(i));
+        }
+    }
+
+    @Test
+    public void testDifferentShardsAreKeptApart() {
+        DirtySlots dirtySlots = new DirtySlots();
+        long millis = 1234000L;
+
+        dirtySlots.add(millis, 0);
+        dirtySlots.add(millis, 127);
+
+        Assert.assertEquals(2 * GRANULARITIES, dirtySlots.size());
+        Assert.assertEquals(0, dirtySlots.getShard(0));
+        Assert.assertEquals(127, dirtySlots.getShard(GRANULARITIES));
+    }
+
+    @Test
+    public void testOnlyFinerSlotsDifferWithinADay() {
+        DirtySlots dirtySlots = new DirtySlots();
+        long day = Granularity.MIN_1440.snapMillis(1234000000L);
+
+        // one metric in every 5 minute slot of a day
+        for (long millis = day; millis < day + Granularity.MIN_1440.milliseconds(); millis += Granularity.MIN_5.milliseconds()) {
+            dirtySlots.add(millis, 0);
+        }
+
+        Assert.assertEquals(288 + 72 + 24 + 6 + 1, dirtySlots.size());
+        Assert.assertEquals(288 * GRANULARITIES, dirtySlots.getUpdateCount());
+        for (int i = 0; i < dirtySlots.size(); i++) {
+            Granularity g = dirtySlots.getGranularity(i);
+            Assert.assertEquals(g.slot(dirtySlots.getMillis(i)), dirtySlots.getSlot(i));
+            long slotEnd = g.snapMillis(dirtySlots.getMillis(i)) + g.milliseconds();
+            Assert.assertEquals("latest 5 minute boundary in the slot",
+                    slotEnd - Granularity.MIN_5.milliseconds(), dirtySlots.getMillis(i));
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        DirtySlots dirtySlots = new DirtySlots();
+
+        Assert.assertTrue(dirtySlots.isEmpty());
+        Assert.assertEquals(0, dirtySlots.size());
+        Assert.assertEquals(0, dirtySlots.getUpdateCount());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testIndexPastSizeIsRejected() {
+        DirtySlots dirtySlots = new DirtySlots();
+        dirtySlots.add(1234000L, 0);
+
+        dirtySlots.getShard(GRANULARITIES);
+    }
+}
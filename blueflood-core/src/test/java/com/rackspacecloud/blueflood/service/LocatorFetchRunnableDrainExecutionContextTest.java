@@ -14,6 +14,8 @@ import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 public class LocatorFetchRunnableDrainExecutionContextTest {
@@ -26,7 +28,6 @@ public class LocatorFetchRunnableDrainExecutionContextTest {
 
     LocatorFetchRunnable lfr;
 
-    RollupExecutionContext executionContext;
     RollupBatchWriter rollupBatchWriter;
 
     List<Locator> locators;
@@ -48,7 +49,6 @@ public class LocatorFetchRunnableDrainExecutionContextTest {
                 anyLong(), anyInt(), Matchers.<RollupExecutionContext>any(),
                 Matchers.<RollupBatchWriter>any());
 
-        executionContext = mock(RollupExecutionContext.class);
         rollupBatchWriter = mock(RollupBatchWriter.class);
 
         locators = getTypicalLocators();
@@ -79,17 +79,15 @@ public class LocatorFetchRunnableDrainExecutionContextTest {
     public void drainExecutionContextAlreadyDoneReadingAndWriting() {
 
         // given
-        when(executionContext.doneReading()).thenReturn(true);
-        when(executionContext.doneWriting()).thenReturn(true);
+        RollupExecutionContext executionContext = new RollupExecutionContext();
 
         // when
         lfr.drainExecutionContext(0, 0, executionContext, rollupBatchWriter);
 
         // then
-        verify(executionContext, times(1)).doneReading();
-        verify(executionContext, times(1)).doneWriting();
-        verifyNoMoreInteractions(executionContext);
-        verifyZeroInteractions(rollupBatchWriter);
+        assertTrue(executionContext.getCompletion().isDone());
+        verify(rollupBatchWriter).drainAll();
+        verifyNoMoreInteractions(rollupBatchWriter);
         verifyZeroInteractions(scheduleCtx);
         verifyZeroInteractions(rollupReadExecutor);
         verifyZeroInteractions(rollupWriteExecutor);
@@ -107,147 +105,69 @@ public class LocatorFetchRunnableDrainExecutionContextTest {
     }
 
     @Test
-    public void drainExecutionContextWaitsForRollups() throws InterruptedException {
+    public void drainExecutionContextReturnsBeforeRollupsAreRead() {
 
         // given
-        when(executionContext.doneReading())
-                .thenReturn(false)
-                .thenReturn(false)
-                .thenReturn(false)
-                .thenReturn(true);
-        when(executionContext.doneWriting()).thenReturn(true);
+        RollupExecutionContext executionContext = new RollupExecutionContext();
+        executionContext.incrementReadCounter();
 
         // when
         lfr.drainExecutionContext(0, 0, executionContext, rollupBatchWriter);
 
         // then
-        verify(executionContext, times(4)).doneReading();
-        verify(executionContext, times(1)).doneWriting();
-        verifyNoMoreInteractions(executionContext);
+        assertFalse(executionContext.getCompletion().isDone());
         verifyZeroInteractions(rollupBatchWriter);
-        verifyZeroInteractions(scheduleCtx);
-        verifyZeroInteractions(rollupReadExecutor);
-        verifyZeroInteractions(rollupWriteExecutor);
-        verify(lfr).initialize(
-                Matchers.<ScheduleContext>any(),
-                Matchers.<SlotKey>any(),
-                Matchers.<ExecutorService>any(),
-                Matchers.<ThreadPoolExecutor>any()
-        );
-        verify(lfr).drainExecutionContext(anyLong(), anyInt(),
-                Matchers.<RollupExecutionContext>any(),
-                Matchers.<RollupBatchWriter>any());
-        verify(lfr).finishExecution(anyLong(), Matchers.<RollupExecutionContext>any());
-        verify(lfr).waitForRollups();
-        verifyNoMoreInteractions(lfr);
-    }
-
-    @Test
-    public void drainExecutionContextDoneReadingInFinallyBlock() throws InterruptedException {
-
-        // given
-        when(executionContext.doneReading())
-                .thenReturn(false)
-                .thenReturn(false)
-                .thenReturn(true)
-                .thenReturn(true);
-        when(executionContext.doneWriting()).thenReturn(true);
+        verify(lfr, never()).finishExecution(anyLong(), Matchers.<RollupExecutionContext>any());
 
         // when
-        lfr.drainExecutionContext(0, 0, executionContext, rollupBatchWriter);
+        executionContext.decrementReadCounter();
 
         // then
-        verify(executionContext, times(4)).doneReading();
-        verify(executionContext, times(1)).doneWriting();
-        verifyNoMoreInteractions(executionContext);
-        verifyZeroInteractions(rollupBatchWriter);
-        verifyZeroInteractions(scheduleCtx);
-        verifyZeroInteractions(rollupReadExecutor);
-        verifyZeroInteractions(rollupWriteExecutor);
-        verify(lfr).initialize(
-                Matchers.<ScheduleContext>any(),
-                Matchers.<SlotKey>any(),
-                Matchers.<ExecutorService>any(),
-                Matchers.<ThreadPoolExecutor>any()
-        );
-        verify(lfr).drainExecutionContext(anyLong(), anyInt(),
-                Matchers.<RollupExecutionContext>any(),
-                Matchers.<RollupBatchWriter>any());
-        verify(lfr).finishExecution(anyLong(), Matchers.<RollupExecutionContext>any());
-        verify(lfr).waitForRollups();
-        verifyNoMoreInteractions(lfr);
+        assertTrue(executionContext.getCompletion().isDone());
+        verify(rollupBatchWriter).drainAll();
+        verify(lfr).finishExecution(anyLong(), same(executionContext));
     }
 
     @Test
-    public void drainExecutionContextExceptionWhileWaitingHitsExceptionHandler() throws InterruptedException {
+    public void drainExecutionContextWhenDoneReadingDrainsBatchAndWaitsForWrites() {
 
         // given
-        Throwable cause = new InterruptedException("exception for testing purposes");
-        doThrow(cause).when(lfr).waitForRollups();
-        when(executionContext.doneReading())
-                .thenReturn(false)
-                .thenReturn(false)
-                .thenReturn(true)
-                .thenReturn(true);
-        when(executionContext.doneWriting()).thenReturn(true);
+        RollupExecutionContext executionContext = new RollupExecutionContext();
+        executionContext.incrementReadCounter();
+        lfr.drainExecutionContext(0, 0, executionContext, rollupBatchWriter);
 
         // when
-        lfr.drainExecutionContext(0, 0, executionContext, rollupBatchWriter);
+        executionContext.incrementWriteCounter();
+        executionContext.decrementReadCounter();
 
         // then
-        verify(executionContext, times(4)).doneReading();
-        verify(executionContext, times(1)).doneWriting();
-        verifyNoMoreInteractions(executionContext);
-        verifyZeroInteractions(rollupBatchWriter);
-        verifyZeroInteractions(scheduleCtx);
-        verifyZeroInteractions(rollupReadExecutor);
-        verifyZeroInteractions(rollupWriteExecutor);
-        verify(lfr).initialize(
-                Matchers.<ScheduleContext>any(),
-                Matchers.<SlotKey>any(),
-                Matchers.<ExecutorService>any(),
-                Matchers.<ThreadPoolExecutor>any()
-        );
-        verify(lfr).drainExecutionContext(anyLong(), anyInt(),
-                Matchers.<RollupExecutionContext>any(),
-                Matchers.<RollupBatchWriter>any());
-        verify(lfr).finishExecution(anyLong(), Matchers.<RollupExecutionContext>any());
-        verify(lfr).waitForRollups();
-        verifyNoMoreInteractions(lfr);
+        verify(rollupBatchWriter).drainAll();
+        assertFalse(executionContext.getCompletion().isDone());
+        verify(lfr, never()).finishExecution(anyLong(), Matchers.<RollupExecutionContext>any());
+
+        // when
+        executionContext.decrementWriteCounter(1);
+
+        // then
+        assertTrue(executionContext.getCompletion().isDone());
+        verify(lfr).finishExecution(anyLong(), same(executionContext));
+        verifyNoMoreInteractions(rollupBatchWriter);
     }
 
     @Test
-    public void drainExecutionContextWhenDoneReadingDrainsBatch() throws InterruptedException {
+    public void drainExecutionContextFinishesFailedExecution() throws Exception {
 
         // given
-        when(executionContext.doneReading()).thenReturn(true);
-        when(executionContext.doneWriting())
-                .thenReturn(false)
-                .thenReturn(true);
+        RollupExecutionContext executionContext = new RollupExecutionContext();
+        executionContext.incrementReadCounter();
+        lfr.drainExecutionContext(0, 0, executionContext, rollupBatchWriter);
 
         // when
-        lfr.drainExecutionContext(0, 0, executionContext, rollupBatchWriter);
+        executionContext.markUnsuccessful(new Exception("exception for testing purposes"));
+        executionContext.decrementReadCounter();
 
         // then
-        verify(executionContext, times(4)).doneReading();
-        verify(executionContext, times(2)).doneWriting();
-        verifyNoMoreInteractions(executionContext);
-        verify(rollupBatchWriter).drainBatch();
-        verifyNoMoreInteractions(rollupBatchWriter);
-        verifyZeroInteractions(scheduleCtx);
-        verifyZeroInteractions(rollupReadExecutor);
-        verifyZeroInteractions(rollupWriteExecutor);
-        verify(lfr).initialize(
-                Matchers.<ScheduleContext>any(),
-                Matchers.<SlotKey>any(),
-                Matchers.<ExecutorService>any(),
-                Matchers.<ThreadPoolExecutor>any()
-        );
-        verify(lfr).drainExecutionContext(anyLong(), anyInt(),
-                Matchers.<RollupExecutionContext>any(),
-                Matchers.<RollupBatchWriter>any());
-        verify(lfr).finishExecution(anyLong(), Matchers.<RollupExecutionContext>any());
-        verify(lfr).waitForRollups();
-        verifyNoMoreInteractions(lfr);
+        assertFalse(executionContext.getCompletion().get());
+        verify(lfr).finishExecution(anyLong(), same(executionContext));
     }
 }
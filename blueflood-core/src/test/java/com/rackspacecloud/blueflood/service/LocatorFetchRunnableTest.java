@@ -1,5 +1,10 @@
 package com.rackspacecloud.blueflood.service;
 
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.rackspacecloud.blueflood.io.DelayedLocatorIO;
 import com.rackspacecloud.blueflood.io.IOContainer;
 import com.rackspacecloud.blueflood.io.LocatorIO;
@@ -22,6 +27,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
@@ -80,7 +86,7 @@ public class LocatorFetchRunnableTest {
         when(ioContainer.getLocatorIO()).thenReturn(locatorIO);
         when(ioContainer.getDelayedLocatorIO()).thenReturn(delayedLocatorIO);
         when(scheduleCtx.isReroll(any(SlotKey.class))).thenReturn(false);
-        when(locatorIO.getLocators(anyInt())).thenReturn(locators);
+        when(locatorIO.scanLocators(anyLong(), anyInt())).thenReturn(locators);
     }
 
     @After
@@ -107,13 +113,13 @@ public class LocatorFetchRunnableTest {
         // given
         Set<Locator> expected = new HashSet<Locator>(locators);
 
-        when(locatorIO.getLocators(TEST_SHARD)).thenReturn(locators);
+        when(locatorIO.scanLocators(eq((long) TEST_SHARD), anyInt())).thenReturn(locators);
 
         // when
-        Set<Locator> actual = lfr.getLocators(executionContext);
+        Set<Locator> actual = Sets.newHashSet(lfr.getLocators(executionContext));
 
         // then
-        verify(locatorIO, times(1)).getLocators(TEST_SHARD);
+        verify(locatorIO, times(1)).scanLocators(eq((long) TEST_SHARD), anyInt());
         verifyNoMoreInteractions(locatorIO);
         verifyZeroInteractions(executionContext);
         Assert.assertEquals(expected, actual);
@@ -123,18 +129,45 @@ public class LocatorFetchRunnableTest {
     public void getLocatorsExceptionYieldsEmptySet() throws IOException {
 
         // given
-        when(locatorIO.getLocators(TEST_SHARD)).thenThrow(new RuntimeException(""));
+        when(locatorIO.scanLocators(eq((long) TEST_SHARD), anyInt())).thenThrow(new RuntimeException(""));
 
         // when
-        Set<Locator> actual = lfr.getLocators(executionContext);
+        Iterable<Locator> actual = lfr.getLocators(executionContext);
 
         // then
-        verify(locatorIO, times(1)).getLocators(TEST_SHARD);
+        verify(locatorIO, times(1)).scanLocators(eq((long) TEST_SHARD), anyInt());
         verifyNoMoreInteractions(locatorIO);
         verify(executionContext, times(1)).markUnsuccessful(Matchers.<Throwable>any());
         verifyNoMoreInteractions(executionContext);
         assertNotNull(actual);
-        Assert.assertEquals(0, actual.size());
+        Assert.assertEquals(0, Iterables.size(actual));
+    }
+
+    @Test
+    public void getLocatorsFailingMidScanEndsScanEarly() throws IOException {
+
+        // given
+        final Iterator<Locator> failingScan = Iterators.concat(
+                locators.subList(0, 1).iterator(),
+                new AbstractIterator<Locator>() {
+                    @Override
+                    protected Locator computeNext() {
+                        throw new RuntimeException("read timeout on next page");
+                    }
+                });
+        when(locatorIO.scanLocators(eq((long) TEST_SHARD), anyInt())).thenReturn(new Iterable<Locator>() {
+            @Override
+            public Iterator<Locator> iterator() {
+                return failingScan;
+            }
+        });
+
+        // when
+        List<Locator> actual = Lists.newArrayList(lfr.getLocators(executionContext));
+
+        // then
+        Assert.assertEquals(locators.subList(0, 1), actual);
+        verify(executionContext, times(1)).markUnsuccessful(Matchers.<Throwable>any());
     }
 
     @Test
@@ -191,6 +224,48 @@ public class LocatorFetchRunnableTest {
         verify(executionContext, times(1)).decrementReadCounter();
     }
 
+    @Test
+    public void executeRollupForLocatorsTriggersSingleBatchedRollupRunnable() {
+
+        // when
+        lfr.executeRollupForLocators(executionContext, rollupBatchWriter, locators);
+
+        // then
+        verify(rollupReadExecutor, times(1)).execute(Matchers.<BatchedRollupRunnable>any());
+        verifyNoMoreInteractions(rollupReadExecutor);
+        verify(executionContext, times(1)).incrementReadCounter();
+        verifyNoMoreInteractions(executionContext);
+        verifyZeroInteractions(rollupBatchWriter);
+    }
+
+    @Test
+    public void processLocatorsIncrementsCountByBatchSize() {
+
+        // when
+        int count = lfr.processLocators(1, executionContext, rollupBatchWriter, locators);
+
+        // then
+        Assert.assertEquals(1 + locators.size(), count);
+        verify(executionContext, never()).markUnsuccessful(Matchers.<Throwable>any());
+        verify(executionContext, never()).decrementReadCounter();
+    }
+
+    @Test
+    public void processLocatorsExceptionCausesRollupToFail() {
+
+        // given
+        Throwable cause = new UnsupportedOperationException("exception for testing purposes");
+        doThrow(cause).when(rollupReadExecutor).execute(Matchers.<Runnable>any());
+
+        // when
+        int count = lfr.processLocators(0, executionContext, rollupBatchWriter, locators);
+
+        // then
+        Assert.assertEquals(0, count);
+        verify(executionContext, times(1)).markUnsuccessful(Matchers.<Throwable>any());
+        verify(executionContext, times(1)).decrementReadCounter();
+    }
+
     @Test
     public void finishExecutionWhenSuccessful() {
 
@@ -258,12 +333,12 @@ public class LocatorFetchRunnableTest {
         LocatorFetchRunnable lfrunnable = new LocatorFetchRunnable(scheduleCtx,
                 destSlotKey, rollupReadExecutor, rollupWriteExecutor);
         when(scheduleCtx.isReroll(any(SlotKey.class))).thenReturn(isReroll);
-        when(locatorIO.getLocators(anyInt())).thenReturn(locators);
+        when(locatorIO.scanLocators(anyLong(), anyInt())).thenReturn(locators);
 
-        Set<Locator> locatorsForRollup = lfrunnable.getLocators(executionContext, isReroll,
+        Iterable<Locator> locatorsForRollup = lfrunnable.getLocators(executionContext, isReroll,
                 delayedMetricsRerollGranularity, delayedMetricsStorageGranularity);
 
-        assertEquals(locators.size(), locatorsForRollup.size());
+        assertEquals(locators.size(), Iterables.size(locatorsForRollup));
     }
 
     @Test
@@ -284,10 +359,10 @@ public class LocatorFetchRunnableTest {
         }};
         when(delayedLocatorIO.getLocators(SlotKey.of(Granularity.MIN_20, 0, TEST_SHARD))).thenReturn(delayedLocators);
 
-        Set<Locator> locatorsForRollup = lfrunnable.getLocators(executionContext, isReroll,
+        Iterable<Locator> locatorsForRollup = lfrunnable.getLocators(executionContext, isReroll,
                 delayedMetricsRerollGranularity, delayedMetricsStorageGranularity);
 
-        assertEquals(delayedLocators.size(), locatorsForRollup.size());
+        assertEquals(delayedLocators.size(), Iterables.size(locatorsForRollup));
     }
 
     @Test
@@ -308,10 +383,10 @@ public class LocatorFetchRunnableTest {
         }};
         when(delayedLocatorIO.getLocators(SlotKey.of(Granularity.MIN_20, 0, TEST_SHARD))).thenReturn(delayedLocators);
 
-        Set<Locator> locatorsForRollup = lfrunnable.getLocators(executionContext, isReroll,
+        Iterable<Locator> locatorsForRollup = lfrunnable.getLocators(executionContext, isReroll,
                 delayedMetricsRerollGranularity, delayedMetricsStorageGranularity);
 
-        assertEquals(delayedLocators.size(), locatorsForRollup.size());
+        assertEquals(delayedLocators.size(), Iterables.size(locatorsForRollup));
     }
 
     @Test
@@ -337,10 +412,10 @@ public class LocatorFetchRunnableTest {
         when(delayedLocatorIO.getLocators(SlotKey.of(Granularity.MIN_20, 1, TEST_SHARD))).thenReturn(delayedLocators1);
         when(delayedLocatorIO.getLocators(SlotKey.of(Granularity.MIN_20, 2, TEST_SHARD))).thenReturn(delayedLocators2);
 
-        Set<Locator> locatorsForRollup = lfrunnable.getLocators(executionContext, isReroll,
+        Iterable<Locator> locatorsForRollup = lfrunnable.getLocators(executionContext, isReroll,
                 delayedMetricsRerollGranularity, delayedMetricsStorageGranularity);
 
-        assertEquals(delayedLocators1.size() + delayedLocators2.size(), locatorsForRollup.size());
+        assertEquals(delayedLocators1.size() + delayedLocators2.size(), Iterables.size(locatorsForRollup));
     }
 
     @Test
@@ -355,10 +430,10 @@ public class LocatorFetchRunnableTest {
         LocatorFetchRunnable lfrunnable = new LocatorFetchRunnable(scheduleCtx,
                 destSlotKey, rollupReadExecutor, rollupWriteExecutor);
 
-        Set<Locator> locatorsForRollup = lfrunnable.getLocators(executionContext, isReroll,
+        Iterable<Locator> locatorsForRollup = lfrunnable.getLocators(executionContext, isReroll,
                 delayedMetricsRerollGranularity, delayedMetricsStorageGranularity);
 
-        assertEquals(locators.size(), locatorsForRollup.size());
+        assertEquals(locators.size(), Iterables.size(locatorsForRollup));
     }
 
 }
@@ -9,6 +9,8 @@ import org.junit.Test;
 import org.mockito.Matchers;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import static org.mockito.Mockito.*;
@@ -221,4 +223,87 @@ public class RollupBatchWriterTest {
         verify(executor).execute(Matchers.<Runnable>any());
         verifyNoMoreInteractions(executor);
     }
+
+    @Test
+    public void enqueuingGroupCountsAllWritesAtOnce() {
+
+        // given
+        doReturn(1).when(executor).getActiveCount();
+        doReturn(1).when(executor).getPoolSize();
+        List<SingleRollupWriteContext> srwcs = new ArrayList<SingleRollupWriteContext>();
+        for (int i = 0; i < 5; i++) {
+            srwcs.add(mock(SingleRollupWriteContext.class));
+        }
+
+        // when
+        rbw.enqueueRollupsForWrite(srwcs);
+
+        // then
+        verify(ctx).incrementWriteCounter(5);
+        verifyNoMoreInteractions(ctx);
+
+        // thread pool is saturated and the group is smaller than max size, nothing is drained
+        verify(executor).getActiveCount();
+        verify(executor).getPoolSize();
+        verifyNoMoreInteractions(executor);
+    }
+
+    @Test
+    public void enqueuingGroupLargerThanMaxSizeDrainsFullBatches() throws Exception {
+
+        // given
+        doReturn(1).when(executor).getActiveCount();
+        doReturn(1).when(executor).getPoolSize();
+        Rollup rollup = Rollup.BasicFromRaw.compute(new Points<SimpleNumber>());
+        List<SingleRollupWriteContext> srwcs = new ArrayList<SingleRollupWriteContext>();
+        for (int i = 0; i < 250; i++) {
+            SingleRollupWriteContext srwc = mock(SingleRollupWriteContext.class);
+            doReturn(rollup).when(srwc).getRollup();
+            srwcs.add(srwc);
+        }
+        // ROLLUP_BATCH_MAX_SIZE default value is 100
+
+        // when
+        rbw.enqueueRollupsForWrite(srwcs);
+
+        // then
+        verify(ctx).incrementWriteCounter(250);
+        verifyNoMoreInteractions(ctx);
+
+        // two batches of up to MAX_SIZE + 1 go out, the remaining 48 wait for more
+        verify(executor, times(2)).execute(Matchers.<Runnable>any());
+    }
+
+    @Test
+    public void enqueuingEmptyGroupDoesNothing() {
+
+        // when
+        rbw.enqueueRollupsForWrite(new ArrayList<SingleRollupWriteContext>());
+
+        // then
+        verifyZeroInteractions(ctx);
+        verifyZeroInteractions(executor);
+    }
+
+    @Test
+    public void drainAllEmptiesTheQueue() throws Exception {
+
+        // given
+        doReturn(1).when(executor).getActiveCount();
+        doReturn(1).when(executor).getPoolSize();
+        Rollup rollup = Rollup.BasicFromRaw.compute(new Points<SimpleNumber>());
+        for (int i = 0; i < 150; i++) {
+            SingleRollupWriteContext srwc = mock(SingleRollupWriteContext.class);
+            doReturn(rollup).when(srwc).getRollup();
+            rbw.enqueueRollupForWrite(srwc);
+        }
+        verify(executor, times(1)).execute(Matchers.<Runnable>any());
+
+        // when
+        rbw.drainAll();
+        rbw.drainAll();
+
+        // then
+        verify(executor, times(2)).execute(Matchers.<Runnable>any());
+    }
 }
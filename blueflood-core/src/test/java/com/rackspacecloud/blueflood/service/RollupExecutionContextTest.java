@@ -23,9 +23,7 @@ public class RollupExecutionContextTest {
 
     @Test
     public void testExecutionContext() {
-        Thread myThread = new Thread();
-
-        RollupExecutionContext myRollupContext = new RollupExecutionContext(myThread);
+        RollupExecutionContext myRollupContext = new RollupExecutionContext();
 
         // validate read behavior
         Assert.assertTrue(myRollupContext.doneReading());
@@ -42,4 +40,37 @@ public class RollupExecutionContextTest {
         myRollupContext.decrementWriteCounter(2);
         Assert.assertTrue(myRollupContext.doneWriting());
     }
+
+    @Test
+    public void testCompletesOnlyAfterReadsAreIssued() throws Exception {
+        RollupExecutionContext myRollupContext = new RollupExecutionContext();
+
+        // reads finishing while others are still being issued do not complete the context
+        myRollupContext.incrementReadCounter();
+        myRollupContext.decrementReadCounter();
+        Assert.assertFalse(myRollupContext.getReadCompletion().isDone());
+
+        myRollupContext.incrementReadCounter();
+        myRollupContext.doneIssuingReads();
+        Assert.assertFalse(myRollupContext.getReadCompletion().isDone());
+
+        // a read queues up a write before it finishes
+        myRollupContext.incrementWriteCounter();
+        myRollupContext.decrementReadCounter();
+        Assert.assertTrue(myRollupContext.getReadCompletion().isDone());
+        Assert.assertFalse(myRollupContext.getCompletion().isDone());
+
+        myRollupContext.decrementWriteCounter(1);
+        Assert.assertTrue(myRollupContext.getCompletion().get());
+    }
+
+    @Test
+    public void testCompletionCarriesFailure() throws Exception {
+        RollupExecutionContext myRollupContext = new RollupExecutionContext();
+
+        myRollupContext.markUnsuccessful(new Exception("exception for testing purposes"));
+        myRollupContext.doneIssuingReads();
+
+        Assert.assertFalse(myRollupContext.getCompletion().get());
+    }
 }
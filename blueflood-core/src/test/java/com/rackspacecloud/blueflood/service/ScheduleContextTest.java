@@ -421,6 +421,59 @@ public class ScheduleContextTest {
         Assert.assertNull(next);
     }
 
+    @Test
+    public void testUpdateDeschedulesScheduledSlot() {
+
+        // given
+        long now = 1234000L;
+        long updateTime = now - 2;
+
+        ScheduleContext ctx = new ScheduleContext(now, shards);
+        ctx.update(updateTime, shard);
+        ctx.scheduleEligibleSlots(1, 7200000, 3600000);
+
+        // precondition
+        Assert.assertEquals(1, ctx.getScheduledCount());
+
+        // when
+        ctx.update(updateTime, shard);
+
+        // then
+        Assert.assertEquals(0, ctx.getScheduledCount());
+        Assert.assertFalse(ctx.hasScheduled());
+        Assert.assertNull(ctx.getNextScheduled());
+        Assert.assertEquals(0, ctx.getRunningCount());
+    }
+
+    @Test
+    public void testUpdateWithDirtySlotsDeschedulesAndMarksSlotsDirty() {
+
+        // given
+        long now = 1234000L;
+        long updateTime = now - 2;
+
+        ScheduleContext ctx = new ScheduleContext(now, shards);
+        ctx.update(updateTime, shard);
+        ctx.scheduleEligibleSlots(1, 7200000, 3600000);
+        Assert.assertEquals(1, ctx.getScheduledCount());
+
+        DirtySlots dirtySlots = new DirtySlots();
+        dirtySlots.add(updateTime - 1, shard);
+        dirtySlots.add(updateTime, shard);
+
+        // when
+        ctx.update(dirtySlots);
+
+        // then
+        Assert.assertEquals(0, ctx.getScheduledCount());
+        for (Granularity g : Granularity.rollupGranularities()) {
+            UpdateStamp stamp = ctx.getShardStateManager().getUpdateStamp(SlotKey.of(g, g.slot(updateTime), shard));
+            Assert.assertEquals(updateTime, stamp.getTimestamp());
+            Assert.assertEquals(UpdateStamp.State.Active, stamp.getState());
+            Assert.assertTrue(stamp.isDirty());
+        }
+    }
+
     @Test
     public void testGetNextScheduledWhenNoneAreScheduledReturnsNull() {
 
@@ -0,0 +1,84 @@
+package com.rackspacecloud.blueflood.service;
+
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.rollup.SlotKey;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScheduledSlotQueueTest {
+
+    ScheduledSlotQueue queue;
+    SlotKey key1;
+    SlotKey key2;
+    SlotKey key3;
+
+    @Before
+    public void setUp() {
+        queue = new ScheduledSlotQueue();
+        key1 = SlotKey.of(Granularity.MIN_5, 1, 0);
+        key2 = SlotKey.of(Granularity.MIN_5, 2, 0);
+        key3 = SlotKey.of(Granularity.MIN_20, 1, 0);
+    }
+
+    @Test
+    public void testPollReturnsKeysInScheduledOrder() {
+        queue.addLast(key1);
+        queue.addLast(key2);
+        queue.addLast(key3);
+
+        Assert.assertEquals(3, queue.size());
+        Assert.assertEquals(key1, queue.poll());
+        Assert.assertEquals(key2, queue.poll());
+        Assert.assertEquals(key3, queue.poll());
+        Assert.assertNull(queue.poll());
+        Assert.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testAddFirstJumpsTheQueue() {
+        queue.addLast(key1);
+        queue.addLast(key2);
+        queue.addFirst(key3);
+
+        Assert.assertEquals(key3, queue.poll());
+        Assert.assertEquals(key1, queue.poll());
+    }
+
+    @Test
+    public void testRemovedKeyIsSkipped() {
+        queue.addLast(key1);
+        queue.addLast(key2);
+
+        Assert.assertTrue(queue.remove(key1));
+        Assert.assertFalse(queue.remove(key1));
+        Assert.assertFalse(queue.contains(key1));
+        Assert.assertEquals(1, queue.size());
+
+        Assert.assertEquals(key2, queue.poll());
+        Assert.assertNull(queue.poll());
+    }
+
+    @Test
+    public void testRescheduledKeyTakesItsNewPosition() {
+        queue.addLast(key1);
+        queue.addLast(key2);
+        queue.remove(key1);
+        queue.addLast(key1);
+
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals(key2, queue.poll());
+        Assert.assertEquals(key1, queue.poll());
+        Assert.assertNull(queue.poll());
+    }
+
+    @Test
+    public void testSchedulingTwiceKeepsOneEntry() {
+        queue.addLast(key1);
+        queue.addFirst(key1);
+
+        Assert.assertEquals(1, queue.size());
+        Assert.assertEquals(key1, queue.poll());
+        Assert.assertNull(queue.poll());
+    }
+}
@@ -2,15 +2,14 @@ package com.rackspacecloud.blueflood.service;
 
 import com.google.common.base.Ticker;
 import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.rollup.SlotKey;
 import com.rackspacecloud.blueflood.utils.Clock;
 import org.joda.time.Instant;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.when;
@@ -24,6 +23,7 @@ public class ShardStateManagerTest {
 
     private List<Integer> managedShards = new ArrayList<Integer>() {{ add(TEST_SHARD); }};
 
+    private ShardStateManager shardStateManager;
     private ShardStateManager.SlotStateManager slotStateManager;
 
     private final Clock mockClock = Mockito.mock(Clock.class);
@@ -31,7 +31,7 @@ public class ShardStateManagerTest {
 
     @Before
     public void setup() {
-        ShardStateManager shardStateManager = new ShardStateManager(managedShards, Ticker.systemTicker(), mockClock);
+        shardStateManager = new ShardStateManager(managedShards, Ticker.systemTicker(), mockClock);
         slotStateManager = shardStateManager.getSlotStateManager(TEST_SHARD, TEST_GRANULARITY);
 
         when(mockClock.now()).thenReturn(new Instant(lastIngestTime));
@@ -635,4 +635,73 @@ public class ShardStateManagerTest {
         assertEquals("Only one slot should be returned", 1, slots.size());
         assertEquals("Slot zero should be included", 0, slots.get(0).intValue());
     }
+
+    @Test
+    public void getDirtyShardsReturnsOnlyShardsWithDirtySlots() {
+
+        // given
+        slotStateManager.createOrUpdateForSlotAndMillisecond(0, 1234L);
+        shardStateManager.getSlotStateManager(5, Granularity.MIN_60).createOrUpdateForSlotAndMillisecond(0, 1234L);
+
+        // when
+        Set<Integer> dirtyShards = shardStateManager.getDirtyShards();
+
+        // then
+        assertEquals(new HashSet<Integer>(Arrays.asList(TEST_SHARD, 5)), dirtyShards);
+    }
+
+    @Test
+    public void getDirtySlotsToPersistMarksShardClean() {
+
+        // given
+        slotStateManager.createOrUpdateForSlotAndMillisecond(0, 1234L);
+
+        // when
+        Map<Granularity, Map<Integer, UpdateStamp>> slotTimes = shardStateManager.getDirtySlotsToPersist(TEST_SHARD);
+
+        // then
+        assertEquals(1, slotTimes.get(TEST_GRANULARITY).size());
+        assertTrue("No shard should be dirty", shardStateManager.getDirtyShards().isEmpty());
+        assertNull("Nothing left to persist", shardStateManager.getDirtySlotsToPersist(TEST_SHARD));
+
+        // when the slot is updated again
+        slotStateManager.createOrUpdateForSlotAndMillisecond(0, 1235L);
+
+        // then
+        assertEquals(Collections.singleton(TEST_SHARD), shardStateManager.getDirtyShards());
+        assertEquals(1235L, shardStateManager.getDirtySlotsToPersist(TEST_SHARD).get(TEST_GRANULARITY).get(0).getTimestamp());
+    }
+
+    @Test
+    public void coarserSlotsMarkedDirtyAreFoundWhenPersisting() throws Exception {
+
+        // given
+        slotStateManager.createOrUpdateForSlotAndMillisecond(0, 1234L);
+        shardStateManager.getDirtySlotsToPersist(TEST_SHARD);
+
+        // when
+        shardStateManager.setAllCoarserSlotsDirtyForSlot(SlotKey.of(TEST_GRANULARITY, 0, TEST_SHARD));
+
+        // then
+        Map<Granularity, Map<Integer, UpdateStamp>> slotTimes = shardStateManager.getDirtySlotsToPersist(TEST_SHARD);
+        assertNotNull(slotTimes);
+        assertTrue("The 5 minute slot is clean", slotTimes.get(TEST_GRANULARITY).isEmpty());
+        Granularity coarser = TEST_GRANULARITY.coarser();
+        assertTrue("The coarser slot is dirty", slotTimes.get(coarser).containsKey(coarser.slotFromFinerSlot(0)));
+    }
+
+    @Test
+    public void markDirtyMarksStampAndSlotDirty() {
+
+        // given
+        slotStateManager.createOrUpdateForSlotAndMillisecond(0, 1234L);
+        shardStateManager.getDirtySlotsToPersist(TEST_SHARD);
+
+        // when
+        slotStateManager.markDirty(0);
+
+        // then
+        assertTrue(slotStateManager.getSlotStamps().get(0).isDirty());
+        assertTrue(slotStateManager.getDirtySlotStampsAndMarkClean().containsKey(0));
+    }
 }
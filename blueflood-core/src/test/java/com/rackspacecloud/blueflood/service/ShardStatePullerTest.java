@@ -0,0 +1,173 @@
+package com.rackspacecloud.blueflood.service;
+
+import com.google.common.base.Ticker;
+import com.rackspacecloud.blueflood.io.ShardStateIO;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.rollup.SlotKey;
+import com.rackspacecloud.blueflood.utils.Util;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Mockito.*;
+
+public class ShardStatePullerTest {
+
+    private static final long MARGIN = Configuration.getInstance().getLongProperty(CoreConfig.SHARD_PULL_WRITE_TIME_MARGIN_MS);
+    private static final long WRITE_TIME = 1000000000L;
+
+    private ShardStateManager manager;
+    private ShardStateIO io;
+    private ShardStatePuller puller;
+
+    @Before
+    public void setup() {
+        manager = mock(ShardStateManager.class);
+        when(manager.getManagedShards()).thenReturn(Arrays.asList(1, 2));
+        when(manager.isSlotStateInMemory(anyInt(), any(SlotState.class))).thenReturn(true);
+        io = mock(ShardStateIO.class);
+        puller = new ShardStatePuller(Util.parseShards("ALL"), manager, io);
+    }
+
+    @Test
+    public void testAllShardsAreReadAtOnce() throws Exception {
+        // given
+        SlotState one = slotState(1, WRITE_TIME);
+        SlotState two = slotState(2, WRITE_TIME);
+        givenShardStates(one, two);
+
+        // when
+        puller.performOperation();
+
+        // then
+        verify(io).getShardStates(Arrays.asList(1, 2));
+        verify(io, never()).getShardState(anyInt());
+        verify(manager).updateSlotOnRead(1, one);
+        verify(manager).updateSlotOnRead(2, two);
+    }
+
+    @Test
+    public void testOnlySlotStatesWrittenSinceLastPullAreApplied() throws Exception {
+        // given
+        SlotState old = slotState(1, WRITE_TIME - 2 * MARGIN);
+        SlotState latest = slotState(2, WRITE_TIME);
+        givenShardStates(Arrays.asList(old, latest), Collections.<SlotState>emptyList());
+        puller.performOperation();
+
+        // when
+        SlotState newer = slotState(3, WRITE_TIME + 1);
+        givenShardStates(Arrays.asList(old, latest, newer), Collections.<SlotState>emptyList());
+        puller.performOperation();
+
+        // then
+        verify(manager, times(1)).updateSlotOnRead(1, old);
+        verify(manager).updateSlotOnRead(1, newer);
+    }
+
+    @Test
+    public void testSlotStatesWrittenWithinMarginAreAppliedAgain() throws Exception {
+        // given
+        SlotState skewed = slotState(1, WRITE_TIME - MARGIN + 1);
+        SlotState latest = slotState(2, WRITE_TIME);
+        givenShardStates(Arrays.asList(skewed, latest), Collections.<SlotState>emptyList());
+        puller.performOperation();
+
+        // when
+        puller.performOperation();
+
+        // then
+        verify(manager, times(2)).updateSlotOnRead(1, skewed);
+        verify(manager, times(2)).updateSlotOnRead(1, latest);
+    }
+
+    @Test
+    public void testOldSlotStatesThatDifferFromMemoryAreApplied() throws Exception {
+        // given
+        SlotState old = slotState(1, WRITE_TIME - 2 * MARGIN);
+        SlotState latest = slotState(2, WRITE_TIME);
+        givenShardStates(Arrays.asList(old, latest), Collections.<SlotState>emptyList());
+        puller.performOperation();
+
+        // when the slot changes in memory
+        when(manager.isSlotStateInMemory(1, old)).thenReturn(false);
+        puller.performOperation();
+
+        // then
+        verify(manager, times(2)).updateSlotOnRead(1, old);
+    }
+
+    @Test
+    public void testSlotIsDirtiedAgainAfterFailedPush() throws Exception {
+        // given: a slot read from the database, then updated in memory
+        ShardStateManager realManager = new ShardStateManager(Arrays.asList(1, 2), Ticker.systemTicker());
+        ShardStatePuller realPuller = new ShardStatePuller(Util.parseShards("ALL"), realManager, io);
+        ShardStatePusher pusher = new ShardStatePusher(Util.parseShards("ALL"), realManager, io);
+        SlotState old = slotState(1, WRITE_TIME - 2 * MARGIN);
+        SlotState latest = slotState(2, WRITE_TIME);
+        givenShardStates(Arrays.asList(old, latest), Collections.<SlotState>emptyList());
+        realPuller.performOperation();
+        realManager.getSlotStateManager(1, Granularity.MIN_5).createOrUpdateForSlotAndMillisecond(1, old.getTimestamp() + 1000);
+        UpdateStamp stamp = realManager.getUpdateStamp(SlotKey.of(Granularity.MIN_5, 1, 1));
+
+        // when the push fails, leaving the old slot state in the database
+        doThrow(new IOException("write timed out")).when(io).putShardStates(anyMap());
+        pusher.performOperation();
+        assertFalse(stamp.isDirty());
+        realPuller.performOperation();
+
+        // then: the slot is pushed again
+        assertTrue(stamp.isDirty());
+        assertEquals(old.getTimestamp() + 1000, stamp.getTimestamp());
+    }
+
+    @Test
+    public void testShardManagedAgainIsAppliedInFull() throws Exception {
+        // given
+        SlotState state = slotState(1, WRITE_TIME);
+        givenShardStates(state, null);
+        puller.performOperation();
+
+        // when shard 1 is given up then taken again
+        when(manager.getManagedShards()).thenReturn(Collections.singletonList(2));
+        puller.performOperation();
+        when(manager.getManagedShards()).thenReturn(Arrays.asList(1, 2));
+        puller.performOperation();
+
+        // then
+        verify(manager, times(2)).updateSlotOnRead(1, state);
+    }
+
+    private void givenShardStates(SlotState shard1, SlotState shard2) throws Exception {
+        givenShardStates(shard1 == null ? Collections.<SlotState>emptyList() : Collections.singletonList(shard1),
+                shard2 == null ? Collections.<SlotState>emptyList() : Collections.singletonList(shard2));
+    }
+
+    private void givenShardStates(Collection<SlotState> shard1, Collection<SlotState> shard2) throws Exception {
+        final Map<Integer, Collection<SlotState>> states = new HashMap<Integer, Collection<SlotState>>();
+        states.put(1, shard1);
+        states.put(2, shard2);
+        when(io.getShardStates(anyCollection())).thenAnswer(new Answer<Map<Integer, Collection<SlotState>>>() {
+            @Override
+            public Map<Integer, Collection<SlotState>> answer(InvocationOnMock invocation) throws Throwable {
+                Map<Integer, Collection<SlotState>> requested = new HashMap<Integer, Collection<SlotState>>(states);
+                requested.keySet().retainAll((Collection<Integer>) invocation.getArguments()[0]);
+                return requested;
+            }
+        });
+    }
+
+    private static SlotState slotState(int slot, long writeTime) {
+        return new SlotState(Granularity.MIN_5, slot, UpdateStamp.State.Active)
+                .withTimestamp(writeTime - 5000)
+                .withLastUpdatedTimestamp(writeTime);
+    }
+}
@@ -0,0 +1,81 @@
+package com.rackspacecloud.blueflood.service;
+
+import com.google.common.base.Ticker;
+import com.rackspacecloud.blueflood.io.ShardStateIO;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.utils.Util;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Mockito.*;
+
+public class ShardStatePusherTest {
+
+    private final Collection<Integer> allShards = Util.parseShards("ALL");
+
+    private ShardStateManager manager;
+    private ShardStateIO io;
+    private ShardStatePusher pusher;
+
+    @Before
+    public void setup() {
+        manager = new ShardStateManager(allShards, Ticker.systemTicker());
+        io = mock(ShardStateIO.class);
+        pusher = new ShardStatePusher(allShards, manager, io);
+    }
+
+    @Test
+    public void testOnlyDirtyShardsArePushedTogether() throws Exception {
+        // given
+        manager.getSlotStateManager(3, Granularity.MIN_5).createOrUpdateForSlotAndMillisecond(10, 1234L);
+        manager.getSlotStateManager(100, Granularity.MIN_20).createOrUpdateForSlotAndMillisecond(20, 1234L);
+
+        // when
+        pusher.performOperation();
+
+        // then
+        ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+        verify(io).putShardStates(captor.capture());
+        verify(io, never()).putShardState(anyInt(), anyMap());
+        Map<Integer, Map<Granularity, Map<Integer, UpdateStamp>>> pushed = captor.getValue();
+        assertEquals(new HashSet<Integer>(Arrays.asList(3, 100)), pushed.keySet());
+        assertEquals(Collections.singleton(10), pushed.get(3).get(Granularity.MIN_5).keySet());
+        assertEquals(Collections.singleton(20), pushed.get(100).get(Granularity.MIN_20).keySet());
+    }
+
+    @Test
+    public void testNothingIsPushedWhenNothingChanged() throws Exception {
+        // given
+        manager.getSlotStateManager(3, Granularity.MIN_5).createOrUpdateForSlotAndMillisecond(10, 1234L);
+        pusher.performOperation();
+        reset(io);
+
+        // when
+        pusher.performOperation();
+
+        // then
+        verifyZeroInteractions(io);
+    }
+
+    @Test
+    public void testShardsNotPushedByThisPusherStayDirty() throws Exception {
+        // given
+        ShardStatePusher partialPusher = new ShardStatePusher(Arrays.asList(1, 2), manager, io);
+        manager.getSlotStateManager(1, Granularity.MIN_5).createOrUpdateForSlotAndMillisecond(10, 1234L);
+        manager.getSlotStateManager(3, Granularity.MIN_5).createOrUpdateForSlotAndMillisecond(10, 1234L);
+
+        // when
+        partialPusher.performOperation();
+
+        // then
+        ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+        verify(io).putShardStates(captor.capture());
+        assertEquals(Collections.singleton(1), captor.getValue().keySet());
+        assertEquals(Collections.singleton(3), manager.getDirtyShards());
+    }
+}
@@ -126,4 +126,76 @@ public class BluefloodSetRollupTest {
         
         Assert.assertTrue(count > 0);
     }
+
+    @Test
+    public void testSetIsPromotedAboveThreshold() {
+        // given
+        BluefloodSetRollup rollup = new BluefloodSetRollup(10);
+        for (int i = 0; i < 10; i++) {
+            rollup.withObject(i);
+        }
+        Assert.assertFalse(rollup.isEstimated());
+
+        // when
+        rollup.withObject(10);
+
+        // then
+        Assert.assertTrue(rollup.isEstimated());
+        Assert.assertEquals(11, rollup.getCount());
+        Assert.assertFalse(rollup.getHashes().iterator().hasNext());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPromotedSetCannotTellMembers() {
+        new BluefloodSetRollup(0).withObject("a").contains("a");
+    }
+
+    @Test
+    public void testRollupOfExactAndPromotedSets() throws IOException {
+        // given
+        final BluefloodSetRollup exact = new BluefloodSetRollup(100);
+        final BluefloodSetRollup promoted = new BluefloodSetRollup(100);
+        for (int i = 0; i < 50; i++) {
+            exact.withObject("value" + i);
+        }
+        for (int i = 25; i < 2000; i++) {
+            promoted.withObject("value" + i);
+        }
+        Assert.assertFalse(exact.isEstimated());
+        Assert.assertTrue(promoted.isEstimated());
+
+        // when
+        BluefloodSetRollup rollup = BluefloodSetRollup.buildRollupFromSetRollups(new Points<BluefloodSetRollup>() {{
+            add(new Point<BluefloodSetRollup>(0, exact));
+            add(new Point<BluefloodSetRollup>(300, promoted));
+        }}, 100);
+
+        // then
+        Assert.assertTrue(rollup.isEstimated());
+        Assert.assertEquals(2000, rollup.getCount(), 2000 * 0.05);
+    }
+
+    @Test
+    public void testRollupOfExactSetsIsPromotedOnceOverThreshold() throws IOException {
+        // given
+        final BluefloodSetRollup s0 = new BluefloodSetRollup(100).withObject(1).withObject(2);
+        final BluefloodSetRollup s1 = new BluefloodSetRollup(100).withObject(2).withObject(3);
+
+        // when
+        BluefloodSetRollup exact = BluefloodSetRollup.buildRollupFromSetRollups(new Points<BluefloodSetRollup>() {{
+            add(new Point<BluefloodSetRollup>(0, s0));
+            add(new Point<BluefloodSetRollup>(300, s1));
+        }}, 3);
+        BluefloodSetRollup estimated = BluefloodSetRollup.buildRollupFromSetRollups(new Points<BluefloodSetRollup>() {{
+            add(new Point<BluefloodSetRollup>(0, s0));
+            add(new Point<BluefloodSetRollup>(300, s1));
+        }}, 2);
+
+        // then
+        Assert.assertFalse(exact.isEstimated());
+        Assert.assertEquals(3, exact.getCount());
+        Assert.assertTrue(estimated.isEstimated());
+        Assert.assertEquals(3, estimated.getCount());
+        Assert.assertFalse(exact.equals(estimated));
+    }
 }
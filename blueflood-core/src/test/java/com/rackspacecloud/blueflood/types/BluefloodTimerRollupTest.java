@@ -193,6 +193,63 @@ public class BluefloodTimerRollupTest {
         Assert.assertTrue(Math.abs(expectedMean98 - cumulative.getPercentiles().get("98").getMean().doubleValue()) < ACCEPTABLE_SKEW);
     }
     
+    @Test
+    public void testPercentilesFromSketches() throws IOException {
+        // two 5 minute timers, one much busier and slower than the other
+        QuantileSketch fast = new QuantileSketch();
+        QuantileSketch slow = new QuantileSketch();
+        for (int i = 1; i <= 100; i++) {
+            fast.add(i);
+        }
+        for (int i = 1; i <= 900; i++) {
+            slow.add(1000 + i);
+        }
+        final BluefloodTimerRollup tr0 = new BluefloodTimerRollup().withCount(100).withSampleCount(1).withSketch(fast);
+        final BluefloodTimerRollup tr1 = new BluefloodTimerRollup().withCount(900).withSampleCount(1).withSketch(slow);
+        tr0.setPercentile("50", 50);
+        tr1.setPercentile("50", 1450);
+        tr0.setPercentile("99_9", 100);
+        tr1.setPercentile("99_9", 1900);
+
+        BluefloodTimerRollup cumulative = BluefloodTimerRollup.buildRollupFromTimerRollups(new Points<BluefloodTimerRollup>() {{
+            add(new Point<BluefloodTimerRollup>(0, tr0));
+            add(new Point<BluefloodTimerRollup>(100, tr1));
+        }});
+
+        // the median of all 1000 values is 1400, not the average of the medians.
+        Assert.assertEquals(1000, cumulative.getSketch().getCount());
+        Assert.assertEquals(1400d, cumulative.getPercentiles().get("50").getMean().doubleValue(), 1400d * QuantileSketch.RELATIVE_ACCURACY);
+        Assert.assertEquals(1899d, cumulative.getPercentiles().get("99_9").getMean().doubleValue(), 1899d * QuantileSketch.RELATIVE_ACCURACY);
+    }
+
+    @Test
+    public void testPercentilesAreAveragedUnlessEveryRollupHasASketch() throws IOException {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(10);
+        final BluefloodTimerRollup tr0 = new BluefloodTimerRollup().withCount(1).withSampleCount(1).withSketch(sketch);
+        final BluefloodTimerRollup tr1 = new BluefloodTimerRollup().withCount(1).withSampleCount(1);
+        tr0.setPercentile("50", 10d);
+        tr1.setPercentile("50", 20d);
+
+        BluefloodTimerRollup cumulative = BluefloodTimerRollup.buildRollupFromTimerRollups(new Points<BluefloodTimerRollup>() {{
+            add(new Point<BluefloodTimerRollup>(0, tr0));
+            add(new Point<BluefloodTimerRollup>(100, tr1));
+        }});
+
+        Assert.assertNull(cumulative.getSketch());
+        Assert.assertEquals(15d, cumulative.getPercentiles().get("50").getMean().doubleValue(), ACCEPTABLE_SKEW);
+    }
+
+    @Test
+    public void testQuantileOfPercentileLabels() {
+        Assert.assertEquals(0.5d, BluefloodTimerRollup.quantileOf("50"), ACCEPTABLE_SKEW);
+        Assert.assertEquals(1d, BluefloodTimerRollup.quantileOf("100"), ACCEPTABLE_SKEW);
+        Assert.assertEquals(0.999d, BluefloodTimerRollup.quantileOf("999"), ACCEPTABLE_SKEW);
+        Assert.assertEquals(0.999d, BluefloodTimerRollup.quantileOf("99_9"), ACCEPTABLE_SKEW);
+        Assert.assertNull(BluefloodTimerRollup.quantileOf("foo"));
+        Assert.assertNull(BluefloodTimerRollup.quantileOf(""));
+    }
+
     @Test
     public void tesLinedListMultimapAllowsDuplicates() {
         // NOTE: HashMultimap behaves differently. duplicates are not allowed.
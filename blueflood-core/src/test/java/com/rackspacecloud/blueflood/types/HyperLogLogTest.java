@@ -0,0 +1,77 @@
+package com.rackspacecloud.blueflood.types;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HyperLogLogTest {
+
+    // about 3 standard errors
+    private static final double TOLERANCE = 0.05;
+
+    @Test
+    public void testEstimateIsCloseToCardinality() {
+        for (int cardinality : new int[]{10, 1000, 100000}) {
+            // given
+            HyperLogLog hll = new HyperLogLog();
+
+            // when: every value added twice
+            for (int i = 0; i < 2 * cardinality; i++) {
+                hll.addHash(Integer.toString(i % cardinality).hashCode());
+            }
+
+            // then
+            assertEquals("cardinality " + cardinality, cardinality, hll.estimate(), cardinality * TOLERANCE);
+        }
+    }
+
+    @Test
+    public void testEmptyEstimatesZero() {
+        assertEquals(0, new HyperLogLog().estimate());
+    }
+
+    @Test
+    public void testMergedEqualsEstimatorOfAllHashes() {
+        // given
+        HyperLogLog all = new HyperLogLog();
+        HyperLogLog merged = new HyperLogLog();
+        for (int part = 0; part < 4; part++) {
+            HyperLogLog hll = new HyperLogLog();
+            // overlapping ranges
+            for (int i = part * 5000; i < part * 5000 + 10000; i++) {
+                hll.addHash(i);
+                all.addHash(i);
+            }
+
+            // when
+            merged.merge(hll);
+        }
+
+        // then
+        assertEquals(all, merged);
+        assertEquals(all.estimate(), merged.estimate());
+        assertEquals(25000, merged.estimate(), 25000 * TOLERANCE);
+    }
+
+    @Test
+    public void testRestoredEqualsOriginal() {
+        // given
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < 500; i++) {
+            hll.addHash(i);
+        }
+
+        // when
+        HyperLogLog restored = new HyperLogLog(hll.getRegisters());
+
+        // then
+        assertEquals(hll, restored);
+        assertEquals(hll.hashCode(), restored.hashCode());
+        assertEquals(hll.estimate(), restored.estimate());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegistersMustAllBeGiven() {
+        new HyperLogLog(new byte[HyperLogLog.NUM_REGISTERS - 1]);
+    }
+}
@@ -1,5 +1,6 @@
 package com.rackspacecloud.blueflood.types;
 
+import com.rackspacecloud.blueflood.utils.Util;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -438,4 +439,33 @@ public class LocatorTest {
         // then
         assertEquals(-1, comparison);
     }
+
+    @Test
+    public void getShardMatchesComputedShard() {
+
+        // given
+        Locator locator = Locator.createLocatorFromPathComponents(tenant, metricName);
+
+        // when
+        int shard = locator.getShard();
+
+        // then
+        assertEquals(Util.computeShard(fullyQualifiedName), shard);
+        assertEquals(shard, locator.getShard());
+    }
+
+    @Test
+    public void setStringRepResetsShard() {
+
+        // given
+        Locator locator = new Locator();
+        locator.setStringRep(fullyQualifiedName);
+        locator.getShard();
+
+        // when
+        locator.setStringRep("other.metric");
+
+        // then
+        assertEquals(Util.computeShard("other.metric"), locator.getShard());
+    }
 }
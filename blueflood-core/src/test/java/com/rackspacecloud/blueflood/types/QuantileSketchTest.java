@@ -0,0 +1,143 @@
+package com.rackspacecloud.blueflood.types;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QuantileSketchTest {
+
+    private static final double[] QUANTILES = {0, 0.1, 0.5, 0.9, 0.99, 0.999, 1};
+
+    @Test
+    public void testQuantilesAreWithinRelativeAccuracy() {
+        // given
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 1; i <= 10000; i++) {
+            sketch.add(i);
+        }
+
+        // then
+        assertEquals(10000, sketch.getCount());
+        for (double q : QUANTILES) {
+            assertRelativelyClose(1 + q * 9999, sketch.getQuantile(q));
+        }
+    }
+
+    @Test
+    public void testMergedSketchEqualsSketchOfAllValues() {
+        // given
+        Random random = new Random(42);
+        QuantileSketch all = new QuantileSketch();
+        QuantileSketch merged = new QuantileSketch();
+        for (int part = 0; part < 5; part++) {
+            QuantileSketch sketch = new QuantileSketch();
+            for (int i = 0; i < 1000; i++) {
+                // log normal, like latencies
+                double value = Math.exp(3 + random.nextGaussian());
+                sketch.add(value);
+                all.add(value);
+            }
+
+            // when
+            merged.merge(sketch);
+        }
+
+        // then
+        assertEquals(all, merged);
+        assertEquals(all.hashCode(), merged.hashCode());
+        for (double q : QUANTILES) {
+            assertEquals(all.getQuantile(q), merged.getQuantile(q), 0);
+        }
+    }
+
+    @Test
+    public void testZeroAndNegativeValuesCountAsZero() {
+        // given
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(0, 3);
+        sketch.add(-5);
+        sketch.add(100);
+
+        // then
+        assertEquals(5, sketch.getCount());
+        assertEquals(4, sketch.getZeroCount());
+        assertEquals(0, sketch.getQuantile(0.5), 0);
+        assertRelativelyClose(100, sketch.getQuantile(1));
+    }
+
+    @Test
+    public void testBucketsAreBoundedByFoldingTheLowest() {
+        // given
+        QuantileSketch sketch = new QuantileSketch();
+
+        // when: values spanning far more buckets than are kept
+        for (double value = 1e-6; value < 1e12; value *= 1.01) {
+            sketch.add(value);
+        }
+
+        // then
+        assertEquals(QuantileSketch.MAX_BUCKETS, sketch.getNumBuckets());
+        assertRelativelyClose(1e12, sketch.getQuantile(1));
+    }
+
+    @Test
+    public void testAddDistributionSpreadsValuesBetweenQuantiles() {
+        // given
+        QuantileSketch sketch = new QuantileSketch();
+
+        // when: a timer with min 10, median 100, 99th percentile 1000 and max 2000
+        sketch.addDistribution(new double[]{0, 0.5, 0.99, 1}, new double[]{10, 100, 1000, 2000}, 100000);
+
+        // then
+        assertEquals(100000, sketch.getCount());
+        assertRelativelyClose(10, sketch.getQuantile(0));
+        assertRelativelyClose(100, sketch.getQuantile(0.5));
+        assertRelativelyClose(1000, sketch.getQuantile(0.99));
+        assertRelativelyClose(2000, sketch.getQuantile(1));
+    }
+
+    @Test
+    public void testAddDistributionOfConstantValues() {
+        // given
+        QuantileSketch sketch = new QuantileSketch();
+
+        // when
+        sketch.addDistribution(new double[]{0, 1}, new double[]{321, 321}, 7);
+
+        // then
+        assertEquals(7, sketch.getCount());
+        assertEquals(1, sketch.getNumBuckets());
+        assertRelativelyClose(321, sketch.getQuantile(0.5));
+    }
+
+    @Test
+    public void testRestoredSketchEqualsOriginal() {
+        // given
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(0);
+        sketch.add(3);
+        sketch.add(500, 4);
+        long[] counts = new long[sketch.getNumBuckets()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = sketch.getBucketCount(i);
+        }
+
+        // when
+        QuantileSketch restored = new QuantileSketch(sketch.getZeroCount(), sketch.getMinIndex(), counts);
+
+        // then
+        assertEquals(sketch, restored);
+        assertEquals(6, restored.getCount());
+    }
+
+    @Test
+    public void testEmptySketchHasNoQuantiles() {
+        assertTrue(Double.isNaN(new QuantileSketch().getQuantile(0.5)));
+    }
+
+    private static void assertRelativelyClose(double expected, double actual) {
+        assertEquals(expected, actual, expected * QuantileSketch.RELATIVE_ACCURACY);
+    }
+}
@@ -0,0 +1,122 @@
+package com.rackspacecloud.blueflood.types;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SimpleNumberPointsTest {
+
+    @Test
+    public void testPointsAreKeptInTimestampOrder() {
+        // given
+        SimpleNumberPoints points = new SimpleNumberPoints(2);
+
+        // when
+        points.add(3000, 3L);
+        points.add(1000, 1);
+        points.add(4000, 4.5d);
+        points.add(2000, new SimpleNumber(2L));
+
+        // then
+        assertEquals(4, points.size());
+        assertEquals(Arrays.asList(1000L, 2000L, 3000L, 4000L), Arrays.asList(points.getPoints().keySet().toArray()));
+        assertEquals(1000, points.getTimestamp(0));
+        assertEquals(4000, points.getTimestamp(3));
+    }
+
+    @Test
+    public void testValuesKeepTheirType() {
+        // given
+        SimpleNumberPoints points = new SimpleNumberPoints();
+
+        // when
+        points.add(1000, 1);
+        points.add(2000, Long.MAX_VALUE);
+        points.add(3000, -0.5d);
+
+        // then
+        assertEquals(Integer.valueOf(1), points.getValue(0));
+        assertEquals(SimpleNumber.Type.INTEGER, points.getDataType(0));
+        assertEquals(Long.valueOf(Long.MAX_VALUE), points.getValue(1));
+        assertEquals(SimpleNumber.Type.LONG, points.getDataType(1));
+        assertEquals(Double.valueOf(-0.5d), points.getValue(2));
+        assertEquals(SimpleNumber.Type.DOUBLE, points.getDataType(2));
+        assertEquals(-0.5d, points.getDoubleValue(2), 0);
+        assertEquals(1d, points.getDoubleValue(0), 0);
+    }
+
+    @Test
+    public void testPointWithSameTimestampIsReplaced() {
+        // given
+        SimpleNumberPoints points = new SimpleNumberPoints();
+        points.add(1000, 1L);
+        points.add(2000, 2L);
+
+        // when
+        points.add(1000, 10L);
+        points.add(new Points.Point<SimpleNumber>(2000, new SimpleNumber(20.0d)));
+
+        // then
+        assertEquals(2, points.size());
+        assertEquals(10L, points.getValue(0));
+        assertEquals(20.0d, points.getValue(1));
+    }
+
+    @Test
+    public void testViewEqualsPointsOfTheSameValues() {
+        // given
+        Points<SimpleNumber> expected = new Points<SimpleNumber>();
+        SimpleNumberPoints points = new SimpleNumberPoints();
+        for (long i = 0; i < 100; i++) {
+            Object value = i % 2 == 0 ? (Object) i : (Object) (i / 3d);
+            expected.add(new Points.Point<SimpleNumber>(i * 1000, new SimpleNumber(value)));
+            points.add(new Points.Point<SimpleNumber>(i * 1000, new SimpleNumber(value)));
+        }
+
+        // then
+        Map<Long, Points.Point<SimpleNumber>> view = points.getPoints();
+        assertEquals(expected.getPoints(), view);
+        assertEquals(view, expected.getPoints());
+        assertEquals(new Points.Point<SimpleNumber>(3000, new SimpleNumber(1.0d)), view.get(3000L));
+        assertTrue(view.containsKey(99000L));
+        assertFalse(view.containsKey(99001L));
+        assertNull(view.get(-1L));
+        assertEquals(SimpleNumber.class, points.getDataClass());
+        assertFalse(points.isEmpty());
+        assertTrue(new SimpleNumberPoints().isEmpty());
+    }
+
+    @Test
+    public void testRollupOfColumnsEqualsRollupOfPoints() throws IOException {
+        // given
+        Points<SimpleNumber> expected = new Points<SimpleNumber>();
+        SimpleNumberPoints points = new SimpleNumberPoints();
+        for (long i = 0; i < 10; i++) {
+            expected.add(new Points.Point<SimpleNumber>(i * 30000, new SimpleNumber(i * i)));
+            points.add(i * 30000, i * i);
+        }
+
+        // when
+        BasicRollup rollup = BasicRollup.buildRollupFromRawSamples(points);
+
+        // then
+        assertEquals(BasicRollup.buildRollupFromRawSamples(expected), rollup);
+        assertEquals(10, rollup.getCount());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testViewCannotBeRemovedFrom() {
+        SimpleNumberPoints points = new SimpleNumberPoints();
+        points.add(1000, 1L);
+        points.getPoints().remove(1000L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValuesMustBeNumbers() {
+        new SimpleNumberPoints().add(1000, "one");
+    }
+}
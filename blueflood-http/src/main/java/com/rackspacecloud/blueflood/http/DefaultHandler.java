@@ -18,6 +18,7 @@ package com.rackspacecloud.blueflood.http;
 
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
+import com.rackspacecloud.blueflood.exceptions.OverloadedException;
 import com.rackspacecloud.blueflood.io.Constants;
 import com.rackspacecloud.blueflood.outputs.formats.ErrorResponse;
 import com.rackspacecloud.blueflood.tracker.Tracker;
@@ -33,6 +34,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -52,11 +54,17 @@ public class DefaultHandler implements HttpRequestHandler {
 
     public static void sendErrorResponse(ChannelHandlerContext ctx, FullHttpRequest request,
                                    List<ErrorResponse.ErrorData> validationErrors, HttpResponseStatus status) {
+        sendErrorResponse(ctx, request, validationErrors, status, null);
+    }
+
+    public static void sendErrorResponse(ChannelHandlerContext ctx, FullHttpRequest request,
+                                   List<ErrorResponse.ErrorData> validationErrors, HttpResponseStatus status,
+                                   Map<String, String> headers) {
         try {
             sendingErrorResponses.mark();
 
             String responseBody = new ObjectMapper().writeValueAsString(new ErrorResponse(validationErrors));
-            sendResponse(ctx, request, responseBody, status);
+            sendResponse(ctx, request, responseBody, status, headers);
 
         } catch (IOException e) {
 
@@ -67,13 +75,27 @@ public class DefaultHandler implements HttpRequestHandler {
 
     public static void sendErrorResponse(ChannelHandlerContext ctx, FullHttpRequest request,
                                    final String message, HttpResponseStatus status) {
+        sendErrorResponse(ctx, request, message, status, null);
+    }
+
+    public static void sendErrorResponse(ChannelHandlerContext ctx, FullHttpRequest request,
+                                   final String message, HttpResponseStatus status, Map<String, String> headers) {
         final String tenantId = request.headers().get("tenantId");
 
         List<ErrorResponse.ErrorData> errrors = new ArrayList<ErrorResponse.ErrorData>(){{
             add(new ErrorResponse.ErrorData(tenantId, null, null, message, null));
         }};
 
-        sendErrorResponse(ctx, request, errrors, status);
+        sendErrorResponse(ctx, request, errrors, status, headers);
+    }
+
+    /**
+     * Tells the client the node is too busy to take the request, and when to try again.
+     */
+    public static void sendOverloadedResponse(ChannelHandlerContext ctx, FullHttpRequest request,
+                                              OverloadedException e) {
+        sendErrorResponse(ctx, request, e.getMessage(), HttpResponseStatus.TOO_MANY_REQUESTS,
+                Collections.singletonMap(HttpHeaders.Names.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds())));
     }
 
     public static void sendResponse(ChannelHandlerContext channel, FullHttpRequest request,
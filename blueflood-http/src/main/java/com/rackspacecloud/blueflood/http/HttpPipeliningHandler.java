@@ -0,0 +1,197 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.http;
+
+import com.codahale.metrics.Meter;
+import com.rackspacecloud.blueflood.utils.Metrics;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.util.ReferenceCountUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Keeps the responses on a keep-alive connection in the order of their requests, so that clients can pipeline
+ * requests, and applies backpressure to clients that pipeline too many.
+ *
+ * Each request read is tagged with a {@link #SEQUENCE_HEADER}, which {@link HttpResponder} copies to its response.
+ * Responses are held back until the responses to all earlier requests on the connection have been written, and the
+ * connection is closed after the response to the first request that is not keep-alive. Responses without the header,
+ * like the 400 for a request that could not be decoded, are written right away.
+ *
+ * Once {@code maxInFlight} requests are waiting for a response, the connection stops reading until one is written.
+ * This handler is per connection and must be added to the pipeline after the {@link io.netty.handler.codec.http.HttpObjectAggregator}.
+ */
+public class HttpPipeliningHandler extends ChannelDuplexHandler {
+
+    /**
+     * Internal header with the sequence number of a request on its connection. It is never sent to clients.
+     */
+    public static final String SEQUENCE_HEADER = "X-Blueflood-Request-Sequence";
+
+    private static final Logger log = LoggerFactory.getLogger(HttpPipeliningHandler.class);
+    private static final Meter backpressureMeter = Metrics.meter(HttpPipeliningHandler.class, "Reads Paused");
+
+    private final int maxInFlight;
+
+    // only accessed from the event loop of the channel
+    private long readSequence = 0;
+    private long writeSequence = 0;
+    private final Map<Long, Boolean> keepAlive = new HashMap<Long, Boolean>();
+    private final Map<Long, PendingResponse> pendingResponses = new HashMap<Long, PendingResponse>();
+    private boolean reading = false;
+    private boolean closing = false;
+
+    public HttpPipeliningHandler(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1, was " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpRequest) {
+            if (closing) {
+                // the connection closes after an earlier response; nothing more is answered on it
+                ReferenceCountUtil.release(msg);
+                return;
+            }
+            HttpRequest request = (HttpRequest) msg;
+            long sequence = readSequence++;
+            request.headers().set(SEQUENCE_HEADER, Long.toString(sequence));
+            keepAlive.put(sequence, HttpHeaders.isKeepAlive(request));
+
+            if (getInFlight() >= maxInFlight && ctx.channel().config().isAutoRead()) {
+                log.debug("Pausing reads with {} requests in flight on channel {}", getInFlight(), ctx.channel());
+                backpressureMeter.mark();
+                ctx.channel().config().setAutoRead(false);
+            }
+        }
+        reading = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        reading = false;
+        ctx.fireChannelReadComplete();
+        ctx.flush();
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        String sequenceHeader = msg instanceof FullHttpResponse
+                ? ((FullHttpResponse) msg).headers().get(SEQUENCE_HEADER)
+                : null;
+        if (sequenceHeader == null) {
+            ctx.write(msg, promise);
+            return;
+        }
+
+        FullHttpResponse response = (FullHttpResponse) msg;
+        response.headers().remove(SEQUENCE_HEADER);
+        long sequence = Long.parseLong(sequenceHeader);
+        if (sequence < writeSequence || pendingResponses.containsKey(sequence) || closing) {
+            log.warn("Dropping unexpected response {} on channel {}", sequence, ctx.channel());
+            ReferenceCountUtil.release(response);
+            promise.setSuccess();
+            return;
+        }
+
+        pendingResponses.put(sequence, new PendingResponse(response, promise));
+        writePendingResponses(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        releasePendingResponses();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        releasePendingResponses();
+    }
+
+    /**
+     * @return the number of requests read on this connection which have not been responded to yet
+     */
+    int getInFlight() {
+        return (int) (readSequence - writeSequence);
+    }
+
+    private void writePendingResponses(ChannelHandlerContext ctx) {
+        boolean written = false;
+        PendingResponse next;
+        while (!closing && (next = pendingResponses.remove(writeSequence)) != null) {
+            Boolean isKeepAlive = keepAlive.remove(writeSequence);
+            writeSequence++;
+            written = true;
+
+            ctx.write(next.response, next.promise);
+            if (isKeepAlive == null || !isKeepAlive) {
+                log.debug("Closing channel {} after response to a request that is not keep-alive", ctx.channel());
+                closing = true;
+                releasePendingResponses();
+                ctx.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+
+        if (!written) {
+            return;
+        }
+        // responses written while reading are flushed together when the read completes
+        if (!reading) {
+            ctx.flush();
+        }
+        if (!closing && getInFlight() < maxInFlight && !ctx.channel().config().isAutoRead()) {
+            log.debug("Resuming reads on channel {}", ctx.channel());
+            ctx.channel().config().setAutoRead(true);
+        }
+    }
+
+    private void releasePendingResponses() {
+        Iterator<PendingResponse> iterator = pendingResponses.values().iterator();
+        while (iterator.hasNext()) {
+            PendingResponse pending = iterator.next();
+            iterator.remove();
+            ReferenceCountUtil.release(pending.response);
+            pending.promise.tryFailure(new IllegalStateException("Connection closed before the response was written"));
+        }
+    }
+
+    private static class PendingResponse {
+        private final FullHttpResponse response;
+        private final ChannelPromise promise;
+
+        private PendingResponse(FullHttpResponse response, ChannelPromise promise) {
+            this.response = response;
+            this.promise = promise;
+        }
+    }
+}
@@ -83,6 +83,15 @@ public class HttpResponder {
             }
         }
 
+        // On a pipelined connection, the HttpPipeliningHandler puts the response in order
+        // and closes the connection after it if necessary.
+        String sequence = req == null ? null : req.headers().get(HttpPipeliningHandler.SEQUENCE_HEADER);
+        if (sequence != null) {
+            res.headers().set(HttpPipeliningHandler.SEQUENCE_HEADER, sequence);
+            ctx.channel().write(res);
+            return;
+        }
+
         // Send the response and close the connection if necessary.
         ctx.channel().write(res);
         if (req == null || !isKeepAlive) {
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.http;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.rackspacecloud.blueflood.service.Configuration;
+import com.rackspacecloud.blueflood.service.HttpConfig;
+import com.rackspacecloud.blueflood.utils.Metrics;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Netty transport and buffer allocator of the HTTP servers, as configured by {@link HttpConfig#HTTP_TRANSPORT}
+ * and {@link HttpConfig#HTTP_POOLED_BUFFERS}.
+ *
+ * With the native epoll transport, the server socket is bound once per acceptor thread with SO_REUSEPORT, so that
+ * the kernel spreads new connections over all the acceptor threads instead of one accepting them all.
+ */
+public class HttpServerTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpServerTransport.class);
+
+    public static final String AUTO = "auto";
+    public static final String NIO = "nio";
+    public static final String EPOLL = "epoll";
+
+    private final boolean epoll;
+    private final ByteBufAllocator allocator;
+
+    public HttpServerTransport() {
+        this(Configuration.getInstance().getStringProperty(HttpConfig.HTTP_TRANSPORT),
+                Configuration.getInstance().getBooleanProperty(HttpConfig.HTTP_POOLED_BUFFERS));
+    }
+
+    @VisibleForTesting
+    HttpServerTransport(String transport, boolean pooledBuffers) {
+        if (EPOLL.equalsIgnoreCase(transport)) {
+            if (!Epoll.isAvailable()) {
+                throw new IllegalStateException("The epoll transport is not available", Epoll.unavailabilityCause());
+            }
+            epoll = true;
+        } else if (AUTO.equalsIgnoreCase(transport)) {
+            epoll = Epoll.isAvailable();
+        } else if (NIO.equalsIgnoreCase(transport)) {
+            epoll = false;
+        } else {
+            throw new IllegalArgumentException(String.format("Unknown transport %s, expected one of %s, %s or %s",
+                    transport, AUTO, NIO, EPOLL));
+        }
+        allocator = pooledBuffers ? PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT;
+    }
+
+    public boolean isEpoll() {
+        return epoll;
+    }
+
+    public ByteBufAllocator getAllocator() {
+        return allocator;
+    }
+
+    public EventLoopGroup createEventLoopGroup(int threads, String name) {
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory(name);
+        return epoll ? new EpollEventLoopGroup(threads, threadFactory) : new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    /**
+     * @return a bootstrap of the transport's server channel with the given groups, without a child handler
+     */
+    public ServerBootstrap createServerBootstrap(EventLoopGroup acceptorGroup, EventLoopGroup workerGroup) {
+        ServerBootstrap server = new ServerBootstrap();
+        server.group(acceptorGroup, workerGroup)
+                .channel(epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class)
+                .option(ChannelOption.ALLOCATOR, allocator)
+                .childOption(ChannelOption.ALLOCATOR, allocator);
+        if (epoll) {
+            server.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+        return server;
+    }
+
+    /**
+     * Binds the server to the address, once per acceptor thread with the epoll transport, or once otherwise.
+     *
+     * @return the bound server channels
+     */
+    public List<Channel> bind(ServerBootstrap server, InetSocketAddress address, int acceptThreads)
+            throws InterruptedException {
+        int binds = epoll ? Math.max(1, acceptThreads) : 1;
+        List<Channel> channels = new ArrayList<Channel>(binds);
+        for (int i = 0; i < binds; i++) {
+            channels.add(server.bind(address).sync().channel());
+        }
+        log.info("Bound {} {} server channel(s) to {}", binds, epoll ? EPOLL : NIO, address);
+        return channels;
+    }
+
+    /**
+     * Registers gauges of the tasks waiting on the worker event loops of a server, and of the buffer allocator.
+     * Registering again for the same server replaces its earlier gauges.
+     */
+    public void registerMetrics(String serverName, final EventLoopGroup workerGroup) {
+        register(MetricRegistry.name(HttpServerTransport.class, serverName, "Pending Tasks"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                int pending = 0;
+                for (EventExecutor executor : workerGroup) {
+                    if (executor instanceof SingleThreadEventExecutor) {
+                        pending += ((SingleThreadEventExecutor) executor).pendingTasks();
+                    }
+                }
+                return pending;
+            }
+        });
+
+        if (allocator instanceof PooledByteBufAllocator) {
+            final PooledByteBufAllocator pooled = (PooledByteBufAllocator) allocator;
+            register(MetricRegistry.name(HttpServerTransport.class, "Allocator", "Direct Active Bytes"), new Gauge<Long>() {
+                @Override
+                public Long getValue() {
+                    return activeBytes(pooled.directArenas());
+                }
+            });
+            register(MetricRegistry.name(HttpServerTransport.class, "Allocator", "Heap Active Bytes"), new Gauge<Long>() {
+                @Override
+                public Long getValue() {
+                    return activeBytes(pooled.heapArenas());
+                }
+            });
+            register(MetricRegistry.name(HttpServerTransport.class, "Allocator", "Active Allocations"), new Gauge<Long>() {
+                @Override
+                public Long getValue() {
+                    long allocations = 0;
+                    for (PoolArenaMetric arena : pooled.directArenas()) {
+                        allocations += arena.numActiveAllocations();
+                    }
+                    for (PoolArenaMetric arena : pooled.heapArenas()) {
+                        allocations += arena.numActiveAllocations();
+                    }
+                    return allocations;
+                }
+            });
+        }
+    }
+
+    private static long activeBytes(List<PoolArenaMetric> arenas) {
+        long bytes = 0;
+        for (PoolArenaMetric arena : arenas) {
+            bytes += arena.numActiveBytes();
+        }
+        return bytes;
+    }
+
+    private static synchronized void register(String name, Gauge gauge) {
+        Metrics.getRegistry().remove(name);
+        Metrics.getRegistry().register(name, gauge);
+    }
+}
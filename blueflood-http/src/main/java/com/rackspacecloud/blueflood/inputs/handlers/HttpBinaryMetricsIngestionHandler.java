@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.inputs.handlers;
+
+import com.rackspacecloud.blueflood.inputs.formats.BinaryMetricsParser;
+import com.rackspacecloud.blueflood.inputs.formats.JSONMetricsContainer;
+import com.rackspacecloud.blueflood.utils.TimeValue;
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+
+/**
+ * Ingests metrics in the binary format of {@link BinaryMetricsParser}, otherwise exactly as
+ * {@link HttpMetricsIngestionHandler} does.
+ */
+public class HttpBinaryMetricsIngestionHandler extends HttpMetricsIngestionHandler {
+
+    private final BinaryMetricsParser binaryParser = new BinaryMetricsParser();
+
+    public HttpBinaryMetricsIngestionHandler(HttpMetricsIngestionServer.Processor processor, TimeValue timeout) {
+        this(processor, timeout, false);
+    }
+
+    public HttpBinaryMetricsIngestionHandler(HttpMetricsIngestionServer.Processor processor, TimeValue timeout, boolean enablePerTenantMetrics) {
+        super(processor, timeout, enablePerTenantMetrics);
+    }
+
+    @Override
+    protected JSONMetricsContainer createContainer(ByteBuf content, String tenantId) throws IOException {
+        return binaryParser.parse(content, tenantId);
+    }
+}
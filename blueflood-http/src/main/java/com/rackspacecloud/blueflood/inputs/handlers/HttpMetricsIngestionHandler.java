@@ -23,11 +23,11 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.rackspacecloud.blueflood.cache.ConfigTtlProvider;
 import com.rackspacecloud.blueflood.exceptions.InvalidDataException;
+import com.rackspacecloud.blueflood.exceptions.OverloadedException;
 import com.rackspacecloud.blueflood.http.DefaultHandler;
 import com.rackspacecloud.blueflood.http.HttpRequestHandler;
-import com.rackspacecloud.blueflood.inputs.formats.JSONMetric;
 import com.rackspacecloud.blueflood.inputs.formats.JSONMetricsContainer;
-import com.rackspacecloud.blueflood.io.Constants;
+import com.rackspacecloud.blueflood.inputs.formats.JSONMetricsParser;
 import com.rackspacecloud.blueflood.io.Instrumentation;
 import com.rackspacecloud.blueflood.outputs.formats.ErrorResponse;
 import com.rackspacecloud.blueflood.tracker.Tracker;
@@ -36,25 +36,19 @@ import com.rackspacecloud.blueflood.types.Metric;
 import com.rackspacecloud.blueflood.types.MetricsCollection;
 import com.rackspacecloud.blueflood.utils.Metrics;
 import com.rackspacecloud.blueflood.utils.TimeValue;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.JsonMappingException;
-import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.map.type.TypeFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.validation.ConstraintViolation;
-import javax.validation.Validation;
-import javax.validation.Validator;
-import javax.validation.ValidatorFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
 import java.util.concurrent.TimeoutException;
 
 public class HttpMetricsIngestionHandler implements HttpRequestHandler {
@@ -65,15 +59,11 @@ public class HttpMetricsIngestionHandler implements HttpRequestHandler {
     private static final Counter requestCount = Metrics.counter(HttpMetricsIngestionHandler.class, "HTTP Request Count");
     private static final Meter requestsReceived = Metrics.meter(HttpMetricsIngestionHandler.class, "Http Requests received");
 
-    protected final ObjectMapper mapper;
-    protected final TypeFactory typeFactory;
+    private final JSONMetricsParser parser;
     private final HttpMetricsIngestionServer.Processor processor;
     private final TimeValue timeout;
     protected boolean enablePerTenantMetrics;
 
-    private static final ValidatorFactory factory = Validation.buildDefaultValidatorFactory();
-    protected static final Validator validator = factory.getValidator();
-
     // Metrics
     private static final Timer jsonTimer = Metrics.timer(HttpMetricsIngestionHandler.class, "HTTP Ingestion json processing timer");
     private static final Timer persistingTimer = Metrics.timer(HttpMetricsIngestionHandler.class, "HTTP Ingestion persisting timer");
@@ -94,40 +84,23 @@ public class HttpMetricsIngestionHandler implements HttpRequestHandler {
     }
 
     public HttpMetricsIngestionHandler(HttpMetricsIngestionServer.Processor processor, TimeValue timeout, boolean enablePerTenantMetrics) {
-        this.mapper = new ObjectMapper();
-        this.typeFactory = TypeFactory.defaultInstance();
+        this(processor, timeout, enablePerTenantMetrics, new JSONMetricsParser(false));
+    }
+
+    protected HttpMetricsIngestionHandler(HttpMetricsIngestionServer.Processor processor, TimeValue timeout,
+                                          boolean enablePerTenantMetrics, JSONMetricsParser parser) {
+        this.parser = parser;
         this.timeout = timeout;
         this.processor = processor;
         this.enablePerTenantMetrics = enablePerTenantMetrics;
     }
 
-    protected JSONMetricsContainer createContainer(String body, String tenantId) throws JsonParseException, JsonMappingException, IOException {
-        //mapping
-        List<JSONMetric> jsonMetrics =
-                mapper.readValue(
-                        body,
-                        typeFactory.constructCollectionType(List.class, JSONMetric.class)
-                );
-
-        //validation
-        List<ErrorResponse.ErrorData> validationErrors = new ArrayList<ErrorResponse.ErrorData>();
-        List<JSONMetric> validJsonMetrics = new ArrayList<JSONMetric>();
-
-        for (JSONMetric metric: jsonMetrics) {
-            Set<ConstraintViolation<JSONMetric>> constraintViolations = validator.validate(metric);
-
-            if (constraintViolations.size() == 0) {
-                validJsonMetrics.add(metric);
-            } else {
-                for (ConstraintViolation<JSONMetric> constraintViolation : constraintViolations) {
-                    validationErrors.add(new ErrorResponse.ErrorData(tenantId, metric.getMetricName(),
-                            constraintViolation.getPropertyPath().toString(), constraintViolation.getMessage(),
-                            metric.getCollectionTime()));
-                }
-            }
-        }
+    protected JSONMetricsContainer createContainer(ByteBuf content, String tenantId) throws JsonParseException, JsonMappingException, IOException {
+        return parser.parse(content, tenantId);
+    }
 
-        return new JSONMetricsContainer(tenantId, validJsonMetrics, validationErrors);
+    protected JSONMetricsContainer createContainer(String body, String tenantId) throws JsonParseException, JsonMappingException, IOException {
+        return parser.parse(body, tenantId);
     }
 
     @Override
@@ -146,9 +119,8 @@ public class HttpMetricsIngestionHandler implements HttpRequestHandler {
 
             final Timer.Context jsonTimerContext = jsonTimer.time();
 
-            final String body = request.content().toString(Constants.DEFAULT_CHARSET);
             try {
-                jsonMetricsContainer = createContainer(body, tenantId);
+                jsonMetricsContainer = createContainer(request.content(), tenantId);
 
                 if (jsonMetricsContainer.areDelayedMetricsPresent()) {
                     Tracker.getInstance().trackDelayedMetricsTenant(tenantId, jsonMetricsContainer.getDelayedMetrics());
@@ -231,6 +203,8 @@ public class HttpMetricsIngestionHandler implements HttpRequestHandler {
                     // no validation error, return OK
                     DefaultHandler.sendResponse(ctx, request, null, HttpResponseStatus.OK);
                 }
+            } catch (OverloadedException e) {
+                DefaultHandler.sendOverloadedResponse(ctx, request, e);
             } catch (TimeoutException e) {
                 DefaultHandler.sendErrorResponse(ctx, request, "Timed out persisting metrics", HttpResponseStatus.ACCEPTED);
             } catch (Exception e) {
@@ -17,15 +17,22 @@
 package com.rackspacecloud.blueflood.inputs.handlers;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.rackspacecloud.blueflood.cache.MetadataCache;
+import com.rackspacecloud.blueflood.concurrent.AdmissionController;
 import com.rackspacecloud.blueflood.concurrent.ThreadPoolBuilder;
+import com.rackspacecloud.blueflood.exceptions.OverloadedException;
 import com.rackspacecloud.blueflood.http.DefaultHandler;
+import com.rackspacecloud.blueflood.http.HttpPipeliningHandler;
+import com.rackspacecloud.blueflood.http.HttpServerTransport;
 import com.rackspacecloud.blueflood.http.QueryStringDecoderAndRouter;
 import com.rackspacecloud.blueflood.http.RouteMatcher;
 import com.rackspacecloud.blueflood.inputs.processors.*;
 import com.rackspacecloud.blueflood.io.EventsIO;
+import com.rackspacecloud.blueflood.io.IngestCommitLog;
 import com.rackspacecloud.blueflood.service.*;
 import com.rackspacecloud.blueflood.tracker.Tracker;
 import com.rackspacecloud.blueflood.types.IMetric;
@@ -37,9 +44,7 @@ import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.http.*;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
@@ -48,6 +53,8 @@ import io.netty.util.concurrent.GlobalEventExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -63,12 +70,18 @@ public class HttpMetricsIngestionServer {
 
     private TimeValue timeout;
 
+    private final HttpServerTransport transport = new HttpServerTransport();
+    private final int acceptThreads;
     private EventLoopGroup acceptorGroup;
     private EventLoopGroup workerGroup;
     private ChannelGroup allOpenChannels = new DefaultChannelGroup("allOpenChannels", GlobalEventExecutor.INSTANCE);
 
     private int HTTP_CONNECTION_READ_IDLE_TIME_SECONDS =
             Configuration.getInstance().getIntegerProperty(HttpConfig.HTTP_CONNECTION_READ_IDLE_TIME_SECONDS);
+    private int HTTP_MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION =
+            Configuration.getInstance().getIntegerProperty(HttpConfig.HTTP_MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION);
+    private boolean HTTP_ENABLE_WIRE_LOGGING =
+            Configuration.getInstance().getBooleanProperty(HttpConfig.HTTP_ENABLE_WIRE_LOGGING);
 
     public static boolean EXP_TOKEN_SEARCH_IMPROVEMENTS =
             Configuration.getInstance().getBooleanProperty(CoreConfig.ENABLE_TOKEN_SEARCH_IMPROVEMENTS);
@@ -93,10 +106,10 @@ public class HttpMetricsIngestionServer {
         this.processor = new Processor(context, timeout);
         this.httpMaxContentLength = Configuration.getInstance().getIntegerProperty(HttpConfig.HTTP_MAX_CONTENT_LENGTH);
 
-        int acceptThreads = Configuration.getInstance().getIntegerProperty(HttpConfig.MAX_WRITE_ACCEPT_THREADS);
+        this.acceptThreads = Configuration.getInstance().getIntegerProperty(HttpConfig.MAX_WRITE_ACCEPT_THREADS);
         int workerThreads = Configuration.getInstance().getIntegerProperty(HttpConfig.MAX_WRITE_WORKER_THREADS);
-        acceptorGroup = new NioEventLoopGroup(acceptThreads); // acceptor threads
-        workerGroup = new NioEventLoopGroup(workerThreads);   // client connections threads
+        acceptorGroup = transport.createEventLoopGroup(acceptThreads, "Ingestion acceptor"); // acceptor threads
+        workerGroup = transport.createEventLoopGroup(workerThreads, "Ingestion worker");     // client connections threads
     }
 
     /**
@@ -120,6 +133,8 @@ public class HttpMetricsIngestionServer {
                 new HttpMultitenantMetricsIngestionHandler(processor, timeout, ENABLE_PER_TENANT_METRICS));
         router.post("/v2.0/:tenantId/ingest",
                 new HttpMetricsIngestionHandler(processor, timeout, ENABLE_PER_TENANT_METRICS));
+        router.post("/v2.0/:tenantId/ingest/binary",
+                new HttpBinaryMetricsIngestionHandler(processor, timeout, ENABLE_PER_TENANT_METRICS));
         router.post("/v2.0/:tenantId/ingest/aggregated",
                 new HttpAggregatedIngestionHandler(processor, timeout, ENABLE_PER_TENANT_METRICS));
         router.post("/v2.0/:tenantId/ingest/aggregated/multi",
@@ -128,18 +143,16 @@ public class HttpMetricsIngestionServer {
         final RouteMatcher finalRouter = router;
 
         log.info("Starting metrics listener HTTP server on port {}", httpIngestPort);
-        ServerBootstrap server = new ServerBootstrap();
-        server.group(acceptorGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
-                .childHandler(new ChannelInitializer<SocketChannel>() {
-                    @Override
-                    public void initChannel(SocketChannel channel) throws Exception {
-                        setupPipeline(channel, finalRouter);
-                    }
-                });
+        ServerBootstrap server = transport.createServerBootstrap(acceptorGroup, workerGroup);
+        server.childHandler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            public void initChannel(SocketChannel channel) throws Exception {
+                setupPipeline(channel, finalRouter);
+            }
+        });
 
-        Channel channel = server.bind(new InetSocketAddress(httpIngestHost, httpIngestPort)).sync().channel();
-        allOpenChannels.add(channel);
+        allOpenChannels.addAll(transport.bind(server, new InetSocketAddress(httpIngestHost, httpIngestPort), acceptThreads));
+        transport.registerMetrics("Ingestion", workerGroup);
 
         //register the tracker MBean for JMX/jolokia
         log.info("Registering tracker service");
@@ -151,7 +164,9 @@ public class HttpMetricsIngestionServer {
     private void setupPipeline(SocketChannel channel, RouteMatcher router) {
         final ChannelPipeline pipeline = channel.pipeline();
 
-        pipeline.addLast("logging", new LoggingHandler(LogLevel.TRACE)); //duplex handler
+        if (HTTP_ENABLE_WIRE_LOGGING) {
+            pipeline.addLast("logging", new LoggingHandler(LogLevel.TRACE)); //duplex handler
+        }
         pipeline.addLast("idleStateHandler", new IdleStateHandler(HTTP_CONNECTION_READ_IDLE_TIME_SECONDS, 0, 0)); //duplex handler
         pipeline.addLast("eventHandler", new UserDefinedEventHandler()); //duplex handler
         pipeline.addLast("encoder", new HttpResponseEncoder()); //outbound handler
@@ -181,7 +196,7 @@ public class HttpMetricsIngestionServer {
         });
         pipeline.addLast("inflater", new HttpContentDecompressor()); //inbound handler
         pipeline.addLast("chunkaggregator", new HttpObjectAggregator(httpMaxContentLength)); //inbound handler
-        pipeline.addLast("respdecoder", new HttpResponseDecoder()); //inbound handler
+        pipeline.addLast("pipelining", new HttpPipeliningHandler(HTTP_MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION)); //duplex handler
         pipeline.addLast("handler", new QueryStringDecoderAndRouter(router)); //inbound handler
     }
 
@@ -206,6 +221,14 @@ public class HttpMetricsIngestionServer {
         private final RollupTypeCacher rollupTypeCacher;
         private final DiscoveryWriter discoveryWriter;
         private final BatchWriter batchWriter;
+        private final CommitLogWriter commitLogWriter;
+        private final Meter commitLogBypassed = Metrics.meter(HttpMetricsIngestionServer.class, "Commit Log Bypassed");
+        private final Meter discoveryShed = Metrics.meter(HttpMetricsIngestionServer.class, "Discovery Batches Shed");
+        private final AdmissionController admissionController;
+        private final long retryAfterSeconds =
+            Configuration.getInstance().getLongProperty(HttpConfig.HTTP_INGEST_RETRY_AFTER_SECONDS);
+        private final int maxQueuedDiscoveryBatches =
+            Configuration.getInstance().getIntegerProperty(HttpConfig.HTTP_INGEST_MAX_QUEUED_DISCOVERY_BATCHES);
         private IncomingMetricMetadataAnalyzer metricMetadataAnalyzer =
             new IncomingMetricMetadataAnalyzer(MetadataCache.getInstance());
         private int HTTP_MAX_TYPE_UNIT_PROCESSOR_THREADS = 
@@ -238,6 +261,15 @@ public class HttpMetricsIngestionServer {
             );
             batchWriter.withLogger(log);
 
+            if (Configuration.getInstance().getBooleanProperty(CoreConfig.ENABLE_INGEST_COMMIT_LOG)) {
+                commitLogWriter = createCommitLogWriter(batchWriter, bufferedMetrics);
+                commitLogWriter.start();
+            } else {
+                commitLogWriter = null;
+            }
+
+            admissionController = createAdmissionController();
+
             discoveryWriter =
                 new DiscoveryWriter(new ThreadPoolBuilder()
                     .withName("Metric Discovery Writing")
@@ -258,13 +290,119 @@ public class HttpMetricsIngestionServer {
     
         }
 
+        /**
+         * @throws OverloadedException if admission control turns the metrics away; nothing of them has been written
+         */
         ListenableFuture<List<Boolean>> apply(MetricsCollection collection) throws Exception {
+            final int size = collection.size();
+            if (admissionController != null && !admissionController.tryAcquire(size)) {
+                throw new OverloadedException(String.format("Too many metrics being written, %d of at most %d",
+                        admissionController.getInFlight(), admissionController.getLimit()), retryAfterSeconds);
+            }
+            bufferedMetrics.inc(size);
+
+            ListenableFuture<List<Boolean>> futures;
+            try {
+                futures = write(collection);
+            } catch (Exception e) {
+                bufferedMetrics.dec(size);
+                if (admissionController != null) {
+                    admissionController.release(size, 0, false);
+                }
+                throw e;
+            }
+
+            if (admissionController != null) {
+                final long start = System.currentTimeMillis();
+                final ListenableFuture<List<Boolean>> written = futures;
+                written.addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        admissionController.release(size, System.currentTimeMillis() - start, isSuccess(written));
+                    }
+                }, MoreExecutors.sameThreadExecutor());
+            }
+            return futures;
+        }
+
+        private ListenableFuture<List<Boolean>> write(MetricsCollection collection) throws Exception {
             typeAndUnitProcessor.apply(collection);
             rollupTypeCacher.apply(collection);
             List<List<IMetric>> batches = collection.splitMetricsIntoBatches(BATCH_SIZE);
-            discoveryWriter.apply(batches);
+            // discovery is what gives way first when writes cannot keep up; the metrics
+            // skipped are not current in the LocatorCache, so they are indexed when next ingested
+            if (discoveryWriter.getQueueSize() >= maxQueuedDiscoveryBatches
+                    || (admissionController != null && admissionController.shouldShed())) {
+                discoveryShed.mark();
+            } else {
+                discoveryWriter.apply(batches);
+            }
+            if (commitLogWriter != null) {
+                try {
+                    ListenableFuture<List<Boolean>> appended = commitLogWriter.apply(batches);
+                    // the metrics wait in the log now; the flusher counts them again while it writes them
+                    bufferedMetrics.dec(collection.size());
+                    return appended;
+                } catch (IOException e) {
+                    // the log is full or the disk failing; Cassandra is the only place left for the metrics
+                    commitLogBypassed.mark();
+                    log.warn("Could not append to ingest commit log, writing metrics directly: " + e.getMessage());
+                }
+            }
             return batchWriter.apply(batches);
         }
+
+        private static boolean isSuccess(ListenableFuture<List<Boolean>> futures) {
+            try {
+                for (Boolean persisted : futures.get()) {
+                    if (!persisted) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        void shutdown() {
+            if (commitLogWriter != null) {
+                try {
+                    commitLogWriter.stop();
+                } catch (InterruptedException e) {
+                    // Pass
+                }
+            }
+        }
+
+        private static AdmissionController createAdmissionController() {
+            Configuration config = Configuration.getInstance();
+            if (!config.getBooleanProperty(HttpConfig.HTTP_INGEST_ADMISSION_CONTROL_ENABLED)) {
+                return null;
+            }
+            return new AdmissionController("Ingestion",
+                    config.getIntegerProperty(HttpConfig.HTTP_INGEST_ADMISSION_INITIAL_LIMIT),
+                    config.getIntegerProperty(HttpConfig.HTTP_INGEST_ADMISSION_MIN_LIMIT),
+                    config.getIntegerProperty(HttpConfig.HTTP_INGEST_ADMISSION_MAX_LIMIT),
+                    config.getIntegerProperty(HttpConfig.HTTP_INGEST_ADMISSION_LIMIT_INCREMENT),
+                    config.getLongProperty(HttpConfig.HTTP_INGEST_ADMISSION_LATENCY_THRESHOLD_MS));
+        }
+
+        private static CommitLogWriter createCommitLogWriter(BatchWriter batchWriter, Counter bufferedMetrics) {
+            Configuration config = Configuration.getInstance();
+            long syncPeriod = config.getLongProperty(CoreConfig.INGEST_COMMIT_LOG_SYNC_PERIOD_MS);
+            try {
+                IngestCommitLog commitLog = new IngestCommitLog(
+                        new File(config.getStringProperty(CoreConfig.INGEST_COMMIT_LOG_DIR)),
+                        config.getIntegerProperty(CoreConfig.INGEST_COMMIT_LOG_SEGMENT_SIZE),
+                        config.getIntegerProperty(CoreConfig.INGEST_COMMIT_LOG_MAX_SEGMENTS),
+                        syncPeriod <= 0);
+                return new CommitLogWriter(commitLog, batchWriter, bufferedMetrics, WRITE_THREADS,
+                        config.getLongProperty(CoreConfig.INGEST_COMMIT_LOG_RETRY_MS), syncPeriod);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not open ingest commit log", e);
+            }
+        }
     }
 
     @VisibleForTesting
@@ -276,5 +414,6 @@ public class HttpMetricsIngestionServer {
         }
         acceptorGroup.shutdownGracefully();
         workerGroup.shutdownGracefully();
+        processor.shutdown();
     }
 }
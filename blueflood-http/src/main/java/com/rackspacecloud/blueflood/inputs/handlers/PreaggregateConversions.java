@@ -16,8 +16,11 @@
 
 package com.rackspacecloud.blueflood.inputs.handlers;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.gson.internal.LazilyParsedNumber;
 import com.rackspacecloud.blueflood.inputs.formats.AggregatedPayload;
+import com.rackspacecloud.blueflood.service.Configuration;
+import com.rackspacecloud.blueflood.service.CoreConfig;
 import com.rackspacecloud.blueflood.types.*;
 import com.rackspacecloud.blueflood.utils.TimeValue;
 
@@ -27,6 +30,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
@@ -39,6 +43,9 @@ public class PreaggregateConversions {
     private static final TimeValue DEFAULT_TTL = new TimeValue(48, TimeUnit.HOURS);
     private static final String NAME_DELIMITER = "//.";
 
+    private static final boolean ENABLE_TIMER_QUANTILE_SKETCH =
+            Configuration.getInstance().getBooleanProperty(CoreConfig.ENABLE_TIMER_QUANTILE_SKETCH);
+
     // NOTE: when you create objects from gson-converted json, you need to make sure to resolve numbers that
     // are not accessed via `doubleValue()` or `longValue()`, i.e., they are treated as `Number` instances.
     // the Number supplied by gson is and instance of LazilyParsedNumber and will cause breakage in certain
@@ -90,6 +97,16 @@ public class PreaggregateConversions {
     }
     
     public static Collection<PreaggregatedMetric> convertTimers(String tenant, long timestamp, Collection<BluefloodTimer> timers) {
+        return convertTimers(tenant, timestamp, timers, ENABLE_TIMER_QUANTILE_SKETCH);
+    }
+
+    /**
+     * @param withSketch if true, each timer gets a {@link QuantileSketch} and its percentiles are the values at
+     *                   those percentiles (statsd's "upper" values) instead of the means of the values below them.
+     */
+    @VisibleForTesting
+    static Collection<PreaggregatedMetric> convertTimers(String tenant, long timestamp, Collection<BluefloodTimer> timers,
+                                                         boolean withSketch) {
         List<PreaggregatedMetric> list = new ArrayList<PreaggregatedMetric>(timers.size());
         for (BluefloodTimer timer : timers) {
             Locator locator = Locator.createLocatorFromPathComponents(tenant, timer.getName().split(NAME_DELIMITER, -1));
@@ -102,10 +119,21 @@ public class PreaggregateConversions {
                     .withCountPS(timer.getRate() == null ? 0.0d : timer.getRate().doubleValue())
                     .withSum(timer.getSum() == null ? 0L : timer.getSum().doubleValue())
                     .withVariance(Math.pow(timer.getStd() == null ? 0.0d : timer.getStd().doubleValue(), 2d));
-            for (Map.Entry<String, Percentile> entry : timer.getPercentiles().entrySet()) {
-                // throw away max and sum.
-                if (entry.getValue().getAvg() != null) {
-                    rollup.setPercentile(entry.getKey(), resolveNumber(entry.getValue().getAvg()));
+            if (withSketch) {
+                QuantileSketch sketch = sketchOf(timer);
+                rollup.withSketch(sketch);
+                for (Map.Entry<String, Percentile> entry : timer.getPercentiles().entrySet()) {
+                    Number value = quantileValueOf(entry.getKey(), entry.getValue(), sketch);
+                    if (value != null) {
+                        rollup.setPercentile(entry.getKey(), resolveNumber(value));
+                    }
+                }
+            } else {
+                for (Map.Entry<String, Percentile> entry : timer.getPercentiles().entrySet()) {
+                    // throw away max and sum.
+                    if (entry.getValue().getAvg() != null) {
+                        rollup.setPercentile(entry.getKey(), resolveNumber(entry.getValue().getAvg()));
+                    }
                 }
             }
             PreaggregatedMetric metric = new PreaggregatedMetric(timestamp, locator, DEFAULT_TTL, rollup);
@@ -114,6 +142,55 @@ public class PreaggregateConversions {
         return list;
     }
     
+    /**
+     * Builds a sketch of the values of a timer from its min, its max and the values at its percentiles, the only
+     * points of its distribution that statsd sends.
+     */
+    @VisibleForTesting
+    static QuantileSketch sketchOf(BluefloodTimer timer) {
+        TreeMap<Double, Double> points = new TreeMap<Double, Double>();
+        if (timer.getMin() != null) {
+            points.put(0d, timer.getMin().doubleValue());
+        }
+        for (Map.Entry<String, Percentile> entry : timer.getPercentiles().entrySet()) {
+            Double quantile = BluefloodTimerRollup.quantileOf(entry.getKey());
+            if (quantile != null && entry.getValue().getMax() != null) {
+                points.put(quantile, entry.getValue().getMax().doubleValue());
+            }
+        }
+        if (timer.getMax() != null) {
+            points.put(1d, timer.getMax().doubleValue());
+        }
+        if (points.isEmpty() && timer.getAvg() != null) {
+            points.put(0.5d, timer.getAvg().doubleValue());
+        }
+
+        double[] quantiles = new double[points.size()];
+        double[] values = new double[points.size()];
+        int i = 0;
+        for (Map.Entry<Double, Double> point : points.entrySet()) {
+            quantiles[i] = point.getKey();
+            // percentiles do not always agree with min and max; keep the values in order.
+            values[i] = i == 0 ? point.getValue() : Math.max(values[i - 1], point.getValue());
+            i++;
+        }
+
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.addDistribution(quantiles, values, timer.getCount().longValue());
+        return sketch;
+    }
+
+    private static Number quantileValueOf(String label, Percentile percentile, QuantileSketch sketch) {
+        if (percentile.getMax() != null) {
+            return percentile.getMax();
+        }
+        Double quantile = BluefloodTimerRollup.quantileOf(label);
+        if (quantile != null && !sketch.isEmpty()) {
+            return sketch.getQuantile(quantile);
+        }
+        return percentile.getAvg();
+    }
+
     public static Collection<PreaggregatedMetric> convertSets(String tenant, long timestamp, Collection<BluefloodSet> sets) {
         List<PreaggregatedMetric> list = new ArrayList<PreaggregatedMetric>(sets.size());
         for (BluefloodSet set : sets) {
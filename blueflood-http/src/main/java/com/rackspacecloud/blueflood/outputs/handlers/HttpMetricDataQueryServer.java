@@ -27,9 +27,7 @@ import com.rackspacecloud.blueflood.tracker.Tracker;
 import com.rackspacecloud.blueflood.utils.ModuleLoader;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.http.*;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
@@ -38,6 +36,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 public class HttpMetricDataQueryServer {
@@ -46,22 +46,28 @@ public class HttpMetricDataQueryServer {
     private final int httpQueryPort;
     private final String httpQueryHost;
     private final int httpMaxContentLength;
-    private Channel serverChannel;
+    private final HttpServerTransport transport = new HttpServerTransport();
+    private final int acceptThreads;
+    private List<Channel> serverChannels = new ArrayList<Channel>();
     private EventsIO eventsIO;
     private EventLoopGroup acceptorGroup;
     private EventLoopGroup workerGroup;
     private int HTTP_CONNECTION_READ_IDLE_TIME_SECONDS =
             Configuration.getInstance().getIntegerProperty(HttpConfig.HTTP_CONNECTION_READ_IDLE_TIME_SECONDS);
+    private int HTTP_MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION =
+            Configuration.getInstance().getIntegerProperty(HttpConfig.HTTP_MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION);
+    private boolean HTTP_ENABLE_WIRE_LOGGING =
+            Configuration.getInstance().getBooleanProperty(HttpConfig.HTTP_ENABLE_WIRE_LOGGING);
 
     public HttpMetricDataQueryServer() {
         this.httpQueryPort = Configuration.getInstance().getIntegerProperty(HttpConfig.HTTP_METRIC_DATA_QUERY_PORT);
         this.httpQueryHost = Configuration.getInstance().getStringProperty(HttpConfig.HTTP_QUERY_HOST);
         this.httpMaxContentLength = Configuration.getInstance().getIntegerProperty(HttpConfig.HTTP_MAX_CONTENT_LENGTH);
 
-        int acceptThreads = Configuration.getInstance().getIntegerProperty(HttpConfig.MAX_READ_ACCEPT_THREADS);
+        this.acceptThreads = Configuration.getInstance().getIntegerProperty(HttpConfig.MAX_READ_ACCEPT_THREADS);
         int workerThreads = Configuration.getInstance().getIntegerProperty(HttpConfig.MAX_READ_WORKER_THREADS);
-        acceptorGroup = new NioEventLoopGroup(acceptThreads); // acceptor threads
-        workerGroup = new NioEventLoopGroup(workerThreads);   // client connections threads
+        acceptorGroup = transport.createEventLoopGroup(acceptThreads, "Query acceptor"); // acceptor threads
+        workerGroup = transport.createEventLoopGroup(workerThreads, "Query worker");     // client connections threads
     }
 
     public void startServer() throws InterruptedException {
@@ -88,16 +94,15 @@ public class HttpMetricDataQueryServer {
         final RouteMatcher finalRouter = router;
 
         log.info("Starting metric data query server (HTTP) on port {}", this.httpQueryPort);
-        ServerBootstrap server = new ServerBootstrap();
-        server.group(acceptorGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
-                .childHandler(new ChannelInitializer<SocketChannel>() {
-                    @Override
-                    public void initChannel(SocketChannel channel) throws Exception {
-                        setupPipeline(channel, finalRouter);
-                    }
-                });
-        serverChannel = server.bind(new InetSocketAddress(httpQueryHost, httpQueryPort)).sync().channel();
+        ServerBootstrap server = transport.createServerBootstrap(acceptorGroup, workerGroup);
+        server.childHandler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            public void initChannel(SocketChannel channel) throws Exception {
+                setupPipeline(channel, finalRouter);
+            }
+        });
+        serverChannels = transport.bind(server, new InetSocketAddress(httpQueryHost, httpQueryPort), acceptThreads);
+        transport.registerMetrics("Query", workerGroup);
 
         //register the tracker MBean for JMX/jolokia
         log.info("Registering tracker service");
@@ -107,7 +112,9 @@ public class HttpMetricDataQueryServer {
     private void setupPipeline(SocketChannel channel, RouteMatcher router) {
         final ChannelPipeline pipeline = channel.pipeline();
 
-        pipeline.addLast("logging", new LoggingHandler(LogLevel.TRACE)); //duplex handler
+        if (HTTP_ENABLE_WIRE_LOGGING) {
+            pipeline.addLast("logging", new LoggingHandler(LogLevel.TRACE)); //duplex handler
+        }
         pipeline.addLast("idleStateHandler", new IdleStateHandler(HTTP_CONNECTION_READ_IDLE_TIME_SECONDS, 0, 0)); //duplex handler
         pipeline.addLast("eventHandler", new UserDefinedEventHandler()); //duplex handler
         pipeline.addLast("encoder", new HttpResponseEncoder());
@@ -133,13 +140,16 @@ public class HttpMetricDataQueryServer {
             }
         });
         pipeline.addLast("chunkaggregator", new HttpObjectAggregator(httpMaxContentLength));
+        pipeline.addLast("pipelining", new HttpPipeliningHandler(HTTP_MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION));
         pipeline.addLast("handler", new QueryStringDecoderAndRouter(router));
     }
 
     @VisibleForTesting
     public void stopServer() {
         try {
-            serverChannel.close().await(5, TimeUnit.SECONDS);
+            for (Channel serverChannel : serverChannels) {
+                serverChannel.close().await(5, TimeUnit.SECONDS);
+            }
         } catch (InterruptedException e) {
             // Pass
         }
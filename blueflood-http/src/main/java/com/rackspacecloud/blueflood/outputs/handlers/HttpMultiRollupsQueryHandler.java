@@ -18,6 +18,9 @@ package com.rackspacecloud.blueflood.outputs.handlers;
 
 import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.gson.*;
 import com.rackspacecloud.blueflood.concurrent.ThreadPoolBuilder;
 import com.rackspacecloud.blueflood.exceptions.InvalidRequestException;
@@ -28,8 +31,7 @@ import com.rackspacecloud.blueflood.http.HttpRequestWithDecodedQueryParams;
 import com.rackspacecloud.blueflood.http.HttpResponder;
 import com.rackspacecloud.blueflood.io.Constants;
 import com.rackspacecloud.blueflood.outputs.formats.MetricData;
-import com.rackspacecloud.blueflood.outputs.serializers.BatchedMetricsJSONOutputSerializer;
-import com.rackspacecloud.blueflood.outputs.serializers.BatchedMetricsOutputSerializer;
+import com.rackspacecloud.blueflood.outputs.serializers.StreamingBatchedMetricsJSONOutputSerializer;
 import com.rackspacecloud.blueflood.outputs.utils.PlotRequestParser;
 import com.rackspacecloud.blueflood.outputs.utils.RollupsQueryParams;
 import com.rackspacecloud.blueflood.service.Configuration;
@@ -37,13 +39,14 @@ import com.rackspacecloud.blueflood.service.HttpConfig;
 import com.rackspacecloud.blueflood.tracker.Tracker;
 import com.rackspacecloud.blueflood.types.Locator;
 import com.rackspacecloud.blueflood.utils.Metrics;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.*;
-import org.json.simple.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -52,33 +55,35 @@ import java.util.concurrent.ThreadPoolExecutor;
 
 public class HttpMultiRollupsQueryHandler extends RollupHandler implements HttpRequestHandler {
     private static final Logger log = LoggerFactory.getLogger(HttpMultiRollupsQueryHandler.class);
-    private final BatchedMetricsOutputSerializer<JSONObject> serializer;
+    private final StreamingBatchedMetricsJSONOutputSerializer serializer;
     private final Gson gson;           // thread-safe
-    private final JsonParser parser;   // thread-safe
     private final Timer httpBatchMetricsFetchTimer = Metrics.timer(HttpMultiRollupsQueryHandler.class,
             "Handle HTTP batch request for metrics");
     private final ThreadPoolExecutor executor;
     private final int maxMetricsPerRequest;
+    private final boolean prettyPrint;
+    private final QueryDeadline deadline;
 
     HttpMultiRollupsQueryHandler() {
-        this(new BatchedMetricsJSONOutputSerializer());
+        this(new StreamingBatchedMetricsJSONOutputSerializer());
     }
 
     @VisibleForTesting
-    public HttpMultiRollupsQueryHandler(BatchedMetricsOutputSerializer<JSONObject> serializer) {
+    public HttpMultiRollupsQueryHandler(StreamingBatchedMetricsJSONOutputSerializer serializer) {
         Configuration config = Configuration.getInstance();
         int maxThreadsToUse = config.getIntegerProperty(HttpConfig.MAX_READ_WORKER_THREADS);
         int maxQueueSize = config.getIntegerProperty(HttpConfig.MAX_BATCH_READ_REQUESTS_TO_QUEUE);
         this.maxMetricsPerRequest = config.getIntegerProperty(HttpConfig.MAX_METRICS_PER_BATCH_QUERY);
+        this.prettyPrint = config.getBooleanProperty(HttpConfig.PRETTY_PRINT_BATCH_QUERY_RESPONSES);
+        this.deadline = new QueryDeadline(config.getLongProperty(HttpConfig.HTTP_QUERY_DEADLINE_MS));
         this.serializer = serializer;
         this.gson = new GsonBuilder().setPrettyPrinting().serializeNulls().create();
-        this.parser = new JsonParser();
         this.executor = new ThreadPoolBuilder().withCorePoolSize(maxThreadsToUse).withMaxPoolSize(maxThreadsToUse)
                 .withName("HTTP-BatchMetricsFetch").withBoundedQueue(maxQueueSize).build();
     }
 
     @Override
-    public void handle(ChannelHandlerContext ctx, FullHttpRequest request) {
+    public void handle(final ChannelHandlerContext ctx, final FullHttpRequest request) {
 
         Tracker.getInstance().track(request);
 
@@ -115,25 +120,47 @@ public class HttpMultiRollupsQueryHandler extends RollupHandler implements HttpR
 
         HttpRequestWithDecodedQueryParams requestWithParams = (HttpRequestWithDecodedQueryParams) request;
         final Timer.Context httpBatchMetricsFetchTimerContext = httpBatchMetricsFetchTimer.time();
+        ListenableFuture<Map<Locator, MetricData>> future;
+        final RollupsQueryParams params;
         try {
-            RollupsQueryParams params = PlotRequestParser.parseParams(requestWithParams.getQueryParams());
-            Map<Locator, MetricData> results = getRollupByGranularity(tenantId, locators, params.getRange().getStart(), params.getRange().getStop(), params.getGranularity(tenantId));
-            JSONObject metrics = serializer.transformRollupData(results, params.getStats());
-            final JsonElement element = parser.parse(metrics.toString());
-            final String jsonStringRep = gson.toJson(element);
-            sendResponse(ctx, request, jsonStringRep, HttpResponseStatus.OK);
+            params = PlotRequestParser.parseParams(requestWithParams.getQueryParams());
+            future = deadline.bound(getRollupByGranularityAsync(tenantId, locators, params.getRange().getStart(),
+                    params.getRange().getStop(), params.getGranularity(tenantId)));
         } catch (InvalidRequestException e) {
             log.debug(e.getMessage());
             DefaultHandler.sendErrorResponse(ctx, request, e.getMessage(), HttpResponseStatus.BAD_REQUEST);
-        } catch (SerializationException e) {
-            log.debug(e.getMessage(), e);
-            DefaultHandler.sendErrorResponse(ctx, request, e.getMessage(), HttpResponseStatus.INTERNAL_SERVER_ERROR);
+            httpBatchMetricsFetchTimerContext.stop();
+            return;
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             DefaultHandler.sendErrorResponse(ctx, request, e.getMessage(), HttpResponseStatus.INTERNAL_SERVER_ERROR);
-        } finally {
             httpBatchMetricsFetchTimerContext.stop();
+            return;
         }
+
+        // the response is serialized and written on the channel's event loop once the query is done
+        Futures.addCallback(future, new FutureCallback<Map<Locator, MetricData>>() {
+            @Override
+            public void onSuccess(Map<Locator, MetricData> results) {
+                try {
+                    sendMetrics(ctx, request, results, params);
+                } catch (SerializationException e) {
+                    log.debug(e.getMessage(), e);
+                    DefaultHandler.sendErrorResponse(ctx, request, e.getMessage(), HttpResponseStatus.INTERNAL_SERVER_ERROR);
+                } catch (Exception e) {
+                    log.error(e.getMessage(), e);
+                    DefaultHandler.sendErrorResponse(ctx, request, e.getMessage(), HttpResponseStatus.INTERNAL_SERVER_ERROR);
+                } finally {
+                    httpBatchMetricsFetchTimerContext.stop();
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                deadline.sendFailure(ctx, request, t);
+                httpBatchMetricsFetchTimerContext.stop();
+            }
+        }, ctx.executor());
     }
 
     private List<String> getLocatorsFromJSONBody(String tenantId, String body) {
@@ -150,6 +177,25 @@ public class HttpMultiRollupsQueryHandler extends RollupHandler implements HttpR
         return locators;
     }
 
+    // the metrics are written straight into the response, rather than built as a string first
+    private void sendMetrics(ChannelHandlerContext channel, FullHttpRequest request, Map<Locator, MetricData> metrics,
+                             RollupsQueryParams params) throws SerializationException, IOException {
+
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        boolean written = false;
+        try {
+            serializer.writeRollupData(metrics, params.getStats(), new ByteBufOutputStream(response.content()), prettyPrint);
+            written = true;
+        } finally {
+            if (!written) {
+                response.release();
+            }
+        }
+
+        HttpResponder.getInstance().respond(channel, request, response);
+        Tracker.getInstance().trackResponse(request, response);
+    }
+
     private void sendResponse(ChannelHandlerContext channel, FullHttpRequest request, String messageBody,
                               HttpResponseStatus status) {
 
@@ -17,6 +17,9 @@
 package com.rackspacecloud.blueflood.outputs.handlers;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
@@ -28,9 +31,10 @@ import com.rackspacecloud.blueflood.io.Constants;
 import com.rackspacecloud.blueflood.outputs.formats.MetricData;
 import com.rackspacecloud.blueflood.outputs.serializers.BasicRollupsOutputSerializer;
 import com.rackspacecloud.blueflood.outputs.serializers.JSONBasicRollupsOutputSerializer;
-import com.rackspacecloud.blueflood.outputs.serializers.BasicRollupsOutputSerializer.MetricStat;
 import com.rackspacecloud.blueflood.outputs.utils.PlotRequestParser;
 import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.service.Configuration;
+import com.rackspacecloud.blueflood.service.HttpConfig;
 import com.rackspacecloud.blueflood.tracker.Tracker;
 import com.rackspacecloud.blueflood.types.Locator;
 import com.rackspacecloud.blueflood.types.Resolution;
@@ -55,6 +59,7 @@ public class HttpRollupsQueryHandler extends RollupHandler
     private final JsonParser parser;   // thread-safe
     private final Timer httpMetricsFetchTimer = Metrics.timer(HttpRollupsQueryHandler.class,
             "Handle HTTP request for metrics");
+    private final QueryDeadline deadline;
 
     public HttpRollupsQueryHandler() {
         this(new JSONBasicRollupsOutputSerializer());
@@ -66,24 +71,7 @@ public class HttpRollupsQueryHandler extends RollupHandler
         this.serializer = serializer;
         this.gson = new GsonBuilder().setPrettyPrinting().serializeNulls().create();
         this.parser = new JsonParser();
-    }
-
-    private JSONObject GetDataByPoints(String tenantId,
-                                      String metric,
-                                      long from,
-                                      long to,
-                                      int points,
-                                      Set<MetricStat> stats) throws SerializationException {
-        return serializer.transformRollupData(GetDataByPoints(tenantId, metric, from, to, points), stats);
-    }
-
-    private JSONObject GetDataByResolution(String tenantId,
-                                      String metric,
-                                      long from,
-                                      long to,
-                                      Resolution resolution,
-                                      Set<MetricStat> stats) throws SerializationException {
-        return serializer.transformRollupData(GetDataByResolution(tenantId, metric, from, to, resolution), stats);
+        this.deadline = new QueryDeadline(Configuration.getInstance().getLongProperty(HttpConfig.HTTP_QUERY_DEADLINE_MS));
     }
 
     @Override
@@ -92,9 +80,9 @@ public class HttpRollupsQueryHandler extends RollupHandler
                                       long from,
                                       long to,
                                       int points) throws SerializationException {
-        rollupsByPointsMeter.mark();
-        Granularity g = Granularity.granularityFromPointsInInterval(tenantId, from, to, points);
-        return getRollupByGranularity(tenantId, Arrays.asList(metric), from, to, g).get(Locator.createLocatorFromPathComponents(tenantId, metric));
+        RollupsQueryParams params = new RollupsQueryParams(from, to, points,
+                Collections.<BasicRollupsOutputSerializer.MetricStat>emptySet());
+        return getData(tenantId, metric, params);
     }
 
     @Override
@@ -103,16 +91,36 @@ public class HttpRollupsQueryHandler extends RollupHandler
                                           long from,
                                           long to,
                                           Resolution resolution) throws SerializationException {
-        rollupsByGranularityMeter.mark();
-        if (resolution == null) {
-            resolution = Resolution.FULL;
+        RollupsQueryParams params = new RollupsQueryParams(from, to, resolution,
+                Collections.<BasicRollupsOutputSerializer.MetricStat>emptySet());
+        return getData(tenantId, metric, params);
+    }
+
+    private MetricData getData(String tenantId, String metric, RollupsQueryParams params) {
+        Granularity g = granularityFor(tenantId, params);
+        return Futures.getUnchecked(getRollupByGranularityAsync(tenantId, Arrays.asList(metric),
+                params.getRange().getStart(), params.getRange().getStop(), g))
+                .get(Locator.createLocatorFromPathComponents(tenantId, metric));
+    }
+
+    /**
+     * Counts the query by the way it asks for data, and picks the granularity to read: the one closest to the number
+     * of points asked for, or the one of the resolution asked for, full resolution if none.
+     */
+    private Granularity granularityFor(String tenantId, RollupsQueryParams params) {
+        if (params.isGetByPoints()) {
+            rollupsByPointsMeter.mark();
+            return Granularity.granularityFromPointsInInterval(tenantId, params.getRange().getStart(),
+                    params.getRange().getStop(), params.getPoints());
+        } else {
+            rollupsByGranularityMeter.mark();
+            Resolution resolution = params.getResolution() == null ? Resolution.FULL : params.getResolution();
+            return Granularity.granularities()[resolution.getValue()];
         }
-        Granularity g = Granularity.granularities()[resolution.getValue()];
-        return getRollupByGranularity(tenantId, Arrays.asList(metric), from, to, g).get(Locator.createLocatorFromPathComponents(tenantId, metric));
     }
 
     @Override
-    public void handle(ChannelHandlerContext ctx, FullHttpRequest request) {
+    public void handle(final ChannelHandlerContext ctx, final FullHttpRequest request) {
 
         Tracker.getInstance().track(request);
 
@@ -128,36 +136,54 @@ public class HttpRollupsQueryHandler extends RollupHandler
         HttpRequestWithDecodedQueryParams requestWithParams = (HttpRequestWithDecodedQueryParams) request;
 
         final Timer.Context httpMetricsFetchTimerContext = httpMetricsFetchTimer.time();
+        ListenableFuture<Map<Locator, MetricData>> future;
+        final RollupsQueryParams params;
         try {
-            RollupsQueryParams params = PlotRequestParser.parseParams(requestWithParams.getQueryParams());
-
-            JSONObject metricData;
-            if (params.isGetByPoints()) {
-                metricData = GetDataByPoints(tenantId, metricName, params.getRange().getStart(),
-                        params.getRange().getStop(), params.getPoints(), params.getStats());
-            } else if (params.isGetByResolution()) {
-                metricData = GetDataByResolution(tenantId, metricName, params.getRange().getStart(),
-                        params.getRange().getStop(), params.getResolution(), params.getStats());
-            } else {
-                throw new InvalidRequestException("Invalid rollups query. Neither points nor resolution specified.");
-            }
+            params = PlotRequestParser.parseParams(requestWithParams.getQueryParams());
 
-            final JsonElement element = parser.parse(metricData.toString());
-            final String jsonStringRep = gson.toJson(element);
-            sendResponse(ctx, request, jsonStringRep, HttpResponseStatus.OK);
+            Granularity g = granularityFor(tenantId, params);
+            future = deadline.bound(getRollupByGranularityAsync(tenantId, Arrays.asList(metricName),
+                    params.getRange().getStart(), params.getRange().getStop(), g));
         } catch (InvalidRequestException e) {
             // let's not log the full exception, just the message.
             log.debug(e.getMessage());
             DefaultHandler.sendErrorResponse(ctx, request, e.getMessage(), HttpResponseStatus.BAD_REQUEST);
-        } catch (SerializationException e) {
-            log.error(e.getMessage(), e);
-            DefaultHandler.sendErrorResponse(ctx, request, e.getMessage(), HttpResponseStatus.INTERNAL_SERVER_ERROR);
+            httpMetricsFetchTimerContext.stop();
+            return;
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             DefaultHandler.sendErrorResponse(ctx, request, e.getMessage(), HttpResponseStatus.INTERNAL_SERVER_ERROR);
-        } finally {
             httpMetricsFetchTimerContext.stop();
+            return;
         }
+
+        // the response is serialized and written on the channel's event loop once the query is done
+        Futures.addCallback(future, new FutureCallback<Map<Locator, MetricData>>() {
+            @Override
+            public void onSuccess(Map<Locator, MetricData> result) {
+                try {
+                    JSONObject metricData = serializer.transformRollupData(
+                            result.get(Locator.createLocatorFromPathComponents(tenantId, metricName)), params.getStats());
+                    final JsonElement element = parser.parse(metricData.toString());
+                    final String jsonStringRep = gson.toJson(element);
+                    sendResponse(ctx, request, jsonStringRep, HttpResponseStatus.OK);
+                } catch (SerializationException e) {
+                    log.error(e.getMessage(), e);
+                    DefaultHandler.sendErrorResponse(ctx, request, e.getMessage(), HttpResponseStatus.INTERNAL_SERVER_ERROR);
+                } catch (Exception e) {
+                    log.error(e.getMessage(), e);
+                    DefaultHandler.sendErrorResponse(ctx, request, e.getMessage(), HttpResponseStatus.INTERNAL_SERVER_ERROR);
+                } finally {
+                    httpMetricsFetchTimerContext.stop();
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                deadline.sendFailure(ctx, request, t);
+                httpMetricsFetchTimerContext.stop();
+            }
+        }, ctx.executor());
     }
 
     private void sendResponse(ChannelHandlerContext channel, FullHttpRequest request, String messageBody,
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.outputs.handlers;
+
+import com.codahale.metrics.Meter;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.rackspacecloud.blueflood.http.DefaultHandler;
+import com.rackspacecloud.blueflood.utils.Metrics;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The time queries of the query server may take. A query that has not completed by then fails, which cancels the
+ * Cassandra reads and rollups on read it is still waiting for.
+ */
+class QueryDeadline {
+    private static final Logger log = LoggerFactory.getLogger(QueryDeadline.class);
+
+    private static final Meter exceededDeadline = Metrics.meter(QueryDeadline.class, "Queries Exceeded Deadline");
+
+    private final long deadlineMillis;
+
+    /**
+     * @param deadlineMillis the time queries may take, or 0 for no deadline
+     */
+    QueryDeadline(long deadlineMillis) {
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    /**
+     * @return a future of the query that fails with a {@link TimeoutException} if the query is not done by the
+     *         deadline, and cancels it
+     */
+    <V> ListenableFuture<V> bound(ListenableFuture<V> query) {
+        if (deadlineMillis <= 0) {
+            return query;
+        }
+        return Futures.withTimeout(query, deadlineMillis, TimeUnit.MILLISECONDS, RollupHandler.timeoutScheduler);
+    }
+
+    /**
+     * Answers a request whose query failed, with 504 Gateway Timeout if the query ran past the deadline.
+     */
+    void sendFailure(ChannelHandlerContext ctx, FullHttpRequest request, Throwable t) {
+        if (t instanceof TimeoutException) {
+            exceededDeadline.mark();
+            log.warn("Query {} did not complete within {} ms", request.getUri(), deadlineMillis);
+            DefaultHandler.sendErrorResponse(ctx, request,
+                    String.format("Query did not complete within %d ms", deadlineMillis),
+                    HttpResponseStatus.GATEWAY_TIMEOUT);
+        } else {
+            log.error(t.getMessage(), t);
+            DefaultHandler.sendErrorResponse(ctx, request, t.getMessage(), HttpResponseStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
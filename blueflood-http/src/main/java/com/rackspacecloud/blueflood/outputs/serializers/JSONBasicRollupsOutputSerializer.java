@@ -76,6 +76,14 @@ public class JSONBasicRollupsOutputSerializer implements BasicRollupsOutputSeria
             throws SerializationException {
         Points points = metricData.getData();
         final JSONArray data = new JSONArray();
+        if (points instanceof SimpleNumberPoints) {
+            // walk the columns rather than create a point for each value
+            SimpleNumberPoints columns = (SimpleNumberPoints) points;
+            for (int i = 0; i < columns.size(); i++) {
+                data.add(toJSON(columns.getTimestamp(i), columns.getValue(i), filterStats));
+            }
+            return data;
+        }
         final Set<Map.Entry<Long, Points.Point>> dataPoints = points.getPoints().entrySet();
         for (Map.Entry<Long, Points.Point> point : dataPoints) {
             data.add(toJSON(point.getKey(), point.getValue(), metricData.getUnit(), filterStats));
@@ -84,7 +92,17 @@ public class JSONBasicRollupsOutputSerializer implements BasicRollupsOutputSeria
         return data;
     }
 
-    private JSONObject toJSON(long timestamp, Points.Point point, String unit, Set<MetricStat> filterStats)
+    // same as a full resolution point
+    private JSONObject toJSON(long timestamp, Number value, Set<MetricStat> filterStats) {
+        final JSONObject object = new JSONObject();
+        object.put("timestamp", timestamp);
+        for (MetricStat stat : filterStats) {
+            object.put(stat.toString(), stat.convertRawSampleToObject(value));
+        }
+        return object;
+    }
+
+    protected JSONObject toJSON(long timestamp, Points.Point point, String unit, Set<MetricStat> filterStats)
             throws SerializationException {
         final JSONObject  object = new JSONObject();
         object.put("timestamp", timestamp);
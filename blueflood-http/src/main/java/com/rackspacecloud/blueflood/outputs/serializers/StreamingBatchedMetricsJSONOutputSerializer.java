@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.outputs.serializers;
+
+import com.rackspacecloud.blueflood.exceptions.SerializationException;
+import com.rackspacecloud.blueflood.outputs.formats.MetricData;
+import com.rackspacecloud.blueflood.types.AbstractRollupStat;
+import com.rackspacecloud.blueflood.types.Locator;
+import com.rackspacecloud.blueflood.types.Points;
+import com.rackspacecloud.blueflood.types.SimpleNumberPoints;
+import com.rackspacecloud.blueflood.utils.Util;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.json.simple.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the same JSON as {@link BatchedMetricsJSONOutputSerializer}, but straight to a stream as it goes, so that
+ * only one point is held in memory at a time rather than the whole response.
+ *
+ * Values that JSON cannot represent, NaN and infinities, are written as null.
+ */
+public class StreamingBatchedMetricsJSONOutputSerializer extends BatchedMetricsJSONOutputSerializer {
+
+    private static final JsonFactory factory = new JsonFactory();
+
+    public void writeRollupData(Map<Locator, MetricData> metricData, Set<MetricStat> filterStats,
+                                OutputStream out, boolean prettyPrint) throws SerializationException, IOException {
+        JsonGenerator generator = factory.createJsonGenerator(out, JsonEncoding.UTF8);
+        if (prettyPrint) {
+            generator.useDefaultPrettyPrinter();
+        }
+
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("metrics");
+        for (Map.Entry<Locator, MetricData> one : metricData.entrySet()) {
+            generator.writeStartObject();
+            generator.writeStringField("metric", one.getKey().getMetricName());
+            generator.writeStringField("unit", one.getValue().getUnit() == null ? Util.UNKNOWN : one.getValue().getUnit());
+            generator.writeStringField("type", one.getValue().getType());
+            generator.writeArrayFieldStart("data");
+            writeData(generator, one.getValue(), fixFilterStats(one.getValue(), filterStats));
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    private void writeData(JsonGenerator generator, MetricData metricData, Set<MetricStat> filterStats)
+            throws SerializationException, IOException {
+        Points points = metricData.getData();
+        if (points instanceof SimpleNumberPoints) {
+            SimpleNumberPoints columns = (SimpleNumberPoints) points;
+            for (int i = 0; i < columns.size(); i++) {
+                generator.writeStartObject();
+                generator.writeNumberField("timestamp", columns.getTimestamp(i));
+                for (MetricStat stat : filterStats) {
+                    generator.writeFieldName(stat.toString());
+                    writeValue(generator, stat.convertRawSampleToObject(columns.getValue(i)));
+                }
+                generator.writeEndObject();
+            }
+            return;
+        }
+
+        final Set<Map.Entry<Long, Points.Point>> dataPoints = points.getPoints().entrySet();
+        for (Map.Entry<Long, Points.Point> point : dataPoints) {
+            JSONObject object = toJSON(point.getKey(), point.getValue(), metricData.getUnit(), filterStats);
+            generator.writeStartObject();
+            for (Object field : object.entrySet()) {
+                Map.Entry entry = (Map.Entry) field;
+                generator.writeFieldName(entry.getKey().toString());
+                writeValue(generator, entry.getValue());
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    private static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value instanceof AbstractRollupStat) {
+            AbstractRollupStat stat = (AbstractRollupStat) value;
+            value = stat.isFloatingPoint() ? (Object) stat.toDouble() : (Object) stat.toLong();
+        }
+
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                generator.writeNull();
+            } else if (value instanceof Float) {
+                generator.writeNumber((Float) value);
+            } else {
+                generator.writeNumber(d);
+            }
+        } else if (value instanceof BigInteger) {
+            generator.writeNumber((BigInteger) value);
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof Number) {
+            generator.writeNumber(value.toString());
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+}
@@ -35,6 +35,13 @@ public enum HttpConfig implements ConfigDefaults {
     // Maximum number of metrics allowed to be fetched per batch query
     MAX_METRICS_PER_BATCH_QUERY("100"),
 
+    // Whether to pretty print the JSON of batch (multi-plot) query responses. Compact responses are smaller.
+    PRETTY_PRINT_BATCH_QUERY_RESPONSES("false"),
+
+    // Milliseconds a query may take before it is answered with 504 Gateway Timeout and its outstanding Cassandra
+    // reads are cancelled. Specify 0 to disable.
+    HTTP_QUERY_DEADLINE_MS("30000"),
+
     // Maximum number of ACCEPT threads for HTTP output
     MAX_READ_ACCEPT_THREADS("10"),
 
@@ -62,7 +69,39 @@ public enum HttpConfig implements ConfigDefaults {
     HTTP_MAX_TYPE_UNIT_PROCESSOR_THREADS("10"),
 
     // Idle time allowed on a connection, with no inbound traffic, before closing the connection. Specify 0 to disable.
-    HTTP_CONNECTION_READ_IDLE_TIME_SECONDS("0");
+    HTTP_CONNECTION_READ_IDLE_TIME_SECONDS("0"),
+
+    // Maximum number of requests a client may pipeline on one keep-alive connection before the server stops reading
+    // from it, until responses to the earlier requests have been sent.
+    HTTP_MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION("16"),
+
+    // Whether to log all bytes read from and written to HTTP connections, at TRACE level. Only for debugging.
+    HTTP_ENABLE_WIRE_LOGGING("false"),
+
+    // Netty transport of the HTTP servers: "epoll" for the native Linux transport, "nio", or "auto" to use epoll
+    // where it is available. With epoll, each acceptor thread binds its own socket to the port with SO_REUSEPORT.
+    HTTP_TRANSPORT("auto"),
+
+    // Whether the HTTP servers use pooled (direct, where the platform allows) buffers rather than unpooled ones
+    HTTP_POOLED_BUFFERS("true"),
+
+    // Whether to limit the metrics being written at once by the ingestion server, turning away requests over the
+    // limit with 429 Too Many Requests. The limit adapts to how fast writes complete: it grows by
+    // HTTP_INGEST_ADMISSION_LIMIT_INCREMENT metrics for each fast request while in use, and shrinks by 10% when
+    // writes fail or take more than HTTP_INGEST_ADMISSION_LATENCY_THRESHOLD_MS.
+    HTTP_INGEST_ADMISSION_CONTROL_ENABLED("false"),
+    HTTP_INGEST_ADMISSION_INITIAL_LIMIT("100000"),
+    HTTP_INGEST_ADMISSION_MIN_LIMIT("5000"),
+    HTTP_INGEST_ADMISSION_MAX_LIMIT("1000000"),
+    HTTP_INGEST_ADMISSION_LIMIT_INCREMENT("1000"),
+    HTTP_INGEST_ADMISSION_LATENCY_THRESHOLD_MS("2000"),
+
+    // Seconds a client turned away by admission control is told to wait, in the Retry-After header
+    HTTP_INGEST_RETRY_AFTER_SECONDS("5"),
+
+    // Discovery (metric name indexing) of ingested metrics is skipped while this many discovery batches are queued,
+    // or while admission control is close to its limit. Skipped metrics are indexed the next time they are ingested.
+    HTTP_INGEST_MAX_QUEUED_DISCOVERY_BATCHES("1000");
 
     static {
         Configuration.getInstance().loadDefaults(HttpConfig.values());
@@ -0,0 +1,137 @@
+package com.rackspacecloud.blueflood.http;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HttpPipeliningHandlerTest {
+
+    private static final int MAX_IN_FLIGHT = 3;
+
+    private final HttpResponder responder = new HttpResponder(0);
+    private final List<FullHttpRequest> requests = new ArrayList<FullHttpRequest>();
+    private ChannelHandlerContext handlerContext;
+    private EmbeddedChannel channel;
+
+    @Before
+    public void setup() {
+        channel = new EmbeddedChannel(new HttpPipeliningHandler(MAX_IN_FLIGHT), new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                handlerContext = ctx;
+                requests.add((FullHttpRequest) msg);
+            }
+        });
+    }
+
+    @Test
+    public void testResponsesAreWrittenInRequestOrder() {
+        // given
+        channel.writeInbound(request("/a"), request("/b"), request("/c"));
+
+        // when
+        respond(2, HttpResponseStatus.NOT_FOUND);
+        respond(1, HttpResponseStatus.NO_CONTENT);
+
+        // then: nothing can be sent before the response to the first request
+        assertNull(channel.readOutbound());
+
+        // when
+        respond(0, HttpResponseStatus.OK);
+
+        // then
+        assertEquals(HttpResponseStatus.OK, readResponse().getStatus());
+        assertEquals(HttpResponseStatus.NO_CONTENT, readResponse().getStatus());
+        assertEquals(HttpResponseStatus.NOT_FOUND, readResponse().getStatus());
+        assertNull(channel.readOutbound());
+        assertTrue(channel.isOpen());
+    }
+
+    @Test
+    public void testSequenceHeaderIsNotSent() {
+        // given
+        channel.writeInbound(request("/a"));
+
+        // when
+        respond(0, HttpResponseStatus.OK);
+
+        // then
+        FullHttpResponse response = readResponse();
+        assertNull(response.headers().get(HttpPipeliningHandler.SEQUENCE_HEADER));
+        assertEquals(HttpHeaders.Values.KEEP_ALIVE, response.headers().get(HttpHeaders.Names.CONNECTION));
+    }
+
+    @Test
+    public void testReadsArePausedWithTooManyRequestsInFlight() {
+        // when
+        channel.writeInbound(request("/a"), request("/b"));
+
+        // then
+        assertTrue(channel.config().isAutoRead());
+
+        // when
+        channel.writeInbound(request("/c"));
+
+        // then
+        assertFalse(channel.config().isAutoRead());
+
+        // when
+        respond(0, HttpResponseStatus.OK);
+
+        // then
+        assertTrue(channel.config().isAutoRead());
+    }
+
+    @Test
+    public void testConnectionIsClosedAfterResponseToRequestThatIsNotKeepAlive() {
+        // given
+        FullHttpRequest close = request("/b");
+        HttpHeaders.setKeepAlive(close, false);
+        channel.writeInbound(request("/a"), close, request("/c"));
+
+        // when
+        respond(2, HttpResponseStatus.OK);
+        respond(1, HttpResponseStatus.OK);
+        respond(0, HttpResponseStatus.OK);
+
+        // then: the response to the request after it is never sent
+        assertNotNull(readResponse());
+        FullHttpResponse closeResponse = readResponse();
+        assertNull(closeResponse.headers().get(HttpHeaders.Names.CONNECTION));
+        channel.readOutbound(); // the empty buffer written before closing
+        assertNull(channel.readOutbound());
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void testResponsesWithoutSequenceAreWrittenRightAway() {
+        // given
+        channel.writeInbound(request("/a"));
+
+        // when
+        channel.writeOutbound(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.BAD_REQUEST));
+
+        // then
+        assertEquals(HttpResponseStatus.BAD_REQUEST, readResponse().getStatus());
+    }
+
+    private void respond(int request, HttpResponseStatus status) {
+        responder.respond(handlerContext, requests.get(request), status);
+    }
+
+    private FullHttpResponse readResponse() {
+        return (FullHttpResponse) channel.readOutbound();
+    }
+
+    private static FullHttpRequest request(String uri) {
+        return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+    }
+}
@@ -0,0 +1,112 @@
+package com.rackspacecloud.blueflood.http;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.rackspacecloud.blueflood.utils.Metrics;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HttpServerTransportTest {
+
+    @Test
+    public void testNioTransport() {
+        // when
+        HttpServerTransport transport = new HttpServerTransport("nio", false);
+        EventLoopGroup group = transport.createEventLoopGroup(1, "test");
+
+        // then
+        assertFalse(transport.isEpoll());
+        assertTrue(group instanceof NioEventLoopGroup);
+        assertSame(UnpooledByteBufAllocator.DEFAULT, transport.getAllocator());
+        group.shutdownGracefully();
+    }
+
+    @Test
+    public void testAutoTransportUsesEpollWhereAvailable() {
+        // when
+        HttpServerTransport transport = new HttpServerTransport("AUTO", true);
+
+        // then
+        assertEquals(Epoll.isAvailable(), transport.isEpoll());
+        assertSame(PooledByteBufAllocator.DEFAULT, transport.getAllocator());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownTransportFails() {
+        new HttpServerTransport("kqueue", true);
+    }
+
+    @Test
+    public void testEpollBindsOncePerAcceptorThread() throws Exception {
+        Assume.assumeTrue(Epoll.isAvailable());
+
+        // given
+        HttpServerTransport transport = new HttpServerTransport("epoll", true);
+        EventLoopGroup acceptors = transport.createEventLoopGroup(2, "test acceptor");
+        EventLoopGroup workers = transport.createEventLoopGroup(1, "test worker");
+        assertTrue(acceptors instanceof EpollEventLoopGroup);
+        ServerBootstrap server = transport.createServerBootstrap(acceptors, workers)
+                .childHandler(new ChannelInboundHandlerAdapter());
+
+        try {
+            // when
+            List<Channel> channels = transport.bind(server, new InetSocketAddress("127.0.0.1", freePort()), 2);
+
+            // then
+            assertEquals(2, channels.size());
+            for (Channel channel : channels) {
+                assertTrue(channel.isActive());
+                channel.close().sync();
+            }
+        } finally {
+            acceptors.shutdownGracefully();
+            workers.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testMetricsAreRegistered() {
+        // given
+        HttpServerTransport transport = new HttpServerTransport("nio", true);
+        EventLoopGroup workers = transport.createEventLoopGroup(2, "test worker");
+
+        try {
+            // when
+            transport.registerMetrics("Test", workers);
+            transport.registerMetrics("Test", workers);
+
+            // then
+            Gauge pending = Metrics.getRegistry().getGauges()
+                    .get(MetricRegistry.name(HttpServerTransport.class, "Test", "Pending Tasks"));
+            assertEquals(0, pending.getValue());
+            assertNotNull(Metrics.getRegistry().getGauges()
+                    .get(MetricRegistry.name(HttpServerTransport.class, "Allocator", "Direct Active Bytes")));
+        } finally {
+            workers.shutdownGracefully();
+        }
+    }
+
+    private static int freePort() throws Exception {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.rackspacecloud.blueflood.inputs.formats;
+
+import com.rackspacecloud.blueflood.io.Constants;
+import com.rackspacecloud.blueflood.outputs.formats.ErrorResponse;
+import com.rackspacecloud.blueflood.types.Locator;
+import com.rackspacecloud.blueflood.types.Metric;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BinaryMetricsParserTest {
+
+    private static final String TENANT_ID = "tenant";
+    private static final int TTL = 172800;
+
+    private final BinaryMetricsParser parser = new BinaryMetricsParser();
+
+    @Test
+    public void testEncodedMetricsAreParsed() throws Exception {
+        // given
+        long now = System.currentTimeMillis();
+        ByteBuf frame = new BinaryMetricsEncoder()
+                .add("a.b.used", 42, now, TTL, "bytes")
+                .add("a.b.free_percent", 12.5d, now - 1000, TTL, "percent")
+                .add("a.b.total", 1L << 40, now + 500, TTL, "bytes")
+                .add("nodots", -7L, now, TTL, null)
+                .encode();
+
+        // when
+        JSONMetricsContainer container = parser.parse(frame, TENANT_ID);
+
+        // then
+        assertTrue(container.getValidationErrors().isEmpty());
+        List<Metric> metrics = container.getValidMetrics();
+        assertEquals(4, metrics.size());
+
+        assertEquals(Locator.createLocatorFromPathComponents(TENANT_ID, "a.b.used"), metrics.get(0).getLocator());
+        assertEquals(42, metrics.get(0).getMetricValue());
+        assertEquals(now, metrics.get(0).getCollectionTime());
+        assertEquals(TTL, metrics.get(0).getTtlInSeconds());
+        assertEquals("bytes", metrics.get(0).getUnit());
+
+        assertEquals(Locator.createLocatorFromPathComponents(TENANT_ID, "a.b.free_percent"), metrics.get(1).getLocator());
+        assertEquals(12.5d, metrics.get(1).getMetricValue());
+        assertEquals(now - 1000, metrics.get(1).getCollectionTime());
+        assertEquals("percent", metrics.get(1).getUnit());
+
+        assertEquals(1L << 40, metrics.get(2).getMetricValue());
+        assertEquals(now + 500, metrics.get(2).getCollectionTime());
+
+        assertEquals(Locator.createLocatorFromPathComponents(TENANT_ID, "nodots"), metrics.get(3).getLocator());
+        assertEquals(-7, metrics.get(3).getMetricValue());
+        assertNull(metrics.get(3).getUnit());
+    }
+
+    @Test
+    public void testParsingDoesNotConsumeContent() throws Exception {
+        // given
+        ByteBuf frame = new BinaryMetricsEncoder().add("a.b", 1, System.currentTimeMillis(), TTL, null).encode();
+        int readable = frame.readableBytes();
+
+        // when
+        parser.parse(frame, TENANT_ID);
+
+        // then
+        assertEquals(readable, frame.readableBytes());
+    }
+
+    @Test
+    public void testInvalidMetricsAreReportedLikeJSON() throws Exception {
+        // given
+        long now = System.currentTimeMillis();
+        ByteBuf frame = new BinaryMetricsEncoder()
+                .add("a.valid", 1, now, TTL, null)
+                .add("a.old", 1, now - 10L * 365 * 24 * 60 * 60 * 1000, TTL, null)
+                .add("a.nottl", 1, now, 0, null)
+                .encode();
+
+        // when
+        JSONMetricsContainer container = parser.parse(frame, TENANT_ID);
+
+        // then
+        assertEquals(1, container.getValidMetrics().size());
+        List<ErrorResponse.ErrorData> errors = container.getValidationErrors();
+        assertEquals(2, errors.size());
+        assertEquals("a.old", errors.get(0).getMetricName());
+        assertEquals("collectionTime", errors.get(0).getSource());
+        assertEquals(JSONMetricsParser.COLLECTION_TIME_RANGE_MESSAGE, errors.get(0).getMessage());
+        assertEquals("a.nottl", errors.get(1).getMetricName());
+        assertEquals("ttlInSeconds", errors.get(1).getSource());
+        assertEquals(JSONMetricsParser.TTL_RANGE_MESSAGE, errors.get(1).getMessage());
+    }
+
+    @Test
+    public void testLargestTTLIsValid() throws Exception {
+        // given
+        ByteBuf frame = new BinaryMetricsEncoder()
+                .add("a.b", 1, System.currentTimeMillis(), Integer.MAX_VALUE, null)
+                .encode();
+
+        // when
+        JSONMetricsContainer container = parser.parse(frame, TENANT_ID);
+
+        // then: the same range as the JSON parser, and as TTL_RANGE_MESSAGE says
+        assertTrue(container.getValidationErrors().isEmpty());
+        assertEquals(Integer.MAX_VALUE, container.getValidMetrics().get(0).getTtlInSeconds());
+    }
+
+    @Test(expected = IOException.class)
+    public void testEmptyFrameFails() throws Exception {
+        parser.parse(Unpooled.EMPTY_BUFFER, TENANT_ID);
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsupportedVersionFails() throws Exception {
+        parser.parse(Unpooled.wrappedBuffer(new byte[]{9, 0, 0}), TENANT_ID);
+    }
+
+    @Test(expected = IOException.class)
+    public void testJSONFails() throws Exception {
+        parser.parse(Unpooled.copiedBuffer("[{\"metricName\":\"a\"}]", Constants.DEFAULT_CHARSET), TENANT_ID);
+    }
+
+    @Test
+    public void testTruncatedFrameFails() throws Exception {
+        // given
+        ByteBuf frame = new BinaryMetricsEncoder().add("a.b", 1.5d, System.currentTimeMillis(), TTL, "ms").encode();
+
+        // then: every prefix of the frame is rejected
+        for (int length = 1; length < frame.readableBytes(); length++) {
+            try {
+                parser.parse(frame.slice(0, length), TENANT_ID);
+                fail("Parsed a frame truncated to " + length + " bytes");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testTrailingContentFails() throws Exception {
+        ByteBuf frame = new BinaryMetricsEncoder().add("a.b", 1, System.currentTimeMillis(), TTL, null).encode();
+        frame.writeByte(0);
+        parser.parse(frame, TENANT_ID);
+    }
+
+    @Test(expected = IOException.class)
+    public void testStringIndexOutOfTableFails() throws Exception {
+        // version, no strings, one metric with prefix 1
+        parser.parse(Unpooled.wrappedBuffer(new byte[]{1, 0, 1, 1, 1, 'a', 0, 1, 0, 'L', 2}), TENANT_ID);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNegativeStringCountFails() throws Exception {
+        // version, a string count of -1, then padding so the count is not more than the bytes left
+        parser.parse(frame(new byte[]{1}, NEGATIVE_VARINT, new byte[]{0, 0, 0}), TENANT_ID);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNegativeStringLengthFails() throws Exception {
+        // version, one string of length -1
+        parser.parse(frame(new byte[]{1, 1}, NEGATIVE_VARINT, new byte[]{'a', 'b'}), TENANT_ID);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNegativeStringIndexFails() throws Exception {
+        // version, no strings, one metric with prefix -1
+        parser.parse(frame(new byte[]{1, 0, 1}, NEGATIVE_VARINT, new byte[]{1, 'a', 0, 1, 0, 'L', 2}), TENANT_ID);
+    }
+
+    // -1 as a 10 byte varint, with bit 63 set
+    private static final byte[] NEGATIVE_VARINT = new byte[]{
+            (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+            (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x01};
+
+    private static ByteBuf frame(byte[]... parts) {
+        return Unpooled.wrappedBuffer(parts);
+    }
+}
@@ -0,0 +1,117 @@
+package com.rackspacecloud.blueflood.inputs.formats;
+
+import com.rackspacecloud.blueflood.outputs.formats.ErrorResponse;
+import com.rackspacecloud.blueflood.types.Metric;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.map.JsonMappingException;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JSONMetricsParserTest {
+
+    private final long current = System.currentTimeMillis();
+
+    private final JSONMetricsParser parser = new JSONMetricsParser(false);
+    private final JSONMetricsParser scopedParser = new JSONMetricsParser(true);
+
+    @Test
+    public void testParseFromByteBufLeavesReaderIndexAlone() throws Exception {
+        String jsonBody = "[{\"collectionTime\":" + current + ",\"ttlInSeconds\":172800,\"metricValue\":1844,\"metricName\":\"m1\",\"unit\":\"unknown\"}," +
+                "{\"collectionTime\":" + current + ",\"ttlInSeconds\":172800,\"metricValue\":18.5,\"metricName\":\"m2\"}]";
+        ByteBuf content = Unpooled.copiedBuffer(jsonBody, StandardCharsets.UTF_8);
+
+        JSONMetricsContainer container = parser.parse(content, "ac1");
+
+        assertEquals("reader index", 0, content.readerIndex());
+        assertTrue(container.getValidationErrors().isEmpty());
+
+        List<Metric> metrics = container.getValidMetrics();
+        assertEquals(2, metrics.size());
+        assertEquals("ac1.m1", metrics.get(0).getLocator().toString());
+        assertEquals(1844, metrics.get(0).getMetricValue());
+        assertEquals(172800, metrics.get(0).getTtlInSeconds());
+        assertEquals(current, metrics.get(0).getCollectionTime());
+        assertEquals("unknown", metrics.get(0).getUnit());
+        assertEquals("ac1.m2", metrics.get(1).getLocator().toString());
+        assertEquals(18.5, metrics.get(1).getMetricValue());
+        assertNull(metrics.get(1).getUnit());
+    }
+
+    @Test
+    public void testEmptyMetricReportsEveryViolation() throws Exception {
+        JSONMetricsContainer container = parser.parse("[{}]", "ac1");
+
+        assertTrue(container.getValidMetrics().isEmpty());
+        List<ErrorResponse.ErrorData> errors = container.getValidationErrors();
+        assertEquals(3, errors.size());
+        assertEquals("metricName", errors.get(0).getSource());
+        assertEquals(JSONMetricsParser.NOT_EMPTY_MESSAGE, errors.get(0).getMessage());
+        assertEquals("collectionTime", errors.get(1).getSource());
+        assertEquals(JSONMetricsParser.COLLECTION_TIME_RANGE_MESSAGE, errors.get(1).getMessage());
+        assertEquals("ttlInSeconds", errors.get(2).getSource());
+        assertEquals("must be between 1 and 2147483647", errors.get(2).getMessage());
+        assertEquals("ac1", errors.get(0).getTenantId());
+    }
+
+    @Test
+    public void testValueErrorsFollowConstraintViolations() throws Exception {
+        String jsonBody = "[{\"collectionTime\":" + current + ",\"ttlInSeconds\":172800,\"metricValue\":\"abc\",\"metricName\":\"m1\"}," +
+                "{\"collectionTime\":" + current + ",\"ttlInSeconds\":0,\"metricValue\":1,\"metricName\":\"m2\"}," +
+                "{\"collectionTime\":" + current + ",\"ttlInSeconds\":172800,\"metricValue\":null,\"metricName\":\"m3\"}]";
+
+        JSONMetricsContainer container = parser.parse(jsonBody, "ac1");
+
+        assertTrue(container.getValidMetrics().isEmpty());
+        List<ErrorResponse.ErrorData> errors = container.getValidationErrors();
+        assertEquals(2, errors.size());
+        assertEquals("m2", errors.get(0).getMetricName());
+        assertEquals("ttlInSeconds", errors.get(0).getSource());
+        assertEquals("m1", errors.get(1).getMetricName());
+        assertEquals("metricValue", errors.get(1).getSource());
+    }
+
+    @Test
+    public void testScopedMetricUsesItsOwnTenant() throws Exception {
+        String jsonBody = "[{\"tenantId\": 12345, \"collectionTime\":" + current + ",\"ttlInSeconds\":172800,\"metricValue\":1844,\"metricName\":\"m1\"}," +
+                "{\"collectionTime\":" + current + ",\"ttlInSeconds\":172800,\"metricValue\":1844,\"metricName\":\"m2\"}]";
+
+        JSONMetricsContainer container = scopedParser.parse(jsonBody, "786659");
+
+        assertEquals(1, container.getValidMetrics().size());
+        assertEquals("12345.m1", container.getValidMetrics().get(0).getLocator().toString());
+        assertEquals(1, container.getValidationErrors().size());
+        assertEquals("tenantId", container.getValidationErrors().get(0).getSource());
+        assertEquals("", container.getValidationErrors().get(0).getTenantId());
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void testTenantIdIsUnknownForSingleTenantFormat() throws Exception {
+        parser.parse("[{\"tenantId\": \"12345\", \"metricName\":\"m1\"}]", "ac1");
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void testUnknownFieldIsRejected() throws Exception {
+        parser.parse("[{\"metricNam\":\"m1\"}]", "ac1");
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void testObjectBodyIsRejected() throws Exception {
+        parser.parse("{}", "ac1");
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void testEmptyBodyIsRejected() throws Exception {
+        parser.parse(Unpooled.EMPTY_BUFFER, "ac1");
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testTrailingContentIsRejected() throws Exception {
+        parser.parse("[] []", "ac1");
+    }
+}
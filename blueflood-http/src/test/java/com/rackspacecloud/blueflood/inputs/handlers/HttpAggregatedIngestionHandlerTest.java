@@ -142,6 +142,33 @@ public class HttpAggregatedIngestionHandlerTest extends HandlerTestsBase {
         ensureSerializability(timers);
     }
 
+    @Test
+    public void testTimersWithSketch() {
+        AggregatedPayload payload = AggregatedPayload.create(payloadJson);
+        Collection<PreaggregatedMetric> timers = PreaggregateConversions.convertTimers("1", 1, payload.getTimers(), true);
+        assertEquals( 4, timers.size() );
+        for (PreaggregatedMetric timer : timers) {
+            BluefloodTimerRollup rollup = (BluefloodTimerRollup) timer.getMetricValue();
+            assertEquals( rollup.getCount(), rollup.getSketch().getCount() );
+        }
+        ensureSerializability(timers);
+    }
+
+    @Test
+    public void testSketchOfTimerFollowsItsPercentiles() {
+        // count 15, min 43, max 497, and the 50th and 75th percentiles at 234 and 369.
+        BluefloodTimer timer = new Gson().fromJson("{\"name\":\"t\",\"count\":15,\"min\":43,\"max\":497," +
+                "\"percentiles\":{\"50\":{\"avg\":134.5,\"max\":234},\"75\":{\"avg\":188.6,\"max\":369}}}",
+                BluefloodTimer.class);
+
+        QuantileSketch sketch = PreaggregateConversions.sketchOf(timer);
+
+        assertEquals( 15, sketch.getCount() );
+        assertEquals( 43d, sketch.getQuantile(0), 43d * QuantileSketch.RELATIVE_ACCURACY );
+        assertEquals( 234d, sketch.getQuantile(0.5), 234d * 0.1 );
+        assertEquals( 497d, sketch.getQuantile(1), 497d * QuantileSketch.RELATIVE_ACCURACY );
+    }
+
     // ok. while we're out it, let's test serialization. Just for fun. The reasoning is that these metrics
     // follow a different creation path that what we currently have in tests.
     private static void ensureSerializability(Collection<PreaggregatedMetric> metrics) {
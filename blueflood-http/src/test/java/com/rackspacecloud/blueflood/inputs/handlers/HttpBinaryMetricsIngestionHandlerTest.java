@@ -0,0 +1,115 @@
+package com.rackspacecloud.blueflood.inputs.handlers;
+
+import com.google.common.util.concurrent.Futures;
+import com.rackspacecloud.blueflood.inputs.formats.BinaryMetricsEncoder;
+import com.rackspacecloud.blueflood.outputs.formats.ErrorResponse;
+import com.rackspacecloud.blueflood.outputs.handlers.HandlerTestsBase;
+import com.rackspacecloud.blueflood.types.IMetric;
+import com.rackspacecloud.blueflood.types.MetricsCollection;
+import com.rackspacecloud.blueflood.utils.TimeValue;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class HttpBinaryMetricsIngestionHandlerTest extends HandlerTestsBase {
+
+    private HttpMetricsIngestionServer.Processor processor;
+    private ChannelHandlerContext context;
+    private Channel channel;
+
+    @Before
+    public void setup() throws Exception {
+        processor = mock(HttpMetricsIngestionServer.Processor.class);
+        when(processor.apply(any(MetricsCollection.class)))
+                .thenReturn(Futures.immediateFuture(Arrays.asList(true)));
+
+        channel = mock(Channel.class);
+        context = mock(ChannelHandlerContext.class);
+        when(context.channel()).thenReturn(channel);
+        when(channel.write(anyString())).thenReturn(mock(ChannelFuture.class));
+    }
+
+    @Test
+    public void testBinaryRouteIngestsTheSameMetricsAsJSONRoute() throws Exception {
+        // given
+        long now = System.currentTimeMillis();
+        String json = "[" +
+                "{\"metricName\":\"a.b.used\",\"metricValue\":42,\"collectionTime\":" + now + ",\"ttlInSeconds\":172800,\"unit\":\"bytes\"}," +
+                "{\"metricName\":\"a.b.free\",\"metricValue\":12.5,\"collectionTime\":" + (now - 1000) + ",\"ttlInSeconds\":172800,\"unit\":\"percent\"}," +
+                "{\"metricName\":\"c\",\"metricValue\":1099511627776,\"collectionTime\":" + (now + 1000) + ",\"ttlInSeconds\":86400}" +
+                "]";
+        ByteBuf binary = new BinaryMetricsEncoder()
+                .add("a.b.used", 42, now, 172800, "bytes")
+                .add("a.b.free", 12.5d, now - 1000, 172800, "percent")
+                .add("c", 1099511627776L, now + 1000, 86400, null)
+                .encode();
+
+        // when
+        FullHttpResponse jsonResponse = handle(new HttpMetricsIngestionHandler(processor, new TimeValue(5, TimeUnit.SECONDS)),
+                createPostRequest("/v2.0/" + TENANT + "/ingest", json));
+        FullHttpResponse binaryResponse = handle(new HttpBinaryMetricsIngestionHandler(processor, new TimeValue(5, TimeUnit.SECONDS)),
+                createBinaryRequest(binary));
+
+        // then
+        assertEquals(HttpResponseStatus.OK, jsonResponse.getStatus());
+        assertEquals(HttpResponseStatus.OK, binaryResponse.getStatus());
+        ArgumentCaptor<MetricsCollection> collections = ArgumentCaptor.forClass(MetricsCollection.class);
+        verify(processor, times(2)).apply(collections.capture());
+        assertEquals(3, collections.getAllValues().get(0).size());
+        assertEquals(describe(collections.getAllValues().get(0)), describe(collections.getAllValues().get(1)));
+    }
+
+    @Test
+    public void testMalformedFrameIsBadRequest() throws Exception {
+        // given
+        FullHttpRequest request = createPostRequest("/v2.0/" + TENANT + "/ingest/binary", "[]");
+
+        // when
+        FullHttpResponse response = handle(new HttpBinaryMetricsIngestionHandler(processor, new TimeValue(5, TimeUnit.SECONDS)), request);
+
+        // then
+        ErrorResponse errorResponse = getErrorResponse(response.content().toString(Charset.defaultCharset()));
+        assertEquals(HttpResponseStatus.BAD_REQUEST, response.getStatus());
+        assertEquals("Cannot parse content", errorResponse.getErrors().get(0).getMessage());
+        verify(processor, never()).apply(any(MetricsCollection.class));
+    }
+
+    private FullHttpResponse handle(HttpMetricsIngestionHandler handler, FullHttpRequest request) {
+        reset(channel);
+        ArgumentCaptor<FullHttpResponse> response = ArgumentCaptor.forClass(FullHttpResponse.class);
+        handler.handle(context, request);
+        verify(channel).write(response.capture());
+        return response.getValue();
+    }
+
+    private static FullHttpRequest createBinaryRequest(ByteBuf frame) {
+        DefaultFullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST,
+                "/v2.0/" + TENANT + "/ingest/binary", frame);
+        request.headers().set("tenantId", TENANT);
+        return request;
+    }
+
+    private static Set<String> describe(MetricsCollection collection) {
+        Set<String> metrics = new HashSet<String>();
+        for (IMetric metric : collection.toMetrics()) {
+            metrics.add(metric + ":" + metric.getCollectionTime() + ":" + metric.getMetricValue().getClass().getSimpleName());
+        }
+        return metrics;
+    }
+}
@@ -2,6 +2,7 @@ package com.rackspacecloud.blueflood.inputs.handlers;
 
 import com.codahale.metrics.Meter;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.rackspacecloud.blueflood.exceptions.OverloadedException;
 import com.rackspacecloud.blueflood.inputs.formats.JSONMetric;
 import com.rackspacecloud.blueflood.inputs.formats.JSONMetricsContainer;
 import com.rackspacecloud.blueflood.io.Instrumentation;
@@ -418,6 +419,24 @@ public class HttpMetricsIngestionHandlerTest extends HandlerTestsBase {
 
     }
 
+    @Test
+    public void overloadedProcessor_shouldRespondTooManyRequests() throws Exception {
+        // given
+        FullHttpRequest request = createIngestRequest(generateNonDelayedMetricsRequestString("i.am.on.time"));
+        when(processor.apply(any())).thenThrow(new OverloadedException("Too many metrics being written", 7));
+
+        // when
+        ArgumentCaptor<FullHttpResponse> argument = ArgumentCaptor.forClass(FullHttpResponse.class);
+        handler.handle(context, request);
+        verify(channel).write(argument.capture());
+
+        // then
+        ErrorResponse errorResponse = getErrorResponse(argument.getValue().content().toString(Charset.defaultCharset()));
+        assertEquals("Invalid status", HttpResponseStatus.TOO_MANY_REQUESTS, argument.getValue().getStatus());
+        assertEquals("Invalid Retry-After", "7", argument.getValue().headers().get(HttpHeaders.Names.RETRY_AFTER));
+        assertEquals("Invalid error message", "Too many metrics being written", errorResponse.getErrors().get(0).getMessage());
+    }
+
     private String generateInvalidMetrics(String invalidTtlMetricName, String invalidCollectionMetricName) throws IOException {
 
         long collectionTimeInPast = new DefaultClockImpl().now().getMillis() - 1000
@@ -4,7 +4,7 @@ import com.rackspacecloud.blueflood.exceptions.SerializationException;
 import com.rackspacecloud.blueflood.outputs.formats.ErrorResponse;
 import com.rackspacecloud.blueflood.outputs.formats.MetricData;
 import com.rackspacecloud.blueflood.outputs.serializers.BasicRollupsOutputSerializer;
-import com.rackspacecloud.blueflood.outputs.serializers.BatchedMetricsJSONOutputSerializer;
+import com.rackspacecloud.blueflood.outputs.serializers.StreamingBatchedMetricsJSONOutputSerializer;
 import com.rackspacecloud.blueflood.service.Configuration;
 import com.rackspacecloud.blueflood.service.HttpConfig;
 import io.netty.channel.Channel;
@@ -12,19 +12,23 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.concurrent.ImmediateEventExecutor;
 import org.json.simple.JSONObject;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anySet;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -37,16 +41,17 @@ public class HttpMultiRollupsQueryHandlerTest extends HandlerTestsBase {
 
     private ChannelHandlerContext context;
     private Channel channel;
-    private BatchedMetricsJSONOutputSerializer serializer;
+    private StreamingBatchedMetricsJSONOutputSerializer serializer;
 
     @Before
     public void setup() {
-        serializer = mock(BatchedMetricsJSONOutputSerializer.class);
+        serializer = mock(StreamingBatchedMetricsJSONOutputSerializer.class);
         handler = new HttpMultiRollupsQueryHandler(serializer);
 
         channel = mock(Channel.class);
         context = mock(ChannelHandlerContext.class);
         when(context.channel()).thenReturn(channel);
+        when(context.executor()).thenReturn(ImmediateEventExecutor.INSTANCE);
     }
 
     @Test
@@ -126,7 +131,8 @@ public class HttpMultiRollupsQueryHandlerTest extends HandlerTestsBase {
 
         ArgumentCaptor<FullHttpResponse> argument = ArgumentCaptor.forClass(FullHttpResponse.class);
         String message = "mock exception message";
-        when(serializer.transformRollupData(anyMap(), anySet())).thenThrow(new SerializationException(message));
+        doThrow(new SerializationException(message)).when(serializer)
+                .writeRollupData(anyMap(), anySet(), any(OutputStream.class), anyBoolean());
         handler.handle(context, request);
         verify(channel).write(argument.capture());
 
@@ -9,6 +9,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.concurrent.ImmediateEventExecutor;
 import org.json.simple.JSONObject;
 import org.junit.Before;
 import org.junit.Test;
@@ -38,6 +39,7 @@ public class HttpRollupsQueryHandlerTest extends HandlerTestsBase {
         channel = mock(Channel.class);
         context = mock(ChannelHandlerContext.class);
         when(context.channel()).thenReturn(channel);
+        when(context.executor()).thenReturn(ImmediateEventExecutor.INSTANCE);
     }
 
     @Test
@@ -0,0 +1,72 @@
+package com.rackspacecloud.blueflood.outputs.handlers;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.rackspacecloud.blueflood.outputs.formats.ErrorResponse;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class QueryDeadlineTest extends HandlerTestsBase {
+
+    @Test
+    public void testQueryPastDeadlineIsCancelled() throws Exception {
+        // given
+        SettableFuture<String> query = SettableFuture.create();
+
+        // when
+        ListenableFuture<String> bounded = new QueryDeadline(10).bound(query);
+
+        // then
+        try {
+            bounded.get(5, TimeUnit.SECONDS);
+            fail("The query should not have completed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertTrue(query.isCancelled());
+    }
+
+    @Test
+    public void testNoDeadline() {
+        // given
+        SettableFuture<String> query = SettableFuture.create();
+
+        // when
+        ListenableFuture<String> bounded = new QueryDeadline(0).bound(query);
+
+        // then
+        assertSame(query, bounded);
+    }
+
+    @Test
+    public void testTimeoutIsAnsweredWithGatewayTimeout() throws Exception {
+        // given
+        Channel channel = mock(Channel.class);
+        ChannelHandlerContext context = mock(ChannelHandlerContext.class);
+        when(context.channel()).thenReturn(channel);
+        FullHttpRequest request = createGetRequest("/v2.0/tenant/views/metric?from=1&to=2&points=10");
+
+        // when
+        new QueryDeadline(10).sendFailure(context, request, new TimeoutException());
+
+        // then
+        ArgumentCaptor<FullHttpResponse> argument = ArgumentCaptor.forClass(FullHttpResponse.class);
+        verify(channel).write(argument.capture());
+        assertEquals(HttpResponseStatus.GATEWAY_TIMEOUT, argument.getValue().getStatus());
+        ErrorResponse errorResponse = getErrorResponse(argument.getValue().content().toString(Charset.defaultCharset()));
+        assertEquals("Query did not complete within 10 ms", errorResponse.getErrors().get(0).getMessage());
+    }
+}
@@ -24,6 +24,7 @@ import com.rackspacecloud.blueflood.types.BasicRollup;
 import com.rackspacecloud.blueflood.types.Points;
 import com.rackspacecloud.blueflood.exceptions.SerializationException;
 import com.rackspacecloud.blueflood.types.SimpleNumber;
+import com.rackspacecloud.blueflood.types.SimpleNumberPoints;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.junit.Assert;
@@ -46,6 +47,22 @@ public class JSONBasicRollupOutputSerializerTest {
         filterStats.add(MetricStat.MAX);
     }
 
+    @Test
+    public void testFullResColumnsAreTransformedLikeFullResPoints() throws Exception {
+        final JSONBasicRollupsOutputSerializer serializer = new JSONBasicRollupsOutputSerializer();
+        final Points<SimpleNumber> points = FakeMetricDataGenerator.generateFakeFullResPoints();
+        final SimpleNumberPoints columns = new SimpleNumberPoints();
+        for (Points.Point<SimpleNumber> point : points.getPoints().values()) {
+            columns.add(point);
+        }
+
+        JSONObject expected = serializer.transformRollupData(new MetricData(points, "unknown"), filterStats);
+        JSONObject actual = serializer.transformRollupData(new MetricData(columns, "unknown"), filterStats);
+
+        Assert.assertTrue(((JSONArray) actual.get("values")).size() > 0);
+        Assert.assertEquals(expected, actual);
+    }
+
     @Test
     public void testTransformRollupDataAtFullRes() throws Exception {
         final JSONBasicRollupsOutputSerializer serializer = new JSONBasicRollupsOutputSerializer();
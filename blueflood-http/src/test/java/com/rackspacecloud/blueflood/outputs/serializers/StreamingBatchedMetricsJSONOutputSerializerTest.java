@@ -0,0 +1,111 @@
+package com.rackspacecloud.blueflood.outputs.serializers;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.rackspacecloud.blueflood.outputs.formats.MetricData;
+import com.rackspacecloud.blueflood.outputs.serializers.BasicRollupsOutputSerializer.MetricStat;
+import com.rackspacecloud.blueflood.outputs.utils.PlotRequestParser;
+import com.rackspacecloud.blueflood.types.Locator;
+import com.rackspacecloud.blueflood.types.Points;
+import com.rackspacecloud.blueflood.types.SimpleNumber;
+import com.rackspacecloud.blueflood.types.SimpleNumberPoints;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class StreamingBatchedMetricsJSONOutputSerializerTest {
+
+    private static final String tenantId = "879890";
+
+    private final StreamingBatchedMetricsJSONOutputSerializer serializer = new StreamingBatchedMetricsJSONOutputSerializer();
+    private final JsonParser parser = new JsonParser();
+
+    @Test
+    public void testStreamedJSONEqualsBatchedJSON() throws Exception {
+        // given
+        Map<Locator, MetricData> metrics = new HashMap<Locator, MetricData>();
+        metrics.put(locator("basic"), new MetricData(FakeMetricDataGenerator.generateFakeRollupPoints(), "unknown"));
+        metrics.put(locator("fullres"), new MetricData(FakeMetricDataGenerator.generateFakeFullResPoints(), null));
+        metrics.put(locator("columns"), new MetricData(columnsOf(FakeMetricDataGenerator.generateFakeFullResPoints()), "ms"));
+        metrics.put(locator("counter"), new MetricData(FakeMetricDataGenerator.generateFakeCounterRollupPoints(), "unknown"));
+        metrics.put(locator("set"), new MetricData(FakeMetricDataGenerator.generateFakeSetRollupPoints(), "unknown"));
+        metrics.put(locator("gauge"), new MetricData(FakeMetricDataGenerator.generateFakeGaugeRollups(), "unknown"));
+        metrics.put(locator("timer"), new MetricData(FakeMetricDataGenerator.generateFakeTimerRollups(), "unknown"));
+
+        // when
+        JsonElement expected = parser.parse(serializer.transformRollupData(metrics, PlotRequestParser.DEFAULT_STATS).toString());
+        JsonElement actual = parser.parse(write(metrics, PlotRequestParser.DEFAULT_STATS, false));
+
+        // then
+        assertEquals(7, actual.getAsJsonObject().getAsJsonArray("metrics").size());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testPrettyPrintedJSONEqualsCompactJSON() throws Exception {
+        // given
+        Map<Locator, MetricData> metrics = new HashMap<Locator, MetricData>();
+        metrics.put(locator("basic"), new MetricData(FakeMetricDataGenerator.generateFakeRollupPoints(), "unknown"));
+
+        // when
+        String compact = write(metrics, PlotRequestParser.DEFAULT_STATS, false);
+        String pretty = write(metrics, PlotRequestParser.DEFAULT_STATS, true);
+
+        // then
+        assertFalse(compact.contains("\n"));
+        assertTrue(pretty.contains("\n"));
+        assertEquals(parser.parse(compact), parser.parse(pretty));
+    }
+
+    @Test
+    public void testNonFiniteValuesAreWrittenAsNull() throws Exception {
+        // given
+        SimpleNumberPoints points = new SimpleNumberPoints();
+        points.add(1000L, Double.NaN);
+        points.add(2000L, Double.POSITIVE_INFINITY);
+        Map<Locator, MetricData> metrics = new HashMap<Locator, MetricData>();
+        metrics.put(locator("nan"), new MetricData(points, "unknown"));
+        Set<MetricStat> stats = new HashSet<MetricStat>();
+        stats.add(MetricStat.AVERAGE);
+
+        // when
+        JsonObject metric = parser.parse(write(metrics, stats, false)).getAsJsonObject()
+                .getAsJsonArray("metrics").get(0).getAsJsonObject();
+
+        // then
+        assertEquals(2, metric.getAsJsonArray("data").size());
+        for (JsonElement point : metric.getAsJsonArray("data")) {
+            assertTrue(point.getAsJsonObject().get("average").isJsonNull());
+        }
+    }
+
+    @Test
+    public void testNoMetrics() throws Exception {
+        assertEquals("{\"metrics\":[]}", write(new HashMap<Locator, MetricData>(), PlotRequestParser.DEFAULT_STATS, false));
+    }
+
+    private String write(Map<Locator, MetricData> metrics, Set<MetricStat> stats, boolean prettyPrint) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.writeRollupData(metrics, stats, out, prettyPrint);
+        return out.toString("UTF-8");
+    }
+
+    private static Locator locator(String name) {
+        return Locator.createLocatorFromPathComponents(tenantId, name);
+    }
+
+    private static SimpleNumberPoints columnsOf(Points<SimpleNumber> points) {
+        SimpleNumberPoints columns = new SimpleNumberPoints();
+        for (Points.Point<SimpleNumber> point : points.getPoints().values()) {
+            columns.add(point);
+        }
+        return columns;
+    }
+}
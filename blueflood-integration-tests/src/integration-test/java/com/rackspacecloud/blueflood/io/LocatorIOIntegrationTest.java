@@ -2,13 +2,16 @@ package com.rackspacecloud.blueflood.io;
 
 import static org.junit.Assert.assertEquals;
 
+import com.google.common.collect.Sets;
 import com.rackspacecloud.blueflood.io.astyanax.ALocatorIO;
 import com.rackspacecloud.blueflood.io.datastax.DLocatorIO;
 import com.rackspacecloud.blueflood.types.Locator;
 import com.rackspacecloud.blueflood.utils.Util;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -69,4 +72,27 @@ public class LocatorIOIntegrationTest extends IntegrationTestBase {
         assertEquals("locators should be empty", datastaxLocatorIO.getLocators(-1), Collections.emptySet());
     }
 
+    @Test
+    public void scanLocatorsReadsAllPages() throws Exception {
+
+        // insert enough locators for some shards to span several pages of 2
+        List<Locator> locators = generateTestLocators("100001", 400, "locator_io.integration.scan", 1);
+        Set<Long> shards = new HashSet<Long>();
+        for (Locator locator : locators) {
+            datastaxLocatorIO.insertLocator(locator);
+            shards.add((long) locator.getShard());
+        }
+
+        for (long shard : shards) {
+            Set<Locator> expected = new HashSet<Locator>(datastaxLocatorIO.getLocators(shard));
+            assertEquals("datastax scan of shard " + shard, expected,
+                    Sets.newHashSet(datastaxLocatorIO.scanLocators(shard, 2)));
+            assertEquals("astyanax scan of shard " + shard, expected,
+                    Sets.newHashSet(astyanaxLocatorIO.scanLocators(shard, 2)));
+        }
+
+        // an empty shard scans to nothing
+        assertEquals(0, Sets.newHashSet(datastaxLocatorIO.scanLocators(-1, 2)).size());
+        assertEquals(0, Sets.newHashSet(astyanaxLocatorIO.scanLocators(-1, 2)).size());
+    }
 }
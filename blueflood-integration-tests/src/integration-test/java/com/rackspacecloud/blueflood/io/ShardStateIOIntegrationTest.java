@@ -9,9 +9,12 @@ import com.rackspacecloud.blueflood.io.datastax.DShardStateIO;
 import com.rackspacecloud.blueflood.rollup.Granularity;
 import com.rackspacecloud.blueflood.service.SlotState;
 import com.rackspacecloud.blueflood.service.UpdateStamp;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import org.junit.Test;
 
 /**
@@ -71,6 +74,60 @@ public class ShardStateIOIntegrationTest extends IntegrationTestBase {
 
     }
 
+    @Test
+    public void putShardStatesWritesEveryShardInBatches() throws Exception {
+
+        // when we write more slots than fit in a batch, for two shards at once, with datastax
+        Map<Integer, UpdateStamp> slot2TsMap = new HashMap<Integer, UpdateStamp>();
+        for (int slot = 0; slot < 250; slot++) {
+            slot2TsMap.put(slot, new UpdateStamp(System.currentTimeMillis(), UpdateStamp.State.Active, false));
+        }
+        Map<Granularity, Map<Integer, UpdateStamp>> data = new HashMap<Granularity, Map<Integer, UpdateStamp>>();
+        data.put(Granularity.MIN_5, slot2TsMap);
+        Map<Integer, Map<Granularity, Map<Integer, UpdateStamp>>> shardData = new HashMap<Integer, Map<Granularity, Map<Integer, UpdateStamp>>>();
+        shardData.put(126, data);
+        shardData.put(127, data);
+        datastaxMetricsStateIO.putShardStates(shardData);
+
+        // every slot of both shards is there
+        for (int shard : shardData.keySet()) {
+            int found = 0;
+            for (SlotState state : astyanaxShardStateIO.getShardState(shard)) {
+                if (state.getGranularity() == Granularity.MIN_5 && state.getSlot() < 250) {
+                    assertEquals(slot2TsMap.get(state.getSlot()).getTimestamp(), state.getTimestamp().longValue());
+                    found++;
+                }
+            }
+            assertEquals("slots of shard " + shard, 250, found);
+        }
+    }
+
+    @Test
+    public void getShardStatesReadsEveryShard() throws Exception {
+
+        // when we write two shards
+        Map<Granularity, Map<Integer, UpdateStamp>> data = generateRandomGranSlotTimestamp();
+        datastaxMetricsStateIO.putShardState(124, data);
+        datastaxMetricsStateIO.putShardState(125, data);
+
+        // both drivers read them back together as they do one by one
+        for (ShardStateIO io : Arrays.asList(datastaxMetricsStateIO, astyanaxShardStateIO)) {
+            Map<Integer, Collection<SlotState>> shardStates = io.getShardStates(Arrays.asList(124, 125));
+            for (int shard : Arrays.asList(124, 125)) {
+                assertEquals(toStrings(io.getShardState(shard)), toStrings(shardStates.get(shard)));
+            }
+        }
+    }
+
+    // SlotState has no hashCode
+    private Set<String> toStrings(Collection<SlotState> slotStates) {
+        Set<String> strings = new HashSet<String>();
+        for (SlotState state : slotStates) {
+            strings.add(state.toString());
+        }
+        return strings;
+    }
+
     private Map<Granularity, Map<Integer, UpdateStamp>> generateRandomGranSlotTimestamp() {
         Map<Granularity, Map<Integer, UpdateStamp>> gran2SlotTsMap = new HashMap<Granularity, Map<Integer, UpdateStamp>>();
 
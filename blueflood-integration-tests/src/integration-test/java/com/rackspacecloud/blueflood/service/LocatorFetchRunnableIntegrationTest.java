@@ -3,6 +3,8 @@ package com.rackspacecloud.blueflood.service;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -34,6 +36,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -44,6 +47,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 @RunWith(Parameterized.class)
 public class LocatorFetchRunnableIntegrationTest extends IntegrationTestBase {
@@ -175,12 +180,12 @@ public class LocatorFetchRunnableIntegrationTest extends IntegrationTestBase {
             LocatorFetchRunnable locatorFetchRunnable = spy(new LocatorFetchRunnable(rollupCtx, slotKey,
                     rollupReadExecutor, rollupWriteExecutor));
 
-            RollupExecutionContext rollupExecutionContext = spy(new RollupExecutionContext(Thread.currentThread()));
+            RollupExecutionContext rollupExecutionContext = spy(new RollupExecutionContext());
             RollupBatchWriter rollupBatchWriter = spy(new RollupBatchWriter(rollupWriteExecutor, rollupExecutionContext));
             when(locatorFetchRunnable.createRollupExecutionContext()).thenReturn(rollupExecutionContext);
             when(locatorFetchRunnable.createRollupBatchWriter(any(RollupExecutionContext.class))).thenReturn(rollupBatchWriter);
 
-            locatorFetchRunnable.run();
+            runAndWaitForRollups(locatorFetchRunnable);
 
             //verifying number of locators read and rollups written are same as the number of locators ingested per shard.
             verify(rollupExecutionContext, times(metricsShardMap.get(slotKey.getShard()).size())).incrementReadCounter();
@@ -236,12 +241,12 @@ public class LocatorFetchRunnableIntegrationTest extends IntegrationTestBase {
             LocatorFetchRunnable locatorFetchRunnable = spy(new LocatorFetchRunnable(rollupCtx, slotKey,
                     rollupReadExecutor, rollupWriteExecutor));
 
-            RollupExecutionContext rollupExecutionContext = spy(new RollupExecutionContext(Thread.currentThread()));
+            RollupExecutionContext rollupExecutionContext = spy(new RollupExecutionContext());
             RollupBatchWriter rollupBatchWriter = spy(new RollupBatchWriter(rollupWriteExecutor, rollupExecutionContext));
             when(locatorFetchRunnable.createRollupExecutionContext()).thenReturn(rollupExecutionContext);
             when(locatorFetchRunnable.createRollupBatchWriter(any(RollupExecutionContext.class))).thenReturn(rollupBatchWriter);
 
-            locatorFetchRunnable.run();
+            runAndWaitForRollups(locatorFetchRunnable);
 
             if (slotKey.getGranularity().isCoarser(DELAYED_METRICS_REROLL_GRANULARITY)) {
                 //verifying number of locators read and rollups written are same as the number of delayed locators during re-roll.
@@ -263,6 +268,25 @@ public class LocatorFetchRunnableIntegrationTest extends IntegrationTestBase {
 
 
 
+    /**
+     * The locator fetch returns as soon as the rollups are handed out; wait for the slot to be finished as well.
+     */
+    private void runAndWaitForRollups(LocatorFetchRunnable locatorFetchRunnable) throws Exception {
+        final CountDownLatch finished = new CountDownLatch(1);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                invocation.callRealMethod();
+                finished.countDown();
+                return null;
+            }
+        }).when(locatorFetchRunnable).finishExecution(anyLong(), any(RollupExecutionContext.class));
+
+        locatorFetchRunnable.run();
+
+        assertTrue("rollups did not finish in time", finished.await(30, TimeUnit.SECONDS));
+    }
+
     private void ingestMetrics(Map<Integer, List<IMetric>> metricsShardMap, long currentTimeDuringIngest) throws Exception {
 
         //inserting metrics corresponding to slot 4 for shards 1 and 2
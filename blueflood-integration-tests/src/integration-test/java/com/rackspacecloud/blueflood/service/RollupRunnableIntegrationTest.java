@@ -38,6 +38,7 @@ import com.rackspacecloud.blueflood.types.RollupType;
 import com.rackspacecloud.blueflood.utils.TimeValue;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 import junit.framework.Assert;
@@ -145,7 +146,7 @@ public class RollupRunnableIntegrationTest extends IntegrationTestBase {
                         range,
                         CassandraModel.CF_METRICS_5M_NAME).getPoints().size());
         
-        RollupExecutionContext rec = new RollupExecutionContext(Thread.currentThread());
+        RollupExecutionContext rec = new RollupExecutionContext();
         SingleRollupReadContext rc = new SingleRollupReadContext(normalLocator, range, Granularity.MIN_5);
         RollupBatchWriter batchWriter = new RollupBatchWriter(new ThreadPoolBuilder().build(), rec);
         RollupRunnable rr = new RollupRunnable(rec, rc, batchWriter);
@@ -167,6 +168,36 @@ public class RollupRunnableIntegrationTest extends IntegrationTestBase {
                                                     CassandraModel.CF_METRICS_5M_NAME).getPoints().size());
     }
     
+    @Test
+    public void testBatchedRollupOfMixedRollupTypes() throws Exception {
+        RollupExecutionContext rec = new RollupExecutionContext();
+        RollupBatchWriter batchWriter = new RollupBatchWriter(new ThreadPoolBuilder().build(), rec);
+        BatchedRollupRunnable brr = new BatchedRollupRunnable(rec,
+                Arrays.asList(normalLocator, counterLocator, gaugeLocator, timerLocator, setLocator),
+                range, Granularity.MIN_5, batchWriter);
+
+        rec.incrementReadCounter();
+        brr.run();
+        rec.doneIssuingReads();
+        rec.getCompletion().get(30, TimeUnit.SECONDS);
+
+        Assert.assertEquals(1, basicRW.getDataToRollup(
+                                                    normalLocator,
+                                                    RollupType.BF_BASIC,
+                                                    range,
+                                                    CassandraModel.CF_METRICS_5M_NAME).getPoints().size());
+        Assert.assertEquals(1, preAggrRW.getDataToRollup(
+                                                    counterLocator,
+                                                    RollupType.COUNTER,
+                                                    range,
+                                                    CassandraModel.CF_METRICS_PREAGGREGATED_5M_NAME).getPoints().size());
+        Assert.assertEquals(1, preAggrRW.getDataToRollup(
+                                                    timerLocator,
+                                                    RollupType.TIMER,
+                                                    range,
+                                                    CassandraModel.CF_METRICS_PREAGGREGATED_5M_NAME).getPoints().size());
+    }
+
     @Test
     public void testCounterRollup() throws IOException {
         testRolledupMetric(counterLocator, RollupType.COUNTER);
@@ -203,7 +234,7 @@ public class RollupRunnableIntegrationTest extends IntegrationTestBase {
                                                     range, 
                                                     CassandraModel.CF_METRICS_PREAGGREGATED_5M_NAME).getPoints().size());
         
-        RollupExecutionContext rec = new RollupExecutionContext(Thread.currentThread());
+        RollupExecutionContext rec = new RollupExecutionContext();
         SingleRollupReadContext rc = new SingleRollupReadContext(locator, range, Granularity.MIN_5);
         RollupBatchWriter batchWriter = new RollupBatchWriter(new ThreadPoolBuilder().build(), rec);
         RollupRunnable rr = new RollupRunnable(rec, rc, batchWriter);
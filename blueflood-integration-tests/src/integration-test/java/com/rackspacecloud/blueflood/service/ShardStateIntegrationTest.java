@@ -679,11 +679,27 @@ public class ShardStateIntegrationTest extends IntegrationTestBase {
             }
         }
 
+        @Override
+        public Map<Integer, Collection<SlotState>> getShardStates(Collection<Integer> shards) throws IOException {
+            Map<Integer, Collection<SlotState>> shardStates = new HashMap<Integer, Collection<SlotState>>();
+            for (int shard : shards) {
+                shardStates.put(shard, getShardState(shard));
+            }
+            return shardStates;
+        }
+
         @Override
         public void putShardState(int shard, Map<Granularity, Map<Integer, UpdateStamp>> slotTimes) throws IOException {
             map.put(shard, slotTimes);
         }
 
+        @Override
+        public void putShardStates(Map<Integer, Map<Granularity, Map<Integer, UpdateStamp>>> shardSlotTimes) throws IOException {
+            for (Map.Entry<Integer, Map<Granularity, Map<Integer, UpdateStamp>>> entry : shardSlotTimes.entrySet()) {
+                putShardState(entry.getKey(), entry.getValue());
+            }
+        }
+
         public void cleanUp() {
             map.clear();
         }